@@ -23,14 +23,18 @@ import org.apache.cassandra.config.ColumnDefinition;
 import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.commitlog.ReplayPosition;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.index.PerRowSecondaryIndex;
+import org.apache.cassandra.db.index.SecondaryIndexBuilder;
 import org.apache.cassandra.db.index.SecondaryIndexManager;
 import org.apache.cassandra.db.index.SecondaryIndexSearcher;
 import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.SSTableReader;
 import org.apache.cassandra.utils.concurrent.OpOrder;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -170,15 +174,16 @@ public class RowIndex extends PerRowSecondaryIndex {
     @Override
     public void delete(DecoratedKey key, OpOrder.Group opGroup) {
         Log.debug("Removing row %s from index %s", key, logName);
-        lock.writeLock().lock();
+        lock.readLock().lock();
         try {
-            rowService.delete(key);
-            rowService = null;
+            if (rowService != null) {
+                rowService.delete(key);
+            }
         } catch (RuntimeException e) {
             Log.error(e, "Error deleting row %s", key);
             throw e;
         } finally {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
         }
     }
 
@@ -280,16 +285,56 @@ public class RowIndex extends PerRowSecondaryIndex {
 
     @Override
     public void forceBlockingFlush() {
+        forceBlockingFlush(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The Lucene commit records the specified commit log position, and it doesn't block concurrent indexing.
+     */
+    @Override
+    public void forceBlockingFlush(ReplayPosition replayPosition) {
         Log.info("Flushing index %s", logName);
-        lock.writeLock().lock();
+        lock.readLock().lock();
         try {
-            rowService.commit();
+            if (rowService != null) {
+                rowService.commit(replayPosition);
+            }
             Log.info("Flushed index %s", logName);
         } catch (RuntimeException e) {
             Log.error(e, "Flushing index %s", logName);
             throw e;
         } finally {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ReplayPosition getReplayPosition() {
+        lock.readLock().lock();
+        try {
+            return rowService == null ? null : rowService.getReplayPosition();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The index is rebuilt in parallel by token range chunks, and an interrupted rebuild resumes from its last merged
+     * chunk. The specified sstables are ignored, because the rebuild flushes the table and takes its own sstables. New
+     * sstables, such as the streamed or loaded ones, are still indexed partition by partition by the generic builder.
+     */
+    @Override
+    public SecondaryIndexBuilder getFullIndexBuilder(Collection<SSTableReader> sstables) {
+        lock.readLock().lock();
+        try {
+            return rowService == null ? null : new RowIndexBuilder(baseCfs, indexName, rowService);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.service.IndexRebuild;
+import com.stratio.cassandra.index.service.RowService;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.compaction.CompactionInfo;
+import org.apache.cassandra.db.index.SecondaryIndexBuilder;
+
+import java.util.Collections;
+
+/**
+ * {@link SecondaryIndexBuilder} for {@link RowIndex}es, running a parallel and resumable {@link IndexRebuild} instead of
+ * indexing each partition through the regular write path.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowIndexBuilder extends SecondaryIndexBuilder {
+
+    private final IndexRebuild rebuild;
+
+    /**
+     * Builds a new {@link RowIndexBuilder} for the specified index.
+     *
+     * @param baseCfs    The indexed {@link ColumnFamilyStore}.
+     * @param indexName  The name of the index.
+     * @param rowService The {@link RowService} of the index.
+     */
+    public RowIndexBuilder(ColumnFamilyStore baseCfs, String indexName, RowService rowService) {
+        super(baseCfs, Collections.singleton(indexName));
+        this.rebuild = rowService.rebuild();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompactionInfo getCompactionInfo() {
+        return rebuild.getCompactionInfo();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void build() {
+        rebuild.run(this);
+    }
+}
@@ -22,6 +22,8 @@ import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.utils.ByteBufferUtil;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -47,20 +49,49 @@ public class RowIndexConfig {
     private static final String MAX_CACHED_MB_OPTION = "max_cached_mb";
     private static final int DEFAULT_MAX_CACHED_MB = 30;
 
+    private static final String DIRECTORY_OPTION = "directory";
+    private static final String DEFAULT_DIRECTORY = "auto";
+    private static final List<String> DIRECTORY_VALUES = Arrays.asList("auto", "mmap", "niofs");
+
+    private static final String NRT_CACHE_OPTION = "nrt_cache";
+    private static final boolean DEFAULT_NRT_CACHE = true;
+
     private static final String INDEXING_THREADS_OPTION = "indexing_threads";
     private static final int DEFAULT_INDEXING_THREADS = 0;
 
     private static final String INDEXING_QUEUES_SIZE_OPTION = "indexing_queues_size";
     private static final int DEFAULT_INDEXING_QUEUES_SIZE = 50;
 
+    private static final String READ_BEFORE_WRITE_OPTION = "read_before_write";
+    private static final boolean DEFAULT_READ_BEFORE_WRITE = true;
+
+    private static final String COVERING_OPTION = "covering";
+    private static final boolean DEFAULT_COVERING = false;
+
+    private static final String SHARDS_OPTION = "shards";
+    private static final int DEFAULT_SHARDS = 1;
+
+    private static final String SEARCH_PARALLELISM_OPTION = "search_parallelism";
+    private static final int DEFAULT_SEARCH_PARALLELISM = 1;
+
+    private static final String SEARCH_CACHE_SIZE_OPTION = "search_cache_size";
+    private static final int DEFAULT_SEARCH_CACHE_SIZE = 1000;
+
     private final Schema schema;
     private final double refreshSeconds;
     private final String path;
     private final int ramBufferMB;
     private final int maxMergeMB;
     private final int maxCachedMB;
+    private final String directory;
+    private final boolean nrtCache;
     private final int indexingThreads;
     private final int indexingQueuesSize;
+    private final boolean readBeforeWrite;
+    private final boolean covering;
+    private final int shards;
+    private final int searchParallelism;
+    private final int searchCacheSize;
 
     /**
      * Builds a new {@link RowIndexConfig} for the column family defined by the specified metadata using the specified
@@ -139,6 +170,31 @@ public class RowIndexConfig {
             maxCachedMB = DEFAULT_MAX_CACHED_MB;
         }
 
+        // Setup Lucene directory implementation
+        String directoryOption = options.get(DIRECTORY_OPTION);
+        if (directoryOption != null) {
+            directory = directoryOption.toLowerCase();
+            if (!DIRECTORY_VALUES.contains(directory)) {
+                String msg = String.format("'%s'  must be one of %s", DIRECTORY_OPTION, DIRECTORY_VALUES);
+                throw new RuntimeException(msg);
+            }
+        } else {
+            directory = DEFAULT_DIRECTORY;
+        }
+
+        // Setup NRT caching
+        String nrtCacheOption = options.get(NRT_CACHE_OPTION);
+        if (nrtCacheOption != null) {
+            if (nrtCacheOption.equalsIgnoreCase("true") || nrtCacheOption.equalsIgnoreCase("false")) {
+                nrtCache = Boolean.parseBoolean(nrtCacheOption);
+            } else {
+                String msg = String.format("'%s'  must be a boolean", NRT_CACHE_OPTION);
+                throw new RuntimeException(msg);
+            }
+        } else {
+            nrtCache = DEFAULT_NRT_CACHE;
+        }
+
         // Setup queues in index pool
         String indexPoolNumQueuesOption = options.get(INDEXING_THREADS_OPTION);
         if (indexPoolNumQueuesOption != null) {
@@ -169,6 +225,97 @@ public class RowIndexConfig {
             indexingQueuesSize = DEFAULT_INDEXING_QUEUES_SIZE;
         }
 
+        // Setup read before write
+        String readBeforeWriteOption = options.get(READ_BEFORE_WRITE_OPTION);
+        if (readBeforeWriteOption != null) {
+            if (readBeforeWriteOption.equalsIgnoreCase("true") || readBeforeWriteOption.equalsIgnoreCase("false")) {
+                readBeforeWrite = Boolean.parseBoolean(readBeforeWriteOption);
+            } else {
+                String msg = String.format("'%s'  must be a boolean", READ_BEFORE_WRITE_OPTION);
+                throw new RuntimeException(msg);
+            }
+        } else {
+            readBeforeWrite = DEFAULT_READ_BEFORE_WRITE;
+        }
+
+        // Setup covering index, storing the rows to serve searches without reading them
+        String coveringOption = options.get(COVERING_OPTION);
+        if (coveringOption != null) {
+            if (coveringOption.equalsIgnoreCase("true") || coveringOption.equalsIgnoreCase("false")) {
+                covering = Boolean.parseBoolean(coveringOption);
+            } else {
+                String msg = String.format("'%s'  must be a boolean", COVERING_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (covering && (metadata.isCounter() || metadata.hasStaticColumns())) {
+                String msg = String.format("'%s' is not supported for tables with counters or static columns",
+                                           COVERING_OPTION);
+                throw new RuntimeException(msg);
+            }
+        } else {
+            covering = DEFAULT_COVERING;
+        }
+
+        // Setup token range shards
+        String shardsOption = options.get(SHARDS_OPTION);
+        if (shardsOption != null) {
+            try {
+                shards = Integer.parseInt(shardsOption);
+            } catch (NumberFormatException e) {
+                String msg = String.format("'%s'  must be a strictly positive integer", SHARDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (shards <= 0) {
+                String msg = String.format("'%s'  must be strictly positive", SHARDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+        } else {
+            shards = DEFAULT_SHARDS;
+        }
+
+        // The NRT caches of all the shards are bounded by Cassandra's file cache size
+        if (nrtCache && (long) maxCachedMB * shards > DatabaseDescriptor.getFileCacheSizeInMB()) {
+            String msg = String.format("'%s' times '%s' must not exceed file_cache_size_in_mb (%d)",
+                                       MAX_CACHED_MB_OPTION,
+                                       SHARDS_OPTION,
+                                       DatabaseDescriptor.getFileCacheSizeInMB());
+            throw new RuntimeException(msg);
+        }
+
+        // Setup max parallel slices per search
+        String searchParallelismOption = options.get(SEARCH_PARALLELISM_OPTION);
+        if (searchParallelismOption != null) {
+            try {
+                searchParallelism = Integer.parseInt(searchParallelismOption);
+            } catch (NumberFormatException e) {
+                String msg = String.format("'%s'  must be a strictly positive integer", SEARCH_PARALLELISM_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (searchParallelism <= 0) {
+                String msg = String.format("'%s'  must be strictly positive", SEARCH_PARALLELISM_OPTION);
+                throw new RuntimeException(msg);
+            }
+        } else {
+            searchParallelism = DEFAULT_SEARCH_PARALLELISM;
+        }
+
+        // Setup parsed searches cache
+        String searchCacheSizeOption = options.get(SEARCH_CACHE_SIZE_OPTION);
+        if (searchCacheSizeOption != null) {
+            try {
+                searchCacheSize = Integer.parseInt(searchCacheSizeOption);
+            } catch (NumberFormatException e) {
+                String msg = String.format("'%s'  must be a positive integer", SEARCH_CACHE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (searchCacheSize < 0) {
+                String msg = String.format("'%s'  must be positive", SEARCH_CACHE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+        } else {
+            searchCacheSize = DEFAULT_SEARCH_CACHE_SIZE;
+        }
+
         // Get columns mapping schema
         String schemaOption = options.get(SCHEMA_OPTION);
         if (schemaOption != null && !schemaOption.trim().isEmpty()) {
@@ -223,6 +370,14 @@ public class RowIndexConfig {
         return maxCachedMB;
     }
 
+    public String getDirectory() {
+        return directory;
+    }
+
+    public boolean isNrtCache() {
+        return nrtCache;
+    }
+
     public int getIndexingThreads() {
         return indexingThreads;
     }
@@ -231,6 +386,26 @@ public class RowIndexConfig {
         return indexingQueuesSize;
     }
 
+    public boolean isReadBeforeWrite() {
+        return readBeforeWrite;
+    }
+
+    public boolean isCovering() {
+        return covering;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public int getSearchParallelism() {
+        return searchParallelism;
+    }
+
+    public int getSearchCacheSize() {
+        return searchCacheSize;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -241,8 +416,15 @@ public class RowIndexConfig {
                       .add("ramBufferMB", ramBufferMB)
                       .add("maxMergeMB", maxMergeMB)
                       .add("maxCachedMB", maxCachedMB)
+                      .add("directory", directory)
+                      .add("nrtCache", nrtCache)
                       .add("indexingThreads", indexingThreads)
                       .add("indexingQueuesSize", indexingQueuesSize)
+                      .add("readBeforeWrite", readBeforeWrite)
+                      .add("covering", covering)
+                      .add("shards", shards)
+                      .add("searchParallelism", searchParallelism)
+                      .add("searchCacheSize", searchCacheSize)
                       .toString();
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.Schema;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.util.RatioGauge;
+import org.apache.cassandra.metrics.DefaultNameFactory;
+import org.apache.cassandra.metrics.MetricNameFactory;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics for a {@link RowIndex}. They are published under the {@code RowIndex} type, scoped by the index full name
+ * ({@code keyspace.table.index}).
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowIndexMetrics {
+
+    /** Total number of search cache hits. */
+    public final Meter searchCacheHits;
+
+    /** Total number of search cache requests. */
+    public final Meter searchCacheRequests;
+
+    /** Search cache hit rate. */
+    public final Gauge<Double> searchCacheHitRate;
+
+    /** Total number of Lucene index files opened from the NRT cache. */
+    public final Meter directoryCacheHits;
+
+    /** Total number of Lucene index files opened. */
+    public final Meter directoryCacheRequests;
+
+    /** NRT cache hit rate of the opened Lucene index files. */
+    public final Gauge<Double> directoryCacheHitRate;
+
+    /** Number of slices searched in parallel per Lucene search. */
+    public final Histogram searchSlices;
+
+    /** Total number of search slices run by the searching thread because the shared search pool was busy. */
+    public final Meter callerSearchSlices;
+
+    /** Total number of searches aborted for not being finished before the request timeout. */
+    public final Meter abortedSearches;
+
+    /** The names of the text columns with a published analysis time. */
+    private final Set<String> analyzedColumns;
+
+    private final MetricNameFactory factory;
+
+    /**
+     * Creates the metrics for the specified index.
+     *
+     * @param keyspaceName The name of the keyspace of the indexed table.
+     * @param tableName    The name of the indexed table.
+     * @param indexName    The name of the index.
+     * @param schema       The index {@link Schema}, whose text columns analysis time is published.
+     */
+    public RowIndexMetrics(String keyspaceName, String tableName, String indexName, final Schema schema) {
+        String scope = String.format("%s.%s.%s", keyspaceName, tableName, indexName);
+        factory = new DefaultNameFactory("RowIndex", scope);
+
+        searchCacheHits = Metrics.newMeter(factory.createMetricName("SearchCacheHits"), "hits", TimeUnit.SECONDS);
+        searchCacheRequests = Metrics.newMeter(factory.createMetricName("SearchCacheRequests"),
+                                               "requests",
+                                               TimeUnit.SECONDS);
+        searchCacheHitRate = Metrics.newGauge(factory.createMetricName("SearchCacheHitRate"), new RatioGauge() {
+            @Override
+            protected double getNumerator() {
+                return searchCacheHits.count();
+            }
+
+            @Override
+            protected double getDenominator() {
+                return searchCacheRequests.count();
+            }
+        });
+        directoryCacheHits = Metrics.newMeter(factory.createMetricName("DirectoryCacheHits"), "hits", TimeUnit.SECONDS);
+        directoryCacheRequests = Metrics.newMeter(factory.createMetricName("DirectoryCacheRequests"),
+                                                  "requests",
+                                                  TimeUnit.SECONDS);
+        directoryCacheHitRate = Metrics.newGauge(factory.createMetricName("DirectoryCacheHitRate"), new RatioGauge() {
+            @Override
+            protected double getNumerator() {
+                return directoryCacheHits.count();
+            }
+
+            @Override
+            protected double getDenominator() {
+                return directoryCacheRequests.count();
+            }
+        });
+        searchSlices = Metrics.newHistogram(factory.createMetricName("SearchSlices"), true);
+        callerSearchSlices = Metrics.newMeter(factory.createMetricName("CallerSearchSlices"),
+                                              "slices",
+                                              TimeUnit.SECONDS);
+        abortedSearches = Metrics.newMeter(factory.createMetricName("AbortedSearches"), "searches", TimeUnit.SECONDS);
+        analyzedColumns = schema.getAnalyzedColumns();
+        for (final String column : analyzedColumns) {
+            Metrics.newGauge(factory.createMetricName(analysisTimeName(column)), new Gauge<Long>() {
+                @Override
+                public Long value() {
+                    return TimeUnit.NANOSECONDS.toMicros(schema.getAnalysisTime(column));
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the name of the metric with the total microseconds spent analyzing the specified text column.
+     *
+     * @param column A text column name.
+     * @return The name of the analysis time metric of {@code column}.
+     */
+    private static String analysisTimeName(String column) {
+        return "AnalysisTime." + column;
+    }
+
+    /**
+     * Returns the {@link MetricNameFactory} for the metrics of the index.
+     *
+     * @return The {@link MetricNameFactory} for the metrics of the index.
+     */
+    public MetricNameFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * Releases all the metrics, to be called when the index is removed.
+     */
+    public void release() {
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("SearchCacheHits"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("SearchCacheRequests"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("SearchCacheHitRate"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("DirectoryCacheHits"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("DirectoryCacheRequests"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("DirectoryCacheHitRate"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("SearchSlices"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("CallerSearchSlices"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("AbortedSearches"));
+        for (String column : analyzedColumns) {
+            Metrics.defaultRegistry().removeMetric(factory.createMetricName(analysisTimeName(column)));
+        }
+    }
+}
@@ -16,8 +16,8 @@
 package com.stratio.cassandra.index;
 
 import com.google.common.base.Objects;
+import com.stratio.cassandra.index.query.CompiledSearch;
 import com.stratio.cassandra.index.query.Search;
-import com.stratio.cassandra.index.schema.Schema;
 import com.stratio.cassandra.index.service.RowService;
 import com.stratio.cassandra.util.Log;
 import org.apache.cassandra.db.DataRange;
@@ -26,18 +26,14 @@ import org.apache.cassandra.db.Row;
 import org.apache.cassandra.db.filter.ExtendedFilter;
 import org.apache.cassandra.db.index.SecondaryIndexManager;
 import org.apache.cassandra.db.index.SecondaryIndexSearcher;
-import org.apache.cassandra.db.marshal.UTF8Type;
 import org.apache.cassandra.exceptions.InvalidRequestException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 
 import static org.apache.cassandra.cql3.Operator.EQ;
 
@@ -52,7 +48,6 @@ public class RowIndexSearcher extends SecondaryIndexSearcher {
 
     private final RowIndex index;
     private final RowService rowService;
-    private final Schema schema;
     private final ByteBuffer indexedColumnName;
 
     /**
@@ -70,7 +65,6 @@ public class RowIndexSearcher extends SecondaryIndexSearcher {
         super(indexManager, columns);
         this.index = index;
         this.rowService = rowService;
-        schema = rowService.getSchema();
         indexedColumnName = index.getColumnDefinition().name.bytes;
     }
 
@@ -84,7 +78,7 @@ public class RowIndexSearcher extends SecondaryIndexSearcher {
         DataRange dataRange = extendedFilter.dataRange;
         List<IndexExpression> clause = extendedFilter.getClause();
         List<IndexExpression> filteredExpressions = filteredExpressions(clause);
-        Search search = search(clause);
+        CompiledSearch search = compiledSearch(clause);
         return rowService.search(search, filteredExpressions, dataRange, limit, timestamp);
     }
 
@@ -124,13 +118,36 @@ public class RowIndexSearcher extends SecondaryIndexSearcher {
     @Override
     public void validate(IndexExpression indexExpression) throws InvalidRequestException {
         try {
-            String json = UTF8Type.instance.compose(indexExpression.value);
-            Search.fromJson(json).validate(schema);
+            rowService.compile(indexExpression.value);
         } catch (Exception e) {
             throw new InvalidRequestException(e.getMessage());
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Aggregations are computed from the index only, so they can't be combined with other filtering expressions.
+     */
+    @Override
+    public void validate(List<IndexExpression> clause) throws InvalidRequestException {
+        if (search(clause).usesAggregation() && !filteredExpressions(clause).isEmpty()) {
+            throw new InvalidRequestException("Aggregation searches can't be combined with other filtering " +
+                                              "expressions, they must be included in the Lucene search");
+        }
+    }
+
+    /**
+     * Returns the {@link CompiledSearch} contained in the specified list of {@link IndexExpression}s.
+     *
+     * @param clause A list of {@link IndexExpression}s.
+     * @return The {@link CompiledSearch} contained in the specified list of {@link IndexExpression}s.
+     */
+    private CompiledSearch compiledSearch(List<IndexExpression> clause) {
+        IndexExpression indexedExpression = indexedExpression(clause);
+        return rowService.compile(indexedExpression.value);
+    }
+
     /**
      * Returns the {@link Search} contained in the specified list of {@link IndexExpression}s.
      *
@@ -138,9 +155,7 @@ public class RowIndexSearcher extends SecondaryIndexSearcher {
      * @return The {@link Search} contained in the specified list of {@link IndexExpression}s.
      */
     private Search search(List<IndexExpression> clause) {
-        IndexExpression indexedExpression = indexedExpression(clause);
-        String json = UTF8Type.instance.compose(indexedExpression.value);
-        return Search.fromJson(json);
+        return compiledSearch(clause).getSearch();
     }
 
     /**
@@ -180,30 +195,29 @@ public class RowIndexSearcher extends SecondaryIndexSearcher {
     @Override
     public boolean requiresScanningAllRanges(List<IndexExpression> clause) {
         Search search = search(clause);
-        return search.usesRelevanceOrSorting();
+        return search.usesRelevanceOrSorting() || search.usesAggregation();
     }
 
     /** {@inheritDoc} */
     @Override
     public List<Row> postReconciliationProcessing(List<IndexExpression> clause, List<Row> rows) {
+        return postReconciliationProcessing(clause, rows, Integer.MAX_VALUE);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Row> postReconciliationProcessing(List<IndexExpression> clause, List<Row> rows, int limit) {
         int startSize = rows.size();
         long startTime = System.currentTimeMillis();
 
-        // Remove duplicates
-        TreeSet<Row> set = new TreeSet<>(rowService.comparator());
-        set.addAll(rows);
-        List<Row> result = new ArrayList<>(set);
-
-        // Sort
+        // Merge the replicas top rows, removing duplicates, or their partial aggregations
         Search search = search(clause);
-        Comparator<Row> comparator = rowService.comparator(search);
-        Collections.sort(result, comparator);
+        List<Row> result = rowService.combine(search, rows, limit);
 
-        String comparatorName = comparator.getClass().getSimpleName();
         int endSize = result.size();
         long endTime = System.currentTimeMillis() - startTime;
 
-        Log.debug("Sorted %d rows to %d with comparator %s in %d ms\n", startSize, endSize, comparatorName, endTime);
+        Log.debug("Merged %d rows to %d in %d ms", startSize, endSize, endTime);
 
         return result;
     }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperSingle;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.annotate.JsonSubTypes;
+import org.codehaus.jackson.annotate.JsonTypeInfo;
+
+/**
+ * The abstract base class for the aggregations of the documents matched by a search. Each replica computes a partial
+ * {@link AggregationResult} over its matching documents, reading the field values from doc values or from the
+ * uninverted index, and the coordinator merges them.
+ * <p/>
+ * Known subclasses are: <ul> <li> {@link TermsAggregation} <li> {@link RangeAggregation} <li> {@link StatsAggregation}
+ * </ul>
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+@JsonSubTypes({@JsonSubTypes.Type(value = TermsAggregation.class, name = "terms"),
+               @JsonSubTypes.Type(value = RangeAggregation.class, name = "range"),
+               @JsonSubTypes.Type(value = StatsAggregation.class, name = "stats"),})
+public abstract class Aggregation {
+
+    /** The name of the field to be aggregated. */
+    @JsonProperty("field")
+    protected final String field;
+
+    /**
+     * Abstract {@link Aggregation} builder receiving the name of the field to be aggregated.
+     *
+     * @param field The name of the field to be aggregated.
+     */
+    protected Aggregation(String field) {
+        this.field = field;
+    }
+
+    /**
+     * Returns the name of the field to be aggregated.
+     *
+     * @return The name of the field to be aggregated.
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Validates this {@link Aggregation} against the specified {@link Schema}.
+     *
+     * @param schema A {@link Schema}.
+     */
+    public void validate(Schema schema) {
+        mapper(schema);
+    }
+
+    /**
+     * Returns a new {@link AggregationCollector} computing this {@link Aggregation} with the specified {@link Schema}.
+     *
+     * @param schema The {@link Schema} to be used.
+     * @return A new {@link AggregationCollector} computing this {@link Aggregation}.
+     */
+    public abstract AggregationCollector collector(Schema schema);
+
+    /**
+     * Returns the final version of the specified {@link AggregationResult}, which is the merge of the partial results
+     * of all the replicas.
+     *
+     * @param result The merged {@link AggregationResult} of this {@link Aggregation}.
+     * @return The final version of {@code result}.
+     */
+    public AggregationResult finish(AggregationResult result) {
+        return result;
+    }
+
+    /**
+     * Returns the {@link ColumnMapperSingle} of the aggregated field in the specified {@link Schema}.
+     *
+     * @param schema A {@link Schema}.
+     * @return The {@link ColumnMapperSingle} of the aggregated field.
+     */
+    protected ColumnMapperSingle<?> mapper(Schema schema) {
+        if (field == null || field.trim().isEmpty()) {
+            throw new IllegalArgumentException("Field name required");
+        }
+        ColumnMapper columnMapper = schema.getMapper(field);
+        if (columnMapper == null) {
+            throw new IllegalArgumentException("No mapper found for aggregation field " + field);
+        }
+        if (!(columnMapper instanceof ColumnMapperSingle<?>)) {
+            throw new IllegalArgumentException("Aggregation not supported for field " + field);
+        }
+        return (ColumnMapperSingle<?>) columnMapper;
+    }
+
+    /**
+     * Returns the {@link ColumnMapperSingle} of the aggregated field in the specified {@link Schema}, checking that it
+     * writes numeric doc values.
+     *
+     * @param schema A {@link Schema}.
+     * @return The {@link ColumnMapperSingle} of the aggregated numeric field.
+     */
+    protected ColumnMapperSingle<?> numericMapper(Schema schema) {
+        ColumnMapperSingle<?> mapper = mapper(schema);
+        if (!mapper.hasNumericDocValues()) {
+            throw new IllegalArgumentException("Numeric field required for aggregation field " + field);
+        }
+        if (!schema.usesDocValues()) {
+            throw new IllegalArgumentException("The index must be rebuilt to aggregate field " + field);
+        }
+        return mapper;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import org.apache.lucene.index.AtomicReaderContext;
+
+import java.io.IOException;
+
+/**
+ * Computes an {@link Aggregation} over the matching documents of a sequence of index segments. Collectors are not
+ * thread safe, each search slice uses its own collectors and their {@link AggregationResult}s are merged.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public abstract class AggregationCollector {
+
+    /**
+     * Sets the index segment of the next collected documents.
+     *
+     * @param context The next index segment.
+     * @throws IOException If there is a low-level I/O error.
+     */
+    public abstract void setNextReader(AtomicReaderContext context) throws IOException;
+
+    /**
+     * Collects the specified matching document of the current segment.
+     *
+     * @param doc A document ID relative to the current segment.
+     * @throws IOException If there is a low-level I/O error.
+     */
+    public abstract void collect(int doc) throws IOException;
+
+    /**
+     * Returns the {@link AggregationResult} of all the collected documents.
+     *
+     * @return The {@link AggregationResult} of all the collected documents.
+     */
+    public abstract AggregationResult result();
+}
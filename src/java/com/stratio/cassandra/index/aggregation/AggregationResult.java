@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import org.codehaus.jackson.annotate.JsonSubTypes;
+import org.codehaus.jackson.annotate.JsonTypeInfo;
+
+/**
+ * The abstract base class for the results of an {@link Aggregation}. The partial results computed by different
+ * search slices or replicas are combined with {@link #merge(AggregationResult)}.
+ * <p/>
+ * Known subclasses are: <ul> <li> {@link TermsResult} <li> {@link RangeResult} <li> {@link StatsResult} </ul>
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+@JsonSubTypes({@JsonSubTypes.Type(value = TermsResult.class, name = "terms"),
+               @JsonSubTypes.Type(value = RangeResult.class, name = "range"),
+               @JsonSubTypes.Type(value = StatsResult.class, name = "stats"),})
+public abstract class AggregationResult {
+
+    /**
+     * Returns the combination of this partial result and the specified one, which must be of the same type and
+     * computed over a disjoint set of documents.
+     *
+     * @param other Another partial result of the same {@link Aggregation}.
+     * @return The combination of this and {@code other}.
+     */
+    public abstract AggregationResult merge(AggregationResult other);
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.google.common.base.Objects;
+import com.stratio.cassandra.util.JsonSerializer;
+import com.stratio.cassandra.util.Log;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The results of the named {@link Aggregation}s of a search, along with the number of matching documents. It is the
+ * compact partial aggregate returned by each replica, and also the final merged aggregate returned to the client. The
+ * partial aggregates are tagged with the token range they cover, because all the replicas of a range return one.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class AggregationResults {
+
+    /** The number of aggregated documents. */
+    @JsonProperty("count")
+    private final long count;
+
+    /** The {@link AggregationResult}s indexed by aggregation name. */
+    @JsonProperty("aggregations")
+    private final LinkedHashMap<String, AggregationResult> results;
+
+    /** The token range covered by these partial results, {@code null} if they aren't partial results of a range. */
+    @JsonProperty("range")
+    private final String range;
+
+    /**
+     * Builds a new {@link AggregationResults}.
+     *
+     * @param count   The number of aggregated documents.
+     * @param results The {@link AggregationResult}s indexed by aggregation name.
+     * @param range   The token range covered by the partial results, maybe {@code null}.
+     */
+    @JsonCreator
+    public AggregationResults(@JsonProperty("count") Long count,
+                              @JsonProperty("aggregations") Map<String, AggregationResult> results,
+                              @JsonProperty("range") String range) {
+        this.count = count == null ? 0 : count;
+        this.results = results == null
+                       ? new LinkedHashMap<String, AggregationResult>()
+                       : new LinkedHashMap<>(results);
+        this.range = range;
+    }
+
+    /**
+     * Builds a new {@link AggregationResults} not covering a particular token range.
+     *
+     * @param count   The number of aggregated documents.
+     * @param results The {@link AggregationResult}s indexed by aggregation name.
+     */
+    public AggregationResults(Long count, Map<String, AggregationResult> results) {
+        this(count, results, null);
+    }
+
+    /**
+     * Returns the number of aggregated documents.
+     *
+     * @return The number of aggregated documents.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the {@link AggregationResult}s indexed by aggregation name.
+     *
+     * @return The {@link AggregationResult}s indexed by aggregation name.
+     */
+    public Map<String, AggregationResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the token range covered by these partial results, {@code null} if they aren't partial results of a range.
+     *
+     * @return The token range covered by these partial results, maybe {@code null}.
+     */
+    public String getRange() {
+        return range;
+    }
+
+    /**
+     * Returns a copy of these results tagged as the partial results of the specified token range.
+     *
+     * @param range The token range covered by these results.
+     * @return A copy of these results covering {@code range}.
+     */
+    public AggregationResults withRange(String range) {
+        return new AggregationResults(count, results, range);
+    }
+
+    /**
+     * Returns the combination of these results with the specified ones, which must have been computed for the same
+     * {@link Aggregation}s over a disjoint set of documents.
+     *
+     * @param other The results of the same {@link Aggregation}s over other documents.
+     * @return The combination of this and {@code other}.
+     */
+    public AggregationResults merge(AggregationResults other) {
+        Map<String, AggregationResult> merged = new LinkedHashMap<>(results);
+        for (Map.Entry<String, AggregationResult> entry : other.results.entrySet()) {
+            AggregationResult result = merged.get(entry.getKey());
+            merged.put(entry.getKey(), result == null ? entry.getValue() : result.merge(entry.getValue()));
+        }
+        return new AggregationResults(count + other.count, merged);
+    }
+
+    /**
+     * Returns the final version of these merged results, as defined by the specified {@link Aggregation}s.
+     *
+     * @param aggregations The {@link Aggregation}s indexed by name.
+     * @return The final version of these results.
+     */
+    public AggregationResults finish(Map<String, Aggregation> aggregations) {
+        Map<String, AggregationResult> finished = new LinkedHashMap<>();
+        for (Map.Entry<String, Aggregation> entry : aggregations.entrySet()) {
+            AggregationResult result = results.get(entry.getKey());
+            if (result != null) {
+                finished.put(entry.getKey(), entry.getValue().finish(result));
+            }
+        }
+        return new AggregationResults(count, finished);
+    }
+
+    /**
+     * Returns a new {@link AggregationResults} from the specified JSON {@code String}.
+     *
+     * @param json A JSON {@code String} representing {@link AggregationResults}.
+     * @return The {@link AggregationResults} represented by the specified JSON {@code String}.
+     */
+    public static AggregationResults fromJson(String json) {
+        try {
+            return JsonSerializer.fromString(json, AggregationResults.class);
+        } catch (Exception e) {
+            String message = String.format("Unparseable JSON aggregation results: %s", e.getMessage());
+            Log.error(e, message);
+            throw new IllegalArgumentException(message, e);
+        }
+    }
+
+    /**
+     * Returns the JSON representation of this object.
+     *
+     * @return the JSON representation of this object.
+     */
+    public String toJson() {
+        try {
+            return JsonSerializer.toString(this);
+        } catch (Exception e) {
+            String message = String.format("Unformateable JSON aggregation results: %s", e.getMessage());
+            Log.error(e, message);
+            throw new IllegalArgumentException(message, e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                      .add("count", count)
+                      .add("results", results)
+                      .add("range", range)
+                      .toString();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lucene {@link Collector} computing several named {@link Aggregation}s over the matching documents, without scoring
+ * them. It is not thread safe, so each searched slice must use its own instance.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class AggregationsCollector extends Collector {
+
+    private final Map<String, AggregationCollector> collectors;
+    private long count = 0;
+
+    /**
+     * Builds a new {@link AggregationsCollector} for the specified {@link Aggregation}s.
+     *
+     * @param aggregations The {@link Aggregation}s to be computed indexed by name.
+     * @param schema       The {@link Schema} to be used.
+     */
+    public AggregationsCollector(Map<String, Aggregation> aggregations, Schema schema) {
+        collectors = new LinkedHashMap<>(aggregations.size());
+        for (Map.Entry<String, Aggregation> entry : aggregations.entrySet()) {
+            collectors.put(entry.getKey(), entry.getValue().collector(schema));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setScorer(Scorer scorer) {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void collect(int doc) throws IOException {
+        count++;
+        for (AggregationCollector collector : collectors.values()) {
+            collector.collect(doc);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+        for (AggregationCollector collector : collectors.values()) {
+            collector.setNextReader(context);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        return true;
+    }
+
+    /**
+     * Returns the {@link AggregationResults} of all the collected documents.
+     *
+     * @return The {@link AggregationResults} of all the collected documents.
+     */
+    public AggregationResults results() {
+        Map<String, AggregationResult> results = new LinkedHashMap<>(collectors.size());
+        for (Map.Entry<String, AggregationCollector> entry : collectors.entrySet()) {
+            results.put(entry.getKey(), entry.getValue().result());
+        }
+        return new AggregationResults(count, results);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.google.common.base.Objects;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperSingle;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link Aggregation} counting the documents having any value of a numeric or date field in each of a list of ranges.
+ * Ranges include their lower bound and exclude their upper bound, and they can overlap. The values are read from the
+ * field doc values.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RangeAggregation extends Aggregation {
+
+    /** The ranges to be counted. */
+    @JsonProperty("ranges")
+    private final List<Range> ranges;
+
+    /**
+     * Builds a new {@link RangeAggregation}.
+     *
+     * @param field  The name of the numeric or date field to be aggregated.
+     * @param ranges The ranges to be counted.
+     */
+    @JsonCreator
+    public RangeAggregation(@JsonProperty("field") String field, @JsonProperty("ranges") List<Range> ranges) {
+        super(field);
+        this.ranges = ranges;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void validate(Schema schema) {
+        bounds(numericMapper(schema));
+    }
+
+    /**
+     * Returns the lower and upper bounds of the ranges parsed with the specified mapper. Missing bounds are infinite.
+     *
+     * @param mapper The {@link ColumnMapperSingle} of the aggregated field.
+     * @return The lower and upper bounds of each range.
+     */
+    private double[][] bounds(ColumnMapperSingle<?> mapper) {
+        if (ranges == null || ranges.isEmpty()) {
+            throw new IllegalArgumentException("Ranges required for aggregation field " + field);
+        }
+        double[][] bounds = new double[ranges.size()][];
+        for (int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            double from = range.from == null ? Double.NEGATIVE_INFINITY : number(mapper, range.from);
+            double to = range.to == null ? Double.POSITIVE_INFINITY : number(mapper, range.to);
+            bounds[i] = new double[]{from, to};
+        }
+        return bounds;
+    }
+
+    private double number(ColumnMapperSingle<?> mapper, Object value) {
+        return ((Number) mapper.indexValue(field, value)).doubleValue();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AggregationCollector collector(Schema schema) {
+        final ColumnMapperSingle<?> mapper = numericMapper(schema);
+        final double[][] bounds = bounds(mapper);
+        final long[] counts = new long[bounds.length];
+        return new AggregationCollector() {
+
+            private SortedNumericDocValues values;
+
+            @Override
+            public void setNextReader(AtomicReaderContext context) throws IOException {
+                values = DocValues.getSortedNumeric(context.reader(), field);
+            }
+
+            @Override
+            public void collect(int doc) {
+                values.setDocument(doc);
+                int count = values.count();
+                for (int i = 0; i < bounds.length; i++) {
+                    for (int j = 0; j < count; j++) {
+                        double value = mapper.docValuesNumber(values.valueAt(j));
+                        if (value >= bounds[i][0] && value < bounds[i][1]) {
+                            counts[i]++;
+                            break;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public AggregationResult result() {
+                List<RangeResult.Bucket> buckets = new ArrayList<>(ranges.size());
+                for (int i = 0; i < ranges.size(); i++) {
+                    Range range = ranges.get(i);
+                    buckets.add(new RangeResult.Bucket(range.from, range.to, counts[i]));
+                }
+                return new RangeResult(buckets);
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("field", field).add("ranges", ranges).toString();
+    }
+
+    /**
+     * A range of values, including its lower bound and excluding its upper bound.
+     */
+    public static class Range {
+
+        /** The inclusive lower bound, maybe {@code null} meaning no lower bound. */
+        @JsonProperty("from")
+        private final Object from;
+
+        /** The exclusive upper bound, maybe {@code null} meaning no upper bound. */
+        @JsonProperty("to")
+        private final Object to;
+
+        /**
+         * Builds a new {@link Range}.
+         *
+         * @param from The inclusive lower bound, maybe {@code null} meaning no lower bound.
+         * @param to   The exclusive upper bound, maybe {@code null} meaning no upper bound.
+         */
+        @JsonCreator
+        public Range(@JsonProperty("from") Object from, @JsonProperty("to") Object to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return Objects.toStringHelper(this).add("from", from).add("to", to).toString();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.google.common.base.Objects;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of a {@link RangeAggregation}, containing the number of documents in each of the requested ranges, in
+ * the same order in which they were requested.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RangeResult extends AggregationResult {
+
+    /** The counted ranges. */
+    @JsonProperty("buckets")
+    private final List<Bucket> buckets;
+
+    /**
+     * Builds a new {@link RangeResult}.
+     *
+     * @param buckets The counted ranges.
+     */
+    @JsonCreator
+    public RangeResult(@JsonProperty("buckets") List<Bucket> buckets) {
+        this.buckets = buckets == null ? new ArrayList<Bucket>() : buckets;
+    }
+
+    /**
+     * Returns the counted ranges, in the same order in which they were requested.
+     *
+     * @return The counted ranges.
+     */
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AggregationResult merge(AggregationResult other) {
+        RangeResult result = (RangeResult) other;
+        List<Bucket> merged = new ArrayList<>(buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            Bucket bucket = buckets.get(i);
+            merged.add(new Bucket(bucket.from, bucket.to, bucket.count + result.buckets.get(i).count));
+        }
+        return new RangeResult(merged);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("buckets", buckets).toString();
+    }
+
+    /**
+     * The number of documents with any value in a range.
+     */
+    public static class Bucket {
+
+        /** The inclusive lower bound of the range, maybe {@code null} meaning no lower bound. */
+        @JsonProperty("from")
+        private final Object from;
+
+        /** The exclusive upper bound of the range, maybe {@code null} meaning no upper bound. */
+        @JsonProperty("to")
+        private final Object to;
+
+        /** The number of documents with any value in the range. */
+        @JsonProperty("count")
+        private final long count;
+
+        /**
+         * Builds a new {@link Bucket}.
+         *
+         * @param from  The inclusive lower bound of the range, maybe {@code null} meaning no lower bound.
+         * @param to    The exclusive upper bound of the range, maybe {@code null} meaning no upper bound.
+         * @param count The number of documents with any value in the range.
+         */
+        @JsonCreator
+        public Bucket(@JsonProperty("from") Object from,
+                      @JsonProperty("to") Object to,
+                      @JsonProperty("count") Long count) {
+            this.from = from;
+            this.to = to;
+            this.count = count == null ? 0 : count;
+        }
+
+        /**
+         * Returns the inclusive lower bound of the range, maybe {@code null} meaning no lower bound.
+         *
+         * @return The inclusive lower bound of the range.
+         */
+        public Object getFrom() {
+            return from;
+        }
+
+        /**
+         * Returns the exclusive upper bound of the range, maybe {@code null} meaning no upper bound.
+         *
+         * @return The exclusive upper bound of the range.
+         */
+        public Object getTo() {
+            return to;
+        }
+
+        /**
+         * Returns the number of documents with any value in the range.
+         *
+         * @return The number of documents with any value in the range.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return Objects.toStringHelper(this).add("from", from).add("to", to).add("count", count).toString();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.google.common.base.Objects;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperSingle;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.io.IOException;
+
+/**
+ * {@link Aggregation} computing the number, min, max, sum and average of the values of a numeric or date field. All
+ * the values of multivalued fields are aggregated. The values are read from the field doc values.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class StatsAggregation extends Aggregation {
+
+    /**
+     * Builds a new {@link StatsAggregation}.
+     *
+     * @param field The name of the numeric or date field to be aggregated.
+     */
+    @JsonCreator
+    public StatsAggregation(@JsonProperty("field") String field) {
+        super(field);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void validate(Schema schema) {
+        numericMapper(schema);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AggregationCollector collector(Schema schema) {
+        final ColumnMapperSingle<?> mapper = numericMapper(schema);
+        return new AggregationCollector() {
+
+            private SortedNumericDocValues values;
+            private long count = 0;
+            private double min = Double.POSITIVE_INFINITY;
+            private double max = Double.NEGATIVE_INFINITY;
+            private double sum = 0;
+
+            @Override
+            public void setNextReader(AtomicReaderContext context) throws IOException {
+                values = DocValues.getSortedNumeric(context.reader(), field);
+            }
+
+            @Override
+            public void collect(int doc) {
+                values.setDocument(doc);
+                for (int i = 0; i < values.count(); i++) {
+                    double value = mapper.docValuesNumber(values.valueAt(i));
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    sum += value;
+                    count++;
+                }
+            }
+
+            @Override
+            public AggregationResult result() {
+                return count == 0 ? new StatsResult(0L, null, null, 0d) : new StatsResult(count, min, max, sum);
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("field", field).toString();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.google.common.base.Objects;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * The result of a {@link StatsAggregation}, containing the number of values of the aggregated field and their min,
+ * max, sum and average. The min, max and average are {@code null} if there are no values.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class StatsResult extends AggregationResult {
+
+    /** The number of values. */
+    @JsonProperty("count")
+    private final long count;
+
+    /** The min value, maybe {@code null} if there are no values. */
+    @JsonProperty("min")
+    private final Double min;
+
+    /** The max value, maybe {@code null} if there are no values. */
+    @JsonProperty("max")
+    private final Double max;
+
+    /** The sum of the values. */
+    @JsonProperty("sum")
+    private final double sum;
+
+    /** The average of the values, maybe {@code null} if there are no values. */
+    @JsonProperty("avg")
+    private final Double avg;
+
+    /**
+     * Builds a new {@link StatsResult}.
+     *
+     * @param count The number of values.
+     * @param min   The min value, maybe {@code null} if there are no values.
+     * @param max   The max value, maybe {@code null} if there are no values.
+     * @param sum   The sum of the values.
+     */
+    @JsonCreator
+    public StatsResult(@JsonProperty("count") Long count,
+                       @JsonProperty("min") Double min,
+                       @JsonProperty("max") Double max,
+                       @JsonProperty("sum") Double sum) {
+        this.count = count == null ? 0 : count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum == null ? 0 : sum;
+        this.avg = this.count == 0 ? null : this.sum / this.count;
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the min value, or {@code null} if there are no values.
+     *
+     * @return The min value, maybe {@code null}.
+     */
+    public Double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the max value, or {@code null} if there are no values.
+     *
+     * @return The max value, maybe {@code null}.
+     */
+    public Double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the sum of the values.
+     *
+     * @return The sum of the values.
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the average of the values, or {@code null} if there are no values.
+     *
+     * @return The average of the values, maybe {@code null}.
+     */
+    public Double getAvg() {
+        return avg;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AggregationResult merge(AggregationResult other) {
+        StatsResult result = (StatsResult) other;
+        return new StatsResult(count + result.count,
+                               min == null ? result.min : result.min == null ? min : Math.min(min, result.min),
+                               max == null ? result.max : result.max == null ? max : Math.max(max, result.max),
+                               sum + result.sum);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                      .add("count", count)
+                      .add("min", min)
+                      .add("max", max)
+                      .add("sum", sum)
+                      .add("avg", avg)
+                      .toString();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.google.common.base.Objects;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperBlob;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperBoolean;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperInet;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperSingle;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperString;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperText;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.FieldCache;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link Aggregation} counting the documents per term of a field, retaining only the most frequent terms. Text fields
+ * are counted per analyzed token. The terms of each document are read from the field cache, which uninverts the index
+ * the first time a segment is aggregated.
+ * <p/>
+ * Each replica returns a few more terms than the requested ones, and the coordinator retains the most frequent terms
+ * of the merged counts, so the counts of the less frequent terms may be lower than the actual ones.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class TermsAggregation extends Aggregation {
+
+    /** The default max number of terms to be returned. */
+    public static final int DEFAULT_SIZE = 10;
+
+    /** The max number of terms to be returned. */
+    @JsonProperty("size")
+    private final int size;
+
+    /**
+     * Builds a new {@link TermsAggregation}.
+     *
+     * @param field The name of the field to be aggregated.
+     * @param size  The max number of terms to be returned.
+     */
+    @JsonCreator
+    public TermsAggregation(@JsonProperty("field") String field, @JsonProperty("size") Integer size) {
+        super(field);
+        this.size = size == null ? DEFAULT_SIZE : size;
+    }
+
+    /**
+     * Returns the max number of terms to be returned by each replica, which is greater than the requested size to
+     * improve the accuracy of the merged counts.
+     *
+     * @return The max number of terms to be returned by each replica.
+     */
+    int partialSize() {
+        return size + size / 2 + 10;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected ColumnMapperSingle<?> mapper(Schema schema) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive for aggregation field " + field);
+        }
+        ColumnMapperSingle<?> mapper = super.mapper(schema);
+        if (!(mapper instanceof ColumnMapperString ||
+              mapper instanceof ColumnMapperText ||
+              mapper instanceof ColumnMapperBoolean ||
+              mapper instanceof ColumnMapperInet ||
+              mapper instanceof ColumnMapperBlob)) {
+            throw new IllegalArgumentException("Terms aggregation not supported for field " + field);
+        }
+        return mapper;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AggregationCollector collector(Schema schema) {
+        mapper(schema);
+        return new AggregationCollector() {
+
+            private final Map<String, Long> counts = new HashMap<>();
+            private SortedSetDocValues values; // The terms of the current segment
+            private int[] ordCounts; // The document counts of the current segment per term ordinal
+
+            @Override
+            public void setNextReader(AtomicReaderContext context) throws IOException {
+                flush();
+                values = FieldCache.DEFAULT.getDocTermOrds(context.reader(), field);
+                ordCounts = new int[(int) values.getValueCount()];
+            }
+
+            @Override
+            public void collect(int doc) {
+                values.setDocument(doc);
+                for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+                    ordCounts[(int) ord]++;
+                }
+            }
+
+            /** Adds the counts of the current segment to the total ones. */
+            private void flush() {
+                if (values == null) {
+                    return;
+                }
+                for (int ord = 0; ord < ordCounts.length; ord++) {
+                    if (ordCounts[ord] > 0) {
+                        String term = values.lookupOrd(ord).utf8ToString();
+                        Long count = counts.get(term);
+                        counts.put(term, count == null ? ordCounts[ord] : count + ordCounts[ord]);
+                    }
+                }
+                values = null;
+                ordCounts = null;
+            }
+
+            @Override
+            public AggregationResult result() {
+                flush();
+                return new TermsResult(counts, 0L).top(partialSize());
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AggregationResult finish(AggregationResult result) {
+        return ((TermsResult) result).top(size);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("field", field).add("size", size).toString();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.google.common.base.Objects;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of a {@link TermsAggregation}, containing the number of documents per term, sorted by descending count,
+ * and the total count of the terms discarded because they were not between the most frequent ones.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class TermsResult extends AggregationResult {
+
+    /** The number of documents per term, sorted by descending count. */
+    @JsonProperty("counts")
+    private final LinkedHashMap<String, Long> counts;
+
+    /** The total count of the discarded terms. */
+    @JsonProperty("other")
+    private final long other;
+
+    /**
+     * Builds a new {@link TermsResult}.
+     *
+     * @param counts The number of documents per term.
+     * @param other  The total count of the discarded terms.
+     */
+    @JsonCreator
+    public TermsResult(@JsonProperty("counts") Map<String, Long> counts, @JsonProperty("other") Long other) {
+        this.counts = counts == null ? new LinkedHashMap<String, Long>() : new LinkedHashMap<>(counts);
+        this.other = other == null ? 0 : other;
+    }
+
+    /**
+     * Returns the number of documents per term, sorted by descending count.
+     *
+     * @return The number of documents per term.
+     */
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    /**
+     * Returns the total count of the terms discarded because they were not between the most frequent ones.
+     *
+     * @return The total count of the discarded terms.
+     */
+    public long getOther() {
+        return other;
+    }
+
+    /**
+     * Returns a copy of this result retaining only the specified number of most frequent terms. Ties are broken by
+     * term order. The counts of the discarded terms are added to the other count.
+     *
+     * @param size The max number of terms to be retained.
+     * @return A copy of this retaining only the {@code size} most frequent terms.
+     */
+    public TermsResult top(int size) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
+                int comparison = Long.compare(e2.getValue(), e1.getValue());
+                return comparison == 0 ? e1.getKey().compareTo(e2.getKey()) : comparison;
+            }
+        });
+        LinkedHashMap<String, Long> top = new LinkedHashMap<>();
+        long discarded = other;
+        for (Map.Entry<String, Long> entry : entries) {
+            if (top.size() < size) {
+                top.put(entry.getKey(), entry.getValue());
+            } else {
+                discarded += entry.getValue();
+            }
+        }
+        return new TermsResult(top, discarded);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AggregationResult merge(AggregationResult other) {
+        TermsResult result = (TermsResult) other;
+        Map<String, Long> merged = new HashMap<>(counts);
+        for (Map.Entry<String, Long> entry : result.counts.entrySet()) {
+            Long count = merged.get(entry.getKey());
+            merged.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+        }
+        return new TermsResult(merged, this.other + result.other).top(merged.size());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("counts", counts).add("other", other).toString();
+    }
+}
@@ -18,6 +18,7 @@ package com.stratio.cassandra.index.geospatial;
 import com.google.common.base.Objects;
 import com.stratio.cassandra.index.query.Condition;
 import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.lucene.search.Query;
 import org.codehaus.jackson.annotate.JsonCreator;
@@ -62,6 +63,13 @@ public class GeoBBoxCondition extends Condition {
     /** {@inheritDoc} */
     @Override
     public Query query(Schema schema) {
+        ColumnMapper columnMapper = schema.getMapper(field);
+        if (columnMapper instanceof GeoPointMapper) {
+            GeoPointMapper mapper = (GeoPointMapper) columnMapper;
+            Query query = mapper.bboxQuery(field, minLongitude, maxLongitude, minLatitude, maxLatitude);
+            query.setBoost(boost);
+            return query;
+        }
         GeoRectangle rectangle = new GeoRectangle(minLongitude, maxLongitude, minLatitude, maxLatitude);
         return new GeoShapeCondition(boost, field, GeoOperator.Intersects, rectangle).query(schema);
     }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.geospatial;
+
+import com.google.common.base.Objects;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldComparatorSource;
+
+import java.io.IOException;
+
+/**
+ * {@link FieldComparatorSource} sorting documents by the distance in metres from their closest {@link GeoPointMapper}
+ * point to a reference point. The packed points are read from doc values. Documents without points are considered
+ * infinitely far.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+class GeoDistanceComparatorSource extends FieldComparatorSource {
+
+    private final double longitude; // The longitude of the reference point
+    private final double latitude; // The latitude of the reference point
+
+    /**
+     * Builds a new {@link GeoDistanceComparatorSource} sorting by distance to the specified point.
+     *
+     * @param longitude The longitude of the reference point.
+     * @param latitude  The latitude of the reference point.
+     */
+    GeoDistanceComparatorSource(double longitude, double latitude) {
+        this.longitude = longitude;
+        this.latitude = latitude;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public FieldComparator<?> newComparator(final String field, int numHits, int sortPos, boolean reversed) {
+        final double[] distances = new double[numHits];
+        return new FieldComparator<Double>() {
+
+            private SortedNumericDocValues values;
+            private double bottom;
+            private double top;
+
+            @Override
+            public int compare(int slot1, int slot2) {
+                return Double.compare(distances[slot1], distances[slot2]);
+            }
+
+            @Override
+            public void setBottom(int slot) {
+                bottom = distances[slot];
+            }
+
+            @Override
+            public void setTopValue(Double value) {
+                top = value;
+            }
+
+            @Override
+            public int compareBottom(int doc) {
+                return Double.compare(bottom, distance(doc));
+            }
+
+            @Override
+            public int compareTop(int doc) {
+                return Double.compare(top, distance(doc));
+            }
+
+            @Override
+            public void copy(int slot, int doc) {
+                distances[slot] = distance(doc);
+            }
+
+            @Override
+            public FieldComparator<Double> setNextReader(AtomicReaderContext context) throws IOException {
+                values = DocValues.getSortedNumeric(context.reader(), field);
+                return this;
+            }
+
+            @Override
+            public Double value(int slot) {
+                return distances[slot];
+            }
+
+            private double distance(int doc) {
+                values.setDocument(doc);
+                double min = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < values.count(); i++) {
+                    long packed = values.valueAt(i);
+                    min = Math.min(min, GeoPointMapper.distance(longitude,
+                                                                latitude,
+                                                                GeoPointMapper.longitude(packed),
+                                                                GeoPointMapper.latitude(packed)));
+                }
+                return min;
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        GeoDistanceComparatorSource other = (GeoDistanceComparatorSource) o;
+        return longitude == other.longitude && latitude == other.latitude;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(longitude, latitude);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("longitude", longitude).add("latitude", latitude).toString();
+    }
+}
@@ -18,6 +18,7 @@ package com.stratio.cassandra.index.geospatial;
 import com.google.common.base.Objects;
 import com.stratio.cassandra.index.query.Condition;
 import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.lucene.search.Query;
 import org.codehaus.jackson.annotate.JsonCreator;
@@ -61,6 +62,13 @@ public class GeoDistanceCondition extends Condition {
     /** {@inheritDoc} */
     @Override
     public Query query(Schema schema) {
+        ColumnMapper columnMapper = schema.getMapper(field);
+        if (columnMapper instanceof GeoPointMapper) {
+            GeoPointMapper mapper = (GeoPointMapper) columnMapper;
+            Query query = mapper.distanceQuery(field, longitude, latitude, null, distance);
+            query.setBoost(boost);
+            return query;
+        }
         GeoCircle circle = new GeoCircle(longitude, latitude, distance);
         return new GeoShapeCondition(boost, field, GeoOperator.Intersects, circle).query(schema);
     }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.geospatial;
+
+import com.google.common.base.Objects;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.FieldCacheDocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+
+/**
+ * {@link Filter} accepting the documents with any {@link GeoPointMapper} point whose exact distance to a reference
+ * point is in a distance range. It reads the packed points from doc values, so it is intended to be applied only to the
+ * candidates of a bounding box query.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+class GeoDistanceFilter extends Filter {
+
+    private final String field; // The name of the doc values field
+    private final double longitude; // The longitude of the reference point
+    private final double latitude; // The latitude of the reference point
+    private final double minMetres; // The min accepted distance in metres
+    private final double maxMetres; // The max accepted distance in metres
+
+    /**
+     * Builds a new {@link GeoDistanceFilter}.
+     *
+     * @param field     The name of the field to be matched.
+     * @param longitude The longitude of the reference point.
+     * @param latitude  The latitude of the reference point.
+     * @param minMetres The min accepted distance in metres.
+     * @param maxMetres The max accepted distance in metres.
+     */
+    GeoDistanceFilter(String field, double longitude, double latitude, double minMetres, double maxMetres) {
+        this.field = field;
+        this.longitude = longitude;
+        this.latitude = latitude;
+        this.minMetres = minMetres;
+        this.maxMetres = maxMetres;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+        AtomicReader reader = context.reader();
+        final SortedNumericDocValues values = DocValues.getSortedNumeric(reader, field);
+        return new FieldCacheDocIdSet(reader.maxDoc(), acceptDocs) {
+            @Override
+            protected boolean matchDoc(int doc) {
+                values.setDocument(doc);
+                for (int i = 0; i < values.count(); i++) {
+                    long packed = values.valueAt(i);
+                    double distance = GeoPointMapper.distance(longitude,
+                                                              latitude,
+                                                              GeoPointMapper.longitude(packed),
+                                                              GeoPointMapper.latitude(packed));
+                    if (distance >= minMetres && distance <= maxMetres) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        GeoDistanceFilter other = (GeoDistanceFilter) o;
+        return field.equals(other.field) &&
+               longitude == other.longitude &&
+               latitude == other.latitude &&
+               minMetres == other.minMetres &&
+               maxMetres == other.maxMetres;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(field, longitude, latitude, minMetres, maxMetres);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                      .add("field", field)
+                      .add("longitude", longitude)
+                      .add("latitude", latitude)
+                      .add("minMetres", minMetres)
+                      .add("maxMetres", maxMetres)
+                      .toString();
+    }
+}
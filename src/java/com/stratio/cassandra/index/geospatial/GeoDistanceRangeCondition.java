@@ -18,6 +18,7 @@ package com.stratio.cassandra.index.geospatial;
 import com.google.common.base.Objects;
 import com.stratio.cassandra.index.query.Condition;
 import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
@@ -65,6 +66,14 @@ public class GeoDistanceRangeCondition extends Condition {
     @Override
     public Query query(Schema schema) {
 
+        ColumnMapper columnMapper = schema.getMapper(field);
+        if (columnMapper instanceof GeoPointMapper) {
+            GeoPointMapper mapper = (GeoPointMapper) columnMapper;
+            Query query = mapper.distanceQuery(field, longitude, latitude, minDistance, maxDistance);
+            query.setBoost(boost);
+            return query;
+        }
+
         GeoCircle minCircle = new GeoCircle(longitude, latitude, minDistance);
         GeoCircle maxCircle = new GeoCircle(longitude, latitude, maxDistance);
 
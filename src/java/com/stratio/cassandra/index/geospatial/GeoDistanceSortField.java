@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.geospatial;
+
+import com.google.common.base.Objects;
+import com.stratio.cassandra.index.query.SortField;
+import com.stratio.cassandra.index.schema.Column;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * A sorting for a {@link GeoPointMapper} field of a search, by the distance to a reference point.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class GeoDistanceSortField extends SortField {
+
+    /** The longitude of the reference point. */
+    @JsonProperty("longitude")
+    private final double longitude;
+
+    /** The latitude of the reference point. */
+    @JsonProperty("latitude")
+    private final double latitude;
+
+    /**
+     * Returns a new {@link GeoDistanceSortField}.
+     *
+     * @param field     The name of the geo point field to sort by.
+     * @param longitude The longitude of the reference point.
+     * @param latitude  The latitude of the reference point.
+     * @param reverse   {@code true} if natural order, closest first, should be reversed.
+     */
+    @JsonCreator
+    public GeoDistanceSortField(@JsonProperty("field") String field,
+                                @JsonProperty("longitude") double longitude,
+                                @JsonProperty("latitude") double latitude,
+                                @JsonProperty("reverse") Boolean reverse) {
+        super(field, reverse);
+        GeoShape.checkLongitude(longitude);
+        GeoShape.checkLatitude(latitude);
+        this.longitude = longitude;
+        this.latitude = latitude;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public org.apache.lucene.search.SortField sortField(Schema schema) {
+        String field = getField();
+        if (field == null || field.trim().isEmpty()) {
+            throw new IllegalArgumentException("Field name required");
+        }
+        ColumnMapper columnMapper = schema.getMapper(field);
+        if (!(columnMapper instanceof GeoPointMapper)) {
+            throw new IllegalArgumentException("Geo point mapper required for sorting by distance field " + field);
+        }
+        return ((GeoPointMapper) columnMapper).distanceSortField(field, longitude, latitude, isReverse());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int compare(Column<?> column1, Column<?> column2) {
+        if (column1 == null) {
+            return column2 == null ? 0 : 1;
+        }
+        if (column2 == null) {
+            return -1;
+        }
+        int comparison = Double.compare(distance(column1), distance(column2));
+        return isReverse() ? -comparison : comparison;
+    }
+
+    /**
+     * Returns the distance in metres from the reference point to the point in the specified {@link Column}.
+     *
+     * @param column A {@link Column} containing a JSON {@link GeoPoint}.
+     * @return The distance in metres from the reference point to the point in {@code column}.
+     */
+    private double distance(Column<?> column) {
+        GeoPoint point = (GeoPoint) GeoShape.fromJson((String) column.getComposedValue());
+        return GeoPointMapper.distance(longitude, latitude, point.getLongitude(), point.getLatitude());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                      .add("field", getField())
+                      .add("longitude", longitude)
+                      .add("latitude", latitude)
+                      .add("reverse", isReverse())
+                      .toString();
+    }
+}
@@ -45,6 +45,24 @@ public class GeoPoint extends GeoShape {
         this.latitude = latitude;
     }
 
+    /**
+     * Returns the longitude of this point.
+     *
+     * @return The longitude of this point.
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Returns the latitude of this point.
+     *
+     * @return The latitude of this point.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
     /** {@inheritDoc} */
     @Override
     public com.spatial4j.core.shape.Shape toSpatial4j(SpatialContext spatialContext) {
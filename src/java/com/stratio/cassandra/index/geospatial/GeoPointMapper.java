@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.geospatial;
+
+import com.google.common.base.Objects;
+import com.spatial4j.core.context.SpatialContext;
+import com.spatial4j.core.distance.DistanceUtils;
+import com.spatial4j.core.shape.Rectangle;
+import com.stratio.cassandra.index.schema.Column;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SortField;
+import org.codehaus.jackson.annotate.JsonCreator;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A {@link ColumnMapper} to map geographical points, which are the JSON representation of a {@link GeoPoint}. Unlike
+ * {@link GeoShapeMapper}, points are not indexed as prefix tree cells, but as packed numeric coordinates:
+ * <ul>
+ * <li>The latitude and the longitude are quantized to 32 bits each.</li>
+ * <li>Both quantized coordinates are indexed as trie encoded integers in the {@code <field>.lat} and {@code
+ * <field>.lon} fields, so bounding box searches are two numeric range queries.</li>
+ * <li>The two coordinates are packed into a single long doc value in the {@code <field>} field, used for exact
+ * distance filtering of the bounding box candidates and for sorting by distance.</li>
+ * </ul>
+ * The quantization error is below one centimetre.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class GeoPointMapper extends ColumnMapper {
+
+    /** The spatial context used for the bounding boxes of the distance searches. */
+    static final SpatialContext spatialContext = SpatialContext.GEO;
+
+    /** The precision step of the quantized coordinates, 4 terms per coordinate. */
+    public static final int PRECISION_STEP = 8;
+
+    /** The suffix of the indexed latitude field. */
+    public static final String LATITUDE_SUFFIX = ".lat";
+
+    /** The suffix of the indexed longitude field. */
+    public static final String LONGITUDE_SUFFIX = ".lon";
+
+    private static final double LATITUDE_SCALE = Integer.MAX_VALUE / 90.0;
+    private static final double LONGITUDE_SCALE = Integer.MAX_VALUE / 180.0;
+
+    /** The type of the indexed, not stored, quantized coordinates. */
+    private static final FieldType COORDINATE_TYPE = new FieldType(IntField.TYPE_NOT_STORED);
+
+    static {
+        COORDINATE_TYPE.setNumericPrecisionStep(PRECISION_STEP);
+        COORDINATE_TYPE.freeze();
+    }
+
+    /**
+     * Builds a new {@link GeoPointMapper}.
+     */
+    @JsonCreator
+    public GeoPointMapper() {
+        super(new AbstractType<?>[]{AsciiType.instance, UTF8Type.instance});
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<IndexableField> fields(Column<?> column) {
+        String fieldName = column.getFullName();
+        GeoShape geoShape = GeoShape.fromJson((String) column.getComposedValue());
+        if (!(geoShape instanceof GeoPoint)) {
+            throw new IllegalArgumentException(String.format("Geo point required for field %s", fieldName));
+        }
+        GeoPoint point = (GeoPoint) geoShape;
+        int latitude = quantizeLatitude(point.getLatitude());
+        int longitude = quantizeLongitude(point.getLongitude());
+        Set<IndexableField> fields = new HashSet<>();
+        fields.add(new IntField(fieldName + LATITUDE_SUFFIX, latitude, COORDINATE_TYPE));
+        fields.add(new IntField(fieldName + LONGITUDE_SUFFIX, longitude, COORDINATE_TYPE));
+        fields.add(new SortedNumericDocValuesField(fieldName, pack(latitude, longitude)));
+        return fields;
+    }
+
+    /**
+     * Returns a {@link Query} matching the points of the specified field contained in the specified bounding box. If
+     * the minimum longitude is greater than the maximum one then the bounding box crosses the date line.
+     *
+     * @param field        The name of the field to be matched.
+     * @param minLongitude The minimum accepted longitude.
+     * @param maxLongitude The maximum accepted longitude.
+     * @param minLatitude  The minimum accepted latitude.
+     * @param maxLatitude  The maximum accepted latitude.
+     * @return A {@link Query} matching the points contained in the bounding box.
+     */
+    public Query bboxQuery(String field,
+                           double minLongitude,
+                           double maxLongitude,
+                           double minLatitude,
+                           double maxLatitude) {
+        Query latitudeQuery = NumericRangeQuery.newIntRange(field + LATITUDE_SUFFIX,
+                                                            PRECISION_STEP,
+                                                            quantizeLatitude(minLatitude),
+                                                            quantizeLatitude(maxLatitude),
+                                                            true,
+                                                            true);
+        Query longitudeQuery;
+        if (minLongitude <= maxLongitude) {
+            longitudeQuery = longitudeQuery(field, minLongitude, maxLongitude);
+        } else {
+            BooleanQuery crossingQuery = new BooleanQuery();
+            crossingQuery.add(longitudeQuery(field, minLongitude, 180), Occur.SHOULD);
+            crossingQuery.add(longitudeQuery(field, -180, maxLongitude), Occur.SHOULD);
+            longitudeQuery = crossingQuery;
+        }
+        BooleanQuery query = new BooleanQuery();
+        query.add(latitudeQuery, Occur.MUST);
+        query.add(longitudeQuery, Occur.MUST);
+        return query;
+    }
+
+    private Query longitudeQuery(String field, double minLongitude, double maxLongitude) {
+        return NumericRangeQuery.newIntRange(field + LONGITUDE_SUFFIX,
+                                             PRECISION_STEP,
+                                             quantizeLongitude(minLongitude),
+                                             quantizeLongitude(maxLongitude),
+                                             true,
+                                             true);
+    }
+
+    /**
+     * Returns a {@link Query} matching the points of the specified field whose distance to the specified point is
+     * between the specified distances. The candidate points are those in the bounding box of the max distance circle,
+     * which are then filtered by their exact distance.
+     *
+     * @param field       The name of the field to be matched.
+     * @param longitude   The longitude of the reference point.
+     * @param latitude    The latitude of the reference point.
+     * @param minDistance The min accepted distance, maybe {@code null} meaning no min distance.
+     * @param maxDistance The max accepted distance.
+     * @return A {@link Query} matching the points in the distance range.
+     */
+    public Query distanceQuery(String field,
+                               double longitude,
+                               double latitude,
+                               GeoDistance minDistance,
+                               GeoDistance maxDistance) {
+        double maxMetres = maxDistance.getValue(GeoDistanceUnit.METRES);
+        double minMetres = minDistance == null ? 0 : minDistance.getValue(GeoDistanceUnit.METRES);
+        double kms = maxDistance.getValue(GeoDistanceUnit.KILOMETRES);
+        double degrees = DistanceUtils.dist2Degrees(kms, DistanceUtils.EARTH_MEAN_RADIUS_KM);
+        Rectangle bbox = spatialContext.makeCircle(longitude, latitude, degrees).getBoundingBox();
+        Query bboxQuery = bboxQuery(field, bbox.getMinX(), bbox.getMaxX(), bbox.getMinY(), bbox.getMaxY());
+        GeoDistanceFilter filter = new GeoDistanceFilter(field, longitude, latitude, minMetres, maxMetres);
+        return new FilteredQuery(bboxQuery, filter, FilteredQuery.QUERY_FIRST_FILTER_STRATEGY);
+    }
+
+    /**
+     * Returns a {@link SortField} sorting the points of the specified field by their distance to the specified point.
+     * Documents with several points are sorted by the closest one, and documents without points are considered
+     * infinitely far.
+     *
+     * @param field     The name of the field to sort by.
+     * @param longitude The longitude of the reference point.
+     * @param latitude  The latitude of the reference point.
+     * @param reverse   If the sort must be reversed.
+     * @return A {@link SortField} sorting by distance to the specified point.
+     */
+    public SortField distanceSortField(String field, double longitude, double latitude, boolean reverse) {
+        return new SortField(field, new GeoDistanceComparatorSource(longitude, latitude), reverse);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public SortField sortField(String field, boolean reverse) {
+        throw new IllegalArgumentException(String.format("Geo point field %s can only be sorted by distance", field));
+    }
+
+    /**
+     * Returns the quantized representation of the specified latitude.
+     *
+     * @param latitude A latitude.
+     * @return The quantized representation of {@code latitude}.
+     */
+    static int quantizeLatitude(double latitude) {
+        return (int) Math.round(latitude * LATITUDE_SCALE);
+    }
+
+    /**
+     * Returns the quantized representation of the specified longitude.
+     *
+     * @param longitude A longitude.
+     * @return The quantized representation of {@code longitude}.
+     */
+    static int quantizeLongitude(double longitude) {
+        return (int) Math.round(longitude * LONGITUDE_SCALE);
+    }
+
+    /**
+     * Returns the specified quantized coordinates packed into a single long.
+     *
+     * @param latitude  A quantized latitude.
+     * @param longitude A quantized longitude.
+     * @return The packed coordinates.
+     */
+    static long pack(int latitude, int longitude) {
+        return ((long) latitude << 32) | (longitude & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the latitude of the specified packed coordinates.
+     *
+     * @param packed Packed coordinates.
+     * @return The latitude of {@code packed}.
+     */
+    static double latitude(long packed) {
+        return (int) (packed >> 32) / LATITUDE_SCALE;
+    }
+
+    /**
+     * Returns the longitude of the specified packed coordinates.
+     *
+     * @param packed Packed coordinates.
+     * @return The longitude of {@code packed}.
+     */
+    static double longitude(long packed) {
+        return (int) packed / LONGITUDE_SCALE;
+    }
+
+    /**
+     * Returns the distance in metres between the specified points.
+     *
+     * @param longitude1 The longitude of the first point.
+     * @param latitude1  The latitude of the first point.
+     * @param longitude2 The longitude of the second point.
+     * @param latitude2  The latitude of the second point.
+     * @return The distance in metres between the two points.
+     */
+    static double distance(double longitude1, double latitude1, double longitude2, double latitude2) {
+        double degrees = spatialContext.getDistCalc().distance(spatialContext.makePoint(longitude1, latitude1),
+                                                               longitude2,
+                                                               latitude2);
+        double kms = DistanceUtils.degrees2Dist(degrees, DistanceUtils.EARTH_MEAN_RADIUS_KM);
+        return kms * GeoDistanceUnit.KILOMETRES.getMetres();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("precisionStep", PRECISION_STEP).toString();
+    }
+}
@@ -64,7 +64,7 @@ public class GeoShapeMapper extends ColumnMapper {
         this.grid = new GeohashPrefixTree(spatialContext, this.maxLevels);
     }
 
-    public Set<IndexableField> fields(Column column) {
+    public Set<IndexableField> fields(Column<?> column) {
         String fieldName = column.getFullName();
         SpatialStrategy strategy = getStrategy(fieldName);
         GeoShape geoShape = GeoShape.fromJson((String) column.getComposedValue());
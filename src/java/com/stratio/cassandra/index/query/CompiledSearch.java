@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import com.google.common.base.Objects;
+import com.stratio.cassandra.index.aggregation.Aggregation;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.Query;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Search} already validated and translated to Lucene using a certain {@link Schema}. Its range independent
+ * Lucene clauses and its Lucene {@link org.apache.lucene.search.Sort} are built only once, so it can be reused by any
+ * number of concurrent searches with the same {@link Schema}.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class CompiledSearch {
+
+    private final Search search;
+    private final List<BooleanClause> clauses;
+    private final org.apache.lucene.search.Sort sort;
+    private final Map<String, Aggregation> aggregations;
+
+    /**
+     * Returns a new {@link CompiledSearch} translating the specified {@link Search} with the specified {@link Schema}.
+     *
+     * @param search The {@link Search} to be compiled.
+     * @param schema The {@link Schema} to be used.
+     */
+    public CompiledSearch(Search search, Schema schema) {
+        this.search = search;
+        this.clauses = search.clauses(schema);
+        this.sort = search.sort(schema);
+        this.aggregations = search.aggregations(schema);
+    }
+
+    /**
+     * Returns a new {@link CompiledSearch} for the specified JSON {@link Search} using the specified {@link Schema}.
+     *
+     * @param json   A JSON {@code String} representing a {@link Search}.
+     * @param schema The {@link Schema} to be used.
+     * @return A new {@link CompiledSearch} for {@code json}.
+     */
+    public static CompiledSearch fromJson(String json, Schema schema) {
+        return new CompiledSearch(Search.fromJson(json), schema);
+    }
+
+    /**
+     * Returns the compiled {@link Search}.
+     *
+     * @return The compiled {@link Search}.
+     */
+    public Search getSearch() {
+        return search;
+    }
+
+    /**
+     * Returns the Lucene {@link Query} representation of this search restricted to the specified range {@link Query}.
+     *
+     * @param rangeQuery An additional range {@link Query} to be used, maybe {@code null}.
+     * @return The Lucene {@link Query} representation of this search.
+     */
+    public Query query(Query rangeQuery) {
+        return Search.query(clauses, rangeQuery);
+    }
+
+    /**
+     * Returns the Lucene {@link org.apache.lucene.search.Sort} of this search, maybe {@code null} meaning no sorting.
+     *
+     * @return The Lucene {@link org.apache.lucene.search.Sort} of this search.
+     */
+    public org.apache.lucene.search.Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * Returns the validated {@link Aggregation}s of this search indexed by name, which is empty if there is no
+     * aggregation.
+     *
+     * @return The {@link Aggregation}s of this search indexed by name.
+     */
+    public Map<String, Aggregation> getAggregations() {
+        return aggregations;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("search", search).toString();
+    }
+}
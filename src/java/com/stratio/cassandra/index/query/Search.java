@@ -16,6 +16,7 @@
 package com.stratio.cassandra.index.query;
 
 import com.google.common.base.Objects;
+import com.stratio.cassandra.index.aggregation.Aggregation;
 import com.stratio.cassandra.index.schema.Schema;
 import com.stratio.cassandra.util.JsonSerializer;
 import com.stratio.cassandra.util.Log;
@@ -24,9 +25,16 @@ import org.apache.lucene.search.*;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonProperty;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Class representing an Lucene index search. It is formed by an optional querying {@link Condition} and an optional
- * filtering {@link Condition}. It can be translated to a Lucene {@link Query} using a {@link Schema}.
+ * filtering {@link Condition}. It can be translated to a Lucene {@link Query} using a {@link Schema}. A search with
+ * {@link Aggregation}s doesn't return the matching rows but the aggregation of them.
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
@@ -47,6 +55,10 @@ public class Search {
     @JsonProperty("sort")
     private Sort sort;
 
+    /** The {@link Aggregation}s to be computed indexed by name, maybe {@code null} meaning no aggregation. */
+    @JsonProperty("aggregations")
+    private LinkedHashMap<String, Aggregation> aggregations;
+
     /**
      * Returns a new {@link Search} composed by the specified querying and filtering conditions.
      *
@@ -55,13 +67,29 @@ public class Search {
      * @param sort            The {@link Sort} for the query. Note that is the order in which the data will be read
      *                        before querying, not the order of the results after querying.
      */
+    public Search(Condition queryCondition, Condition filterCondition, Sort sort) {
+        this(queryCondition, filterCondition, sort, null);
+    }
+
+    /**
+     * Returns a new {@link Search} composed by the specified querying and filtering conditions and aggregations.
+     *
+     * @param queryCondition  The {@link Condition} for querying, maybe {@code null} meaning no querying.
+     * @param filterCondition The {@link Condition} for filtering, maybe {@code null} meaning no filtering.
+     * @param sort            The {@link Sort} for the query. Note that is the order in which the data will be read
+     *                        before querying, not the order of the results after querying.
+     * @param aggregations    The {@link Aggregation}s to be computed indexed by name, maybe {@code null} meaning no
+     *                        aggregation.
+     */
     @JsonCreator
     public Search(@JsonProperty("query") Condition queryCondition,
                   @JsonProperty("filter") Condition filterCondition,
-                  @JsonProperty("sort") Sort sort) {
+                  @JsonProperty("sort") Sort sort,
+                  @JsonProperty("aggregations") Map<String, Aggregation> aggregations) {
         this.queryCondition = queryCondition;
         this.filterCondition = filterCondition;
         this.sort = sort;
+        this.aggregations = aggregations == null ? null : new LinkedHashMap<>(aggregations);
     }
 
     /**
@@ -128,6 +156,44 @@ public class Search {
         return sort != null;
     }
 
+    /**
+     * Returns {@code true} if this search computes {@link Aggregation}s instead of returning the matching rows, {@code
+     * false} otherwise.
+     *
+     * @return {@code true} if this search computes {@link Aggregation}s, {@code false} otherwise.
+     */
+    public boolean usesAggregation() {
+        return aggregations != null && !aggregations.isEmpty();
+    }
+
+    /**
+     * Returns the {@link Aggregation}s to be computed indexed by name, which is empty if there is no aggregation.
+     *
+     * @return The {@link Aggregation}s to be computed indexed by name.
+     */
+    public Map<String, Aggregation> getAggregations() {
+        return aggregations == null ? Collections.<String, Aggregation>emptyMap() : aggregations;
+    }
+
+    /**
+     * Returns the {@link Aggregation}s to be computed indexed by name, validating them against the specified {@link
+     * Schema}. Aggregation searches can't be sorted.
+     *
+     * @param schema A {@link Schema}.
+     * @return The {@link Aggregation}s to be computed indexed by name.
+     */
+    public Map<String, Aggregation> aggregations(Schema schema) {
+        if (usesAggregation()) {
+            if (sort != null) {
+                throw new IllegalArgumentException("Aggregation searches can't be sorted");
+            }
+            for (Aggregation aggregation : aggregations.values()) {
+                aggregation.validate(schema);
+            }
+        }
+        return getAggregations();
+    }
+
     /**
      * Returns the field sorting to be used, maybe {@code null} meaning no field sorting.
      *
@@ -158,17 +224,45 @@ public class Search {
      * @return The Lucene {@link Query} representation of this search.
      */
     public Query query(Schema schema, Query rangeQuery) {
-        if (queryCondition == null && filterCondition == null && rangeQuery == null) {
-            return new MatchAllDocsQuery();
-        }
-        BooleanQuery booleanQuery = new BooleanQuery();
+        return query(clauses(schema), rangeQuery);
+    }
+
+    /**
+     * Returns the Lucene {@link BooleanClause}s representing the querying and filtering {@link Condition}s of this
+     * search. These clauses don't depend on the searched range, so they can be reused by several searches.
+     *
+     * @param schema The {@link Schema} to be used.
+     * @return The Lucene {@link BooleanClause}s representing the querying and filtering {@link Condition}s.
+     */
+    public List<BooleanClause> clauses(Schema schema) {
+        List<BooleanClause> clauses = new ArrayList<>(2);
         if (queryCondition != null) {
             Query query = queryCondition.query(schema);
-            booleanQuery.add(query, BooleanClause.Occur.MUST);
+            clauses.add(new BooleanClause(query, BooleanClause.Occur.MUST));
         }
         if (filterCondition != null) {
             Query query = new ConstantScoreQuery(filterCondition.query(schema));
-            booleanQuery.add(query, BooleanClause.Occur.MUST);
+            clauses.add(new BooleanClause(query, BooleanClause.Occur.MUST));
+        }
+        return clauses;
+    }
+
+    /**
+     * Returns the Lucene {@link Query} formed by the specified search {@link BooleanClause}s and range {@link Query}.
+     * If there are no clauses nor range, then a {@link MatchAllDocsQuery} is returned, so it never returns {@code
+     * null}.
+     *
+     * @param clauses    The search {@link BooleanClause}s, as returned by {@link #clauses(Schema)}.
+     * @param rangeQuery An additional range {@link Query} to be used.
+     * @return The Lucene {@link Query} formed by {@code clauses} and {@code rangeQuery}.
+     */
+    public static Query query(List<BooleanClause> clauses, Query rangeQuery) {
+        if (clauses.isEmpty() && rangeQuery == null) {
+            return new MatchAllDocsQuery();
+        }
+        BooleanQuery booleanQuery = new BooleanQuery();
+        for (BooleanClause clause : clauses) {
+            booleanQuery.add(clause);
         }
         if (rangeQuery != null) {
             booleanQuery.add(rangeQuery, BooleanClause.Occur.MUST);
@@ -188,6 +282,7 @@ public class Search {
         if (sort != null) {
             sort.sort(schema);
         }
+        aggregations(schema);
     }
 
     /** {@inheritDoc} */
@@ -197,6 +292,7 @@ public class Search {
                       .add("queryCondition", queryCondition)
                       .add("filterCondition", filterCondition)
                       .add("sort", sort)
+                      .add("aggregations", aggregations)
                       .toString();
     }
 }
@@ -16,6 +16,7 @@
 package com.stratio.cassandra.index.query;
 
 import com.google.common.base.Objects;
+import com.stratio.cassandra.index.geospatial.GeoDistanceSortField;
 import com.stratio.cassandra.index.schema.Column;
 import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
 import com.stratio.cassandra.index.schema.Columns;
@@ -24,6 +25,8 @@ import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.annotate.JsonSubTypes;
+import org.codehaus.jackson.annotate.JsonTypeInfo;
 
 import java.nio.ByteBuffer;
 import java.util.Comparator;
@@ -33,6 +36,12 @@ import java.util.Comparator;
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME,
+              include = JsonTypeInfo.As.PROPERTY,
+              property = "type",
+              defaultImpl = SortField.class)
+@JsonSubTypes({@JsonSubTypes.Type(value = SortField.class, name = "simple"),
+               @JsonSubTypes.Type(value = GeoDistanceSortField.class, name = "geo_distance"),})
 public class SortField {
 
     /** The default reverse option. */
@@ -58,6 +67,24 @@ public class SortField {
         this.reverse = reverse == null ? DEFAULT_REVERSE : reverse;
     }
 
+    /**
+     * Returns the name of the field to sort by.
+     *
+     * @return The name of the field to sort by.
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Returns {@code true} if natural order should be reversed.
+     *
+     * @return {@code true} if natural order should be reversed.
+     */
+    public boolean isReverse() {
+        return reverse;
+    }
+
     /**
      * Returns the Lucene {@link org.apache.lucene.search.SortField} representing this {@link SortField}.
      *
@@ -72,7 +99,7 @@ public class SortField {
         if (columnMapper == null) {
             throw new IllegalArgumentException("No mapper found for sortFields field " + field);
         } else {
-            return columnMapper.sortField(field, reverse);
+            return schema.sortField(columnMapper, field, reverse);
         }
     }
 
@@ -92,24 +119,34 @@ public class SortField {
                     return -1;
                 }
 
-                Column column1 = o1.getColumn(field);
-                Column column2 = o2.getColumn(field);
-
-                if (column1 == null) {
-                    return column2 == null ? 0 : 1;
-                }
-                if (column2 == null) {
-                    return -1;
-                }
-
-                AbstractType<?> type = column1.getType();
-                ByteBuffer value1 = column1.getDecomposedValue();
-                ByteBuffer value2 = column2.getDecomposedValue();
-                return reverse ? type.compare(value2, value1) : type.compare(value1, value2);
+                return SortField.this.compare(o1.getColumn(field), o2.getColumn(field));
             }
         };
     }
 
+    /**
+     * Compares the specified values of the field of this {@link SortField}, with the same logic as this {@link
+     * SortField}. Missing values are sorted last.
+     *
+     * @param column1 A {@link Column} of the sorting field, maybe {@code null}.
+     * @param column2 Another {@link Column} of the sorting field, maybe {@code null}.
+     * @return A negative integer, zero, or a positive integer as the first {@link Column} is less than, equal to, or
+     * greater than the second.
+     */
+    public int compare(Column<?> column1, Column<?> column2) {
+        if (column1 == null) {
+            return column2 == null ? 0 : 1;
+        }
+        if (column2 == null) {
+            return -1;
+        }
+
+        AbstractType<?> type = column1.getType();
+        ByteBuffer value1 = column1.getDecomposedValue();
+        ByteBuffer value2 = column2.getDecomposedValue();
+        return reverse ? type.compare(value2, value1) : type.compare(value1, value2);
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -15,10 +15,14 @@
  */
 package com.stratio.cassandra.index.query.builder;
 
+import com.stratio.cassandra.index.aggregation.Aggregation;
 import com.stratio.cassandra.index.query.Condition;
 import com.stratio.cassandra.index.query.Search;
 import com.stratio.cassandra.index.query.Sort;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * {@link Builder} for building a new {@link Search}.
  *
@@ -38,6 +42,9 @@ public class SearchBuilder implements Builder<Search> {
      */
     private Sort sort;
 
+    /** The {@link Aggregation}s to be computed indexed by name. */
+    private final Map<String, Aggregation> aggregations = new LinkedHashMap<>();
+
     /**
      * Returns this builder with the specified querying condition.
      *
@@ -71,6 +78,18 @@ public class SearchBuilder implements Builder<Search> {
         return this;
     }
 
+    /**
+     * Returns this builder with the specified named aggregation.
+     *
+     * @param name        The name of the aggregation.
+     * @param aggregation The {@link Aggregation} to be computed.
+     * @return This builder with the specified named aggregation.
+     */
+    public SearchBuilder aggregation(String name, Aggregation aggregation) {
+        this.aggregations.put(name, aggregation);
+        return this;
+    }
+
     /**
      * Returns the {@link Search} represented by this builder.
      *
@@ -78,7 +97,7 @@ public class SearchBuilder implements Builder<Search> {
      */
     @Override
     public Search build() {
-        return new Search(queryCondition, filterCondition, sort);
+        return new Search(queryCondition, filterCondition, sort, aggregations.isEmpty() ? null : aggregations);
     }
 
     /**
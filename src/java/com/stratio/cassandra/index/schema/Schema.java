@@ -18,6 +18,7 @@ package com.stratio.cassandra.index.schema;
 import com.google.common.base.Objects;
 import com.stratio.cassandra.index.schema.analysis.Analysis;
 import com.stratio.cassandra.index.schema.analysis.AnalyzerBuilder;
+import com.stratio.cassandra.index.schema.analysis.SchemaAnalyzer;
 import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
 import com.stratio.cassandra.index.schema.mapping.ColumnMapperSingle;
 import com.stratio.cassandra.index.schema.mapping.Mapping;
@@ -25,12 +26,14 @@ import com.stratio.cassandra.util.JsonSerializer;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.search.SortField;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonProperty;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Class for several columns mappings between Cassandra and Lucene.
@@ -46,7 +49,7 @@ public class Schema implements Closeable {
 
     private final Analyzer defaultAnalyzer;
 
-    private final Analyzer analyzer;
+    private final SchemaAnalyzer analyzer;
 
     /**
      * Builds a new {@code ColumnsMapper} for the specified getAnalyzer and cell mappers.
@@ -83,6 +86,25 @@ public class Schema implements Closeable {
         return analyzer;
     }
 
+    /**
+     * Returns the names of the text columns whose analysis time is measured.
+     *
+     * @return The names of the text columns whose analysis time is measured.
+     */
+    public Set<String> getAnalyzedColumns() {
+        return analyzer.getTimedColumns();
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent analyzing the specified text column, both for indexing and querying.
+     *
+     * @param column A text column name.
+     * @return The total time in nanoseconds spent analyzing {@code column}.
+     */
+    public long getAnalysisTime(String column) {
+        return analyzer.getAnalysisTime(column);
+    }
+
     /**
      * Returns the {@link ColumnMapper} identified by the specified field name, or {@code null} if not found.
      *
@@ -105,6 +127,38 @@ public class Schema implements Closeable {
         return mapping.getMapperSingle(field);
     }
 
+    /**
+     * Sets if the mappers supporting doc values must write them and sort by them.
+     *
+     * @param write If doc values must be written.
+     * @param sort  If doc values must be used for sorting, so all the documents must have them.
+     */
+    public void setDocValues(boolean write, boolean sort) {
+        mapping.setDocValues(write, sort);
+    }
+
+    /**
+     * Returns {@code true} if all the documents have the doc values of the mappers supporting them, {@code false}
+     * otherwise.
+     *
+     * @return {@code true} if all the documents have doc values, {@code false} otherwise.
+     */
+    public boolean usesDocValues() {
+        return mapping.usesDocValues();
+    }
+
+    /**
+     * Returns the Lucene {@link SortField} for the specified field, using doc values if they are enabled.
+     *
+     * @param columnMapper The {@link ColumnMapper} of the field.
+     * @param field        The field name.
+     * @param reverse      If the sort must be reversed.
+     * @return The Lucene {@link SortField} for {@code field}.
+     */
+    public SortField sortField(ColumnMapper columnMapper, String field, boolean reverse) {
+        return mapping.sortField(columnMapper, field, reverse);
+    }
+
     /**
      * Adds to the specified {@link org.apache.lucene.document.Document} the Lucene fields representing the specified
      * {@link com.stratio.cassandra.index.schema.Columns}.
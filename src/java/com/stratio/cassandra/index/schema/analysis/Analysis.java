@@ -25,8 +25,8 @@ import org.apache.lucene.analysis.Analyzer;
 
 import java.io.Closeable;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class representing a Lucene analysis configuration.
@@ -44,7 +44,7 @@ public class Analysis {
      */
     public Analysis(Map<String, AnalyzerBuilder> analyzers) {
 
-        this.analyzers = new HashMap<>();
+        this.analyzers = new ConcurrentHashMap<>();
         if (analyzers != null) {
             for (Map.Entry<String, AnalyzerBuilder> entry : analyzers.entrySet()) {
                 String name = entry.getKey();
@@ -19,8 +19,15 @@ import org.apache.lucene.analysis.Analyzer;
 import org.codehaus.jackson.annotate.JsonSubTypes;
 import org.codehaus.jackson.annotate.JsonTypeInfo;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * An Lucene {@link Analyzer} builder.
+ * <p/>
+ * The built analyzers are pooled by their definition, so all the schemas, and thus all the indexes, defining the same
+ * analyzer share the same thread-safe {@link Analyzer} instance.
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
@@ -29,10 +36,40 @@ import org.codehaus.jackson.annotate.JsonTypeInfo;
                @JsonSubTypes.Type(value = SnowballAnalyzerBuilder.class, name = "snowball")})
 public abstract class AnalyzerBuilder {
 
+    /** The shared {@link Analyzer}s indexed by their definition. */
+    private static final ConcurrentMap<String, Analyzer> pool = new ConcurrentHashMap<>();
+
     /**
      * Gets or creates the Lucene {@link Analyzer}.
      *
      * @return The built Lucene {@link Analyzer}.
      */
     public abstract Analyzer analyzer();
+
+    /**
+     * Returns the pooled {@link Analyzer} identified by the specified definition, building it with the specified
+     * factory if it is not already pooled.
+     *
+     * @param definition A {@code String} uniquely identifying the {@link Analyzer} configuration.
+     * @param factory    The factory to be used to build the {@link Analyzer} if it is not already pooled.
+     * @return The pooled {@link Analyzer} identified by {@code definition}.
+     */
+    protected static Analyzer pooled(String definition, Callable<Analyzer> factory) {
+        Analyzer analyzer = pool.get(definition);
+        if (analyzer == null) {
+            try {
+                analyzer = factory.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Analyzer can't be built: " + definition, e);
+            }
+            Analyzer previous = pool.putIfAbsent(definition, analyzer);
+            if (previous != null) {
+                analyzer.close();
+                analyzer = previous;
+            }
+        }
+        return analyzer;
+    }
 }
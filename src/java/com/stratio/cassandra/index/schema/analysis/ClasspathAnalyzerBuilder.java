@@ -20,15 +20,17 @@ import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonProperty;
 
 import java.lang.reflect.Constructor;
+import java.util.concurrent.Callable;
 
 /**
- * {@link AnalyzerBuilder} for building {@link Analyzer}s in classpath using its default (no args) constructor.
+ * {@link AnalyzerBuilder} for building {@link Analyzer}s in classpath using its default (no args) constructor. The
+ * reflective instantiation is done only once per class, the built analyzer is shared by all the schemas using it.
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
 public class ClasspathAnalyzerBuilder extends AnalyzerBuilder {
 
-    private Analyzer analyzer;
+    private final Analyzer analyzer;
 
     /**
      * Builds a new {@link AnalyzerBuilder} using the specified {@link Analyzer} full class name.
@@ -36,14 +38,19 @@ public class ClasspathAnalyzerBuilder extends AnalyzerBuilder {
      * @param className An {@link Analyzer} full class name.
      */
     @JsonCreator
-    public ClasspathAnalyzerBuilder(@JsonProperty("class") String className) {
-        try {
-            Class<?> analyzerClass = Class.forName(className);
-            Constructor<?> constructor = analyzerClass.getConstructor();
-            analyzer = (Analyzer) constructor.newInstance();
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Analyzer not found: " + className, e);
-        }
+    public ClasspathAnalyzerBuilder(@JsonProperty("class") final String className) {
+        analyzer = pooled("classpath:" + className, new Callable<Analyzer>() {
+            @Override
+            public Analyzer call() {
+                try {
+                    Class<?> analyzerClass = Class.forName(className);
+                    Constructor<?> constructor = analyzerClass.getConstructor();
+                    return (Analyzer) constructor.newInstance();
+                } catch (Exception e) {
+                    throw new IllegalArgumentException("Analyzer not found: " + className, e);
+                }
+            }
+        });
     }
 
     /** {@inheritDoc} */
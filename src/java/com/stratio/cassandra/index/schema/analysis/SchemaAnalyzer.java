@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.schema.analysis;
+
+import com.google.common.base.Objects;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.AnalyzerWrapper;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link AnalyzerWrapper} delegating the analysis of each field to the {@link Analyzer} of the mapped column the field
+ * belongs to. Fields are resolved to columns the same way as column mappers are, so fields with dotted full names such
+ * as map keys ({@code column.key}) are analyzed with the analyzer of their column.
+ * <p/>
+ * The token streams are reused per thread and column, not per field, so the number of reusable token streams is
+ * bounded by the number of columns. The time spent analyzing each timed column is accumulated, allowing to know which
+ * columns dominate the indexing CPU usage.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class SchemaAnalyzer extends AnalyzerWrapper {
+
+    /** {@link ReuseStrategy} storing the per-thread reusable token streams indexed by column name. */
+    private static final ReuseStrategy COLUMN_REUSE_STRATEGY = new ReuseStrategy() {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public TokenStreamComponents getReusableComponents(Analyzer analyzer, String fieldName) {
+            Map<String, TokenStreamComponents> map = (Map<String, TokenStreamComponents>) getStoredValue(analyzer);
+            return map == null ? null : map.get(((SchemaAnalyzer) analyzer).column(fieldName));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void setReusableComponents(Analyzer analyzer, String fieldName, TokenStreamComponents components) {
+            Map<String, TokenStreamComponents> map = (Map<String, TokenStreamComponents>) getStoredValue(analyzer);
+            if (map == null) {
+                map = new HashMap<>();
+                setStoredValue(analyzer, map);
+            }
+            map.put(((SchemaAnalyzer) analyzer).column(fieldName), components);
+        }
+    };
+
+    /** The name used for the fields not belonging to any mapped column. */
+    private static final String DEFAULT_COLUMN = "";
+
+    private final Analyzer defaultAnalyzer;
+    private final Map<String, Analyzer> columnAnalyzers;
+    private final Map<String, AtomicLong> analysisTimes;
+
+    /**
+     * Builds a new {@link SchemaAnalyzer}.
+     *
+     * @param defaultAnalyzer The {@link Analyzer} to be used for the fields not belonging to any mapped column.
+     * @param columnAnalyzers The {@link Analyzer}s to be used for the fields of each column, indexed by column name.
+     * @param timedColumns    The names of the columns whose analysis time must be accumulated.
+     */
+    public SchemaAnalyzer(Analyzer defaultAnalyzer, Map<String, Analyzer> columnAnalyzers, Set<String> timedColumns) {
+        super(COLUMN_REUSE_STRATEGY);
+        this.defaultAnalyzer = defaultAnalyzer;
+        this.columnAnalyzers = columnAnalyzers;
+        Map<String, AtomicLong> times = new HashMap<>();
+        for (String column : timedColumns) {
+            times.put(column, new AtomicLong());
+        }
+        this.analysisTimes = Collections.unmodifiableMap(times);
+    }
+
+    /**
+     * Returns the name of the mapped column the specified field belongs to, or the default column name if there is no
+     * such column. The longest column name matching the dot separated prefix of the field name is chosen.
+     *
+     * @param fieldName A field name, maybe {@code null}.
+     * @return The name of the mapped column containing the field.
+     */
+    private String column(String fieldName) {
+        String name = fieldName;
+        while (name != null) {
+            if (columnAnalyzers.containsKey(name)) {
+                return name;
+            }
+            int index = name.lastIndexOf('.');
+            if (index < 0) {
+                return DEFAULT_COLUMN;
+            }
+            name = name.substring(0, index);
+        }
+        return DEFAULT_COLUMN;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Analyzer getWrappedAnalyzer(String fieldName) {
+        Analyzer analyzer = columnAnalyzers.get(column(fieldName));
+        return analyzer == null ? defaultAnalyzer : analyzer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected TokenStreamComponents wrapComponents(String fieldName, TokenStreamComponents components) {
+        AtomicLong time = analysisTimes.get(column(fieldName));
+        if (time == null) {
+            return components;
+        }
+        return new TokenStreamComponents(components.getTokenizer(),
+                                         new TimedTokenFilter(components.getTokenStream(), time));
+    }
+
+    /**
+     * Returns the names of the columns whose analysis time is accumulated.
+     *
+     * @return The names of the columns whose analysis time is accumulated.
+     */
+    public Set<String> getTimedColumns() {
+        return analysisTimes.keySet();
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent analyzing the fields of the specified column.
+     *
+     * @param column A column name.
+     * @return The total time in nanoseconds spent analyzing the fields of {@code column}, or {@code 0} if it is not
+     * timed.
+     */
+    public long getAnalysisTime(String column) {
+        AtomicLong time = analysisTimes.get(column);
+        return time == null ? 0 : time.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                      .add("defaultAnalyzer", defaultAnalyzer)
+                      .add("columnAnalyzers", columnAnalyzers)
+                      .toString();
+    }
+
+    /**
+     * {@link TokenFilter} measuring the time spent producing the tokens of its input. The time is accumulated locally
+     * and published when the stream is closed, so there is only one shared counter update per analyzed field value.
+     */
+    private static final class TimedTokenFilter extends TokenFilter {
+
+        private final AtomicLong time; // The shared accumulated time
+        private long elapsed; // The time spent in the current stream
+
+        TimedTokenFilter(TokenStream input, AtomicLong time) {
+            super(input);
+            this.time = time;
+        }
+
+        @Override
+        public boolean incrementToken() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return input.incrementToken();
+            } finally {
+                elapsed += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void reset() throws IOException {
+            long start = System.nanoTime();
+            super.reset();
+            elapsed = System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            time.addAndGet(elapsed);
+            elapsed = 0;
+        }
+    }
+}
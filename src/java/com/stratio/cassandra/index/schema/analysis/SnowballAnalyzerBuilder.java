@@ -47,6 +47,7 @@ import org.codehaus.jackson.annotate.JsonProperty;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * {@link AnalyzerBuilder} for tartarus.org snowball {@link Analyzer}.
@@ -70,21 +71,29 @@ public class SnowballAnalyzerBuilder extends AnalyzerBuilder {
      */
     @JsonCreator
     public SnowballAnalyzerBuilder(@JsonProperty("language") final String language,
-                                   @JsonProperty("stopwords") String stopwords) {
+                                   @JsonProperty("stopwords") final String stopwords) {
 
         // Check language
         if (language == null || language.trim().isEmpty()) {
             throw new IllegalArgumentException("Language must be specified");
         }
 
-        // Setup stopwords
-        CharArraySet stops = stopwords == null ? getDefaultStopwords(language) : getStopwords(stopwords);
+        // Setup shared analyzer
+        this.analyzer = pooled("snowball:" + language + ":" + stopwords, new Callable<Analyzer>() {
+            @Override
+            public Analyzer call() {
 
-        // Setup analyzer
-        this.analyzer = buildAnalyzer(language, stops);
+                // Setup stopwords
+                CharArraySet stops = stopwords == null ? getDefaultStopwords(language) : getStopwords(stopwords);
 
-        // Force analysis validation
-        AnalysisUtils.analyzeAsText("test", analyzer);
+                // Setup analyzer
+                Analyzer analyzer = buildAnalyzer(language, stops);
+
+                // Force analysis validation
+                AnalysisUtils.analyzeAsText("test", analyzer);
+                return analyzer;
+            }
+        });
     }
 
     /** {@inheritDoc} */
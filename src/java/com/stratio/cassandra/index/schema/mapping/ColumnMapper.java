@@ -15,6 +15,7 @@
  */
 package com.stratio.cassandra.index.schema.mapping;
 
+import com.stratio.cassandra.index.geospatial.GeoPointMapper;
 import com.stratio.cassandra.index.geospatial.GeoShapeMapper;
 import com.stratio.cassandra.index.schema.Column;
 import com.stratio.cassandra.index.schema.analysis.PreBuiltAnalyzers;
@@ -52,7 +53,8 @@ import java.util.Set;
                @JsonSubTypes.Type(value = ColumnMapperUUID.class, name = "uuid"),
                @JsonSubTypes.Type(value = ColumnMapperBigDecimal.class, name = "bigdec"),
                @JsonSubTypes.Type(value = ColumnMapperBigInteger.class, name = "bigint"),
-               @JsonSubTypes.Type(value = GeoShapeMapper.class, name = "geo_shape"),})
+               @JsonSubTypes.Type(value = GeoShapeMapper.class, name = "geo_shape"),
+               @JsonSubTypes.Type(value = GeoPointMapper.class, name = "geo_point"),})
 public abstract class ColumnMapper {
 
     /** A no-action getAnalyzer for not tokenized {@link ColumnMapper} implementations. */
@@ -90,7 +92,7 @@ public abstract class ColumnMapper {
      * @return The Lucene {@link Field}s resulting from the mapping of the specified {@link
      * com.stratio.cassandra.index.schema.Column}.
      */
-    public abstract Set<IndexableField> fields(Column column);
+    public abstract Set<IndexableField> fields(Column<?> column);
 
     /**
      * Returns the {@link SortField} resulting from the mapping of the specified object.
@@ -20,8 +20,12 @@ import org.apache.cassandra.db.marshal.*;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FloatField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.SortField.Type;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.util.NumericUtils;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonProperty;
 
@@ -98,6 +102,30 @@ public class ColumnMapperFloat extends ColumnMapperSingle<Float> {
         return new SortField(field, Type.FLOAT, reverse);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public IndexableField docValuesField(String name, Object value) {
+        return new SortedNumericDocValuesField(name, NumericUtils.floatToSortableInt(indexValue(name, value)));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public SortField docValuesSortField(String field, boolean reverse) {
+        return new SortedNumericSortField(field, Type.FLOAT, reverse);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNumericDocValues() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double docValuesNumber(long docValue) {
+        return NumericUtils.sortableIntToFloat((int) docValue);
+    }
+
     /** {@inheritDoc} */
     @Override
     public Class<Float> baseClass() {
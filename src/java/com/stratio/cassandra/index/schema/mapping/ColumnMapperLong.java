@@ -20,8 +20,11 @@ import org.apache.cassandra.db.marshal.*;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.SortField.Type;
+import org.apache.lucene.search.SortedNumericSortField;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonProperty;
 
@@ -98,6 +101,30 @@ public class ColumnMapperLong extends ColumnMapperSingle<Long> {
         return new SortField(field, Type.LONG, reverse);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public IndexableField docValuesField(String name, Object value) {
+        return new SortedNumericDocValuesField(name, indexValue(name, value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public SortField docValuesSortField(String field, boolean reverse) {
+        return new SortedNumericSortField(field, Type.LONG, reverse);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNumericDocValues() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double docValuesNumber(long docValue) {
+        return docValue;
+    }
+
     /** {@inheritDoc} */
     @Override
     public Class<Long> baseClass() {
@@ -63,7 +63,7 @@ public abstract class ColumnMapperSingle<BASE> extends ColumnMapper {
         return false;
     }
 
-    public Set<IndexableField> fields(Column column) {
+    public Set<IndexableField> fields(Column<?> column) {
         Field field = field(column.getFullName(), column.getComposedValue());
         Set<IndexableField> set = new HashSet<>();
         set.add(field);
@@ -118,4 +118,51 @@ public abstract class ColumnMapperSingle<BASE> extends ColumnMapper {
      */
     public abstract SortField sortField(String field, boolean reverse);
 
+    /**
+     * Returns the Lucene doc values field resulting from the mapping of {@code value}, using {@code name} as field's
+     * name, or {@code null} if this mapper doesn't use doc values. Doc values are not analyzed nor stored, they are
+     * only used for column-stride sorting with the {@link SortField} returned by {@link #docValuesSortField(String,
+     * boolean)}. They must allow several values per document, because collection columns have several values.
+     *
+     * @param name  The name of the Lucene field.
+     * @param value The value of the Lucene field.
+     * @return The Lucene doc values field resulting from the mapping of {@code value}, maybe {@code null}.
+     */
+    public IndexableField docValuesField(String name, Object value) {
+        return null;
+    }
+
+    /**
+     * Returns the {@link SortField} using the doc values written by {@link #docValuesField(String, Object)}. Mappers
+     * without doc values use {@link #sortField(String, boolean)}. Documents with several values are sorted by the
+     * lowest one.
+     *
+     * @param field   The field name.
+     * @param reverse If the sort must be reversed.
+     * @return The {@link SortField} using doc values.
+     */
+    public SortField docValuesSortField(String field, boolean reverse) {
+        return sortField(field, reverse);
+    }
+
+    /**
+     * Returns {@code true} if the doc values written by {@link #docValuesField(String, Object)} are numeric, so they can
+     * be read as numbers with {@link #docValuesNumber(long)}, {@code false} otherwise.
+     *
+     * @return {@code true} if this mapper writes numeric doc values, {@code false} otherwise.
+     */
+    public boolean hasNumericDocValues() {
+        return false;
+    }
+
+    /**
+     * Returns the number represented by the specified numeric doc value written by {@link #docValuesField(String,
+     * Object)}.
+     *
+     * @param docValue A numeric doc value written by this mapper.
+     * @return The number represented by {@code docValue}.
+     */
+    public double docValuesNumber(long docValue) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't write numeric doc values");
+    }
 }
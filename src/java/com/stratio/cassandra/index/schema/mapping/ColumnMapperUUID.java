@@ -21,9 +21,12 @@ import com.stratio.cassandra.util.ByteBufferUtils;
 import org.apache.cassandra.db.marshal.*;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.SortField.Type;
+import org.apache.lucene.util.BytesRef;
 import org.codehaus.jackson.annotate.JsonCreator;
 
 import java.nio.ByteBuffer;
@@ -80,6 +83,18 @@ public class ColumnMapperUUID extends ColumnMapperSingle<String> {
         return new SortField(field, Type.STRING, reverse);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public IndexableField docValuesField(String name, Object value) {
+        return new SortedSetDocValuesField(name, new BytesRef(indexValue(name, value)));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public SortField docValuesSortField(String field, boolean reverse) {
+        return new SortedSetMinSortField(field, reverse);
+    }
+
     /** {@inheritDoc} */
     @Override
     public Class<String> baseClass() {
@@ -18,18 +18,21 @@ package com.stratio.cassandra.index.schema.mapping;
 import com.stratio.cassandra.index.schema.Column;
 import com.stratio.cassandra.index.schema.Columns;
 import com.stratio.cassandra.index.schema.analysis.Analysis;
+import com.stratio.cassandra.index.schema.analysis.SchemaAnalyzer;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.UTF8Type;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.SortField;
 
 import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Andres de la Pena <adelapena@stratio.com>
@@ -38,10 +41,60 @@ public class Mapping {
 
     private final Map<String, ColumnMapper> columnMappers;
 
+    /** If the mappers supporting doc values must write them. */
+    private volatile boolean writeDocValues = true;
+
+    /** If all the documents have doc values, so the mappers supporting them can sort by them. */
+    private volatile boolean sortDocValues = true;
+
     public Mapping(Map<String, ColumnMapper> columnMappers) {
         this.columnMappers = columnMappers;
     }
 
+    /**
+     * Sets if the mappers supporting doc values must write them and sort by them. Indexes written without doc values
+     * must keep the field cache sorting until they are rebuilt, because a field can't be sorted by both ways. While
+     * they are being rebuilt, the segments with doc values and the legacy ones are sorted each one in its own way.
+     *
+     * @param write If doc values must be written.
+     * @param sort  If doc values must be used for sorting, so all the documents must have them.
+     */
+    public void setDocValues(boolean write, boolean sort) {
+        this.writeDocValues = write;
+        this.sortDocValues = sort;
+    }
+
+    /**
+     * Returns {@code true} if all the documents have the doc values of the mappers supporting them, {@code false}
+     * otherwise.
+     *
+     * @return {@code true} if all the documents have doc values, {@code false} otherwise.
+     */
+    public boolean usesDocValues() {
+        return sortDocValues;
+    }
+
+    /**
+     * Returns the Lucene {@link SortField} for the specified field, using doc values if they are enabled.
+     *
+     * @param columnMapper The {@link ColumnMapper} of the field.
+     * @param field        The field name.
+     * @param reverse      If the sort must be reversed.
+     * @return The Lucene {@link SortField} for {@code field}.
+     */
+    public SortField sortField(ColumnMapper columnMapper, String field, boolean reverse) {
+        if (columnMapper instanceof ColumnMapperSingle<?>) {
+            ColumnMapperSingle<?> columnMapperSingle = (ColumnMapperSingle<?>) columnMapper;
+            if (sortDocValues) {
+                return columnMapperSingle.docValuesSortField(field, reverse);
+            } else if (writeDocValues) {
+                return new MixedSortField(columnMapper.sortField(field, reverse),
+                                          columnMapperSingle.docValuesSortField(field, reverse));
+            }
+        }
+        return columnMapper.sortField(field, reverse);
+    }
+
     /**
      * Checks if this is consistent with the specified column family metadata.
      *
@@ -85,6 +138,14 @@ public class Mapping {
                 for (IndexableField field : columnMapper.fields(column)) {
                     document.add(field);
                 }
+                if (writeDocValues && columnMapper instanceof ColumnMapperSingle<?>) {
+                    ColumnMapperSingle<?> columnMapperSingle = (ColumnMapperSingle<?>) columnMapper;
+                    IndexableField field = columnMapperSingle.docValuesField(column.getFullName(),
+                                                                             column.getComposedValue());
+                    if (field != null) {
+                        document.add(field);
+                    }
+                }
             }
         }
     }
@@ -126,16 +187,28 @@ public class Mapping {
         }
     }
 
-    public Analyzer getAnalyzer(Analyzer defaultAnalyzer, Analysis analysis) {
-        Map<String, Analyzer> perFieldAnalyzers = new HashMap<>();
+    /**
+     * Returns the {@link SchemaAnalyzer} analyzing the fields of each mapped column with the {@link Analyzer} of its
+     * mapper, and timing the analysis of the {@link ColumnMapperText} columns.
+     *
+     * @param defaultAnalyzer The {@link Analyzer} to be used for the fields not belonging to any mapped column.
+     * @param analysis        The {@link Analysis} resolving the analyzer names of the mappers.
+     * @return The {@link SchemaAnalyzer} for this mapping.
+     */
+    public SchemaAnalyzer getAnalyzer(Analyzer defaultAnalyzer, Analysis analysis) {
+        Map<String, Analyzer> columnAnalyzers = new HashMap<>();
+        Set<String> textColumns = new HashSet<>();
         for (Map.Entry<String, ColumnMapper> entry : columnMappers.entrySet()) {
             String name = entry.getKey();
             ColumnMapper mapper = entry.getValue();
             String analyzerName = mapper.analyzer();
             Analyzer analyzer = analysis.getAnalyzer(analyzerName);
-            perFieldAnalyzers.put(name, analyzer);
+            columnAnalyzers.put(name, analyzer);
+            if (mapper instanceof ColumnMapperText) {
+                textColumns.add(name);
+            }
         }
-        return new PerFieldAnalyzerWrapper(defaultAnalyzer, perFieldAnalyzers);
+        return new SchemaAnalyzer(defaultAnalyzer, columnAnalyzers, textColumns);
     }
 
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.schema.mapping;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SortField;
+
+import java.io.IOException;
+
+/**
+ * {@link SortField} sorting the segments having doc values for the sorted field with a doc values {@link SortField},
+ * and the rest of segments with a field cache {@link SortField}. It is used while an index written without doc values
+ * is being rebuilt, because the field cache can't sort segments with doc values and the doc values sorting would treat
+ * the legacy documents as missing values. The documents without doc values inside segments having them, which can only
+ * be produced by merges during the rebuild, are still sorted as missing values.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+class MixedSortField extends SortField {
+
+    private final SortField legacySortField;
+    private final SortField docValuesSortField;
+
+    /**
+     * Builds a new {@link MixedSortField}.
+     *
+     * @param legacySortField    The field cache {@link SortField}.
+     * @param docValuesSortField The doc values {@link SortField}, with the same field, reverse and value type.
+     */
+    MixedSortField(SortField legacySortField, SortField docValuesSortField) {
+        super(legacySortField.getField(), Type.CUSTOM, legacySortField.getReverse());
+        this.legacySortField = legacySortField;
+        this.docValuesSortField = docValuesSortField;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public FieldComparator<?> getComparator(int numHits, int sortPos) throws IOException {
+        FieldComparator<?> legacy = legacySortField.getComparator(numHits + 1, sortPos);
+        FieldComparator<?> docValues = docValuesSortField.getComparator(numHits + 1, sortPos);
+        return new MixedComparator(getField(),
+                                   numHits,
+                                   (FieldComparator<Object>) legacy,
+                                   (FieldComparator<Object>) docValues);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MixedSortField)) {
+            return false;
+        }
+        MixedSortField other = (MixedSortField) o;
+        return legacySortField.equals(other.legacySortField) && docValuesSortField.equals(other.docValuesSortField);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return 31 * legacySortField.hashCode() + docValuesSortField.hashCode();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return String.format("<mixed: %s %s>", legacySortField, docValuesSortField);
+    }
+
+    /**
+     * {@link FieldComparator} delegating each segment to the comparator suitable for it. The delegates don't share their
+     * slots, so the compared values are copied into this, and the extra last slot of the delegates is used for reading
+     * the values of the bottom and top candidates.
+     */
+    private static final class MixedComparator extends FieldComparator<Object> {
+
+        private final String field;
+        private final int scratch; // The delegate slot for reading candidates
+        private final Object[] values;
+        private final FieldComparator<Object> legacy;
+        private final FieldComparator<Object> docValues;
+        private FieldComparator<Object> current; // The delegate for the current segment
+        private Object bottom;
+        private Object top;
+
+        private MixedComparator(String field,
+                                int numHits,
+                                FieldComparator<Object> legacy,
+                                FieldComparator<Object> docValues) {
+            this.field = field;
+            this.scratch = numHits;
+            this.values = new Object[numHits];
+            this.legacy = legacy;
+            this.docValues = docValues;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int compare(int slot1, int slot2) {
+            return compareValues(values[slot1], values[slot2]);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void setBottom(int slot) {
+            bottom = values[slot];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void setTopValue(Object value) {
+            top = value;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int compareBottom(int doc) throws IOException {
+            current.copy(scratch, doc);
+            return compareValues(bottom, current.value(scratch));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int compareTop(int doc) throws IOException {
+            current.copy(scratch, doc);
+            return compareValues(top, current.value(scratch));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void copy(int slot, int doc) throws IOException {
+            current.copy(slot, doc);
+            values[slot] = current.value(slot);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public FieldComparator<Object> setNextReader(AtomicReaderContext context) throws IOException {
+            FieldInfo fieldInfo = context.reader().getFieldInfos().fieldInfo(field);
+            if (fieldInfo != null && fieldInfo.hasDocValues()) {
+                current = docValues.setNextReader(context);
+            } else {
+                current = legacy.setNextReader(context);
+            }
+            return this;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void setScorer(Scorer scorer) {
+            legacy.setScorer(scorer);
+            docValues.setScorer(scorer);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object value(int slot) {
+            return values[slot];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int compareValues(Object first, Object second) {
+            return docValues.compareValues(first, second);
+        }
+    }
+}
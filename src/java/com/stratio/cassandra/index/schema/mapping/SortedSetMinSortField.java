@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.schema.mapping;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+
+/**
+ * {@link SortField} sorting documents by the lowest of the values of a {@link SortedSetDocValues} field. Documents
+ * without values are sorted first, as with {@link SortField.Type#STRING}.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+class SortedSetMinSortField extends SortField {
+
+    /**
+     * Builds a new {@link SortedSetMinSortField}.
+     *
+     * @param field   The name of the {@link SortedSetDocValues} field.
+     * @param reverse If the sort must be reversed.
+     */
+    SortedSetMinSortField(String field, boolean reverse) {
+        super(field, Type.CUSTOM, reverse);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public FieldComparator<?> getComparator(int numHits, int sortPos) throws IOException {
+        return new FieldComparator.TermOrdValComparator(numHits, getField()) {
+            @Override
+            protected SortedDocValues getSortedDocValues(AtomicReaderContext context, String field)
+            throws IOException {
+                final SortedSetDocValues values = DocValues.getSortedSet(context.reader(), field);
+                return new SortedDocValues() {
+                    @Override
+                    public int getOrd(int docID) {
+                        values.setDocument(docID);
+                        return (int) values.nextOrd(); // The first ord is the lowest, no ords is -1
+                    }
+
+                    @Override
+                    public BytesRef lookupOrd(int ord) {
+                        return values.lookupOrd(ord);
+                    }
+
+                    @Override
+                    public int getValueCount() {
+                        return (int) values.getValueCount();
+                    }
+                };
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return String.format("<sortedsetmin: \"%s\">%s", getField(), getReverse() ? "!" : "");
+    }
+}
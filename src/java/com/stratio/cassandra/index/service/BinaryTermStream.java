@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * {@link TokenStream} producing a single binary term, for indexing raw bytes as a not analyzed field. Lucene 4 doesn't
+ * allow indexing {@link BytesRef} field values, and {@link org.apache.lucene.document.StringField}s would store the
+ * bytes as UTF-8 characters.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+final class BinaryTermStream extends TokenStream {
+
+    /** The type of the indexed, not stored, binary term fields. */
+    static final FieldType FIELD_TYPE = new FieldType();
+
+    static {
+        FIELD_TYPE.setIndexed(true);
+        FIELD_TYPE.setTokenized(true); // Required by token stream fields, although there is only one token
+        FIELD_TYPE.setOmitNorms(true);
+        FIELD_TYPE.setIndexOptions(FieldInfo.IndexOptions.DOCS_ONLY);
+        FIELD_TYPE.setStored(false);
+        FIELD_TYPE.freeze();
+    }
+
+    private final BytesTermAttributeImpl termAttribute = new BytesTermAttributeImpl();
+    private final BytesRef bytes;
+    private boolean available = true;
+
+    /**
+     * Builds a new {@link BinaryTermStream} producing the specified term.
+     *
+     * @param bytes The binary term.
+     */
+    private BinaryTermStream(BytesRef bytes) {
+        this.bytes = bytes;
+        addAttributeImpl(termAttribute);
+    }
+
+    /**
+     * Returns a new {@link Field} indexing the specified binary term.
+     *
+     * @param name  The field name.
+     * @param bytes The binary term.
+     * @return A new {@link Field} indexing {@code bytes}.
+     */
+    static Field field(String name, BytesRef bytes) {
+        return new Field(name, new BinaryTermStream(bytes), FIELD_TYPE);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean incrementToken() {
+        if (available) {
+            clearAttributes();
+            termAttribute.setBytesRef(bytes);
+            available = false;
+            return true;
+        }
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+        available = true;
+    }
+
+    /**
+     * {@link TermToBytesRefAttribute} holding the binary term.
+     */
+    private static final class BytesTermAttributeImpl extends AttributeImpl implements TermToBytesRefAttribute {
+
+        private final BytesRef bytes = new BytesRef(); // Indexing keeps this instance between tokens
+
+        /**
+         * Makes this point to the specified binary term, without copying it.
+         *
+         * @param bytesRef The binary term.
+         */
+        void setBytesRef(BytesRef bytesRef) {
+            bytes.bytes = bytesRef.bytes;
+            bytes.offset = bytesRef.offset;
+            bytes.length = bytesRef.length;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void fillBytesRef() {
+            // Already filled
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public BytesRef getBytesRef() {
+            return bytes;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void clear() {
+            bytes.bytes = BytesRef.EMPTY_BYTES;
+            bytes.offset = 0;
+            bytes.length = 0;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void copyTo(AttributeImpl target) {
+            ((BytesTermAttributeImpl) target).setBytesRef(bytes);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void reflectWith(AttributeReflector reflector) {
+            reflector.reflect(TermToBytesRefAttribute.class, "bytes", bytes);
+        }
+    }
+}
@@ -16,21 +16,30 @@
 package com.stratio.cassandra.index.service;
 
 import com.stratio.cassandra.util.ByteBufferUtils;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.CompositeType;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
 
 import java.nio.ByteBuffer;
 
 /**
  * Class for several row full key mappings between Cassandra and Lucene. The full key includes both the partitioning and
  * the clustering keys.
+ * <p/>
+ * Full keys are indexed as raw binary terms with the layout {@code <token length><token><partition key
+ * length><partition key><clustering key>}, where lengths are unsigned shorts. The token prefix keeps the terms of the
+ * same partition close in the terms dictionary. Indexes written before this layout use the Base256 string of the
+ * composite full key, which is still used until they are rebuilt.
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
@@ -39,9 +48,15 @@ public class FullKeyMapper {
     /** The Lucene field name. */
     public static final String FIELD_NAME = "_full_key"; //  The Lucene field name
 
+    /** The factory for serializing the partition key tokens. */
+    private static final Token.TokenFactory TOKEN_FACTORY = DatabaseDescriptor.getPartitioner().getTokenFactory();
+
     /** The type of the full row key, which is composed by the partition and clustering key types. */
     public CompositeType type;
 
+    /** If the legacy Base256 string terms must be used instead of the binary ones. */
+    private volatile boolean legacy = false;
+
     /**
      * Returns a new {@link FullKeyMapper} using the specified column family metadata.
      *
@@ -66,6 +81,16 @@ public class FullKeyMapper {
         return new FullKeyMapper(partitionKeyMapper, clusteringKeyMapper);
     }
 
+    /**
+     * Sets if the legacy Base256 string terms must be used instead of the binary ones, to keep the terms consistent
+     * with the ones of an index written before the binary layout.
+     *
+     * @param legacy If the legacy Base256 string terms must be used.
+     */
+    public void setLegacy(boolean legacy) {
+        this.legacy = legacy;
+    }
+
     /**
      * Returns the {@link ByteBuffer} representation of the full row key formed by the specified partition key and the
      * clustering key.
@@ -78,6 +103,28 @@ public class FullKeyMapper {
         return type.builder().add(partitionKey.getKey()).add(cellName.toByteBuffer()).build();
     }
 
+    /**
+     * Returns the binary term representing the full row key formed by the specified partition key and the clustering
+     * key.
+     *
+     * @param partitionKey  A partition key.
+     * @param clusteringKey A clustering key.
+     * @return The binary term representing the full row key formed by the specified key pair.
+     */
+    public BytesRef bytesRef(DecoratedKey partitionKey, CellName clusteringKey) {
+        ByteBuffer token = TOKEN_FACTORY.toByteArray(partitionKey.getToken());
+        ByteBuffer key = partitionKey.getKey();
+        ByteBuffer clustering = clusteringKey.toByteBuffer();
+        int length = 4 + token.remaining() + key.remaining() + clustering.remaining();
+        ByteBuffer bb = ByteBuffer.allocate(length);
+        ByteBufferUtil.writeShortLength(bb, token.remaining());
+        bb.put(token.duplicate());
+        ByteBufferUtil.writeShortLength(bb, key.remaining());
+        bb.put(key.duplicate());
+        bb.put(clustering.duplicate());
+        return new BytesRef(bb.array());
+    }
+
     /**
      * Adds to the specified Lucene {@link Document} the full row key formed by the specified partition key and the
      * clustering key.
@@ -87,8 +134,13 @@ public class FullKeyMapper {
      * @param clusteringKey A clustering key.
      */
     public void addFields(Document document, DecoratedKey partitionKey, CellName clusteringKey) {
-        ByteBuffer fullKey = byteBuffer(partitionKey, clusteringKey);
-        Field field = new StringField(FIELD_NAME, ByteBufferUtils.toString(fullKey), Store.NO);
+        Field field;
+        if (legacy) {
+            ByteBuffer fullKey = byteBuffer(partitionKey, clusteringKey);
+            field = new StringField(FIELD_NAME, ByteBufferUtils.toString(fullKey), Store.NO);
+        } else {
+            field = BinaryTermStream.field(FIELD_NAME, bytesRef(partitionKey, clusteringKey));
+        }
         document.add(field);
     }
 
@@ -101,6 +153,21 @@ public class FullKeyMapper {
      * @return The Lucene {@link Term} representing the full row key formed by the specified key pair.
      */
     public Term term(DecoratedKey partitionKey, CellName clusteringKey) {
+        if (legacy) {
+            return legacyTerm(partitionKey, clusteringKey);
+        }
+        return new Term(FIELD_NAME, bytesRef(partitionKey, clusteringKey));
+    }
+
+    /**
+     * Returns the legacy Base256 string Lucene {@link Term} representing the full row key formed by the specified
+     * partition key and the clustering key, whatever the layout in use is.
+     *
+     * @param partitionKey  A partition key.
+     * @param clusteringKey A clustering key.
+     * @return The legacy Lucene {@link Term} representing the full row key formed by the specified key pair.
+     */
+    public Term legacyTerm(DecoratedKey partitionKey, CellName clusteringKey) {
         ByteBuffer fullKey = byteBuffer(partitionKey, clusteringKey);
         return new Term(FIELD_NAME, ByteBufferUtils.toString(fullKey));
     }
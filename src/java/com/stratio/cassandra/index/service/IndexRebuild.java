@@ -0,0 +1,532 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.stratio.cassandra.util.Log;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DataRange;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.SliceFromReadCommand;
+import org.apache.cassandra.db.columniterator.OnDiskAtomIterator;
+import org.apache.cassandra.db.compaction.CompactionInfo;
+import org.apache.cassandra.db.compaction.CompactionInterruptedException;
+import org.apache.cassandra.db.compaction.OperationType;
+import org.apache.cassandra.db.filter.ColumnSlice;
+import org.apache.cassandra.db.filter.SliceQueryFilter;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.SSTableReader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.service.pager.QueryPager;
+import org.apache.cassandra.service.pager.QueryPagers;
+import org.apache.cassandra.utils.MergeIterator;
+import org.apache.cassandra.utils.concurrent.Refs;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.Query;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Parallel and resumable rebuild of the Lucene index of a {@link RowService} from the base table data.
+ * <p/>
+ * The token ring is split into chunks with similar numbers of partitions according to the sstables key samples. The
+ * chunks are indexed in parallel, each of them into a separate Lucene index built from the partition keys found by the
+ * sstable scanners of its token range and the rows read from the base table. Each completed chunk replaces the
+ * documents of its token range in the main index with {@link IndexWriter#addIndexes}, and the merged chunks are
+ * recorded in the commit user data of the main index, so an interrupted rebuild resumes from the last committed chunk.
+ * <p/>
+ * Rows are indexed as usual while rebuilding. The partitions written while a chunk is being rebuilt or merged are
+ * indexed again from the base table after merging it, holding the partition lock of {@link RowService}, so the merged
+ * chunks never overwrite more recent writes.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class IndexRebuild {
+
+    /** The Lucene commit user data keys for the rebuild checkpoint. */
+    private static final String PLAN_KEY = "rebuild_plan";
+    private static final String DONE_KEY = "rebuild_done";
+
+    /** The number of chunks per rebuild thread, for balancing the load between threads. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** The number of CQL3 rows to be read per page. */
+    private static final int PAGE_SIZE = 1000;
+
+    private final RowService service;
+    private final ColumnFamilyStore baseCfs;
+    private final File path;
+    private final String name;
+    private final int numThreads;
+    private final IPartitioner partitioner;
+
+    private final Set<DecoratedKey> touchedKeys = Collections.newSetFromMap(new ConcurrentHashMap<DecoratedKey, Boolean>());
+    private final AtomicInteger completedChunks = new AtomicInteger();
+    private volatile int totalChunks = 0;
+    private volatile boolean aborted = false; // If the chunks not built yet must be discarded
+
+    /**
+     * Builds a new {@link IndexRebuild} for the specified {@link RowService}.
+     *
+     * @param service The {@link RowService} whose index is going to be rebuilt.
+     * @param path    The directory in where the chunks are built.
+     * @param name    The name of the rebuilt index.
+     */
+    IndexRebuild(RowService service, String path, String name) {
+        this.service = service;
+        this.baseCfs = service.baseCfs;
+        this.path = new File(path);
+        this.name = name;
+        this.numThreads = Math.max(1, DatabaseDescriptor.getConcurrentCompactors());
+        this.partitioner = DatabaseDescriptor.getPartitioner();
+    }
+
+    /**
+     * Returns the progress of this rebuild, measured in chunks.
+     *
+     * @return The progress of this rebuild.
+     */
+    public CompactionInfo getCompactionInfo() {
+        return new CompactionInfo(baseCfs.metadata,
+                                  OperationType.INDEX_BUILD,
+                                  completedChunks.get(),
+                                  totalChunks,
+                                  "chunks");
+    }
+
+    /**
+     * Records that the partition identified by the specified key has been written while rebuilding.
+     *
+     * @param partitionKey A partition key.
+     */
+    void touch(DecoratedKey partitionKey) {
+        touchedKeys.add(partitionKey);
+    }
+
+    /**
+     * Rebuilds the index, resuming the last interrupted rebuild if any. It blocks until all the chunks have been merged
+     * into the main index, or until the specified {@link CompactionInfo.Holder} is requested to stop.
+     *
+     * @param holder The {@link CompactionInfo.Holder} running this rebuild.
+     */
+    public void run(final CompactionInfo.Holder holder) {
+        Log.info("Rebuilding index %s", name);
+        service.startRebuild(this);
+        Map<String, String> checkpoint = null; // The commit data clearing the checkpoint, if completed
+        try {
+            // Partitions written from now on are tracked, so the written data is either flushed or tracked
+            baseCfs.forceBlockingFlush();
+            delete(path); // Discard the not merged chunks of previous rebuilds
+            try (Refs<SSTableReader> sstables = baseCfs.selectAndReference(ColumnFamilyStore.CANONICAL_SSTABLES).refs) {
+
+                // Restore or create the rebuild plan
+                List<Range<Token>> ranges = plan(sstables);
+                service.startMigration(); // The planned chunks and the later writes use the current format
+                Set<Integer> done = done();
+                totalChunks = ranges.size();
+                completedChunks.set(done.size());
+                Log.info("Rebuilding index %s in %d chunks, %d already done", name, ranges.size(), done.size());
+
+                build(ranges, done, sstables, holder);
+            }
+
+            // Clear the checkpoint
+            checkpoint = new HashMap<>(3);
+            checkpoint.put(PLAN_KEY, null);
+            checkpoint.put(DONE_KEY, null);
+        } finally {
+            service.finishRebuild(this, checkpoint);
+        }
+        delete(path);
+        Log.info("Rebuilt index %s", name);
+    }
+
+    /**
+     * Returns {@code true} if the specified main index commit data contains the plan of an interrupted rebuild, {@code
+     * false} otherwise.
+     *
+     * @param commitData The commit data of the main index.
+     * @return {@code true} if there is an interrupted rebuild, {@code false} otherwise.
+     */
+    static boolean isPlanned(Map<String, String> commitData) {
+        return commitData.get(PLAN_KEY) != null;
+    }
+
+    /**
+     * Builds and merges in parallel the chunks with the specified token ranges not already done. It blocks until all
+     * the chunks have been merged, or until one of them fails or is stopped. In that case the not started chunks are
+     * discarded, and it waits for the running ones, so no chunk is merged nor reads the sstables after returning.
+     *
+     * @param ranges   The token ranges of all the chunks.
+     * @param done     The already merged chunks.
+     * @param sstables The sstables to be indexed.
+     * @param holder   The {@link CompactionInfo.Holder} running this rebuild.
+     */
+    private void build(List<Range<Token>> ranges,
+                       final Set<Integer> done,
+                       final Collection<SSTableReader> sstables,
+                       final CompactionInfo.Holder holder) {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+                                                                new NamedThreadFactory("RowIndexRebuild:" + name));
+        List<Future<?>> futures = new ArrayList<>(ranges.size());
+        try {
+            for (int i = 0; i < ranges.size(); i++) {
+                if (!done.contains(i)) {
+                    final int chunk = i;
+                    final Range<Token> range = ranges.get(i);
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            File chunkPath = new File(path, Integer.toString(chunk));
+                            build(range, sstables, chunkPath, holder);
+                            merge(range, chunk, chunkPath, done);
+                        }
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            aborted = true;
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Waits for the termination of the specified {@link ExecutorService}. The running chunk builders aren't interrupted,
+     * because an interrupted I/O operation could close the main index.
+     *
+     * @param executor The {@link ExecutorService} running the chunk builders.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the token ranges of the chunks to be built. The ranges of an interrupted rebuild are restored from the
+     * main index commit data, and new ranges are computed and checkpointed otherwise.
+     *
+     * @param sstables The sstables to be indexed.
+     * @return The token ranges of the chunks to be built.
+     */
+    private List<Range<Token>> plan(Collection<SSTableReader> sstables) {
+        Token.TokenFactory tokenFactory = partitioner.getTokenFactory();
+        Token minimum = partitioner.getMinimumToken();
+
+        // Restore the boundaries of the interrupted rebuild, if any
+        List<Token> boundaries = new ArrayList<>();
+        String plan = service.luceneShards.getCommitData().get(0).get(PLAN_KEY);
+        if (plan != null) {
+            for (String token : Splitter.on(',').omitEmptyStrings().split(plan)) {
+                boundaries.add(tokenFactory.fromString(token));
+            }
+        } else {
+            // Split the sampled keys into chunks with similar sizes
+            SortedSet<Token> samples = new TreeSet<>();
+            Range<Token> ring = new Range<>(minimum, minimum);
+            for (SSTableReader sstable : sstables) {
+                for (DecoratedKey key : sstable.getKeySamples(ring)) {
+                    samples.add(key.getToken());
+                }
+            }
+            int numChunks = Math.min(numThreads * CHUNKS_PER_THREAD, samples.size() + 1);
+            int chunkSize = Math.max(1, samples.size() / numChunks);
+            SortedSet<Token> sortedBoundaries = new TreeSet<>();
+            int i = 0;
+            for (Token token : samples) {
+                if (++i % chunkSize == 0 && sortedBoundaries.size() < numChunks - 1) {
+                    sortedBoundaries.add(token);
+                }
+            }
+
+            // Split the chunks crossing shard boundaries, so each chunk is merged into a single shard
+            sortedBoundaries.addAll(service.luceneShards.boundaries());
+            sortedBoundaries.remove(minimum);
+            boundaries.addAll(sortedBoundaries);
+
+            // Checkpoint the plan
+            List<String> tokens = new ArrayList<>(boundaries.size());
+            for (Token token : boundaries) {
+                tokens.add(tokenFactory.toString(token));
+            }
+            Map<String, String> commitData = new HashMap<>(2);
+            commitData.put(PLAN_KEY, Joiner.on(',').join(tokens));
+            commitData.put(DONE_KEY, "");
+            service.luceneShards.commit(commitData);
+        }
+
+        // Build the ranges, the first and the last ones wrapping around the minimum token
+        List<Range<Token>> ranges = new ArrayList<>(boundaries.size() + 1);
+        Token left = minimum;
+        for (Token right : boundaries) {
+            ranges.add(new Range<>(left, right));
+            left = right;
+        }
+        ranges.add(new Range<>(left, minimum));
+        return ranges;
+    }
+
+    /**
+     * Returns the chunks already merged into the main index, according to the commit data of its shards. Each chunk is
+     * checkpointed only in the shard in where it has been merged.
+     *
+     * @return The chunks already merged into the main index.
+     */
+    private Set<Integer> done() {
+        Set<Integer> done = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        for (Map<String, String> commitData : service.luceneShards.getCommitData()) {
+            String doneChunks = commitData.get(DONE_KEY);
+            if (doneChunks != null) {
+                for (String chunk : Splitter.on(',').omitEmptyStrings().split(doneChunks)) {
+                    done.add(Integer.parseInt(chunk));
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Builds a separate index in the specified directory with the documents of the partitions in the specified token
+     * range. The partition keys are found with the sstable scanners, and their rows are read from the base table.
+     *
+     * @param range     The token range of the chunk.
+     * @param sstables  The sstables to be indexed.
+     * @param chunkPath The directory of the separate index.
+     * @param holder    The {@link CompactionInfo.Holder} running this rebuild.
+     */
+    private void build(Range<Token> range,
+                       Collection<SSTableReader> sstables,
+                       File chunkPath,
+                       CompactionInfo.Holder holder) {
+        Log.debug("Building chunk %s of index %s", range, name);
+        List<ISSTableScanner> scanners = new ArrayList<>(sstables.size());
+        try (IndexWriter writer = service.luceneShards.shard(range).separateWriter(chunkPath)) {
+            for (SSTableReader sstable : sstables) {
+                scanners.add(sstable.getScanner(range, null));
+            }
+            Iterator<DecoratedKey> keys = MergeIterator.get(scanners, KEY_COMPARATOR, new KeyReducer());
+            while (keys.hasNext()) {
+                if (holder.isStopRequested() || aborted) {
+                    throw new CompactionInterruptedException(holder.getCompactionInfo());
+                }
+                DecoratedKey partitionKey = keys.next();
+                Iterator<List<Document>> pages = documents(partitionKey);
+                while (pages.hasNext()) {
+                    writer.addDocuments(pages.next());
+                }
+            }
+            writer.commit();
+        } catch (IOException e) {
+            Log.error(e, "Error while building chunk %s of index %s", range, name);
+            throw new RuntimeException(e);
+        } finally {
+            for (ISSTableScanner scanner : scanners) {
+                FileUtils.closeQuietly(scanner);
+            }
+        }
+    }
+
+    /**
+     * Replaces the documents of the specified token range in its shard of the main index with the ones of the specified
+     * chunk, and indexes again the partitions of the range written while it was rebuilt or merged. The chunk is then
+     * checkpointed in the shard.
+     *
+     * @param range     The token range of the chunk.
+     * @param chunk     The number of the chunk.
+     * @param chunkPath The directory of the separate index.
+     * @param done      The already merged chunks.
+     */
+    private synchronized void merge(Range<Token> range, int chunk, File chunkPath, Set<Integer> done) {
+        LuceneIndex luceneIndex = service.luceneShards.shard(range);
+        Query query = service.rowMapper.query(DataRange.forKeyRange(range));
+        luceneIndex.merge(query, chunkPath);
+
+        // Partitions written while building or merging the chunk could be outdated or duplicated
+        int numTouched = 0;
+        for (DecoratedKey partitionKey : touchedKeys) {
+            if (range.contains(partitionKey.getToken())) {
+                touchedKeys.remove(partitionKey);
+                reindex(luceneIndex, partitionKey);
+                numTouched++;
+            }
+        }
+
+        // Checkpoint
+        done.add(chunk);
+        Map<String, String> commitData = new HashMap<>(1);
+        commitData.put(DONE_KEY, Joiner.on(',').join(done));
+        luceneIndex.commit(commitData);
+        delete(chunkPath);
+        completedChunks.incrementAndGet();
+        Log.info("Merged chunk %d of index %s, %d partitions indexed again", chunk, name, numTouched);
+    }
+
+    /**
+     * Replaces the {@link Document}s of the specified partition in the specified {@link LuceneIndex} with the ones read
+     * from the base table. The partition lock is held meanwhile, so no write of the partition is indexed between the
+     * read and the replacement, and the first page of documents atomically replaces the previous ones.
+     *
+     * @param luceneIndex  The {@link LuceneIndex} of the partition.
+     * @param partitionKey A partition key.
+     */
+    private void reindex(LuceneIndex luceneIndex, DecoratedKey partitionKey) {
+        Lock lock = service.lock(partitionKey);
+        try {
+            Iterator<List<Document>> pages = documents(partitionKey);
+            List<Document> documents = pages.hasNext() ? pages.next() : Collections.<Document>emptyList();
+            luceneIndex.upsert(service.rowMapper.term(partitionKey), documents);
+            while (pages.hasNext()) {
+                luceneIndex.add(pages.next());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an {@link Iterator} over the {@link Document}s of the live rows of the specified partition, read from the
+     * base table in pages of {@link #PAGE_SIZE} CQL3 rows.
+     *
+     * @param partitionKey A partition key.
+     * @return The {@link Document}s of the partition, in pages.
+     */
+    private Iterator<List<Document>> documents(final DecoratedKey partitionKey) {
+        final long timestamp = System.currentTimeMillis();
+        int clusteringSize = baseCfs.metadata.clusteringColumns().size();
+        SliceQueryFilter filter = new SliceQueryFilter(ColumnSlice.ALL_COLUMNS_ARRAY,
+                                                       false,
+                                                       Integer.MAX_VALUE,
+                                                       clusteringSize);
+        SliceFromReadCommand command = new SliceFromReadCommand(baseCfs.metadata.ksName,
+                                                                partitionKey.getKey(),
+                                                                baseCfs.name,
+                                                                timestamp,
+                                                                filter);
+        final QueryPager pager = QueryPagers.localPager(command);
+        return new Iterator<List<Document>>() {
+            @Override
+            public boolean hasNext() {
+                return !pager.isExhausted();
+            }
+
+            @Override
+            public List<Document> next() {
+                try {
+                    List<Row> rows = pager.fetchPage(PAGE_SIZE);
+                    ColumnFamily columnFamily = rows.isEmpty() ? null : rows.get(0).cf;
+                    if (columnFamily == null) {
+                        return Collections.emptyList();
+                    }
+                    return service.documents(partitionKey, service.cleanExpired(columnFamily, timestamp));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Removes the specified file or directory, if it exists.
+     *
+     * @param file A file or directory.
+     */
+    private static void delete(File file) {
+        if (file.exists()) {
+            FileUtils.deleteRecursive(file);
+        }
+    }
+
+    /** Compares the partition keys of sstable scanner items. */
+    private static final Comparator<OnDiskAtomIterator> KEY_COMPARATOR = new Comparator<OnDiskAtomIterator>() {
+        @Override
+        public int compare(OnDiskAtomIterator o1, OnDiskAtomIterator o2) {
+            return o1.getKey().compareTo(o2.getKey());
+        }
+    };
+
+    /** Reduces the sstable scanner items of the same partition to their partition key. */
+    private static final class KeyReducer extends MergeIterator.Reducer<OnDiskAtomIterator, DecoratedKey> {
+
+        private DecoratedKey key;
+
+        @Override
+        public void reduce(OnDiskAtomIterator current) {
+            key = current.getKey();
+        }
+
+        @Override
+        protected DecoratedKey getReduced() {
+            return key;
+        }
+    }
+}
@@ -15,24 +15,32 @@
  */
 package com.stratio.cassandra.index.service;
 
+import com.stratio.cassandra.index.RowIndexMetrics;
 import com.stratio.cassandra.util.Log;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
-import org.apache.lucene.index.sorter.EarlyTerminatingSortingCollector;
 import org.apache.lucene.index.sorter.SortingMergePolicy;
 import org.apache.lucene.search.*;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.NRTCachingDirectory;
 import org.apache.lucene.util.Version;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class wrapping a Lucene directory and its readers , writers and searchers for NRT.
@@ -41,13 +49,15 @@ import java.util.Set;
  */
 public class LuceneIndex {
 
-    private final RowMapper rowMapper;
     private final String path;
     private final Double refreshSeconds;
     private final Integer ramBufferMB;
     private final Integer maxMergeMB;
     private final Integer maxCachedMB;
+    private final String directoryType;
+    private final boolean nrtCache;
     private final Analyzer analyzer;
+    private final RowIndexMetrics metrics;
 
     private File file;
     private Directory directory;
@@ -64,7 +74,6 @@ public class LuceneIndex {
     /**
      * Builds a new {@code RowDirectory} using the specified directory path and analyzer.
      *
-     * @param rowMapper      A {@link RowMapper}.
      * @param path           The analyzer to be used. The path of the directory in where the Lucene files will be
      *                       stored.
      * @param refreshSeconds The index readers refresh time in seconds. No guarantees that the writings are visible
@@ -72,22 +81,29 @@ public class LuceneIndex {
      * @param ramBufferMB    The index writer buffer size in MB.
      * @param maxMergeMB     NRTCachingDirectory max merge size in MB.
      * @param maxCachedMB    NRTCachingDirectory max cached MB.
+     * @param directoryType  The {@link FSDirectory} implementation, {@code mmap}, {@code niofs} or {@code auto}.
+     * @param nrtCache       If the {@link FSDirectory} must be wrapped by a {@link NRTCachingDirectory}.
      * @param analyzer       The default {@link Analyzer}.
+     * @param metrics        The {@link RowIndexMetrics} of the index.
      */
-    public LuceneIndex(RowMapper rowMapper,
-                       String path,
+    public LuceneIndex(String path,
                        Double refreshSeconds,
                        Integer ramBufferMB,
                        Integer maxMergeMB,
                        Integer maxCachedMB,
-                       Analyzer analyzer) {
-        this.rowMapper = rowMapper;
+                       String directoryType,
+                       boolean nrtCache,
+                       Analyzer analyzer,
+                       RowIndexMetrics metrics) {
         this.path = path;
         this.refreshSeconds = refreshSeconds;
         this.ramBufferMB = ramBufferMB;
         this.maxMergeMB = maxMergeMB;
         this.maxCachedMB = maxCachedMB;
+        this.directoryType = directoryType;
+        this.nrtCache = nrtCache;
         this.analyzer = analyzer;
+        this.metrics = metrics;
     }
 
     /**
@@ -104,16 +120,10 @@ public class LuceneIndex {
             file = new File(path);
 
             // Open or create directory
-            FSDirectory fsDirectory = FSDirectory.open(file);
-            directory = new NRTCachingDirectory(fsDirectory, maxMergeMB, maxCachedMB);
+            directory = directory(file);
 
             // Setup index writer
-            IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, analyzer);
-            config.setRAMBufferSizeMB(ramBufferMB);
-            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-            config.setUseCompoundFile(true);
-            config.setMergePolicy(new SortingMergePolicy(config.getMergePolicy(), sort));
-            indexWriter = new IndexWriter(directory, config);
+            indexWriter = new IndexWriter(directory, writerConfig());
 
             // Setup NRT search
             SearcherFactory searcherFactory = new SearcherFactory() {
@@ -136,6 +146,96 @@ public class LuceneIndex {
         }
     }
 
+    /**
+     * Returns the {@link Directory} for the index files stored in the specified path, according to the configured
+     * {@link FSDirectory} implementation and NRT caching. Opened files are tracked in the NRT cache metrics.
+     *
+     * @param file The directory path.
+     * @return The {@link Directory} for the index files stored in {@code file}.
+     * @throws IOException If there is a low-level I/O error.
+     */
+    private Directory directory(File file) throws IOException {
+        FSDirectory fsDirectory;
+        switch (directoryType) {
+            case "mmap":
+                fsDirectory = new MMapDirectory(file);
+                break;
+            case "niofs":
+                fsDirectory = new NIOFSDirectory(file);
+                break;
+            default:
+                fsDirectory = FSDirectory.open(file);
+        }
+        if (!nrtCache) {
+            return fsDirectory;
+        }
+        return new MeteredCachingDirectory(fsDirectory, maxMergeMB, maxCachedMB, metrics);
+    }
+
+    /**
+     * Returns a new {@link IndexWriterConfig} for writing this index.
+     *
+     * @return A new {@link IndexWriterConfig} for writing this index.
+     */
+    private IndexWriterConfig writerConfig() {
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, analyzer);
+        config.setRAMBufferSizeMB(ramBufferMB);
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        config.setUseCompoundFile(true);
+        config.setMergePolicy(new SortingMergePolicy(config.getMergePolicy(), sort));
+        return config;
+    }
+
+    /**
+     * Returns a new {@link IndexWriter} for a separate index in the specified directory, configured as this index, so
+     * it can be later merged into this one with {@link #merge(Query, File)}. The caller must close it.
+     *
+     * @param path The directory in where the separate index files will be stored.
+     * @return A new {@link IndexWriter} for a separate index in {@code path}.
+     */
+    public IndexWriter separateWriter(File path) {
+        try {
+            return new IndexWriter(FSDirectory.open(path), writerConfig());
+        } catch (IOException e) {
+            Log.error(e, "Error while opening separate index %s", path);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Replaces the {@link Document}s satisfying the specified {@link Query} with the ones of the separate, closed index
+     * stored in the specified directory. The replacement is not atomic, so the documents written meanwhile must be
+     * written again afterwards.
+     *
+     * @param query The {@link Query} to identify the documents to be replaced.
+     * @param path  The directory of the separate index.
+     */
+    public void merge(Query query, File path) {
+        Log.info("Merging index %s", path);
+        try (Directory separateDirectory = FSDirectory.open(path)) {
+            indexWriter.deleteDocuments(query);
+            indexWriter.addIndexes(separateDirectory);
+        } catch (IOException e) {
+            Log.error(e, "Error while merging index %s", path);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds the specified {@link Document}s without deleting any previous document.
+     *
+     * @param documents The {@link Document}s to be added.
+     */
+    public void add(List<Document> documents) {
+        Log.debug("Adding %d documents", documents.size());
+        try {
+            indexWriter.addDocuments(documents);
+        } catch (IOException e) {
+            Log.error(e, "Error while adding %d documents", documents.size());
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Updates the specified {@link Document} by first deleting the documents containing {@code Term} and then adding
      * the new document. The delete and then add are atomic as seen by a reader on the same index (flush may happen only
@@ -145,11 +245,28 @@ public class LuceneIndex {
      * @param document The {@link Document} to be added.
      */
     public void upsert(Term term, Document document) {
-        Log.debug("Updating document %s with term %s", document, term);
+        Log.debug("Updating document with term %s", term);
         try {
             indexWriter.updateDocument(term, document);
         } catch (IOException e) {
-            Log.error(e, "Error while updating document %s with term %s", document, term);
+            Log.error(e, "Error while updating document with term %s", term);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Updates the specified {@link Document}s by first deleting the documents containing {@code Term} and then adding
+     * the new documents. The delete and then add are atomic as seen by a reader on the same index.
+     *
+     * @param term      The {@link Term} to identify the document(s) to be deleted.
+     * @param documents The {@link Document}s to be added.
+     */
+    public void upsert(Term term, List<Document> documents) {
+        Log.debug("Updating %d documents with term %s", documents.size(), term);
+        try {
+            indexWriter.updateDocuments(term, documents);
+        } catch (IOException e) {
+            Log.error(e, "Error while updating %d documents with term %s", documents.size(), term);
             throw new RuntimeException(e);
         }
     }
@@ -160,7 +277,7 @@ public class LuceneIndex {
      * @param term The {@link Term} to identify the documents to be deleted.
      */
     public void delete(Term term) {
-        Log.debug(String.format("Deleting by term %s", term));
+        Log.debug("Deleting by term %s", term);
         try {
             indexWriter.deleteDocuments(term);
         } catch (IOException e) {
@@ -201,8 +318,30 @@ public class LuceneIndex {
      * Commits the pending changes.
      */
     public void commit() {
+        commit(null);
+    }
+
+    /**
+     * Commits the pending changes, storing the specified user data with the commit. The entries of the last user data
+     * not contained in the specified one are kept, and {@code null} values remove their entries. Documents can be
+     * concurrently added while committing.
+     *
+     * @param commitData The user data to be stored with the commit, maybe {@code null} meaning keeping the last one.
+     */
+    public synchronized void commit(Map<String, String> commitData) {
         Log.info("Committing");
         try {
+            if (commitData != null) {
+                Map<String, String> mergedCommitData = new HashMap<>(indexWriter.getCommitData());
+                for (Map.Entry<String, String> entry : commitData.entrySet()) {
+                    if (entry.getValue() == null) {
+                        mergedCommitData.remove(entry.getKey());
+                    } else {
+                        mergedCommitData.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                indexWriter.setCommitData(mergedCommitData);
+            }
             indexWriter.commit();
         } catch (IOException e) {
             Log.error(e, "Error while committing");
@@ -210,6 +349,15 @@ public class LuceneIndex {
         }
     }
 
+    /**
+     * Returns the user data stored with the last commit.
+     *
+     * @return The user data stored with the last commit.
+     */
+    public Map<String, String> getCommitData() {
+        return indexWriter.getCommitData();
+    }
+
     /**
      * Commits all changes to the index, waits for pending merges to complete, and closes all associated resources.
      */
@@ -237,68 +385,24 @@ public class LuceneIndex {
     }
 
     /**
-     * Finds the top {@code count} hits for {@code query}, applying {@code clusteringKeyFilter} if non-null, and sorting
-     * the hits by the criteria in {@code sortFields}.
+     * Returns an {@link IndexSearcher} over the last refreshed view of this index. It must be released with {@link
+     * #release(IndexSearcher)}.
      *
-     * @param query        The {@link Query} to search for.
-     * @param sort         The {@link Sort} to be applied.
-     * @param after        The starting {@link SearchResult}.
-     * @param count        Return only the top {@code count} results.
-     * @param fieldsToLoad The name of the fields to be loaded.
-     * @return The found documents, sorted according to the supplied {@link Sort} instance.
+     * @return An {@link IndexSearcher} over the last refreshed view of this index.
+     * @throws IOException If there is a low-level I/O error.
      */
-    public List<SearchResult> search(Query query,
-                                     Sort sort,
-                                     SearchResult after,
-                                     Integer count,
-                                     Set<String> fieldsToLoad,
-                                     boolean usesRelevance) {
-        Log.debug("Searching by query %s", query);
-        try {
-            IndexSearcher searcher = searcherManager.acquire();
-            try {
-                // Search
-                ScoreDoc start = after == null ? null : after.getScoreDoc();
-                TopDocs topDocs = topDocs(searcher, query, sort, start, count, usesRelevance);
-                ScoreDoc[] scoreDocs = topDocs.scoreDocs;
-
-                // Collect the documents from query result
-                List<SearchResult> searchResults = new ArrayList<>(scoreDocs.length);
-                for (ScoreDoc scoreDoc : scoreDocs) {
-                    Document document = searcher.doc(scoreDoc.doc, fieldsToLoad);
-                    SearchResult searchResult = rowMapper.searchResult(document, scoreDoc);
-                    searchResults.add(searchResult);
-                }
-
-                return searchResults;
-            } finally {
-                searcherManager.release(searcher);
-            }
-        } catch (IOException e) {
-            Log.error(e, "Error while searching by query %s", query);
-            throw new RuntimeException(e);
-        }
+    IndexSearcher acquire() throws IOException {
+        return searcherManager.acquire();
     }
 
-    private TopDocs topDocs(IndexSearcher searcher,
-                            Query query,
-                            Sort sort,
-                            ScoreDoc after,
-                            int count,
-                            boolean usesRelevance) throws IOException {
-        if (sort == null) {
-            if (!usesRelevance) {
-                FieldDoc start = after == null ? null : (FieldDoc) after;
-                TopFieldCollector tfc = TopFieldCollector.create(this.sort, count, start, true, false, false, false);
-                Collector collector = new EarlyTerminatingSortingCollector(tfc, this.sort, count);
-                searcher.search(query, collector);
-                return tfc.topDocs();
-            } else {
-                return searcher.searchAfter(after, query, count);
-            }
-        } else {
-            return searcher.searchAfter(after, query, count, sort);
-        }
+    /**
+     * Releases the specified {@link IndexSearcher}, which must have been acquired with {@link #acquire()}.
+     *
+     * @param searcher The {@link IndexSearcher} to be released.
+     * @throws IOException If there is a low-level I/O error.
+     */
+    void release(IndexSearcher searcher) throws IOException {
+        searcherManager.release(searcher);
     }
 
     /**
@@ -336,4 +440,80 @@ public class LuceneIndex {
         }
 
     }
+
+    /**
+     * {@link NRTCachingDirectory} tracking the opened files in the NRT cache metrics. The names of the cached files are
+     * kept in a set, so checking if an opened file is cached doesn't require listing the cache.
+     */
+    static class MeteredCachingDirectory extends NRTCachingDirectory {
+
+        private final RowIndexMetrics metrics;
+        private final Set<String> cachedFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        /**
+         * Builds a new {@link MeteredCachingDirectory} wrapping the specified {@link Directory}.
+         *
+         * @param delegate    The wrapped {@link Directory}.
+         * @param maxMergeMB  The max size in MB of the merged segments to be cached.
+         * @param maxCachedMB The max size in MB of the cache.
+         * @param metrics     The {@link RowIndexMetrics} in where the opened files are tracked.
+         */
+        MeteredCachingDirectory(Directory delegate, double maxMergeMB, double maxCachedMB, RowIndexMetrics metrics) {
+            super(delegate, maxMergeMB, maxCachedMB);
+            this.metrics = metrics;
+        }
+
+        /**
+         * Returns if the specified file is cached.
+         *
+         * @param name A file name.
+         * @return {@code true} if the file is cached, {@code false} otherwise.
+         */
+        boolean isCached(String name) {
+            return cachedFiles.contains(name);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean doCacheWrite(String name, IOContext context) {
+            boolean cache = super.doCacheWrite(name, context);
+            if (cache) {
+                cachedFiles.add(name);
+            } else {
+                cachedFiles.remove(name);
+            }
+            return cache;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public synchronized IndexInput openInput(String name, IOContext context) throws IOException {
+            metrics.directoryCacheRequests.mark();
+            if (cachedFiles.contains(name)) {
+                metrics.directoryCacheHits.mark();
+            }
+            return super.openInput(name, context);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void sync(Collection<String> fileNames) throws IOException {
+            super.sync(fileNames);
+            cachedFiles.removeAll(fileNames);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public synchronized void deleteFile(String name) throws IOException {
+            cachedFiles.remove(name);
+            super.deleteFile(name);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() throws IOException {
+            super.close();
+            cachedFiles.clear();
+        }
+    }
 }
@@ -0,0 +1,717 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.stratio.cassandra.index.RowIndexMetrics;
+import com.stratio.cassandra.index.aggregation.Aggregation;
+import com.stratio.cassandra.index.aggregation.AggregationResults;
+import com.stratio.cassandra.index.aggregation.AggregationsCollector;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.util.Log;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DataRange;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.RowPosition;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.service.StorageService;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.sorter.EarlyTerminatingSortingCollector;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TimeLimitingCollector;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Weight;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Class splitting the Lucene index of a {@link RowService} into shards by token range. The token ring is split into a
+ * fixed number of consecutive ranges with similar sizes, each of them indexed in a separate {@link LuceneIndex}.
+ * Writes go to the shard of their partition key, and searches are performed only on the shards intersecting their
+ * key range. Cleanup drops the whole shards not intersecting the local ranges instead of deleting their rows one by
+ * one.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class LuceneIndexShards {
+
+    private final RowMapper rowMapper;
+    private final String keyspaceName;
+    private final File path;
+    private final List<LuceneIndex> shards;
+    private final List<Range<Token>> ranges; // The token range of each shard
+    private final List<Token> boundaries; // The right bound of each shard, except the last one
+
+    /** The min number of documents per parallel search slice. */
+    private static final int MIN_SLICE_DOCS = 100000;
+
+    private final RowIndexMetrics metrics;
+    private final int searchParallelism;
+
+    private Sort sort;
+
+    private long ringVersion = -1; // The ring version of the last cleanup
+    private final Set<Integer> droppedShards = new HashSet<>(); // The shards dropped since the last ring version
+
+    /**
+     * Builds a new {@link LuceneIndexShards} splitting the token ring into the specified number of shards.
+     *
+     * @param rowMapper         A {@link RowMapper}.
+     * @param keyspaceName      The name of the indexed keyspace.
+     * @param path              The path of the directory in where the Lucene files will be stored.
+     * @param numShards         The number of token range shards.
+     * @param refreshSeconds    The index readers refresh time in seconds. No guarantees that the writings are visible
+     *                          until this time.
+     * @param ramBufferMB       The index writer buffer size in MB.
+     * @param maxMergeMB        NRTCachingDirectory max merge size in MB.
+     * @param maxCachedMB       NRTCachingDirectory max cached MB.
+     * @param directoryType     The {@link org.apache.lucene.store.FSDirectory} implementation.
+     * @param nrtCache          If the NRTCachingDirectory must be used.
+     * @param analyzer          The default {@link Analyzer}.
+     * @param searchParallelism The max number of slices to be searched in parallel per search.
+     * @param metrics           The {@link RowIndexMetrics} of the index.
+     */
+    public LuceneIndexShards(RowMapper rowMapper,
+                             String keyspaceName,
+                             String path,
+                             int numShards,
+                             Double refreshSeconds,
+                             Integer ramBufferMB,
+                             Integer maxMergeMB,
+                             Integer maxCachedMB,
+                             String directoryType,
+                             boolean nrtCache,
+                             Analyzer analyzer,
+                             int searchParallelism,
+                             RowIndexMetrics metrics) {
+        this.rowMapper = rowMapper;
+        this.searchParallelism = searchParallelism;
+        this.metrics = metrics;
+        this.keyspaceName = keyspaceName;
+        this.path = new File(path);
+        this.ranges = ranges(numShards);
+        this.boundaries = new ArrayList<>(numShards - 1);
+        for (Range<Token> range : ranges.subList(0, numShards - 1)) {
+            boundaries.add(range.right);
+        }
+        this.shards = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            String shardPath = numShards == 1 ? path : new File(path, Integer.toString(i)).getPath();
+            shards.add(new LuceneIndex(shardPath,
+                                       refreshSeconds,
+                                       ramBufferMB,
+                                       maxMergeMB,
+                                       maxCachedMB,
+                                       directoryType,
+                                       nrtCache,
+                                       analyzer,
+                                       metrics));
+        }
+    }
+
+    /**
+     * Returns the specified number of consecutive token ranges covering the whole ring, sorted by token. The ranges are
+     * obtained bisecting the ranges in rounds until reaching the specified number of ranges, so they have the same size
+     * when the number of ranges is a power of two.
+     *
+     * @param numRanges The number of ranges.
+     * @return The specified number of consecutive token ranges covering the whole ring.
+     */
+    private static List<Range<Token>> ranges(int numRanges) {
+        IPartitioner partitioner = DatabaseDescriptor.getPartitioner();
+        Token minimum = partitioner.getMinimumToken();
+        List<Range<Token>> ranges = Collections.singletonList(new Range<>(minimum, minimum));
+        while (ranges.size() < numRanges) {
+            int pendingSplits = numRanges - ranges.size();
+            List<Range<Token>> splitRanges = new ArrayList<>(numRanges);
+            for (Range<Token> range : ranges) {
+                if (pendingSplits-- > 0) {
+                    Token midpoint = partitioner.midpoint(range.left, range.right);
+                    splitRanges.add(new Range<>(range.left, midpoint));
+                    splitRanges.add(new Range<>(midpoint, range.right));
+                } else {
+                    splitRanges.add(range);
+                }
+            }
+            ranges = splitRanges;
+        }
+        return ranges;
+    }
+
+    /**
+     * Initializes all the shards using the specified {@link Sort} for trying to keep the {@link Document}s sorted.
+     *
+     * @param sort The {@link Sort} to be used.
+     */
+    public void init(Sort sort) {
+        this.sort = sort;
+        for (LuceneIndex shard : shards) {
+            shard.init(sort);
+        }
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return The number of shards.
+     */
+    public int size() {
+        return shards.size();
+    }
+
+    /**
+     * Returns the token boundaries between shards, that is, the right bound of each shard token range except the last
+     * one, which wraps around the minimum token.
+     *
+     * @return The token boundaries between shards.
+     */
+    public List<Token> boundaries() {
+        return boundaries;
+    }
+
+    /**
+     * Returns the shard in where the specified token is indexed.
+     *
+     * @param token A token.
+     * @return The shard in where {@code token} is indexed.
+     */
+    private int shardNumber(Token token) {
+        int index = Collections.binarySearch(boundaries, token);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * Returns the {@link LuceneIndex} in where the specified partition is indexed.
+     *
+     * @param partitionKey A partition key.
+     * @return The {@link LuceneIndex} in where the specified partition is indexed.
+     */
+    public LuceneIndex shard(DecoratedKey partitionKey) {
+        return shards.get(shardNumber(partitionKey.getToken()));
+    }
+
+    /**
+     * Returns the {@link LuceneIndex} containing the specified token range, which shouldn't cross shard boundaries.
+     *
+     * @param range A token range contained in a single shard.
+     * @return The {@link LuceneIndex} containing {@code range}.
+     */
+    public LuceneIndex shard(Range<Token> range) {
+        return range.right.isMinimum() ? shards.get(shards.size() - 1) : shards.get(shardNumber(range.right));
+    }
+
+    /**
+     * Returns the shards containing the specified key range.
+     *
+     * @param keyRange A key range.
+     * @return The shards containing {@code keyRange}.
+     */
+    private List<LuceneIndex> shards(AbstractBounds<RowPosition> keyRange) {
+        if (shards.size() == 1) {
+            return shards;
+        }
+        Token left = keyRange.left.getToken();
+        Token right = keyRange.right.getToken();
+        List<LuceneIndex> intersecting = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            Range<Token> range = ranges.get(i);
+            boolean intersects;
+            if (keyRange instanceof Range) {
+                intersects = range.intersects(new Range<>(left, right));
+            } else if (left.equals(right)) {
+                intersects = range.contains(left);
+            } else {
+                intersects = range.contains(left) || range.intersects(new Range<>(left, right));
+            }
+            if (intersects) {
+                intersecting.add(shards.get(i));
+            }
+        }
+        return intersecting;
+    }
+
+    /**
+     * Finds the top {@code count} hits for {@code query} in the shards intersecting the specified {@link DataRange},
+     * sorting the hits by the criteria in {@code sortFields}. The shards are searched as a single index, so the search
+     * results of a shard don't need to be merged with the other ones.
+     *
+     * @param dataRange    The {@link DataRange} containing the searched documents.
+     * @param query        The {@link Query} to search for.
+     * @param sort         The {@link Sort} to be applied.
+     * @param after        The starting {@link SearchResult}.
+     * @param count        Return only the top {@code count} results.
+     * @param fieldsToLoad The name of the fields to be loaded.
+     * @param deadline     The time in milliseconds since epoch after which the search must be aborted.
+     * @return The found documents, sorted according to the supplied {@link Sort} instance.
+     * @throws SearchTimeoutException If the search has not been finished before {@code deadline}.
+     */
+    public List<SearchResult> search(DataRange dataRange,
+                                     Query query,
+                                     Sort sort,
+                                     SearchResult after,
+                                     Integer count,
+                                     Set<String> fieldsToLoad,
+                                     boolean usesRelevance,
+                                     long deadline) {
+        Log.debug("Searching by query %s", query);
+        List<LuceneIndex> searchedShards = shards(dataRange.keyRange());
+        List<IndexSearcher> shardSearchers = new ArrayList<>(searchedShards.size());
+        try {
+            try {
+                for (LuceneIndex shard : searchedShards) {
+                    shardSearchers.add(shard.acquire());
+                }
+                if (shardSearchers.size() == 1) {
+                    return search(shardSearchers.get(0),
+                                  query,
+                                  sort,
+                                  after,
+                                  count,
+                                  fieldsToLoad,
+                                  usesRelevance,
+                                  deadline);
+                }
+                IndexReader[] readers = new IndexReader[shardSearchers.size()];
+                for (int i = 0; i < readers.length; i++) {
+                    readers[i] = shardSearchers.get(i).getIndexReader();
+                }
+                try (MultiReader reader = new MultiReader(readers, false)) {
+                    IndexSearcher searcher = new IndexSearcher(reader);
+                    searcher.setSimilarity(new NoIDFSimilarity());
+                    return search(searcher, query, sort, after, count, fieldsToLoad, usesRelevance, deadline);
+                }
+            } finally {
+                for (int i = 0; i < shardSearchers.size(); i++) {
+                    searchedShards.get(i).release(shardSearchers.get(i));
+                }
+            }
+        } catch (TimeLimitingCollector.TimeExceededException e) {
+            throw new SearchTimeoutException(query);
+        } catch (IOException e) {
+            Log.error(e, "Error while searching by query %s", query);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Computes the specified {@link Aggregation}s over all the documents matching {@code query} in the shards
+     * intersecting the specified {@link DataRange}. The search slices are aggregated in parallel, and their partial
+     * {@link AggregationResults} are merged.
+     *
+     * @param dataRange    The {@link DataRange} containing the searched documents.
+     * @param query        The {@link Query} to search for.
+     * @param aggregations The {@link Aggregation}s to be computed indexed by name.
+     * @param schema       The {@link Schema} to be used.
+     * @param deadline     The time in milliseconds since epoch after which the search must be aborted.
+     * @return The {@link AggregationResults} of the matching documents.
+     * @throws SearchTimeoutException If the aggregation has not been finished before {@code deadline}.
+     */
+    public AggregationResults aggregate(DataRange dataRange,
+                                        final Query query,
+                                        final Map<String, Aggregation> aggregations,
+                                        final Schema schema,
+                                        final long deadline) {
+        Log.debug("Aggregating by query %s", query);
+        List<LuceneIndex> searchedShards = shards(dataRange.keyRange());
+        List<IndexSearcher> shardSearchers = new ArrayList<>(searchedShards.size());
+        try {
+            try {
+                for (LuceneIndex shard : searchedShards) {
+                    shardSearchers.add(shard.acquire());
+                }
+                IndexReader[] readers = new IndexReader[shardSearchers.size()];
+                for (int i = 0; i < readers.length; i++) {
+                    readers[i] = shardSearchers.get(i).getIndexReader();
+                }
+                try (MultiReader reader = new MultiReader(readers, false)) {
+                    IndexSearcher searcher = new IndexSearcher(reader);
+                    List<List<AtomicReaderContext>> slices = slices(reader);
+                    metrics.searchSlices.update(slices.size());
+                    final Weight weight = searcher.createNormalizedWeight(query);
+                    checkDeadline(query, deadline);
+                    List<Callable<AggregationResults>> tasks = new ArrayList<>(slices.size());
+                    for (final List<AtomicReaderContext> slice : slices) {
+                        tasks.add(new Callable<AggregationResults>() {
+                            @Override
+                            public AggregationResults call() throws IOException {
+                                AggregationsCollector collector = new AggregationsCollector(aggregations, schema);
+                                collect(slice, weight, timeLimited(collector, query, deadline));
+                                return collector.results();
+                            }
+                        });
+                    }
+                    List<AggregationResults> sliceResults = slices.size() == 1
+                                                            ? Collections.singletonList(call(tasks.get(0)))
+                                                            : SearchExecutor.invokeAll(tasks,
+                                                                                       metrics.callerSearchSlices);
+                    AggregationResults results = sliceResults.get(0);
+                    for (AggregationResults sliceResult : sliceResults.subList(1, sliceResults.size())) {
+                        results = results.merge(sliceResult);
+                    }
+                    return results;
+                }
+            } finally {
+                for (int i = 0; i < shardSearchers.size(); i++) {
+                    searchedShards.get(i).release(shardSearchers.get(i));
+                }
+            }
+        } catch (TimeLimitingCollector.TimeExceededException e) {
+            throw new SearchTimeoutException(query);
+        } catch (IOException e) {
+            Log.error(e, "Error while aggregating by query %s", query);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<SearchResult> search(IndexSearcher searcher,
+                                      Query query,
+                                      Sort sort,
+                                      SearchResult after,
+                                      Integer count,
+                                      Set<String> fieldsToLoad,
+                                      boolean usesRelevance,
+                                      long deadline) throws IOException {
+
+        // Search
+        ScoreDoc start = after == null ? null : after.getScoreDoc();
+        TopDocs topDocs = topDocs(searcher, query, sort, start, count, usesRelevance, deadline);
+        ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+
+        // Collect the documents from query result
+        List<SearchResult> searchResults = new ArrayList<>(scoreDocs.length);
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            Document document = searcher.doc(scoreDoc.doc, fieldsToLoad);
+            SearchResult searchResult = rowMapper.searchResult(document, scoreDoc);
+            searchResults.add(searchResult);
+        }
+        return searchResults;
+    }
+
+    private TopDocs topDocs(IndexSearcher searcher,
+                            final Query query,
+                            final Sort sort,
+                            final ScoreDoc after,
+                            int n,
+                            final boolean usesRelevance,
+                            final long deadline) throws IOException {
+
+        IndexReader reader = searcher.getIndexReader();
+        final int count = Math.min(n, Math.max(1, reader.maxDoc()));
+        List<List<AtomicReaderContext>> slices = slices(reader);
+        metrics.searchSlices.update(slices.size());
+
+        // Rewriting multi term queries, such as fuzzy or regexp ones, can be expensive, so check the deadline again
+        final Weight weight = searcher.createNormalizedWeight(query);
+        checkDeadline(query, deadline);
+
+        // Search each slice separately, and then merge their top documents
+        List<Callable<TopDocs>> tasks = new ArrayList<>(slices.size());
+        for (final List<AtomicReaderContext> slice : slices) {
+            tasks.add(new Callable<TopDocs>() {
+                @Override
+                public TopDocs call() throws IOException {
+                    boolean inOrder = !weight.scoresDocsOutOfOrder();
+                    FieldDoc start = after == null || usesRelevance ? null : (FieldDoc) after;
+                    TopDocsCollector<?> topDocsCollector;
+                    Collector collector;
+                    if (sort == null) {
+                        if (!usesRelevance) {
+                            topDocsCollector = TopFieldCollector.create(LuceneIndexShards.this.sort,
+                                                                        count,
+                                                                        start,
+                                                                        true,
+                                                                        false,
+                                                                        false,
+                                                                        false);
+                            collector = new EarlyTerminatingSortingCollector(topDocsCollector,
+                                                                             LuceneIndexShards.this.sort,
+                                                                             count);
+                        } else {
+                            topDocsCollector = TopScoreDocCollector.create(count, after, inOrder);
+                            collector = topDocsCollector;
+                        }
+                    } else {
+                        topDocsCollector = TopFieldCollector.create(sort, count, start, true, false, false, inOrder);
+                        collector = topDocsCollector;
+                    }
+                    collect(slice, weight, timeLimited(collector, query, deadline));
+                    return topDocsCollector.topDocs();
+                }
+            });
+        }
+        List<TopDocs> sliceTopDocs = slices.size() == 1
+                                     ? Collections.singletonList(call(tasks.get(0)))
+                                     : SearchExecutor.invokeAll(tasks, metrics.callerSearchSlices);
+        if (sliceTopDocs.size() == 1) {
+            return sliceTopDocs.get(0);
+        }
+        Sort mergeSort = sort == null ? (usesRelevance ? null : this.sort) : sort;
+        return TopDocs.merge(mergeSort, count, sliceTopDocs.toArray(new TopDocs[sliceTopDocs.size()]));
+    }
+
+    /**
+     * Runs the specified search task in the calling thread.
+     *
+     * @param task A search task.
+     * @param <T>  The type of the task result.
+     * @return The result of {@code task}.
+     * @throws IOException If there is a low-level I/O error.
+     */
+    private static <T> T call(Callable<T> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns a {@link Collector} wrapping the specified one, which aborts the collection when the specified deadline
+     * is reached.
+     *
+     * @param collector The {@link Collector} to be wrapped.
+     * @param query     The searched {@link Query}.
+     * @param deadline  The time in milliseconds since epoch after which the search must be aborted.
+     * @return A time limited version of {@code collector}.
+     */
+    private static Collector timeLimited(Collector collector, Query query, long deadline) {
+        long remaining = checkDeadline(query, deadline);
+        TimeLimitingCollector timeLimitingCollector = new TimeLimitingCollector(collector,
+                                                                                TimeLimitingCollector.getGlobalCounter(),
+                                                                                remaining);
+        timeLimitingCollector.setBaseline();
+        return timeLimitingCollector;
+    }
+
+    /**
+     * Returns the milliseconds remaining until the specified deadline, failing if it has already been reached.
+     *
+     * @param query    The searched {@link Query}.
+     * @param deadline The time in milliseconds since epoch after which the search must be aborted.
+     * @return The milliseconds remaining until {@code deadline}.
+     * @throws SearchTimeoutException If {@code deadline} has been reached.
+     */
+    private static long checkDeadline(Query query, long deadline) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new SearchTimeoutException(query);
+        }
+        return remaining;
+    }
+
+    /**
+     * Splits the segments of the specified {@link IndexReader} into consecutive slices to be searched in parallel. There
+     * are no more slices than the search parallelism, and each slice has at least {@link #MIN_SLICE_DOCS} documents,
+     * so small indexes are searched sequentially.
+     *
+     * @param reader An {@link IndexReader}.
+     * @return The slices of segments of {@code reader}.
+     */
+    private List<List<AtomicReaderContext>> slices(IndexReader reader) {
+        List<AtomicReaderContext> leaves = reader.leaves();
+        int numSlices = Math.min(Math.min(searchParallelism, leaves.size()), reader.maxDoc() / MIN_SLICE_DOCS);
+        if (numSlices <= 1) {
+            return Collections.singletonList(leaves);
+        }
+        long sliceDocs = reader.maxDoc() / numSlices;
+        List<List<AtomicReaderContext>> slices = new ArrayList<>(numSlices);
+        List<AtomicReaderContext> slice = new ArrayList<>();
+        long docs = 0;
+        for (AtomicReaderContext leaf : leaves) {
+            slice.add(leaf);
+            docs += leaf.reader().maxDoc();
+            if (docs >= (slices.size() + 1) * sliceDocs && slices.size() < numSlices - 1) {
+                slices.add(slice);
+                slice = new ArrayList<>();
+            }
+        }
+        if (!slice.isEmpty()) {
+            slices.add(slice);
+        }
+        return slices;
+    }
+
+    /**
+     * Collects the documents of the specified segments matching the specified {@link Weight}, as {@link
+     * IndexSearcher#search(Query, Collector)} does for all the segments.
+     *
+     * @param leaves    The segments to be searched.
+     * @param weight    The {@link Weight} of the searched query.
+     * @param collector The {@link Collector} receiving the matching documents.
+     * @throws IOException If there is a low-level I/O error.
+     */
+    private static void collect(List<AtomicReaderContext> leaves, Weight weight, Collector collector)
+    throws IOException {
+        for (AtomicReaderContext context : leaves) {
+            try {
+                collector.setNextReader(context);
+            } catch (CollectionTerminatedException e) {
+                continue; // The collector doesn't need this segment
+            }
+            BulkScorer scorer = weight.bulkScorer(context,
+                                                  !collector.acceptsDocsOutOfOrder(),
+                                                  context.reader().getLiveDocs());
+            if (scorer != null) {
+                try {
+                    scorer.score(collector);
+                } catch (CollectionTerminatedException e) {
+                    // The collector doesn't need more documents of this segment
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the {@link Document}s of the specified partition, which is being removed by cleanup because it is no
+     * longer in the local ranges. If the shard of the partition doesn't intersect any local range then the whole shard
+     * is truncated, and the next deletions in the same shard are ignored until the ring changes.
+     *
+     * @param partitionKey The key of the partition being removed by cleanup.
+     * @param term         The {@link Term} identifying the documents of the partition.
+     */
+    public synchronized void cleanup(DecoratedKey partitionKey, Term term) {
+        long currentRingVersion = StorageService.instance.getTokenMetadata().getRingVersion();
+        if (currentRingVersion != ringVersion) {
+            ringVersion = currentRingVersion;
+            droppedShards.clear();
+        }
+        int shardNumber = shardNumber(partitionKey.getToken());
+        if (droppedShards.contains(shardNumber)) {
+            return;
+        }
+        LuceneIndex shard = shards.get(shardNumber);
+        if (shards.size() > 1 && !isLocal(ranges.get(shardNumber))) {
+            Log.info("Dropping shard %d, which is out of the local ranges", shardNumber);
+            shard.truncate();
+            droppedShards.add(shardNumber);
+        } else {
+            shard.delete(term);
+        }
+    }
+
+    /**
+     * Returns if the specified token range intersects any of the local ranges.
+     *
+     * @param range A token range.
+     * @return {@code true} if {@code range} intersects any of the local ranges, {@code false} otherwise.
+     */
+    private boolean isLocal(Range<Token> range) {
+        Collection<Range<Token>> localRanges = StorageService.instance.getLocalRanges(keyspaceName);
+        for (Range<Token> localRange : localRanges) {
+            if (range.intersects(localRange)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Commits the pending changes of all the shards, storing the specified user data with each commit.
+     *
+     * @param commitData The user data to be stored with the commits, maybe {@code null} meaning keeping the last one.
+     * @see LuceneIndex#commit(Map)
+     */
+    public void commit(Map<String, String> commitData) {
+        for (LuceneIndex shard : shards) {
+            shard.commit(commitData);
+        }
+    }
+
+    /**
+     * Returns the user data stored with the last commit of each shard, sorted by shard token range.
+     *
+     * @return The user data stored with the last commit of each shard.
+     */
+    public List<Map<String, String>> getCommitData() {
+        List<Map<String, String>> commitData = new ArrayList<>(shards.size());
+        for (LuceneIndex shard : shards) {
+            commitData.add(shard.getCommitData());
+        }
+        return commitData;
+    }
+
+    /**
+     * Deletes all the {@link Document}s of all the shards.
+     */
+    public void truncate() {
+        for (LuceneIndex shard : shards) {
+            shard.truncate();
+        }
+    }
+
+    /**
+     * Closes all the shards and removes all their files.
+     */
+    public void delete() {
+        for (LuceneIndex shard : shards) {
+            shard.delete();
+        }
+        if (path.exists()) {
+            FileUtils.deleteRecursive(path);
+        }
+    }
+
+    /**
+     * Optimizes all the shards forcing merge segments leaving one single segment per shard.
+     */
+    public void optimize() {
+        for (LuceneIndex shard : shards) {
+            shard.optimize();
+        }
+    }
+
+    /**
+     * Returns the total number of {@link Document}s in all the shards.
+     *
+     * @return The total number of {@link Document}s in all the shards.
+     */
+    public long getNumDocs() {
+        long numDocs = 0;
+        for (LuceneIndex shard : shards) {
+            numDocs += shard.getNumDocs();
+        }
+        return numDocs;
+    }
+}
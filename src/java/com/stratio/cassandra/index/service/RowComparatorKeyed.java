@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import org.apache.cassandra.db.Row;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A {@link RowComparator} based on a sort key extracted from each {@link Row}. When a large number of {@link Row}s is
+ * sorted or merged, the key of each {@link Row} is extracted only once.
+ *
+ * @param <K> The type of the sort keys.
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public abstract class RowComparatorKeyed<K> implements RowComparator {
+
+    /**
+     * Returns the sort key of the specified {@link Row}.
+     *
+     * @param row A {@link Row}.
+     * @return The sort key of {@code row}.
+     */
+    protected abstract K key(Row row);
+
+    /**
+     * Compares the specified sort keys.
+     *
+     * @param key1 A sort key.
+     * @param key2 Another sort key.
+     * @return A negative integer, zero, or a positive integer as the first key is less than, equal to, or greater than
+     * the second.
+     */
+    protected abstract int compareKeys(K key1, K key2);
+
+    /**
+     * Prepares the specified sort keys to be compared between them, so that all of them are compared the same way. The
+     * comparison of the merged keys must be transitive, even if they come from different replicas. This implementation
+     * does nothing.
+     *
+     * @param keys The sort keys to be merged.
+     */
+    protected void normalize(List<K> keys) {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final int compare(Row row1, Row row2) {
+        return compareKeys(key(row1), key(row2));
+    }
+
+    /**
+     * Returns the first {@code limit} distinct {@link Row}s of the specified ones, sorted according to this comparator.
+     * The {@link Row}s equal for the specified natural {@link Comparator} are duplicates, whatever their sort keys are,
+     * and only the first of them according to this comparator is returned. Ties are broken with the natural {@link
+     * Comparator}. The keys of all the {@link Row}s are extracted and normalized before merging them, so the merge
+     * always compares them the same way. Only {@code limit} {@link Row}s are collected, and each {@link Row} not
+     * entering the collected ones is discarded with a single comparison.
+     *
+     * @param rows    The {@link Row}s to be merged.
+     * @param limit   The max number of {@link Row}s to be returned.
+     * @param natural The {@link Comparator} identifying duplicated {@link Row}s and breaking ties.
+     * @return The first {@code limit} {@link Row}s according to this comparator.
+     */
+    public final List<Row> top(Iterable<Row> rows, int limit, final Comparator<Row> natural) {
+        Comparator<Entry<K>> comparator = new Comparator<Entry<K>>() {
+            @Override
+            public int compare(Entry<K> entry1, Entry<K> entry2) {
+                int comp = compareKeys(entry1.key, entry2.key);
+                return comp != 0 ? comp : natural.compare(entry1.row, entry2.row);
+            }
+        };
+        List<Row> candidates = new ArrayList<>();
+        List<K> keys = new ArrayList<>();
+        if (limit > 0) {
+            for (Row row : rows) {
+                candidates.add(row);
+                keys.add(key(row));
+            }
+            normalize(keys);
+        }
+        TreeSet<Entry<K>> top = new TreeSet<>(comparator);
+        Map<Row, Entry<K>> collected = new TreeMap<>(natural); // The collected entries by natural key
+        for (int i = 0; i < candidates.size(); i++) {
+            Row row = candidates.get(i);
+            Entry<K> entry = new Entry<>(row, keys.get(i));
+            Entry<K> duplicate = collected.get(row);
+            if (duplicate != null) {
+                if (comparator.compare(entry, duplicate) < 0) {
+                    top.remove(duplicate);
+                    top.add(entry);
+                    collected.put(row, entry);
+                }
+            } else if (top.size() < limit) {
+                top.add(entry);
+                collected.put(row, entry);
+            } else if (comparator.compare(entry, top.last()) < 0) {
+                collected.remove(top.pollLast().row);
+                top.add(entry);
+                collected.put(row, entry);
+            }
+        }
+        List<Row> result = new ArrayList<>(top.size());
+        for (Entry<K> entry : top) {
+            result.add(entry.row);
+        }
+        return result;
+    }
+
+    /**
+     * A {@link Row} and its sort key.
+     *
+     * @param <K> The type of the sort key.
+     */
+    private static final class Entry<K> {
+
+        private final Row row;
+        private final K key;
+
+        private Entry(Row row, K key) {
+            this.row = row;
+            this.key = key;
+        }
+    }
+}
@@ -28,7 +28,7 @@ import java.util.Comparator;
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
-public class RowComparatorNatural implements RowComparator {
+public class RowComparatorNatural extends RowComparatorKeyed<Row> {
 
     private final ComparatorChain<Row> comparatorChain;
 
@@ -76,8 +76,15 @@ public class RowComparatorNatural implements RowComparator {
         });
     }
 
+    /** {@inheritDoc} */
     @Override
-    public int compare(Row row1, Row row2) {
+    protected Row key(Row row) {
+        return row;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected int compareKeys(Row row1, Row row2) {
         return comparatorChain.compare(row1, row2);
     }
 
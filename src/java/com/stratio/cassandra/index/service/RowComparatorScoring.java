@@ -24,7 +24,7 @@ import java.util.Comparator;
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
-public class RowComparatorScoring implements RowComparator {
+public class RowComparatorScoring extends RowComparatorKeyed<Float> {
 
     /**
      * The used {@link RowService}.
@@ -40,13 +40,15 @@ public class RowComparatorScoring implements RowComparator {
         this.rowService = rowService;
     }
 
-    /**
-     * {@inheritDoc}
-     */
+    /** {@inheritDoc} */
+    @Override
+    protected Float key(Row row) {
+        return rowService.score(row);
+    }
+
+    /** {@inheritDoc} */
     @Override
-    public int compare(Row row1, Row row2) {
-        Float score1 = rowService.score(row1);
-        Float score2 = rowService.score(row2);
+    protected int compareKeys(Float score1, Float score2) {
         return score2.compareTo(score1);
     }
 
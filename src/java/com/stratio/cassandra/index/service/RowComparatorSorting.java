@@ -15,50 +15,252 @@
  */
 package com.stratio.cassandra.index.service;
 
-import com.stratio.cassandra.contrib.ComparatorChain;
 import com.stratio.cassandra.index.query.Sort;
 import com.stratio.cassandra.index.query.SortField;
+import com.stratio.cassandra.index.schema.Column;
 import com.stratio.cassandra.index.schema.Columns;
-import com.stratio.cassandra.index.schema.Schema;
 import org.apache.cassandra.db.Row;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.util.BytesRef;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 
 /**
  * A {@link Comparator} for comparing {@link Row}s according to a certain Lucene {@link Sort}.
+ * <p/>
+ * Replicas decorate each sorted {@link Row} with its binary encoded raw Lucene sort values in the search column, so
+ * the sort key of a {@link Row} is usually decoded from that column and comparisons are done between primitives, in
+ * the same order used by the replicas. The raw values and the {@link Column}s of the same {@link Row}s may be ordered
+ * differently, so if any of the merged {@link Row}s has not a valid sort key column, all of them are compared by their
+ * {@link Column}s for the sorting fields, which are extracted only once per {@link Row}.
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
-public class RowComparatorSorting implements RowComparator {
+public class RowComparatorSorting extends RowComparatorKeyed<RowComparatorSorting.Key> {
 
-    private final RowMapper rowMapper;
-    private final ComparatorChain<Columns> comparatorChain;
+    /** The type bytes of the encoded sort values. */
+    private static final byte NULL = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte FLOAT = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BYTES = 5;
+
+    private final RowService rowService;
+    private final SortField[] sortFields;
+
+    /**
+     * @param rowService The {@link RowService} of the {@link Row}s to be compared.
+     * @param sort       The Lucene {@link Sort} inf which the {@link Row} comparison is based.
+     */
+    public RowComparatorSorting(RowService rowService, Sort sort) {
+        this.rowService = rowService;
+        List<SortField> fields = sort.getSortFields();
+        sortFields = fields.toArray(new SortField[fields.size()]);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Key key(Row row) {
+        Object[] values = decode(rowService.searchColumn(row));
+        return new Key(row, values != null && values.length == sortFields.length ? values : null);
+    }
 
     /**
-     * @param rowMapper The indexing {@link Schema} of the {@link Row}s to be compared.
-     * @param sort      The Lucene {@link Sort} inf which the {@link Row} comparison is based.
+     * {@inheritDoc}
+     * <p/>
+     * If any of the keys has no raw sort values, the raw values of all of them are discarded, so all the {@link Row}s
+     * are compared by their {@link Column}s.
      */
-    public RowComparatorSorting(RowMapper rowMapper, Sort sort) {
-        this.rowMapper = rowMapper;
-        comparatorChain = new ComparatorChain<>();
-        for (SortField sortField : sort.getSortFields()) {
-            Comparator<Columns> comparator = sortField.comparator();
-            comparatorChain.addComparator(comparator);
+    @Override
+    protected void normalize(List<Key> keys) {
+        for (Key key : keys) {
+            if (key.values == null) {
+                for (Key other : keys) {
+                    other.values = null;
+                }
+                return;
+            }
         }
     }
 
     /**
      * {@inheritDoc}
      *
-     * @param row1 A {@link Row}.
-     * @param row2 A {@link Row}.
+     * @param key1 The sort key of a {@link Row}.
+     * @param key2 The sort key of another {@link Row}.
      * @return A negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater
      * than the second according to a Lucene {@link Sort}.
      */
     @Override
-    public int compare(Row row1, Row row2) {
-        Columns columns1 = rowMapper.columns(row1);
-        Columns columns2 = rowMapper.columns(row2);
-        return comparatorChain.compare(columns1, columns2);
+    protected int compareKeys(Key key1, Key key2) {
+        if (key1.values != null && key2.values != null) {
+            for (int i = 0; i < sortFields.length; i++) {
+                int comp = compareValues(key1.values[i], key2.values[i], sortFields[i].isReverse());
+                if (comp != 0) {
+                    return comp;
+                }
+            }
+            return 0;
+        }
+        Column<?>[] columns1 = columns(key1);
+        Column<?>[] columns2 = columns(key2);
+        for (int i = 0; i < sortFields.length; i++) {
+            int comp = sortFields[i].compare(columns1[i], columns2[i]);
+            if (comp != 0) {
+                return comp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares the specified raw Lucene sort values. Missing values are sorted last whatever the sort direction is, as
+     * {@link SortField#compare(Column, Column)} does, so {@link Row}s with and without sort values can be merged.
+     *
+     * @param value1  A raw sort value, maybe {@code null}.
+     * @param value2  Another raw sort value of the same type, maybe {@code null}.
+     * @param reverse If the natural order of the values must be reversed.
+     * @return A negative integer, zero, or a positive integer as the first value is less than, equal to, or greater
+     * than the second.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object value1, Object value2, boolean reverse) {
+        if (value1 == null) {
+            return value2 == null ? 0 : 1;
+        }
+        if (value2 == null) {
+            return -1;
+        }
+        int comp = ((Comparable<Object>) value1).compareTo(value2);
+        return reverse ? -comp : comp;
+    }
+
+    /**
+     * Returns the {@link Column}s of the sorting fields of the {@link Row} of the specified key, extracting them only
+     * the first time.
+     *
+     * @param key A sort key.
+     * @return The {@link Column}s of the sorting fields.
+     */
+    private Column<?>[] columns(Key key) {
+        if (key.columns == null) {
+            Columns columns = rowService.rowMapper.columns(key.row);
+            Column<?>[] sortColumns = new Column<?>[sortFields.length];
+            for (int i = 0; i < sortFields.length; i++) {
+                sortColumns[i] = columns.getColumn(sortFields[i].getField());
+            }
+            key.columns = sortColumns;
+        }
+        return key.columns;
+    }
+
+    /**
+     * Returns the compact binary representation of the specified raw Lucene sort values, as returned in the {@link
+     * FieldDoc#fields} of a sorted search, or {@code null} if any of them is not supported. Each value is written as a
+     * type byte followed by its binary value.
+     *
+     * @param values The raw Lucene sort values.
+     * @return The binary representation of {@code values}, maybe {@code null}.
+     */
+    static ByteBuffer encode(Object[] values) {
+        int size = 0;
+        for (Object value : values) {
+            if (value == null) {
+                size += 1;
+            } else if (value instanceof Integer || value instanceof Float) {
+                size += 5;
+            } else if (value instanceof Long || value instanceof Double) {
+                size += 9;
+            } else if (value instanceof BytesRef) {
+                size += 5 + ((BytesRef) value).length;
+            } else {
+                return null;
+            }
+        }
+        ByteBuffer bb = ByteBuffer.allocate(size);
+        for (Object value : values) {
+            if (value == null) {
+                bb.put(NULL);
+            } else if (value instanceof Integer) {
+                bb.put(INT).putInt((Integer) value);
+            } else if (value instanceof Long) {
+                bb.put(LONG).putLong((Long) value);
+            } else if (value instanceof Float) {
+                bb.put(FLOAT).putFloat((Float) value);
+            } else if (value instanceof Double) {
+                bb.put(DOUBLE).putDouble((Double) value);
+            } else {
+                BytesRef bytesRef = (BytesRef) value;
+                bb.put(BYTES).putInt(bytesRef.length).put(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+            }
+        }
+        bb.flip();
+        return bb;
+    }
+
+    /**
+     * Returns the raw Lucene sort values represented by the specified binary representation generated with {@link
+     * #encode(Object[])}, or {@code null} if it is not a valid representation.
+     *
+     * @param bb A binary representation of raw Lucene sort values, maybe {@code null}.
+     * @return The represented raw Lucene sort values, maybe {@code null}.
+     */
+    static Object[] decode(ByteBuffer bb) {
+        if (bb == null || !bb.hasRemaining()) {
+            return null;
+        }
+        ByteBuffer in = bb.duplicate();
+        List<Object> values = new ArrayList<>();
+        try {
+            while (in.hasRemaining()) {
+                switch (in.get()) {
+                    case NULL:
+                        values.add(null);
+                        break;
+                    case INT:
+                        values.add(in.getInt());
+                        break;
+                    case LONG:
+                        values.add(in.getLong());
+                        break;
+                    case FLOAT:
+                        values.add(in.getFloat());
+                        break;
+                    case DOUBLE:
+                        values.add(in.getDouble());
+                        break;
+                    case BYTES:
+                        byte[] bytes = new byte[in.getInt()];
+                        in.get(bytes);
+                        values.add(new BytesRef(bytes));
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        } catch (RuntimeException e) { // Truncated or not a sort key at all
+            return null;
+        }
+        return values.toArray();
+    }
+
+    /**
+     * The sort key of a {@link Row}, composed by its raw Lucene sort values, if any, and its sorting {@link Column}s,
+     * which are lazily extracted.
+     */
+    static final class Key {
+
+        private final Row row;
+        private Object[] values;
+        private Column<?>[] columns;
+
+        private Key(Row row, Object[] values) {
+            this.row = row;
+            this.values = values;
+        }
     }
 }
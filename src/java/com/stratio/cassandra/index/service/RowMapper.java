@@ -15,10 +15,13 @@
  */
 package com.stratio.cassandra.index.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.stratio.cassandra.index.schema.Columns;
 import com.stratio.cassandra.index.schema.Schema;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.db.Cell;
 import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.DataRange;
 import org.apache.cassandra.db.DecoratedKey;
@@ -26,10 +29,16 @@ import org.apache.cassandra.db.Row;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.search.ScoreDoc;
 
 import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 
 /**
  * Class for several {@link Row} mappings between Cassandra and Lucene.
@@ -38,6 +47,9 @@ import java.nio.ByteBuffer;
  */
 public abstract class RowMapper {
 
+    /** The max number of cached token range filters. */
+    private static final int RANGE_FILTERS_CACHE_SIZE = 1024;
+
     protected final CFMetaData metadata; // The indexed table metadata
     protected final ColumnDefinition columnDefinition; // The indexed column definition
     protected final Schema schema; // The indexing schema
@@ -45,6 +57,11 @@ public abstract class RowMapper {
     protected final TokenMapper tokenMapper; // A token mapper for the indexed table
     protected final PartitionKeyMapper partitionKeyMapper; // A partition key mapper for the indexed table
     protected final RegularCellsMapper regularCellsMapper; // A regular cell mapper for the indexed table
+    protected final StoredRowMapper storedRowMapper; // A stored row mapper, null if the index is not covering
+
+    private final Set<String> mappedColumns; // The names of the regular columns stored in the documents
+    private final boolean mapsWithoutRead; // If documents can be built from written data without reading
+    private final Cache<Query, Filter> rangeFilters; // The cached token range filters
 
     /**
      * Builds a new {@link RowMapper} for the specified column family metadata, indexed column definition and {@link
@@ -53,14 +70,29 @@ public abstract class RowMapper {
      * @param metadata         The indexed column family metadata.
      * @param columnDefinition The indexed column definition.
      * @param schema           The mapping {@link Schema}.
+     * @param covering         If the whole rows must be stored in the index.
      */
-    RowMapper(CFMetaData metadata, ColumnDefinition columnDefinition, Schema schema) {
+    RowMapper(CFMetaData metadata, ColumnDefinition columnDefinition, Schema schema, boolean covering) {
         this.metadata = metadata;
         this.columnDefinition = columnDefinition;
         this.schema = schema;
         this.tokenMapper = TokenMapper.instance(metadata);
         this.partitionKeyMapper = PartitionKeyMapper.instance(metadata);
         this.regularCellsMapper = RegularCellsMapper.instance(metadata);
+        this.storedRowMapper = covering ? StoredRowMapper.instance() : null;
+
+        mappedColumns = new HashSet<>();
+        boolean mapsCollections = false;
+        for (ColumnDefinition definition : metadata.regularColumns()) {
+            String name = definition.name.toString();
+            boolean stored = covering && !definition.equals(columnDefinition); // The indexed column is never written
+            if (stored || schema.getMapper(name) != null) {
+                mappedColumns.add(name);
+                mapsCollections |= definition.type.isCollection();
+            }
+        }
+        mapsWithoutRead = metadata.isCQL3Table() && !metadata.isCounter() && !mapsCollections;
+        rangeFilters = CacheBuilder.newBuilder().maximumSize(RANGE_FILTERS_CACHE_SIZE).build();
     }
 
     /**
@@ -70,14 +102,18 @@ public abstract class RowMapper {
      * @param metadata         The indexed column family metadata.
      * @param columnDefinition The indexed column definition.
      * @param schema           The mapping {@link Schema}.
+     * @param covering         If the whole rows must be stored in the index.
      * @return A new {@link RowMapper} for the specified column family metadata, indexed column definition and {@link
      * Schema}.
      */
-    public static RowMapper build(CFMetaData metadata, ColumnDefinition columnDefinition, Schema schema) {
+    public static RowMapper build(CFMetaData metadata,
+                                  ColumnDefinition columnDefinition,
+                                  Schema schema,
+                                  boolean covering) {
         if (metadata.clusteringColumns().size() > 0) {
-            return new RowMapperWide(metadata, columnDefinition, schema);
+            return new RowMapperWide(metadata, columnDefinition, schema, covering);
         } else {
-            return new RowMapperSkinny(metadata, columnDefinition, schema);
+            return new RowMapperSkinny(metadata, columnDefinition, schema, covering);
         }
     }
 
@@ -97,6 +133,35 @@ public abstract class RowMapper {
      */
     public abstract Document document(Row row);
 
+    /**
+     * Returns {@code true} if the specified {@link ColumnFamily}, containing the written cells of a single logical CQL3
+     * row, has all the data required to build the {@link Document} of that row, {@code false} otherwise. This happens
+     * when the row is fully inserted, that is, it contains the row marker and live cells for all the mapped regular
+     * columns, or for all the regular columns if the index is covering. Rows with deletions, mapped collections or
+     * counters always require reading the stored row.
+     *
+     * @param columnFamily A {@link ColumnFamily} containing the written cells of a single logical CQL3 row.
+     * @param timestamp    The operation time stamp.
+     * @return {@code true} if the {@link Document} can be built from {@code columnFamily}, {@code false} otherwise.
+     */
+    public boolean isComplete(ColumnFamily columnFamily, long timestamp) {
+        if (!mapsWithoutRead || !columnFamily.deletionInfo().isLive()) {
+            return false;
+        }
+        Iterator<Cell> iterator = columnFamily.iterator();
+        if (!iterator.hasNext() || iterator.next().name().cql3ColumnName(metadata).bytes.hasRemaining()) {
+            return false; // No row marker
+        }
+        Set<String> missingColumns = new HashSet<>(mappedColumns);
+        for (Cell cell : columnFamily) {
+            if (!cell.isLive(timestamp)) {
+                return false;
+            }
+            missingColumns.remove(cell.name().cql3ColumnName(metadata).toString());
+        }
+        return missingColumns.isEmpty();
+    }
+
     /**
      * Returns the decorated partition key representing the specified raw partition key.
      *
@@ -127,6 +192,15 @@ public abstract class RowMapper {
         return partitionKeyMapper.term(partitionKey);
     }
 
+    /**
+     * Sets if the row identity terms must use the legacy layout of the indexes written before the binary full key
+     * terms. Only wide rows have full key terms, so it does nothing by default.
+     *
+     * @param legacyKeys If the legacy identity terms layout must be used.
+     */
+    public void setLegacyKeys(boolean legacyKeys) {
+    }
+
     /**
      * Returns the Lucene {@link Query} to get the {@link Document}s satisfying the specified {@link DataRange}.
      *
@@ -135,6 +209,34 @@ public abstract class RowMapper {
      */
     public abstract Query query(DataRange dataRange);
 
+    /**
+     * Returns the Lucene {@link Filter} to get the {@link Document}s satisfying the specified {@link DataRange}, maybe
+     * {@code null} meaning no filtering.
+     * <p/>
+     * Filters for whole token ranges, such as the vnode ranges sent by the coordinators, are cached, and each of them
+     * keeps a {@link org.apache.lucene.search.DocIdSet} per index segment, so repeated range scans don't evaluate the
+     * range again. Segment sets are dropped along with their segments. Ranges bounded by partition keys, such as
+     * those of the second and next pages of a paged query, aren't cached.
+     *
+     * @param dataRange A {@link DataRange}.
+     * @return The Lucene {@link Filter} to get the {@link Document}s satisfying the specified {@link DataRange}.
+     */
+    public Filter filter(DataRange dataRange) {
+        Query query = query(dataRange);
+        if (query == null) {
+            return null;
+        }
+        if (dataRange.startKey() instanceof DecoratedKey || dataRange.stopKey() instanceof DecoratedKey) {
+            return new QueryWrapperFilter(query);
+        }
+        Filter filter = rangeFilters.getIfPresent(query);
+        if (filter == null) {
+            filter = new CachingWrapperFilter(new QueryWrapperFilter(query));
+            rangeFilters.put(query, filter);
+        }
+        return filter;
+    }
+
     /**
      * Returns a {@link CellName} for the indexed column in the specified column family.
      *
@@ -148,7 +250,7 @@ public abstract class RowMapper {
      *
      * @return A {@link RowComparator} using the same order that is used in Cassandra.
      */
-    public abstract RowComparator naturalComparator();
+    public abstract RowComparatorNatural naturalComparator();
 
     /**
      * Returns the {@link SearchResult} defined by the specified {@link Document} and {@link ScoreDoc}.
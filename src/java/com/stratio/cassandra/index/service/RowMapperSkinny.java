@@ -43,9 +43,10 @@ public class RowMapperSkinny extends RowMapper {
      * @param metadata         The indexed column family metadata.
      * @param columnDefinition The indexed column definition.
      * @param schema           The mapping {@link Schema}.
+     * @param covering         If the whole rows must be stored in the index.
      */
-    RowMapperSkinny(CFMetaData metadata, ColumnDefinition columnDefinition, Schema schema) {
-        super(metadata, columnDefinition, schema);
+    RowMapperSkinny(CFMetaData metadata, ColumnDefinition columnDefinition, Schema schema, boolean covering) {
+        super(metadata, columnDefinition, schema, covering);
     }
 
     /**
@@ -69,6 +70,9 @@ public class RowMapperSkinny extends RowMapper {
         tokenMapper.addFields(document, partitionKey);
         partitionKeyMapper.addFields(document, partitionKey);
         schema.addFields(document, columns(row));
+        if (storedRowMapper != null) {
+            storedRowMapper.addFields(document, row.cf);
+        }
         return document;
     }
 
@@ -101,7 +105,7 @@ public class RowMapperSkinny extends RowMapper {
      * {@inheritDoc}
      */
     @Override
-    public RowComparator naturalComparator() {
+    public RowComparatorNatural naturalComparator() {
         return new RowComparatorNatural();
     }
 
@@ -111,6 +115,7 @@ public class RowMapperSkinny extends RowMapper {
     @Override
     public SearchResult searchResult(Document document, ScoreDoc scoreDoc) {
         DecoratedKey partitionKey = partitionKeyMapper.partitionKey(document);
-        return new SearchResult(partitionKey, null, scoreDoc);
+        ColumnFamily storedRow = storedRowMapper == null ? null : storedRowMapper.columnFamily(document);
+        return new SearchResult(partitionKey, null, storedRow, scoreDoc);
     }
 }
@@ -57,9 +57,10 @@ public class RowMapperWide extends RowMapper {
      * @param metadata         The indexed column family metadata.
      * @param columnDefinition The indexed column definition.
      * @param schema           The mapping {@link Schema}.
+     * @param covering         If the whole rows must be stored in the index.
      */
-    RowMapperWide(CFMetaData metadata, ColumnDefinition columnDefinition, Schema schema) {
-        super(metadata, columnDefinition, schema);
+    RowMapperWide(CFMetaData metadata, ColumnDefinition columnDefinition, Schema schema, boolean covering) {
+        super(metadata, columnDefinition, schema, covering);
         this.clusteringKeyMapper = ClusteringKeyMapper.instance(metadata);
         this.fullKeyMapper = FullKeyMapper.instance(partitionKeyMapper, clusteringKeyMapper);
     }
@@ -90,6 +91,9 @@ public class RowMapperWide extends RowMapper {
         clusteringKeyMapper.addFields(document, clusteringKey);
         fullKeyMapper.addFields(document, partitionKey, clusteringKey);
         schema.addFields(document, columns(row));
+        if (storedRowMapper != null) {
+            storedRowMapper.addFields(document, row.cf);
+        }
         return document;
     }
 
@@ -117,7 +121,7 @@ public class RowMapperWide extends RowMapper {
      * {@inheritDoc}
      */
     @Override
-    public RowComparator naturalComparator() {
+    public RowComparatorNatural naturalComparator() {
         return new RowComparatorNatural(clusteringKeyMapper);
     }
 
@@ -141,6 +145,18 @@ public class RowMapperWide extends RowMapper {
         return clusteringKeyMapper.clusteringKeys(columnFamily);
     }
 
+    /**
+     * Returns {@code true} if the specified clustering key belongs to the static part of a partition, {@code false}
+     * otherwise.
+     *
+     * @param clusteringKey A clustering key.
+     * @return {@code true} if the specified clustering key belongs to the static part of a partition, {@code false}
+     * otherwise.
+     */
+    public boolean isStatic(CellName clusteringKey) {
+        return clusteringKeyMapper.isStatic(clusteringKey);
+    }
+
     /**
      * Returns the Lucene {@link Term} to get the {@link Document}s containing the specified decorated partition key and
      * clustering key.
@@ -154,6 +170,24 @@ public class RowMapperWide extends RowMapper {
         return fullKeyMapper.term(partitionKey, clusteringKey);
     }
 
+    /**
+     * Returns the legacy Lucene {@link Term} of the {@link Document} identified by the specified decorated partition key
+     * and clustering key in the indexes written before the binary full key terms.
+     *
+     * @param partitionKey  A decorated partition key.
+     * @param clusteringKey A clustering key.
+     * @return The legacy Lucene {@link Term} of the {@link Document} identified by the specified key pair.
+     */
+    public Term legacyTerm(DecoratedKey partitionKey, CellName clusteringKey) {
+        return fullKeyMapper.legacyTerm(partitionKey, clusteringKey);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setLegacyKeys(boolean legacyKeys) {
+        fullKeyMapper.setLegacy(legacyKeys);
+    }
+
     /**
      * Returns the Lucene {@link Filter} to get the {@link Document}s satisfying the specified {@link DataRange}.
      *
@@ -262,6 +296,7 @@ public class RowMapperWide extends RowMapper {
     public SearchResult searchResult(Document document, ScoreDoc scoreDoc) {
         DecoratedKey partitionKey = partitionKeyMapper.partitionKey(document);
         CellName clusteringKey = clusteringKeyMapper.clusteringKey(document);
-        return new SearchResult(partitionKey, clusteringKey, scoreDoc);
+        ColumnFamily storedRow = storedRowMapper == null ? null : storedRowMapper.columnFamily(document);
+        return new SearchResult(partitionKey, clusteringKey, storedRow, scoreDoc);
     }
 }
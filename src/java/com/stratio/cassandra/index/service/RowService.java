@@ -15,27 +15,39 @@
  */
 package com.stratio.cassandra.index.service;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.Striped;
 import com.stratio.cassandra.index.RowIndexConfig;
+import com.stratio.cassandra.index.RowIndexMetrics;
+import com.stratio.cassandra.index.aggregation.AggregationResults;
+import com.stratio.cassandra.index.query.CompiledSearch;
 import com.stratio.cassandra.index.query.Search;
 import com.stratio.cassandra.index.schema.Column;
 import com.stratio.cassandra.index.schema.Columns;
 import com.stratio.cassandra.index.schema.Schema;
 import com.stratio.cassandra.util.Log;
-import com.stratio.cassandra.util.TaskQueue;
+import com.stratio.cassandra.util.StripedExecutor;
 import com.stratio.cassandra.util.TimeCounter;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.ColumnIdentifier;
 import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.commitlog.ReplayPosition;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.UTF8Type;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Class for mapping rows between Cassandra and Lucene.
@@ -49,15 +61,42 @@ public abstract class RowService {
     protected final CFMetaData metadata;
     protected final ColumnIdentifier indexedColumnName;
     protected final Schema schema;
-    protected final LuceneIndex luceneIndex;
+    protected final LuceneIndexShards luceneShards;
+    protected final boolean readBeforeWrite;
+    protected final boolean covering;
+    protected final RowIndexMetrics metrics;
+    protected final SearchCache searchCache;
 
-    /**
-     * The max number of rows to be read per iteration
-     */
-    private static final int MAX_PAGE_SIZE = 100000;
+    /** The max number of Lucene documents to be retrieved per search page. */
+    private static final int MAX_PAGE_SIZE = 10000;
+
+    /** The number of Lucene documents to be retrieved per page when rows are discarded by filtering. */
     private static final int FILTERING_PAGE_SIZE = 1000;
 
-    private TaskQueue indexQueue;
+    /** The Lucene commit user data keys for the covered commit log position. */
+    private static final String REPLAY_SEGMENT_KEY = "replay_position_segment";
+    private static final String REPLAY_POSITION_KEY = "replay_position_position";
+
+    /** The Lucene commit user data key for the index format version. */
+    private static final String FORMAT_VERSION_KEY = "format_version";
+
+    /** The index format version with binary full key terms. */
+    private static final int BINARY_KEYS_FORMAT_VERSION = 2;
+
+    /** The current index format version, with binary full key terms and sorting doc values. */
+    private static final int FORMAT_VERSION = 3;
+
+    /** The locks serializing the indexing of each partition, see {@link #lock(DecoratedKey)}. */
+    private static final Striped<Lock> LOCKS = Striped.lazyWeakLock(DatabaseDescriptor.getConcurrentWriters() * 1024);
+
+    private StripedExecutor indexQueue;
+
+    private final String rebuildPath; // The directory in where the rebuild chunks are built
+    private final String indexName; // The name of the index
+    private final WriteTimestamps writeTimestamps; // The stored write times, null if read before write is enabled
+    private volatile IndexRebuild rebuild; // The running rebuild, if any
+    private volatile int formatVersion = FORMAT_VERSION; // The format version of all the documents in the index
+    private volatile boolean migrating = false; // If a rebuild is writing a legacy index in the current format
 
     /**
      * Returns a new {@code RowService}.
@@ -74,24 +113,100 @@ public abstract class RowService {
         RowIndexConfig config = new RowIndexConfig(metadata, columnDefinition.getIndexOptions());
 
         this.schema = config.getSchema();
-        this.rowMapper = RowMapper.build(metadata, columnDefinition, schema);
+        this.readBeforeWrite = config.isReadBeforeWrite();
+        this.covering = config.isCovering();
+        this.rebuildPath = config.getPath() + "_rebuild";
+        this.indexName = columnDefinition.getIndexName();
+        this.writeTimestamps = readBeforeWrite ? null : new WriteTimestamps(baseCfs);
+        this.rowMapper = RowMapper.build(metadata, columnDefinition, schema, covering);
+        this.metrics = new RowIndexMetrics(metadata.ksName, metadata.cfName, columnDefinition.getIndexName(), schema);
+        this.searchCache = new SearchCache(schema, config.getSearchCacheSize(), metrics);
 
-        this.luceneIndex = new LuceneIndex(rowMapper,
-                                           config.getPath(),
-                                           config.getRefreshSeconds(),
-                                           config.getRamBufferMB(),
-                                           config.getMaxMergeMB(),
-                                           config.getMaxCachedMB(),
-                                           schema.getAnalyzer());
+        this.luceneShards = new LuceneIndexShards(rowMapper,
+                                                  metadata.ksName,
+                                                  config.getPath(),
+                                                  config.getShards(),
+                                                  config.getRefreshSeconds(),
+                                                  config.getRamBufferMB(),
+                                                  config.getMaxMergeMB(),
+                                                  config.getMaxCachedMB(),
+                                                  config.getDirectory(),
+                                                  config.isNrtCache(),
+                                                  schema.getAnalyzer(),
+                                                  config.getSearchParallelism(),
+                                                  metrics);
 
         int indexingThreads = config.getIndexingThreads();
         if (indexingThreads > 0) {
-            this.indexQueue = new TaskQueue(indexingThreads, config.getIndexingQueuesSize());
+            this.indexQueue = new StripedExecutor("RowIndexer:" + columnDefinition.getIndexName(),
+                                                  indexingThreads,
+                                                  config.getIndexingQueuesSize(),
+                                                  metrics.getFactory());
         } else {
             this.indexQueue = null;
         }
     }
 
+    /**
+     * Initializes the Lucene index using the specified {@link Sort} for trying to keep the {@link Document}s sorted. A
+     * not empty index with an old format version, or without format version at all, keeps writing and reading in that
+     * format until it is rebuilt, or keeps migrating if it was being rebuilt.
+     *
+     * @param sort The {@link Sort} to be used.
+     */
+    protected final void init(Sort sort) {
+        luceneShards.init(sort);
+        int version = FORMAT_VERSION;
+        for (Map<String, String> commitData : luceneShards.getCommitData()) {
+            String shardVersion = commitData.get(FORMAT_VERSION_KEY);
+            version = Math.min(version, shardVersion == null ? 1 : Integer.parseInt(shardVersion));
+        }
+        if (version < FORMAT_VERSION && luceneShards.getNumDocs() > 0) {
+            Log.warn("Index %s uses the legacy format version %d, it should be rebuilt", indexName, version);
+            setFormatVersion(version);
+            if (IndexRebuild.isPlanned(luceneShards.getCommitData().get(0))) {
+                startMigration();
+            }
+        }
+    }
+
+    /**
+     * Sets the format version in which the index is written and read. The identity terms are binary since version 2,
+     * and the sortable mappers write doc values since version 3.
+     *
+     * @param version An index format version.
+     */
+    private void setFormatVersion(int version) {
+        formatVersion = version;
+        rowMapper.setLegacyKeys(version < BINARY_KEYS_FORMAT_VERSION);
+        schema.setDocValues(version == FORMAT_VERSION, version == FORMAT_VERSION);
+        searchCache.invalidate();
+    }
+
+    /**
+     * Starts writing a legacy index in the current format version, keeping the legacy sorting of the not rebuilt
+     * documents. The format version is committed only when the migrating rebuild is completed.
+     */
+    final synchronized void startMigration() {
+        if (formatVersion < FORMAT_VERSION && !migrating) {
+            Log.info("Migrating index %s to format version %d", indexName, FORMAT_VERSION);
+            migrating = true;
+            rowMapper.setLegacyKeys(false);
+            schema.setDocValues(true, false);
+            searchCache.invalidate();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the index is being migrated from the legacy identity terms, so the updated rows must also
+     * be deleted by their legacy terms, {@code false} otherwise.
+     *
+     * @return {@code true} if the legacy identity terms must also be deleted, {@code false} otherwise.
+     */
+    protected final boolean migratingKeys() {
+        return migrating && formatVersion < BINARY_KEYS_FORMAT_VERSION;
+    }
+
     /**
      * Returns a new {@link RowService} for the specified {@link ColumnFamilyStore} and {@link ColumnDefinition}.
      *
@@ -126,24 +241,88 @@ public abstract class RowService {
 
     /**
      * Indexes the logical {@link Row} identified by the specified key and column family using the specified time stamp.
-     * The must be read from the {@link ColumnFamilyStore} because it could exist previously having more columns than
-     * the specified ones. The specified {@link ColumnFamily} is used for determine the cluster key. This operation is
-     * performed asynchronously.
+     * The row must be read from the {@link ColumnFamilyStore} because it could exist previously having more columns
+     * than the specified ones, unless read before write is disabled and the specified {@link ColumnFamily} contains the
+     * full row with cells newer than the stored data. The specified {@link ColumnFamily} is used for determine the
+     * cluster key. This operation is performed asynchronously, and consecutive queued updates of the same partition are
+     * indexed together.
      *
      * @param key          A partition key.
      * @param columnFamily A {@link ColumnFamily} with a single common cluster key.
      * @param timestamp    The insertion time.
      */
     public void index(final ByteBuffer key, final ColumnFamily columnFamily, final long timestamp) {
+        DecoratedKey partitionKey = rowMapper.partitionKey(key);
+        IndexRebuild currentRebuild = rebuild;
+        if (currentRebuild != null) {
+            currentRebuild.touch(partitionKey);
+        }
         if (indexQueue == null) {
-            indexInner(key, columnFamily, timestamp);
+            Lock lock = lock(partitionKey);
+            try {
+                indexInner(key, columnFamily, timestamp);
+            } finally {
+                lock.unlock();
+            }
         } else {
-            indexQueue.submitAsynchronous(key, new Runnable() {
-                @Override
-                public void run() {
-                    indexInner(key, columnFamily, timestamp);
-                }
-            });
+            indexQueue.submit(partitionKey, new IndexingTask(partitionKey, key, columnFamily, timestamp));
+        }
+    }
+
+    /**
+     * An asynchronous {@link #indexInner(ByteBuffer, ColumnFamily, long)} call. It absorbs the later queued updates of
+     * the same partition by merging their {@link ColumnFamily}s, so the rows written by all of them are read and
+     * indexed only once. Deletions are never merged.
+     */
+    private final class IndexingTask implements StripedExecutor.Mergeable {
+
+        private final DecoratedKey partitionKey;
+        private final ByteBuffer key;
+        private ColumnFamily columnFamily;
+        private long timestamp;
+        private boolean copied = false;
+
+        private IndexingTask(DecoratedKey partitionKey, ByteBuffer key, ColumnFamily columnFamily, long timestamp) {
+            this.partitionKey = partitionKey;
+            this.key = key;
+            this.columnFamily = columnFamily;
+            this.timestamp = timestamp;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            Lock lock = lock(partitionKey);
+            try {
+                indexInner(key, columnFamily, timestamp);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean merge(Runnable task) {
+            if (!(task instanceof IndexingTask)) {
+                return false;
+            }
+            IndexingTask other = (IndexingTask) task;
+            if (!isUpsert(columnFamily) || !isUpsert(other.columnFamily)) {
+                return false;
+            }
+            if (!copied) { // Don't modify the written column family
+                ColumnFamily copy = ArrayBackedSortedColumns.factory.create(metadata);
+                copy.addAll(columnFamily);
+                columnFamily = copy;
+                copied = true;
+            }
+            columnFamily.addAll(other.columnFamily);
+            timestamp = Math.max(timestamp, other.timestamp);
+            return true;
+        }
+
+        private boolean isUpsert(ColumnFamily columnFamily) {
+            return columnFamily.iterator().hasNext() && columnFamily.deletionInfo().isLive();
         }
     }
 
@@ -158,23 +337,68 @@ public abstract class RowService {
     protected abstract void indexInner(ByteBuffer key, ColumnFamily columnFamily, long timestamp);
 
     /**
-     * Deletes the partition identified by the specified partition key. This operation is performed asynchronously.
+     * Records the write time of the specified written {@link ColumnFamily}, returning if the rows fully contained in it
+     * can be indexed without reading them. This happens when read before write is disabled and all the written cells
+     * are newer than any data previously stored in the partition, so a write with older timestamps, such as those
+     * coming from hints, repairs or client supplied timestamps, never replaces the {@link Document} of a newer row. It
+     * must be called for all the writes in the order they are indexed, deletions included.
+     *
+     * @param partitionKey The written partition key.
+     * @param columnFamily The written {@link ColumnFamily}.
+     * @return {@code true} if the rows fully contained in {@code columnFamily} can be indexed without reading them,
+     * {@code false} otherwise.
+     */
+    protected final boolean isNewest(DecoratedKey partitionKey, ColumnFamily columnFamily) {
+        return writeTimestamps != null && writeTimestamps.update(partitionKey, columnFamily);
+    }
+
+    /**
+     * Deletes the partition identified by the specified partition key, which is being removed by cleanup. The whole
+     * shard of the partition is dropped if it is out of the local ranges. This operation is performed asynchronously.
      *
      * @param partitionKey The partition key identifying the partition to be deleted.
      */
     public void delete(final DecoratedKey partitionKey) {
+        IndexRebuild currentRebuild = rebuild;
+        if (currentRebuild != null) {
+            currentRebuild.touch(partitionKey);
+        }
         if (indexQueue == null) {
-            deleteInner(partitionKey);
+            Lock lock = lock(partitionKey);
+            try {
+                deleteInner(partitionKey);
+            } finally {
+                lock.unlock();
+            }
         } else {
-            indexQueue.submitAsynchronous(partitionKey, new Runnable() {
+            indexQueue.submit(partitionKey, new Runnable() {
                 @Override
                 public void run() {
-                    deleteInner(partitionKey);
+                    Lock lock = lock(partitionKey);
+                    try {
+                        deleteInner(partitionKey);
+                    } finally {
+                        lock.unlock();
+                    }
                 }
             });
         }
     }
 
+    /**
+     * Acquires and returns the lock of the specified partition. It is held while indexing the partition, so the
+     * partitions indexed again from the base table by a rebuild can't be concurrently indexed by a write. The returned
+     * {@link Lock} must be unlocked by the caller.
+     *
+     * @param partitionKey A partition key.
+     * @return The acquired {@link Lock} of {@code partitionKey}.
+     */
+    final Lock lock(DecoratedKey partitionKey) {
+        Lock lock = LOCKS.get(partitionKey);
+        lock.lock();
+        return lock;
+    }
+
     /**
      * Deletes the partition identified by the specified partition key.
      *
@@ -182,117 +406,419 @@ public abstract class RowService {
      */
     protected abstract void deleteInner(DecoratedKey partitionKey);
 
+    /**
+     * Returns the {@link Document}s representing the CQL3 rows contained in the specified {@link ColumnFamily}, which
+     * must contain only live cells of whole CQL3 rows.
+     *
+     * @param partitionKey The partition key.
+     * @param columnFamily A {@link ColumnFamily} containing whole CQL3 rows.
+     * @return The {@link Document}s representing the CQL3 rows contained in {@code columnFamily}.
+     */
+    protected abstract List<Document> documents(DecoratedKey partitionKey, ColumnFamily columnFamily);
+
+    /**
+     * Returns a new {@link IndexRebuild} for rebuilding the managed index from the base table.
+     *
+     * @return A new {@link IndexRebuild} for rebuilding the managed index.
+     */
+    public final IndexRebuild rebuild() {
+        return new IndexRebuild(this, rebuildPath, indexName);
+    }
+
+    /**
+     * Starts tracking the partitions written during the specified {@link IndexRebuild}.
+     *
+     * @param rebuild The starting {@link IndexRebuild}.
+     */
+    final synchronized void startRebuild(IndexRebuild rebuild) {
+        if (this.rebuild != null) {
+            throw new IllegalStateException("Index " + indexName + " is already being rebuilt");
+        }
+        this.rebuild = rebuild;
+    }
+
+    /**
+     * Stops tracking the partitions written during the specified {@link IndexRebuild}. If it has been completed, the
+     * specified commit data clearing its checkpoint is committed, together with the current format version if the
+     * index was being migrated, so all the documents are known to be written in that format.
+     *
+     * @param rebuild    The finished {@link IndexRebuild}.
+     * @param commitData The commit data clearing the checkpoint of the completed rebuild, {@code null} if it has failed
+     *                   or has been stopped.
+     */
+    final synchronized void finishRebuild(IndexRebuild rebuild, Map<String, String> commitData) {
+        if (this.rebuild == rebuild) {
+            this.rebuild = null;
+        }
+        if (commitData != null) {
+            if (migrating) {
+                migrating = false;
+                setFormatVersion(FORMAT_VERSION);
+                Log.info("Migrated index %s to format version %d", indexName, FORMAT_VERSION);
+            }
+            commitData.put(FORMAT_VERSION_KEY, Integer.toString(formatVersion));
+            luceneShards.commit(commitData);
+        }
+    }
+
     /**
      * Deletes all the {@link Document}s.
      */
     public final void truncate() {
-        luceneIndex.truncate();
+        luceneShards.truncate();
     }
 
     /**
      * Closes and removes all the index files.
      */
     public final void delete() {
-        luceneIndex.delete();
+        if (indexQueue != null) {
+            indexQueue.shutdown();
+        }
+        luceneShards.delete();
+        searchCache.invalidate();
+        metrics.release();
         schema.close();
     }
 
     /**
-     * Commits the pending changes. This operation is performed asynchronously.
+     * Commits the pending changes. It waits for the already queued indexing tasks, but it doesn't block the indexing of
+     * new rows.
      */
     public final void commit() {
-        if (indexQueue == null) {
-            luceneIndex.commit();
-        } else {
-            indexQueue.submitSynchronous(new Runnable() {
-                @Override
-                public void run() {
-                    luceneIndex.commit();
-                }
-            });
+        commit(null);
+    }
+
+    /**
+     * Commits the pending changes, recording the specified commit log position as covered by the commit. It waits for
+     * the already queued indexing tasks, but it doesn't block the indexing of new rows.
+     *
+     * @param replayPosition The commit log position covered by the commit, maybe {@code null} meaning no position.
+     */
+    public final void commit(ReplayPosition replayPosition) {
+        Map<String, String> commitData = new HashMap<>(3);
+        if (replayPosition != null) {
+            commitData.put(REPLAY_SEGMENT_KEY, Long.toString(replayPosition.segment));
+            commitData.put(REPLAY_POSITION_KEY, Integer.toString(replayPosition.position));
+        }
+        if (indexQueue != null) {
+            indexQueue.await();
+        }
+        synchronized (this) { // Don't commit a format version older than the one committed by a finished rebuild
+            commitData.put(FORMAT_VERSION_KEY, Integer.toString(formatVersion));
+            luceneShards.commit(commitData);
         }
     }
 
+    /**
+     * Returns the commit log position covered by the last Lucene commit of all the shards, or {@code null} if it is
+     * unknown.
+     *
+     * @return The commit log position covered by the last Lucene commit, or {@code null} if it is unknown.
+     */
+    public final ReplayPosition getReplayPosition() {
+        ReplayPosition replayPosition = null;
+        for (Map<String, String> commitData : luceneShards.getCommitData()) {
+            String segment = commitData.get(REPLAY_SEGMENT_KEY);
+            String position = commitData.get(REPLAY_POSITION_KEY);
+            if (segment == null || position == null) {
+                return null;
+            }
+            ReplayPosition shardReplayPosition = new ReplayPosition(Long.parseLong(segment),
+                                                                    Integer.parseInt(position));
+            if (replayPosition == null || shardReplayPosition.compareTo(replayPosition) < 0) {
+                replayPosition = shardReplayPosition;
+            }
+        }
+        return replayPosition;
+    }
+
+    /**
+     * Returns the {@link CompiledSearch} for the specified serialized JSON search expression. Searches are cached, so
+     * repeated expressions are parsed and translated to Lucene only once.
+     *
+     * @param expression A UTF-8 serialized JSON search expression.
+     * @return The {@link CompiledSearch} for {@code expression}.
+     */
+    public final CompiledSearch compile(ByteBuffer expression) {
+        return searchCache.get(expression);
+    }
+
     /**
      * Returns the stored and indexed {@link Row}s satisfying the specified restrictions.
      *
-     * @param search      The {@link Search} to be performed.
+     * @param search      The {@link CompiledSearch} to be performed.
      * @param expressions A list of filtering {@link IndexExpression}s to be satisfied.
      * @param dataRange   A {@link DataRange} to be satisfied.
      * @param limit       The max number of {@link Row}s to be returned.
      * @param timestamp   The operation time stamp.
      * @return The {@link Row}s satisfying the specified restrictions.
      */
-    public final List<Row> search(Search search,
+    public final List<Row> search(CompiledSearch search,
                                   List<IndexExpression> expressions,
                                   DataRange dataRange,
                                   final int limit,
                                   long timestamp) {
         Log.debug("Searching with search %s ", search);
+        if (search.getSearch().usesAggregation()) {
+            return aggregate(search, expressions, dataRange, timestamp);
+        }
+        TimeCounter searchTime = TimeCounter.build().start();
 
-        // Setup stats
-        TimeCounter searchTime = new TimeCounter();
-        TimeCounter luceneTime = new TimeCounter();
-        TimeCounter collectTime = new TimeCounter();
-        TimeCounter sortTime = new TimeCounter();
-        int numDocs = 0;
-        int numPages = 0;
-
-        searchTime.start();
-
-        // Setup search arguments
-        Query rangeQuery = rowMapper.query(dataRange);
-        Query query = search.query(schema, rangeQuery);
-        Sort sort = search.sort(schema);
-        boolean usesRelevance = search.usesRelevance();
-
-        // Setup search pagination
-        List<Row> rows = new LinkedList<>(); // The row list to be returned
-        SearchResult lastDoc = null; // The last search result
-
-        // Paginate search collecting documents
-        List<SearchResult> searchResults;
-        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
-        boolean maybeMore;
-        do {
-            // Search rows identifiers in Lucene
-            luceneTime.start();
-            searchResults = luceneIndex.search(query, sort, lastDoc, pageSize, fieldsToLoad(), usesRelevance);
-            numDocs += searchResults.size();
-            lastDoc = searchResults.isEmpty() ? null : searchResults.get(searchResults.size() - 1);
-            luceneTime.stop();
-
-            // Collect rows from Cassandra
-            collectTime.start();
-            for (Row row : rows(searchResults, timestamp, usesRelevance)) {
-                if (row != null && accepted(row, expressions)) {
-                    rows.add(row);
-                }
-            }
-            collectTime.stop();
-
-            // Setup next iteration
-            maybeMore = searchResults.size() == pageSize;
-            pageSize = Math.min(Math.max(FILTERING_PAGE_SIZE, rows.size() - limit), MAX_PAGE_SIZE);
-            numPages++;
-
-            // Iterate while there are still documents to read and we don't have enough rows
-        } while (maybeMore && rows.size() < limit);
+        // Collect rows from the lazy iterator until the limit is reached
+        SearchIterator iterator = iterator(search, expressions, dataRange, limit, timestamp);
+        List<Row> rows = new ArrayList<>(Math.min(limit, FILTERING_PAGE_SIZE));
+        while (rows.size() < limit && iterator.hasNext()) {
+            rows.add(iterator.next());
+        }
 
-        sortTime.start();
-        Collections.sort(rows, comparator());
+        // Rows are already in the index order (token, clustering key), unless relevance or sorting have been used
+        TimeCounter sortTime = TimeCounter.build().start();
+        if (search.getSearch().usesRelevanceOrSorting()) {
+            Collections.sort(rows, comparator());
+        }
         sortTime.stop();
 
         searchTime.stop();
 
-        Log.debug("Lucene time: %s", luceneTime);
-        Log.debug("Cassandra time: %s", collectTime);
+        Log.debug("Lucene time: %s", iterator.luceneTime);
+        Log.debug("Cassandra time: %s", iterator.collectTime);
         Log.debug("Sort time: %s", sortTime);
-        Log.debug("Collected %d docs and %d rows in %d pages in %s", numDocs, rows.size(), numPages, searchTime);
+        Log.debug("Collected %d docs and %d rows in %d pages in %s",
+                  iterator.numDocs,
+                  rows.size(),
+                  iterator.numPages,
+                  searchTime);
 
         return rows;
     }
 
+    /**
+     * Returns a lazy {@link Iterator} over the stored and indexed {@link Row}s satisfying the specified restrictions.
+     * Lucene documents and Cassandra rows are retrieved in bounded batches as the iterator is consumed, so the memory
+     * footprint is independent of the number of matching documents. If the search doesn't use relevance nor sorting
+     * then the rows are returned in the index order, which is Cassandra's natural order. The iteration is aborted with a
+     * {@link SearchTimeoutException} if it is not finished within the range request timeout, after which the
+     * coordinator is no longer waiting for the rows.
+     *
+     * @param search      The {@link CompiledSearch} to be performed.
+     * @param expressions A list of filtering {@link IndexExpression}s to be satisfied.
+     * @param dataRange   A {@link DataRange} to be satisfied.
+     * @param limit       The max number of {@link Row}s to be returned.
+     * @param timestamp   The operation time stamp.
+     * @return A lazy {@link Iterator} over the {@link Row}s satisfying the specified restrictions.
+     */
+    public final SearchIterator iterator(CompiledSearch search,
+                                         List<IndexExpression> expressions,
+                                         DataRange dataRange,
+                                         int limit,
+                                         long timestamp) {
+        Query query = query(search, dataRange);
+        Sort sort = search.getSort();
+        boolean usesRelevance = search.getSearch().usesRelevance();
+        return new SearchIterator(dataRange, query, sort, usesRelevance, expressions, limit, timestamp);
+    }
+
+    /**
+     * Returns the Lucene {@link Query} of the specified {@link CompiledSearch} restricted to the specified {@link
+     * DataRange}.
+     *
+     * @param search    A {@link CompiledSearch}.
+     * @param dataRange A {@link DataRange}.
+     * @return The Lucene {@link Query} of {@code search} restricted to {@code dataRange}.
+     */
+    private Query query(CompiledSearch search, DataRange dataRange) {
+        Filter rangeFilter = rowMapper.filter(dataRange);
+        Query query = search.query(null);
+        if (rangeFilter != null) {
+            query = new FilteredQuery(query, rangeFilter);
+        }
+        return query;
+    }
+
+    /**
+     * Returns the partial aggregation of the indexed documents satisfying the specified aggregation search. The
+     * aggregation is computed from the index only, so filtering {@link IndexExpression}s are not allowed. The
+     * aggregation is tagged with the queried token range, so the coordinator can take only one of the partial
+     * aggregations returned by the replicas of the range. It is returned in the search column of the first matching
+     * {@link Row} in index order, so there are no rows if there are no matches.
+     *
+     * @param search      The {@link CompiledSearch} to be performed.
+     * @param expressions A list of filtering {@link IndexExpression}s, which must be empty.
+     * @param dataRange   A {@link DataRange} to be satisfied.
+     * @param timestamp   The operation time stamp.
+     * @return The {@link Row} decorated with the partial aggregation, if any.
+     */
+    private List<Row> aggregate(CompiledSearch search,
+                                List<IndexExpression> expressions,
+                                DataRange dataRange,
+                                long timestamp) {
+        if (!expressions.isEmpty()) {
+            throw new IllegalArgumentException("Aggregation searches can't be combined with filtering expressions");
+        }
+        TimeCounter time = TimeCounter.build().start();
+        Query query = query(search, dataRange);
+        long deadline = System.currentTimeMillis() + DatabaseDescriptor.getRangeRpcTimeout();
+        AggregationResults results;
+        try {
+            results = luceneShards.aggregate(dataRange, query, search.getAggregations(), schema, deadline)
+                                  .withRange(dataRange.keyRange().toString());
+        } catch (SearchTimeoutException e) {
+            Log.warn("Aborting aggregation: %s", e.getMessage());
+            metrics.abortedSearches.mark();
+            throw e;
+        }
+        List<Row> rows = Collections.emptyList();
+        if (results.getCount() > 0) {
+            SearchIterator iterator = new SearchIterator(dataRange, query, null, false, expressions, 1, timestamp);
+            if (iterator.hasNext()) {
+                ByteBuffer json = UTF8Type.instance.decompose(results.toJson());
+                rows = Collections.singletonList(addSearchColumn(iterator.next(), timestamp, json));
+            }
+        }
+        time.stop();
+        Log.debug("Aggregated %d docs in %s", results.getCount(), time);
+        return rows;
+    }
+
+    /**
+     * {@link Iterator} over the {@link Row}s satisfying a search, pulling Lucene documents and Cassandra rows in bounded
+     * batches. The iteration stops when there are no more matching documents or when {@code limit} rows have been
+     * returned.
+     */
+    public final class SearchIterator extends AbstractIterator<Row> {
+
+        private final DataRange dataRange;
+        private final Query query;
+        private final Sort sort;
+        private final boolean usesRelevance;
+        private final List<IndexExpression> expressions;
+        private final int limit;
+        private final long timestamp;
+        private final long deadline; // The time after which the coordinator is no longer waiting
+
+        private final TimeCounter luceneTime = TimeCounter.build();
+        private final TimeCounter collectTime = TimeCounter.build();
+        private int numDocs = 0;
+        private int numPages = 0;
+        private int numRows = 0;
+
+        private List<SearchResult> page = Collections.emptyList(); // The current Lucene page
+        private int pageOffset = 0; // The position of the next unread search result in the current page
+        private SearchResult lastDoc = null; // The last search result
+        private boolean maybeMore = true; // If there could be more Lucene documents
+        private Iterator<Row> rows = Collections.emptyIterator(); // The current batch of rows
+
+        private SearchIterator(DataRange dataRange,
+                               Query query,
+                               Sort sort,
+                               boolean usesRelevance,
+                               List<IndexExpression> expressions,
+                               int limit,
+                               long timestamp) {
+            this.dataRange = dataRange;
+            this.query = query;
+            this.sort = sort;
+            this.usesRelevance = usesRelevance;
+            this.expressions = expressions;
+            this.limit = limit;
+            this.timestamp = timestamp;
+            this.deadline = System.currentTimeMillis() + DatabaseDescriptor.getRangeRpcTimeout();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Row computeNext() {
+            try {
+                return computeNextRow();
+            } catch (SearchTimeoutException e) {
+                Log.warn("Aborting search after %d docs and %d rows in %d pages: %s",
+                         numDocs,
+                         numRows,
+                         numPages,
+                         e.getMessage());
+                metrics.abortedSearches.mark();
+                throw e;
+            }
+        }
+
+        private Row computeNextRow() {
+            while (numRows < limit) {
+                if (rows.hasNext()) {
+                    numRows++;
+                    return rows.next();
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new SearchTimeoutException(query);
+                }
+                if (pageOffset == page.size()) {
+                    if (!maybeMore) {
+                        break;
+                    }
+                    fetchPage();
+                    if (page.isEmpty()) {
+                        break;
+                    }
+                }
+                fetchRows();
+            }
+            return endOfData();
+        }
+
+        /**
+         * Retrieves the next page of search results from Lucene. The first page is sized to satisfy the limit, and the
+         * next ones are sized to satisfy the rows still pending, which are only needed if some rows have been discarded.
+         */
+        private void fetchPage() {
+            int pending = limit - numRows;
+            int pageSize = numPages == 0
+                           ? Math.min(pending, MAX_PAGE_SIZE)
+                           : Math.min(Math.max(FILTERING_PAGE_SIZE, pending), MAX_PAGE_SIZE);
+            luceneTime.start();
+            try {
+                page = luceneShards.search(dataRange,
+                                           query,
+                                           sort,
+                                           lastDoc,
+                                           pageSize,
+                                           fieldsToLoad(),
+                                           usesRelevance,
+                                           deadline);
+            } finally {
+                luceneTime.stop();
+            }
+            pageOffset = 0;
+            lastDoc = page.isEmpty() ? null : page.get(page.size() - 1);
+            maybeMore = page.size() == pageSize;
+            numDocs += page.size();
+            numPages++;
+        }
+
+        /**
+         * Retrieves from Cassandra the rows for the next batch of search results in the current page, discarding those
+         * not satisfying the filtering expressions. No more rows than the pending ones are read.
+         */
+        private void fetchRows() {
+            int pending = limit - numRows;
+            int batchSize = Math.min(Math.min(pending, FILTERING_PAGE_SIZE), page.size() - pageOffset);
+            List<SearchResult> searchResults = page.subList(pageOffset, pageOffset + batchSize);
+            pageOffset += batchSize;
+            collectTime.start();
+            List<Row> batch = new ArrayList<>(batchSize);
+            boolean decorate = usesRelevance || sort != null;
+            List<Row> batchRows = covering
+                                  ? storedRows(searchResults, timestamp, decorate)
+                                  : rows(searchResults, timestamp, decorate);
+            for (Row row : batchRows) {
+                if (row != null && accepted(row, expressions)) {
+                    batch.add(row);
+                }
+            }
+            collectTime.stop();
+            rows = batch.iterator();
+        }
+    }
+
     /**
      * Returns {@code true} if the specified {@link Row} satisfies the all the specified {@link IndexExpression}s,
      * {@code false} otherwise.
@@ -364,10 +890,46 @@ public abstract class RowService {
      *
      * @param searchResults The {@link SearchResult}s
      * @param timestamp     The time stamp to ignore deleted columns.
-     * @param usesRelevance If the search uses relevance.
+     * @param decorate      If the rows must be decorated with the search column.
      * @return The {@link Row} identified by the specified {@link Document}s
      */
-    protected abstract List<Row> rows(List<SearchResult> searchResults, long timestamp, boolean usesRelevance);
+    protected abstract List<Row> rows(List<SearchResult> searchResults, long timestamp, boolean decorate);
+
+    /**
+     * Returns the {@link Row}s stored in the specified {@link SearchResult}s by a covering index, using the specified
+     * time stamp to ignore deleted columns. There is no IO involved, but the {@link Row}s are only as recent as the
+     * last index refresh. The documents indexed without stored row, such as those indexed before the covering option
+     * was enabled, are read from the storage engine.
+     *
+     * @param searchResults The {@link SearchResult}s
+     * @param timestamp     The time stamp to ignore deleted columns.
+     * @param decorate      If the rows must be decorated with the search column.
+     * @return The {@link Row}s stored in the specified {@link SearchResult}s.
+     */
+    private List<Row> storedRows(List<SearchResult> searchResults, long timestamp, boolean decorate) {
+        List<Row> rows = new ArrayList<>(searchResults.size());
+        for (SearchResult searchResult : searchResults) {
+            ColumnFamily storedRow = searchResult.getStoredRow();
+            if (storedRow == null) {
+                rows.addAll(rows(Collections.singletonList(searchResult), timestamp, decorate));
+                continue;
+            }
+
+            ColumnFamily cleanColumnFamily = cleanExpired(storedRow, timestamp);
+
+            // Skip rows fully expired since they were indexed
+            if (!cleanColumnFamily.hasColumns()) {
+                continue;
+            }
+
+            Row row = new Row(searchResult.getPartitionKey(), cleanColumnFamily);
+            if (decorate) {
+                row = addSearchColumn(row, timestamp, searchResult);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
 
     /**
      * Returns a {@link ColumnFamily} composed by the non expired {@link Cell}s of the specified  {@link ColumnFamily}.
@@ -387,23 +949,38 @@ public abstract class RowService {
     }
 
     /**
-     * Adds to the specified {@link Row} the specified Lucene score column.
+     * Adds to the specified {@link Row} the search column of the specified {@link SearchResult}, which is the binary
+     * encoded raw sort values for sorted searches and the text representation of the Lucene score for relevance
+     * searches, the format clients have always seen. The coordinator merges the partial results by this column. The {@link Row} is decorated in place, so its {@link ColumnFamily}
+     * must not be shared.
+     *
+     * @param row          A {@link Row}.
+     * @param timestamp    The search column timestamp.
+     * @param searchResult The {@link SearchResult} of the {@link Row}.
+     * @return The {@link Row} with the search column.
+     */
+    protected Row addSearchColumn(Row row, long timestamp, SearchResult searchResult) {
+        ScoreDoc scoreDoc = searchResult.getScoreDoc();
+        ByteBuffer value = scoreDoc instanceof FieldDoc
+                           ? RowComparatorSorting.encode(((FieldDoc) scoreDoc).fields)
+                           : UTF8Type.instance.decompose(Float.toString(scoreDoc.score));
+        return value == null ? row : addSearchColumn(row, timestamp, value);
+    }
+
+    /**
+     * Adds to the specified {@link Row} a search column with the specified value. The {@link Row} is decorated in
+     * place, so its {@link ColumnFamily} must not be shared.
      *
      * @param row       A {@link Row}.
-     * @param timestamp The score column timestamp.
-     * @param score     The score column value.
-     * @return The {@link Row} with the score.
+     * @param timestamp The search column timestamp.
+     * @param value     The search column value.
+     * @return The {@link Row} with the search column.
      */
-    protected Row addScoreColumn(Row row, long timestamp, Float score) {
+    private Row addSearchColumn(Row row, long timestamp, ByteBuffer value) {
         ColumnFamily cf = row.cf;
         CellName cellName = rowMapper.makeCellName(cf);
-        ByteBuffer cellValue = UTF8Type.instance.decompose(score.toString());
-
-        ColumnFamily dcf = ArrayBackedSortedColumns.factory.create(baseCfs.metadata);
-        dcf.addColumn(cellName, cellValue, timestamp);
-        dcf.addAll(row.cf);
-
-        return new Row(row.key, dcf);
+        cf.addColumn(cellName, value, timestamp);
+        return row;
     }
 
     /**
@@ -415,11 +992,11 @@ public abstract class RowService {
      * @return The {@link RowComparator} to be used for ordering the {@link Row}s obtained from the specified {@link
      * Search}.
      */
-    public RowComparator comparator(Search search) {
+    public RowComparatorKeyed<?> comparator(Search search) {
         if (search != null) {
             if (search.usesSorting()) // Sort with search itself
             {
-                return new RowComparatorSorting(rowMapper, search.getSort());
+                return new RowComparatorSorting(this, search.getSort());
             } else if (search.usesRelevance()) // Sort with row's score
             {
                 return new RowComparatorScoring(this);
@@ -428,6 +1005,104 @@ public abstract class RowService {
         return rowMapper.naturalComparator();
     }
 
+    /**
+     * Combines the partial results obtained from running the specified {@link Search} against several indexes,
+     * returning the first {@code limit} distinct {@link Row}s in the {@link Search} order. The sort key of each
+     * {@link Row} is extracted only once, and only {@code limit} {@link Row}s are retained during the merge. The
+     * returned {@link Row}s are sent to the client, so the binary sort values used by the merge are removed from them.
+     *
+     * @param search A {@link Search}.
+     * @param rows   The partial results to be combined.
+     * @param limit  The max number of {@link Row}s to be returned.
+     * @return The first {@code limit} {@link Row}s in the {@link Search} order.
+     */
+    public List<Row> combine(Search search, List<Row> rows, int limit) {
+        if (search.usesAggregation()) {
+            return combineAggregations(search, rows);
+        }
+        List<Row> result = comparator(search).top(rows, limit, comparator());
+        if (search.usesSorting()) {
+            for (int i = 0; i < result.size(); i++) {
+                result.set(i, withSearchColumn(result.get(i), null));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Combines the partial aggregations obtained from running the specified aggregation {@link Search} against several
+     * indexes, returning a single {@link Row} containing the merged aggregation in its search column. The replicas of
+     * the same token range return their own partial aggregations, maybe in different {@link Row}s, so only one of them
+     * is merged for each range. The returned {@link Row} is the first one in Cassandra's natural order.
+     *
+     * @param search An aggregation {@link Search}.
+     * @param rows   The partial aggregations to be combined.
+     * @return A single {@link Row} containing the merged aggregation, or no rows if there are no partial aggregations.
+     */
+    private List<Row> combineAggregations(Search search, List<Row> rows) {
+        Map<String, AggregationResults> partials = new HashMap<>(); // The chosen partial aggregation of each range
+        Row first = null;
+        for (Row row : rows) {
+            ByteBuffer json = searchColumn(row);
+            if (json != null) {
+                AggregationResults partial = AggregationResults.fromJson(UTF8Type.instance.compose(json));
+                AggregationResults chosen = partials.get(partial.getRange());
+                if (chosen == null || compareReplicas(partial, chosen) > 0) {
+                    partials.put(partial.getRange(), partial);
+                }
+                if (first == null || comparator().compare(row, first) < 0) {
+                    first = row;
+                }
+            }
+        }
+        if (partials.isEmpty()) {
+            return rows;
+        }
+        AggregationResults results = null;
+        for (AggregationResults partial : partials.values()) {
+            results = results == null ? partial : results.merge(partial);
+        }
+        String json = results.finish(search.getAggregations()).toJson();
+        return Collections.singletonList(withSearchColumn(first, UTF8Type.instance.decompose(json)));
+    }
+
+    /**
+     * Compares the partial aggregations returned by two replicas of the same token range, deterministically choosing the
+     * one aggregating more documents, because the replicas differ only by their not yet indexed writes.
+     *
+     * @param partial1 A partial aggregation.
+     * @param partial2 Another partial aggregation of the same token range.
+     * @return A positive number if {@code partial1} must be chosen, a negative one if {@code partial2} must be chosen.
+     */
+    private static int compareReplicas(AggregationResults partial1, AggregationResults partial2) {
+        int comparison = Long.compare(partial1.getCount(), partial2.getCount());
+        return comparison == 0 ? partial1.toJson().compareTo(partial2.toJson()) : comparison;
+    }
+
+    /**
+     * Returns a copy of the specified decorated {@link Row} with the specified search column value, keeping the search
+     * column time stamp. The search column is removed if the value is {@code null}.
+     *
+     * @param row   A {@link Row} decorated with the search column.
+     * @param value The new search column value, maybe {@code null}.
+     * @return A copy of {@code row} with {@code value} in its search column.
+     */
+    private Row withSearchColumn(Row row, ByteBuffer value) {
+        CellName cellName = rowMapper.makeCellName(row.cf);
+        Cell searchCell = row.cf.getColumn(cellName);
+        if (searchCell == null) {
+            return row;
+        }
+        ColumnFamily cf = row.cf.cloneMeShallow();
+        for (Cell cell : row.cf) {
+            if (!cell.name().equals(cellName)) {
+                cf.addColumn(cell);
+            }
+        }
+        Row copy = new Row(row.key, cf);
+        return value == null ? copy : addSearchColumn(copy, searchCell.timestamp(), value);
+    }
+
     /**
      * Returns the default {@link Row} comparator. This comparator is based on Cassandra's natural order.
      *
@@ -438,24 +1113,43 @@ public abstract class RowService {
     }
 
     /**
-     * Returns the score of the specified {@link Row}.
+     * Returns the score of the specified {@link Row}, or the lowest possible score if the {@link Row} is not decorated
+     * with a valid one.
      *
      * @param row A {@link Row}.
      * @return The score of the specified {@link Row}.
      */
-    protected Float score(Row row) {
+    protected float score(Row row) {
+        ByteBuffer value = searchColumn(row);
+        if (value == null) {
+            return Float.NEGATIVE_INFINITY;
+        }
+        try {
+            return Float.parseFloat(UTF8Type.instance.compose(value));
+        } catch (RuntimeException e) { // Not a valid UTF-8 encoded score
+            return Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Returns the value of the search column of the specified {@link Row}, or {@code null} if it has not been
+     * decorated with it.
+     *
+     * @param row A {@link Row}.
+     * @return The search column value of {@code row}, maybe {@code null}.
+     */
+    protected ByteBuffer searchColumn(Row row) {
         ColumnFamily cf = row.cf;
         CellName cellName = rowMapper.makeCellName(cf);
         Cell cell = cf.getColumn(cellName);
-        String value = UTF8Type.instance.compose(cell.value());
-        return Float.parseFloat(value);
+        return cell == null ? null : cell.value();
     }
 
     /**
      * Optimizes the managed Lucene index. It can be a very heavy operation.
      */
     public void optimize() {
-        luceneIndex.optimize();
+        luceneShards.optimize();
     }
 
     /**
@@ -464,7 +1158,7 @@ public abstract class RowService {
      * @return The total number of {@link Document}s in the index.
      */
     public long getIndexSize() {
-        return luceneIndex.getNumDocs();
+        return luceneShards.getNumDocs();
     }
 
 }
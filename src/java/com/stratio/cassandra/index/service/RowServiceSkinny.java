@@ -26,6 +26,7 @@ import org.apache.lucene.index.Term;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -40,9 +41,14 @@ public class RowServiceSkinny extends RowService {
     /** The names of the Lucene fields to be loaded. */
     private static final Set<String> FIELDS_TO_LOAD;
 
+    /** The names of the Lucene fields to be loaded by covering indexes. */
+    private static final Set<String> COVERING_FIELDS_TO_LOAD;
+
     static {
         FIELDS_TO_LOAD = new HashSet<>();
         FIELDS_TO_LOAD.add(PartitionKeyMapper.FIELD_NAME);
+        COVERING_FIELDS_TO_LOAD = new HashSet<>(FIELDS_TO_LOAD);
+        COVERING_FIELDS_TO_LOAD.add(StoredRowMapper.FIELD_NAME);
     }
 
     /** The used row mapper. */
@@ -57,17 +63,17 @@ public class RowServiceSkinny extends RowService {
     public RowServiceSkinny(ColumnFamilyStore baseCfs, ColumnDefinition columnDefinition) {
         super(baseCfs, columnDefinition);
         this.rowMapper = (RowMapperSkinny) super.rowMapper;
-        luceneIndex.init(rowMapper.sort());
+        init(rowMapper.sort());
     }
 
     /**
      * {@inheritDoc}
      * <p/>
-     * These fields are just the partition key.
+     * These fields are just the partition key, and the stored row if the index is covering.
      */
     @Override
     public Set<String> fieldsToLoad() {
-        return FIELDS_TO_LOAD;
+        return covering ? COVERING_FIELDS_TO_LOAD : FIELDS_TO_LOAD;
     }
 
     /**
@@ -76,29 +82,48 @@ public class RowServiceSkinny extends RowService {
     @Override
     public void indexInner(ByteBuffer key, ColumnFamily columnFamily, long timestamp) {
         DecoratedKey partitionKey = rowMapper.partitionKey(key);
+        boolean newest = isNewest(partitionKey, columnFamily);
 
         if (columnFamily.iterator().hasNext()) // Create or update row
         {
-            Row row = row(partitionKey, timestamp); // Read row
+            Row row;
+            if (newest && rowMapper.isComplete(columnFamily, timestamp)) {
+                row = new Row(partitionKey, columnFamily); // Full row insertion
+            } else {
+                row = row(partitionKey, timestamp); // Read row
+                if (row == null) { // The written cells are shadowed by a deletion
+                    luceneShards.shard(partitionKey).delete(rowMapper.term(partitionKey));
+                    return;
+                }
+            }
             Document document = rowMapper.document(row);
             Term term = rowMapper.term(partitionKey);
-            luceneIndex.upsert(term, document); // Store document
+            luceneShards.shard(partitionKey).upsert(term, document); // Store document
         } else if (columnFamily.deletionInfo() != null) // Delete full row
         {
             Term term = rowMapper.term(partitionKey);
-            luceneIndex.delete(term);
+            luceneShards.shard(partitionKey).delete(term);
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected List<Document> documents(DecoratedKey partitionKey, ColumnFamily columnFamily) {
+        if (!columnFamily.hasColumns()) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(rowMapper.document(new Row(partitionKey, columnFamily)));
+    }
+
     /** {@inheritDoc} */
     @Override
     public void deleteInner(DecoratedKey partitionKey) {
         Term term = rowMapper.term(partitionKey);
-        luceneIndex.delete(term);
+        luceneShards.cleanup(partitionKey, term);
     }
 
     /** {@inheritDoc} */
-    protected List<Row> rows(List<SearchResult> searchResults, long timestamp, boolean usesRelevance) {
+    protected List<Row> rows(List<SearchResult> searchResults, long timestamp, boolean decorate) {
         List<Row> rows = new ArrayList<>(searchResults.size());
         for (SearchResult searchResult : searchResults) {
 
@@ -106,14 +131,14 @@ public class RowServiceSkinny extends RowService {
             DecoratedKey partitionKey = searchResult.getPartitionKey();
             Row row = row(partitionKey, timestamp);
 
+            // Skip rows deleted after the index was last refreshed
             if (row == null) {
-                return null;
+                continue;
             }
 
             // Return decorated row
-            if (usesRelevance) {
-                Float score = searchResult.getScore();
-                Row decoratedRow = addScoreColumn(row, timestamp, score);
+            if (decorate) {
+                Row decoratedRow = addSearchColumn(row, timestamp, searchResult);
                 rows.add(decoratedRow);
             } else {
                 rows.add(row);
@@ -128,14 +153,16 @@ public class RowServiceSkinny extends RowService {
      *
      * @param partitionKey The partition key.
      * @param timestamp    The time stamp to ignore deleted columns.
-     * @return The CQL3 {@link Row} identified by the specified key pair.
+     * @return The CQL3 {@link Row} identified by the specified key pair, {@code null} if it has no live cells.
      */
     private Row row(DecoratedKey partitionKey, long timestamp) {
         QueryFilter queryFilter = QueryFilter.getIdentityFilter(partitionKey, metadata.cfName, timestamp);
         ColumnFamily columnFamily = baseCfs.getColumnFamily(queryFilter);
         if (columnFamily != null) {
             ColumnFamily cleanColumnFamily = cleanExpired(columnFamily, timestamp);
-            return new Row(partitionKey, cleanColumnFamily);
+            if (cleanColumnFamily.hasColumns()) {
+                return new Row(partitionKey, cleanColumnFamily);
+            }
         }
         return null;
     }
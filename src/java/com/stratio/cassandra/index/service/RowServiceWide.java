@@ -39,10 +39,15 @@ public class RowServiceWide extends RowService {
     /** The names of the Lucene fields to be loaded. */
     private static final Set<String> FIELDS_TO_LOAD;
 
+    /** The names of the Lucene fields to be loaded by covering indexes. */
+    private static final Set<String> COVERING_FIELDS_TO_LOAD;
+
     static {
         FIELDS_TO_LOAD = new HashSet<>();
         FIELDS_TO_LOAD.add(PartitionKeyMapper.FIELD_NAME);
         FIELDS_TO_LOAD.add(ClusteringKeyMapper.FIELD_NAME);
+        COVERING_FIELDS_TO_LOAD = new HashSet<>(FIELDS_TO_LOAD);
+        COVERING_FIELDS_TO_LOAD.add(StoredRowMapper.FIELD_NAME);
     }
 
     /** The used row mapper. */
@@ -57,17 +62,17 @@ public class RowServiceWide extends RowService {
     public RowServiceWide(ColumnFamilyStore baseCfs, ColumnDefinition columnDefinition) {
         super(baseCfs, columnDefinition);
         this.rowMapper = (RowMapperWide) super.rowMapper;
-        luceneIndex.init(rowMapper.sort());
+        init(rowMapper.sort());
     }
 
     /**
      * {@inheritDoc}
      * <p/>
-     * These fields are the partition and clustering keys.
+     * These fields are the partition and clustering keys, and the stored row if the index is covering.
      */
     @Override
     public Set<String> fieldsToLoad() {
-        return FIELDS_TO_LOAD;
+        return covering ? COVERING_FIELDS_TO_LOAD : FIELDS_TO_LOAD;
     }
 
     /** {@inheritDoc} */
@@ -75,15 +80,24 @@ public class RowServiceWide extends RowService {
     public void indexInner(ByteBuffer key, ColumnFamily columnFamily, long timestamp) {
         DeletionInfo deletionInfo = columnFamily.deletionInfo();
         DecoratedKey partitionKey = rowMapper.partitionKey(key);
+        boolean newest = isNewest(partitionKey, columnFamily);
 
         if (columnFamily.iterator().hasNext()) {
-            List<CellName> clusteringKeys = rowMapper.clusteringKeys(columnFamily);
-            Map<CellName, Row> rows = rows(partitionKey, clusteringKeys, timestamp);
+            Map<CellName, Row> rows = newest
+                                      ? rows(partitionKey, columnFamily, timestamp)
+                                      : rows(partitionKey, rowMapper.clusteringKeys(columnFamily), timestamp);
+            if (rows == null) {
+                return;
+            }
+            LuceneIndex luceneIndex = luceneShards.shard(partitionKey);
             for (Map.Entry<CellName, Row> entry : rows.entrySet()) {
                 CellName clusteringKey = entry.getKey();
                 Row row = entry.getValue();
                 Document document = rowMapper.document(row);
                 Term term = rowMapper.term(partitionKey, clusteringKey);
+                if (migratingKeys()) { // The legacy document isn't replaced by the binary term
+                    luceneIndex.delete(rowMapper.legacyTerm(partitionKey, clusteringKey));
+                }
                 luceneIndex.upsert(term, document); // Store document
             }
         } else if (deletionInfo != null) {
@@ -92,20 +106,31 @@ public class RowServiceWide extends RowService {
                 while (iterator.hasNext()) {
                     RangeTombstone rangeTombstone = iterator.next();
                     Query query = rowMapper.query(partitionKey, rangeTombstone);
-                    luceneIndex.delete(query);
+                    luceneShards.shard(partitionKey).delete(query);
                 }
             } else {
                 Term term = rowMapper.term(partitionKey);
-                luceneIndex.delete(term);
+                luceneShards.shard(partitionKey).delete(term);
             }
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected List<Document> documents(DecoratedKey partitionKey, ColumnFamily columnFamily) {
+        Map<CellName, ColumnFamily> rowColumnFamilies = rowMapper.splitRows(columnFamily);
+        List<Document> documents = new ArrayList<>(rowColumnFamilies.size());
+        for (ColumnFamily rowColumnFamily : rowColumnFamilies.values()) {
+            documents.add(rowMapper.document(new Row(partitionKey, rowColumnFamily)));
+        }
+        return documents;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void deleteInner(DecoratedKey partitionKey) {
         Term term = rowMapper.term(partitionKey);
-        luceneIndex.delete(term);
+        luceneShards.cleanup(partitionKey, term);
     }
 
     /**
@@ -114,18 +139,17 @@ public class RowServiceWide extends RowService {
      * The {@link Row} is a logical one.
      */
     @Override
-    protected List<Row> rows(List<SearchResult> searchResults, long timestamp, boolean usesRelevance) {
+    protected List<Row> rows(List<SearchResult> searchResults, long timestamp, boolean decorate) {
         // Initialize result
         List<Row> rows = new ArrayList<>(searchResults.size());
 
-        // Group key queries by partition keys
-        Map<CellName, Float> scoresByClusteringKey = new HashMap<>(searchResults.size());
-        Map<DecoratedKey, List<CellName>> keys = new HashMap<>();
+        // Group key queries by partition keys, keeping the search results order
+        Map<CellName, SearchResult> searchResultsByClusteringKey = new HashMap<>(searchResults.size());
+        Map<DecoratedKey, List<CellName>> keys = new LinkedHashMap<>();
         for (SearchResult searchResult : searchResults) {
             DecoratedKey partitionKey = searchResult.getPartitionKey();
             CellName clusteringKey = searchResult.getClusteringKey();
-            Float score = searchResult.getScore();
-            scoresByClusteringKey.put(clusteringKey, score);
+            searchResultsByClusteringKey.put(clusteringKey, searchResult);
             List<CellName> clusteringKeys = keys.get(partitionKey);
             if (clusteringKeys == null) {
                 clusteringKeys = new ArrayList<>();
@@ -138,13 +162,16 @@ public class RowServiceWide extends RowService {
             DecoratedKey partitionKey = entry.getKey();
             for (List<CellName> clusteringKeys : Lists.partition(entry.getValue(), 1000)) {
                 Map<CellName, Row> partitionRows = rows(partitionKey, clusteringKeys, timestamp);
+                if (partitionRows == null) {
+                    continue;
+                }
                 for (Map.Entry<CellName, Row> entry1 : partitionRows.entrySet()) {
                     Row row = entry1.getValue();
-                    if (usesRelevance) {
+                    if (decorate) {
                         CellName clusteringKey = entry1.getKey();
-                        Float score = scoresByClusteringKey.get(clusteringKey);
-                        Row scoredRow = addScoreColumn(row, timestamp, score);
-                        rows.add(scoredRow);
+                        SearchResult searchResult = searchResultsByClusteringKey.get(clusteringKey);
+                        Row decoratedRow = addSearchColumn(row, timestamp, searchResult);
+                        rows.add(decoratedRow);
                     } else {
                         rows.add(row);
                     }
@@ -154,6 +181,41 @@ public class RowServiceWide extends RowService {
         return rows;
     }
 
+    /**
+     * Returns the CQL3 {@link Row}s written in the specified {@link ColumnFamily}. The rows fully contained in the
+     * written data are built from it, and the rest are retrieved from the storage engine.
+     *
+     * @param partitionKey The partition key.
+     * @param columnFamily The written column family.
+     * @param timestamp    The time stamp to ignore deleted columns.
+     * @return The CQL3 {@link Row}s written in the specified {@link ColumnFamily}.
+     */
+    private Map<CellName, Row> rows(DecoratedKey partitionKey, ColumnFamily columnFamily, long timestamp) {
+        if (!columnFamily.deletionInfo().isLive()) {
+            return rows(partitionKey, rowMapper.clusteringKeys(columnFamily), timestamp);
+        }
+
+        Map<CellName, Row> rows = new LinkedHashMap<>();
+        List<CellName> clusteringKeysToRead = new ArrayList<>();
+        for (Map.Entry<CellName, ColumnFamily> entry : rowMapper.splitRows(columnFamily).entrySet()) {
+            CellName clusteringKey = entry.getKey();
+            ColumnFamily rowColumnFamily = entry.getValue();
+            if (rowMapper.isComplete(rowColumnFamily, timestamp)) {
+                rows.put(clusteringKey, new Row(partitionKey, rowColumnFamily));
+            } else if (!rowMapper.isStatic(clusteringKey)) {
+                clusteringKeysToRead.add(clusteringKey);
+            }
+        }
+
+        if (!clusteringKeysToRead.isEmpty()) {
+            Map<CellName, Row> readRows = rows(partitionKey, clusteringKeysToRead, timestamp);
+            if (readRows != null) {
+                rows.putAll(readRows);
+            }
+        }
+        return rows;
+    }
+
     /**
      * Returns the CQL3 {@link Row} identified by the specified key pair, using the specified time stamp to ignore
      * deleted columns. The {@link Row} is retrieved from the storage engine, so it involves IO operations.
@@ -192,8 +254,8 @@ public class RowServiceWide extends RowService {
         // Split CQL3 row column families
         Map<CellName, ColumnFamily> columnFamilies = rowMapper.splitRows(cleanQueryColumnFamily);
 
-        // Build and return rows
-        Map<CellName, Row> rows = new HashMap<>(columnFamilies.size());
+        // Build and return rows in clustering order
+        Map<CellName, Row> rows = new LinkedHashMap<>(columnFamilies.size());
         for (Map.Entry<CellName, ColumnFamily> entry : columnFamilies.entrySet()) {
             Row row = new Row(partitionKey, entry.getValue());
             rows.put(entry.getKey(), row);
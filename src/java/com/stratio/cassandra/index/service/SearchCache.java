@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.stratio.cassandra.index.RowIndexMetrics;
+import com.stratio.cassandra.index.query.CompiledSearch;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded cache mapping serialized search expressions to their {@link CompiledSearch}, so repeated searches don't
+ * parse the JSON nor build the Lucene query and sort again. Entries are bound to the {@link Schema} used to compile
+ * them, so a cache must be discarded along with its {@link Schema}.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class SearchCache {
+
+    private final Schema schema;
+    private final Cache<ByteBuffer, CompiledSearch> cache;
+    private final RowIndexMetrics metrics;
+
+    /**
+     * Returns a new {@link SearchCache} compiling searches with the specified {@link Schema}.
+     *
+     * @param schema  The {@link Schema} to be used for compiling searches.
+     * @param size    The max number of cached searches. Zero means no caching.
+     * @param metrics The {@link RowIndexMetrics} where cache hits and requests are recorded.
+     */
+    public SearchCache(Schema schema, int size, RowIndexMetrics metrics) {
+        this.schema = schema;
+        this.cache = size > 0 ? CacheBuilder.newBuilder().maximumSize(size).<ByteBuffer, CompiledSearch>build() : null;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the {@link CompiledSearch} for the specified serialized JSON search expression, compiling and caching it
+     * if it is not already cached.
+     *
+     * @param expression A UTF-8 serialized JSON search expression.
+     * @return The {@link CompiledSearch} for {@code expression}.
+     */
+    public CompiledSearch get(ByteBuffer expression) {
+        metrics.searchCacheRequests.mark();
+        CompiledSearch compiledSearch = cache == null ? null : cache.getIfPresent(expression);
+        if (compiledSearch != null) {
+            metrics.searchCacheHits.mark();
+            return compiledSearch;
+        }
+        String json = UTF8Type.instance.compose(expression);
+        compiledSearch = CompiledSearch.fromJson(json, schema);
+        if (cache != null) {
+            cache.put(ByteBufferUtil.clone(expression), compiledSearch);
+        }
+        return compiledSearch;
+    }
+
+    /**
+     * Removes all the cached searches.
+     */
+    public void invalidate() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+}
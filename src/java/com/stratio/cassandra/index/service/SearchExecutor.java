@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.yammer.metrics.core.Meter;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.utils.FBUtilities;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded thread pool shared by all the row indexes for running the slices of a parallel search. The searching thread
+ * always takes part in its own search: it runs the first slice, and then it runs any other slice that hasn't been
+ * started by the pool yet. This way a saturated pool degrades to sequential search instead of queueing, so it can't
+ * starve the read stage.
+ * <p/>
+ * The number of threads is set with the {@code stratio.index.search_threads} system property, and it defaults to the
+ * number of available processors.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+final class SearchExecutor {
+
+    /** The number of threads of the shared pool. */
+    private static final int NUM_THREADS = Integer.getInteger("stratio.index.search_threads",
+                                                              FBUtilities.getAvailableProcessors());
+
+    /** The max number of queued slices per thread. */
+    private static final int QUEUED_SLICES_PER_THREAD = 4;
+
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        if (NUM_THREADS > 0) {
+            executor = new ThreadPoolExecutor(NUM_THREADS,
+                                              NUM_THREADS,
+                                              60,
+                                              TimeUnit.SECONDS,
+                                              new ArrayBlockingQueue<Runnable>(NUM_THREADS * QUEUED_SLICES_PER_THREAD),
+                                              new NamedThreadFactory("RowIndexSearcher"));
+            executor.allowCoreThreadTimeOut(true);
+        } else {
+            executor = null;
+        }
+    }
+
+    private SearchExecutor() {
+    }
+
+    /**
+     * Runs the specified tasks, returning their results in the same order. The first task is run by the calling
+     * thread, and the rest of them are run by the shared pool or by the calling thread, whatever comes first.
+     *
+     * @param tasks       The tasks to be run.
+     * @param callerTasks A {@link Meter} counting the tasks, other than the first one, run by the calling thread.
+     * @param <T>         The type of the task results.
+     * @return The results of {@code tasks}, in the same order.
+     * @throws IOException If any of the tasks throws it.
+     */
+    static <T> List<T> invokeAll(List<Callable<T>> tasks, Meter callerTasks) throws IOException {
+        final Thread caller = Thread.currentThread();
+        List<SliceTask<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(new SliceTask<>(task, caller));
+        }
+        for (SliceTask<T> future : futures.subList(1, futures.size())) {
+            if (executor != null) {
+                try {
+                    executor.execute(future);
+                } catch (RejectedExecutionException e) {
+                    // Run by the caller
+                }
+            }
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (SliceTask<T> future : futures) {
+                future.run(); // Run by the caller if not already started
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            for (SliceTask<T> future : futures) {
+                future.cancel(false);
+            }
+        }
+        int numCallerTasks = -1;
+        for (SliceTask<T> future : futures) {
+            if (future.ranByCaller) {
+                numCallerTasks++;
+            }
+        }
+        callerTasks.mark(numCallerTasks);
+        return results;
+    }
+
+    /**
+     * {@link FutureTask} recording if it has been run by the thread waiting for it.
+     *
+     * @param <T> The type of the task result.
+     */
+    private static final class SliceTask<T> extends FutureTask<T> {
+
+        private final Thread caller;
+        private volatile boolean ranByCaller = false;
+
+        SliceTask(Callable<T> callable, Thread caller) {
+            super(callable);
+            this.caller = caller;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void set(T result) {
+            ranByCaller = Thread.currentThread() == caller;
+            super.set(result);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void setException(Throwable t) {
+            ranByCaller = Thread.currentThread() == caller;
+            super.setException(t);
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.stratio.cassandra.index.service;
 
+import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.lucene.search.ScoreDoc;
@@ -28,6 +29,7 @@ public class SearchResult {
 
     private final DecoratedKey partitionKey; // The partition key
     private final CellName clusteringKey; // The clustering key
+    private final ColumnFamily storedRow; // The row stored in the index, if any
     private final ScoreDoc scoreDoc; // The search hit info
 
     /**
@@ -38,8 +40,21 @@ public class SearchResult {
      * @param scoreDoc      The search hit info.
      */
     public SearchResult(DecoratedKey partitionKey, CellName clusteringKey, ScoreDoc scoreDoc) {
+        this(partitionKey, clusteringKey, null, scoreDoc);
+    }
+
+    /**
+     * Builds a new {@link SearchResult} for the specified CQL3 row key, stored row and search hit info.
+     *
+     * @param partitionKey  The partition key.
+     * @param clusteringKey The clustering key.
+     * @param storedRow     The cells of the row stored in the index, maybe {@code null}.
+     * @param scoreDoc      The search hit info.
+     */
+    public SearchResult(DecoratedKey partitionKey, CellName clusteringKey, ColumnFamily storedRow, ScoreDoc scoreDoc) {
         this.partitionKey = partitionKey;
         this.clusteringKey = clusteringKey;
+        this.storedRow = storedRow;
         this.scoreDoc = scoreDoc;
     }
 
@@ -61,6 +76,15 @@ public class SearchResult {
         return clusteringKey;
     }
 
+    /**
+     * Returns the cells of the row stored in the index, or {@code null} if the index is not covering.
+     *
+     * @return The cells of the row stored in the index, maybe {@code null}.
+     */
+    public ColumnFamily getStoredRow() {
+        return storedRow;
+    }
+
     /**
      * Returns the search {@link ScoreDoc}.
      *
@@ -75,7 +99,7 @@ public class SearchResult {
      *
      * @return The search numeric score.
      */
-    public Float getScore() {
+    public float getScore() {
         return scoreDoc.score;
     }
 
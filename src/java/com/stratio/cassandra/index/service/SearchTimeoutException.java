@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import org.apache.lucene.search.Query;
+
+/**
+ * {@link RuntimeException} thrown when a search is aborted because it has not been finished before the request
+ * timeout, so the coordinator has already given up waiting for it.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class SearchTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 4372546981254120378L;
+
+    /**
+     * Builds a new {@link SearchTimeoutException} for the specified aborted {@link Query}.
+     *
+     * @param query The aborted {@link Query}.
+     */
+    public SearchTimeoutException(Query query) {
+        super(String.format("Search by query %s aborted after reaching the request timeout", query));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Class for storing whole CQL3 rows in Lucene, so covering indexes can serve searches without reading the base table.
+ * The cells of each row are kept in a single stored binary field using Cassandra's column family serialization.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class StoredRowMapper {
+
+    /** The Lucene field name. */
+    public static final String FIELD_NAME = "_stored_row";
+
+    /** The serialization version, fixed to keep the stored rows readable across upgrades. */
+    private static final int VERSION = MessagingService.VERSION_21;
+
+    /**
+     * Returns a new {@code StoredRowMapper}.
+     *
+     * @return A new {@code StoredRowMapper}.
+     */
+    public static StoredRowMapper instance() {
+        return new StoredRowMapper();
+    }
+
+    /**
+     * Adds to the specified {@link Document} the {@link Field} storing the specified CQL3 row.
+     *
+     * @param document     The document in which the fields are going to be added.
+     * @param columnFamily The {@link ColumnFamily} containing the cells of a single CQL3 row.
+     */
+    public void addFields(Document document, ColumnFamily columnFamily) {
+        DataOutputBuffer out = new DataOutputBuffer();
+        ColumnFamily.serializer.serialize(columnFamily, out, VERSION);
+        Field field = new StoredField(FIELD_NAME, new BytesRef(out.getData(), 0, out.getLength()));
+        document.add(field);
+    }
+
+    /**
+     * Returns the {@link ColumnFamily} stored in the specified {@link Document}, or {@code null} if there is no one,
+     * which happens when the stored row field has not been loaded.
+     *
+     * @param document A {@link Document}.
+     * @return The {@link ColumnFamily} stored in the specified {@link Document}, maybe {@code null}.
+     */
+    public ColumnFamily columnFamily(Document document) {
+        BytesRef bytesRef = document.getBinaryValue(FIELD_NAME);
+        if (bytesRef == null) {
+            return null;
+        }
+        try {
+            ByteArrayInputStream bais = new ByteArrayInputStream(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+            return ColumnFamily.serializer.deserialize(new DataInputStream(bais), VERSION);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.stratio.cassandra.index.service;
 
+import com.google.common.base.Objects;
 import org.apache.cassandra.dht.Token;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.lucene.index.FilteredTermsEnum;
@@ -35,7 +36,7 @@ public class TokenRangeQuery extends MultiTermQuery {
 
     private final TokenMapperGeneric tokenMapper; // The token mapper
     private final Token lower; // The lower accepted token
-    private final Token upper; // The upper accepted token
+    private final Token upper; // The upper accepted token, the minimum one meaning the end of the ring
     private final boolean includeLower; // If the lower token must be included if not null
     private final boolean includeUpper; // If the upper token must be included if not null
 
@@ -43,7 +44,7 @@ public class TokenRangeQuery extends MultiTermQuery {
      * Builds a new {@link TokenRangeQuery}.
      *
      * @param lower        The lower accepted {@link Token}. Maybe null meaning no lower limit.
-     * @param upper        The upper accepted {@link Token}. Maybe null meaning no lower limit.
+     * @param upper        The upper accepted {@link Token}. Maybe null or the minimum one meaning no upper limit.
      * @param includeLower If the {@code lowerValue} is included in the range.
      * @param includeUpper If the {@code upperValue} is included in the range.
      * @param tokenMapper  The used {@link TokenMapperGeneric}.
@@ -79,6 +80,26 @@ public class TokenRangeQuery extends MultiTermQuery {
                                         .toString();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!super.equals(o)) return false;
+
+        TokenRangeQuery that = (TokenRangeQuery) o;
+
+        return includeLower == that.includeLower &&
+               includeUpper == that.includeUpper &&
+               Objects.equal(lower, that.lower) &&
+               Objects.equal(upper, that.upper);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Objects.hashCode(lower, upper, includeLower, includeUpper);
+    }
+
     /**
      * {@link FilteredTermsEnum} for generic tokens.
      */
@@ -99,9 +120,11 @@ public class TokenRangeQuery extends MultiTermQuery {
         @SuppressWarnings("unchecked")
         protected AcceptStatus accept(BytesRef term) {
             Token token = tokenMapper.token(term);
-            if (includeLower ? token.compareTo(lower) < 0 : token.compareTo(lower) <= 0) {
+            if (lower != null && (includeLower ? token.compareTo(lower) < 0 : token.compareTo(lower) <= 0)) {
                 return AcceptStatus.NO;
-            } else if (includeUpper ? token.compareTo(upper) > 0 : token.compareTo(upper) >= 0) {
+            } else if (upper != null && !upper.isMinimum() && (includeUpper
+                                                                ? token.compareTo(upper) > 0
+                                                                : token.compareTo(upper) >= 0)) {
                 return AcceptStatus.NO;
             } else {
                 return AcceptStatus.YES;
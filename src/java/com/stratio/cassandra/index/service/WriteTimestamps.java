@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import org.apache.cassandra.db.Cell;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DataTracker;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.RowPosition;
+import org.apache.cassandra.io.sstable.SSTableReader;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Upper bounds of the write timestamps of the data stored in the partitions of an indexed table. They are used for
+ * deciding if the rows fully contained in a write can be indexed without reading them, because no stored data of the
+ * same partition can be newer, so the written cells are the live ones. Otherwise, an older write, such as those
+ * coming from hints, repairs or client supplied timestamps, would replace the indexed documents of newer rows.
+ * <p/>
+ * Partitions are grouped in a fixed number of buckets by their key hash, and the bound of a partition is the max
+ * timestamp written to any partition of its bucket, so collisions can only make the bound higher. The data written
+ * through the index are recorded as they are indexed, and the data in the memtables when the index is opened are
+ * scanned once. The max timestamp of the SSTables is a bound for all the partitions, because they may have not been
+ * written through the index, such as streamed or loaded ones.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+final class WriteTimestamps {
+
+    /** The number of partition buckets. */
+    private static final int NUM_BUCKETS = 4096;
+
+    private final ColumnFamilyStore baseCfs;
+    private final AtomicLongArray buckets; // The max written timestamp of each bucket
+    private volatile SSTablesBound sstablesBound; // The max timestamp of the last seen SSTables
+
+    /**
+     * Builds a new {@link WriteTimestamps} for the specified {@link ColumnFamilyStore}, scanning its memtables.
+     *
+     * @param baseCfs The indexed {@link ColumnFamilyStore}.
+     */
+    WriteTimestamps(ColumnFamilyStore baseCfs) {
+        this.baseCfs = baseCfs;
+        buckets = new AtomicLongArray(NUM_BUCKETS);
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets.set(i, Long.MIN_VALUE);
+        }
+        RowPosition minimum = baseCfs.partitioner.getMinimumToken().minKeyBound();
+        OpOrder.Group op = baseCfs.readOrdering.start(); // Keep the scanned memtables alive
+        try {
+            for (Memtable memtable : baseCfs.getDataTracker().getView().getAllMemtables()) {
+                Iterator<Map.Entry<DecoratedKey, ColumnFamily>> iterator = memtable.getEntryIterator(minimum, minimum);
+                while (iterator.hasNext()) {
+                    Map.Entry<DecoratedKey, ColumnFamily> entry = iterator.next();
+                    raise(bucket(entry.getKey()), entry.getValue().maxTimestamp());
+                }
+            }
+        } finally {
+            op.close();
+        }
+    }
+
+    /**
+     * Records the specified write of the specified partition, returning if all its cells are newer than any data
+     * previously stored in the partition.
+     *
+     * @param partitionKey The written partition key.
+     * @param columnFamily The written {@link ColumnFamily}.
+     * @return {@code true} if all the cells of {@code columnFamily} are newer than the stored data of the partition,
+     * {@code false} otherwise.
+     */
+    boolean update(DecoratedKey partitionKey, ColumnFamily columnFamily) {
+        long minTimestamp = Long.MAX_VALUE;
+        for (Cell cell : columnFamily) {
+            minTimestamp = Math.min(minTimestamp, cell.timestamp());
+        }
+        int bucket = bucket(partitionKey);
+        long bound = Math.max(raise(bucket, columnFamily.maxTimestamp()), sstablesMaxTimestamp());
+        return minTimestamp > bound;
+    }
+
+    /**
+     * Returns the bucket of the specified partition.
+     *
+     * @param partitionKey A partition key.
+     * @return The bucket of {@code partitionKey}.
+     */
+    private static int bucket(DecoratedKey partitionKey) {
+        return (partitionKey.hashCode() & Integer.MAX_VALUE) % NUM_BUCKETS;
+    }
+
+    /**
+     * Raises the bound of the specified bucket up to the specified timestamp.
+     *
+     * @param bucket    A bucket.
+     * @param timestamp A written timestamp.
+     * @return The previous bound of the bucket.
+     */
+    private long raise(int bucket, long timestamp) {
+        while (true) {
+            long current = buckets.get(bucket);
+            if (current >= timestamp || buckets.compareAndSet(bucket, current, timestamp)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Returns the max timestamp of the current SSTables, computing it only when they change.
+     *
+     * @return The max timestamp of the current SSTables.
+     */
+    private long sstablesMaxTimestamp() {
+        DataTracker.View view = baseCfs.getDataTracker().getView();
+        SSTablesBound bound = sstablesBound;
+        if (bound == null || bound.view != view) {
+            long maxTimestamp = Long.MIN_VALUE;
+            for (SSTableReader sstable : view.sstables) {
+                maxTimestamp = Math.max(maxTimestamp, sstable.getMaxTimestamp());
+            }
+            bound = new SSTablesBound(view, maxTimestamp);
+            sstablesBound = bound;
+        }
+        return bound.maxTimestamp;
+    }
+
+    /** The max timestamp of the SSTables of a {@link DataTracker.View}. */
+    private static final class SSTablesBound {
+
+        private final DataTracker.View view;
+        private final long maxTimestamp;
+
+        private SSTablesBound(DataTracker.View view, long maxTimestamp) {
+            this.view = view;
+            this.maxTimestamp = maxTimestamp;
+        }
+    }
+}
@@ -30,35 +30,51 @@ public class Log {
     private static final Logger log = LoggerFactory.getLogger("stratio");
 
     public static void info(String message, Object... options) {
-        log.info(String.format(message, format(options)));
+        if (log.isInfoEnabled()) {
+            log.info(String.format(message, format(options)));
+        }
     }
 
     public static void info(Throwable throwable, String message, Object... options) {
-        log.info(String.format(message, format(options)), throwable);
+        if (log.isInfoEnabled()) {
+            log.info(String.format(message, format(options)), throwable);
+        }
     }
 
     public static void debug(String message, Object... options) {
-        log.debug(String.format(message, format(options)));
+        if (log.isDebugEnabled()) {
+            log.debug(String.format(message, format(options)));
+        }
     }
 
     public static void debug(Throwable throwable, String message, Object... options) {
-        log.debug(String.format(message, format(options)), throwable);
+        if (log.isDebugEnabled()) {
+            log.debug(String.format(message, format(options)), throwable);
+        }
     }
 
     public static void error(String message, Object... options) {
-        log.error(String.format(message, format(options)));
+        if (log.isErrorEnabled()) {
+            log.error(String.format(message, format(options)));
+        }
     }
 
     public static void error(Throwable throwable, String message, Object... options) {
-        log.error(String.format(message, format(options)), throwable);
+        if (log.isErrorEnabled()) {
+            log.error(String.format(message, format(options)), throwable);
+        }
     }
 
     public static void warn(String message, Object... options) {
-        log.warn(String.format(message, format(options)));
+        if (log.isWarnEnabled()) {
+            log.warn(String.format(message, format(options)));
+        }
     }
 
     public static void warn(Throwable throwable, String message, Object... options) {
-        log.warn(String.format(message, format(options)), throwable);
+        if (log.isWarnEnabled()) {
+            log.warn(String.format(message, format(options)), throwable);
+        }
     }
 
     private static Object[] format(Object... options) {
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.util;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+import org.apache.cassandra.metrics.MetricNameFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor that runs each submitted task using one of possibly several pooled threads, keeping the submission order
+ * of the tasks with the same key. Keys are distributed over several stripes, each of them having its own task queue.
+ * A stripe is run by a single thread at a time, but any idle thread can take any stripe with pending tasks, so a busy
+ * key doesn't leave the other threads idle. Waiting for the already submitted tasks doesn't block new submissions.
+ * <p/>
+ * Tasks implementing {@link Mergeable} can absorb the tasks submitted later with the same key while they are still
+ * queued, so consecutive updates of the same key are run only once.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class StripedExecutor {
+
+    /** The number of stripes per thread. */
+    private static final int STRIPES_PER_THREAD = 4;
+
+    /** The max number of tasks run by a stripe before releasing its thread. */
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final ForkJoinPool pool;
+    private final Stripe[] stripes;
+    private final Semaphore permits;
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final MetricNameFactory factory;
+
+    /** Number of queued and running tasks. */
+    private final Gauge<Integer> queueDepth;
+
+    /** Number of tasks absorbed by an already queued task. */
+    private final Meter mergedTasks;
+
+    /**
+     * A task that can absorb the tasks submitted later with the same key.
+     */
+    public interface Mergeable extends Runnable {
+
+        /**
+         * Tries to absorb the specified task, submitted later with the same key, so that running this task has the
+         * same effect as running both tasks in order. It is never called after this task has started.
+         *
+         * @param task A task submitted later with the same key.
+         * @return {@code true} if {@code task} has been absorbed and must not be run, {@code false} otherwise.
+         */
+        boolean merge(Runnable task);
+    }
+
+    /**
+     * Returns a new {@link StripedExecutor}.
+     *
+     * @param name       The name of the executor threads.
+     * @param numThreads The number of executor threads.
+     * @param queuesSize The max number of queued tasks per thread before blocking.
+     * @param factory    The {@link MetricNameFactory} for the executor metrics.
+     */
+    public StripedExecutor(final String name, int numThreads, int queuesSize, MetricNameFactory factory) {
+        this.factory = factory;
+        pool = new ForkJoinPool(numThreads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(name + ":" + thread.getPoolIndex());
+                return thread;
+            }
+        }, null, true);
+        permits = new Semaphore(numThreads * queuesSize);
+        stripes = new Stripe[numThreads * STRIPES_PER_THREAD];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(i);
+        }
+        queueDepth = Metrics.newGauge(factory.createMetricName("IndexingQueueDepth"), new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return pendingTasks.get();
+            }
+        });
+        mergedTasks = Metrics.newMeter(factory.createMetricName("IndexingMergedTasks"), "tasks", TimeUnit.SECONDS);
+    }
+
+    /**
+     * Submits a task for asynchronous execution after all the previously submitted tasks with the same key. It blocks
+     * while the queues are full.
+     *
+     * @param key  The key of the task, used to choose the stripe where the task will be queued.
+     * @param task A task to be queued for asynchronous execution.
+     */
+    public void submit(Object key, Runnable task) {
+        Stripe stripe = stripes[(key.hashCode() & Integer.MAX_VALUE) % stripes.length];
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Log.error(e, "Task submission interrupted");
+            throw new RuntimeException(e);
+        }
+        pendingTasks.incrementAndGet();
+        if (!stripe.offer(key, task)) {
+            pendingTasks.decrementAndGet();
+            permits.release();
+            mergedTasks.mark();
+        }
+    }
+
+    /**
+     * Waits for the completion of all the tasks submitted before calling this method. Tasks submitted while waiting
+     * are not waited for, neither blocked.
+     */
+    public void await() {
+        long[] targets = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            targets[i] = stripes[i].submitted();
+        }
+        try {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i].await(targets[i]);
+            }
+        } catch (InterruptedException e) {
+            Log.error(e, "Await interrupted");
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stops the executor threads after running the already submitted tasks, and releases the executor metrics.
+     */
+    public void shutdown() {
+        await();
+        pool.shutdown();
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("IndexingQueueDepth"));
+        Metrics.defaultRegistry().removeMetric(factory.createMetricName("IndexingMergedTasks"));
+        for (Stripe stripe : stripes) {
+            Metrics.defaultRegistry().removeMetric(stripe.latencyName());
+        }
+    }
+
+    /**
+     * Returns the number of queued and running tasks.
+     *
+     * @return The number of queued and running tasks.
+     */
+    public int getQueueDepth() {
+        return queueDepth.value();
+    }
+
+    /**
+     * Returns the number of tasks absorbed by an already queued task.
+     *
+     * @return The number of tasks absorbed by an already queued task.
+     */
+    public long getMergedTasks() {
+        return mergedTasks.count();
+    }
+
+    /**
+     * A task queued with its key and queuing time.
+     */
+    private static final class Entry {
+
+        private final Object key;
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        private Entry(Object key, Runnable task) {
+            this.key = key;
+            this.task = task;
+        }
+    }
+
+    /**
+     * A queue of tasks run in order by a single thread at a time.
+     */
+    private final class Stripe implements Runnable {
+
+        private final int id;
+        private final Queue<Entry> queue = new ArrayDeque<>();
+        private final Map<Object, Entry> lastByKey = new HashMap<>();
+        private final Histogram latency; // Queuing plus running time of the tasks, in microseconds
+        private boolean scheduled = false;
+        private long submitted = 0;
+        private long completed = 0;
+
+        private Stripe(int id) {
+            this.id = id;
+            latency = Metrics.newHistogram(latencyName(), false);
+        }
+
+        private MetricName latencyName() {
+            return factory.createMetricName("IndexingLatencyStripe" + id);
+        }
+
+        /**
+         * Queues the specified task, unless it is merged into the last queued task with the same key.
+         *
+         * @param key  The key of the task.
+         * @param task The task to be queued.
+         * @return {@code true} if the task has been queued, {@code false} if it has been merged.
+         */
+        private boolean offer(Object key, Runnable task) {
+            boolean schedule;
+            synchronized (this) {
+                Entry last = lastByKey.get(key);
+                if (last != null && last.task instanceof Mergeable && ((Mergeable) last.task).merge(task)) {
+                    return false;
+                }
+                Entry entry = new Entry(key, task);
+                queue.add(entry);
+                lastByKey.put(key, entry);
+                submitted++;
+                schedule = !scheduled;
+                scheduled = true;
+            }
+            if (schedule) {
+                pool.execute(this);
+            }
+            return true;
+        }
+
+        private synchronized long submitted() {
+            return submitted;
+        }
+
+        private synchronized void await(long target) throws InterruptedException {
+            while (completed < target) {
+                wait();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+                Entry entry;
+                synchronized (this) {
+                    entry = queue.poll();
+                    if (entry == null) {
+                        scheduled = false;
+                        return;
+                    }
+                    if (lastByKey.get(entry.key) == entry) {
+                        lastByKey.remove(entry.key);
+                    }
+                }
+                try {
+                    entry.task.run();
+                } catch (Throwable t) {
+                    Log.error(t, "Task execution failed");
+                } finally {
+                    latency.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - entry.queuedAt));
+                    pendingTasks.decrementAndGet();
+                    permits.release();
+                    synchronized (this) {
+                        completed++;
+                        notifyAll();
+                    }
+                }
+            }
+            pool.execute(this); // Let other stripes run
+        }
+    }
+}
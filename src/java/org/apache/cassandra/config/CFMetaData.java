@@ -57,6 +57,7 @@ import org.apache.cassandra.tracing.Tracing;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.UUIDGen;
+import org.apache.cassandra.utils.memory.MemtableAllocator;
 import org.github.jamm.Unmetered;
 
 import static org.apache.cassandra.utils.FBUtilities.fromJsonList;
@@ -82,6 +83,7 @@ public final class CFMetaData
     public final static SpeculativeRetry DEFAULT_SPECULATIVE_RETRY = new SpeculativeRetry(SpeculativeRetry.RetryType.PERCENTILE, 0.99);
     public final static int DEFAULT_MIN_INDEX_INTERVAL = 128;
     public final static int DEFAULT_MAX_INDEX_INTERVAL = 2048;
+    public final static Class<? extends MemtablePartitionIndex> DEFAULT_MEMTABLE_CLASS = SkipListPartitionIndex.class;
 
     // Note that this is the default only for user created tables
     public final static String DEFAULT_COMPRESSOR = LZ4Compressor.class.getCanonicalName();
@@ -139,6 +141,8 @@ public final class CFMetaData
                                                                     + "min_index_interval int,"
                                                                     + "max_index_interval int,"
                                                                     + "dropped_columns map<text, bigint>,"
+                                                                    + "memtable_class text,"
+                                                                    + "memtable_options text,"
                                                                     + "PRIMARY KEY (keyspace_name, columnfamily_name)"
                                                                     + ") WITH COMMENT='ColumnFamily definitions' AND gc_grace_seconds=604800");
 
@@ -432,6 +436,9 @@ public final class CFMetaData
 
     public volatile CompressionParameters compressionParameters = new CompressionParameters(null);
 
+    public volatile Class<? extends MemtablePartitionIndex> memtableClass = DEFAULT_MEMTABLE_CLASS;
+    public volatile Map<String, String> memtableOptions = new HashMap<>();
+
     // attribute setters that return the modified CFMetaData instance
     public CFMetaData comment(String prop) { comment = Strings.nullToEmpty(prop); return this;}
     public CFMetaData readRepairChance(double prop) {readRepairChance = prop; return this;}
@@ -444,6 +451,8 @@ public final class CFMetaData
     public CFMetaData compactionStrategyClass(Class<? extends AbstractCompactionStrategy> prop) {compactionStrategyClass = prop; return this;}
     public CFMetaData compactionStrategyOptions(Map<String, String> prop) {compactionStrategyOptions = prop; return this;}
     public CFMetaData compressionParameters(CompressionParameters prop) {compressionParameters = prop; return this;}
+    public CFMetaData memtableClass(Class<? extends MemtablePartitionIndex> prop) {memtableClass = prop; return this;}
+    public CFMetaData memtableOptions(Map<String, String> prop) {memtableOptions = prop; return this;}
     public CFMetaData bloomFilterFpChance(Double prop) {bloomFilterFpChance = prop; return this;}
     public CFMetaData caching(CachingOptions prop) {caching = prop; return this;}
     public CFMetaData minIndexInterval(int prop) {minIndexInterval = prop; return this;}
@@ -628,6 +637,8 @@ public final class CFMetaData
                       .maxIndexInterval(oldCFMD.maxIndexInterval)
                       .speculativeRetry(oldCFMD.speculativeRetry)
                       .memtableFlushPeriod(oldCFMD.memtableFlushPeriod)
+                      .memtableClass(oldCFMD.memtableClass)
+                      .memtableOptions(new HashMap<>(oldCFMD.memtableOptions))
                       .droppedColumns(new HashMap<>(oldCFMD.droppedColumns))
                       .triggers(new HashMap<>(oldCFMD.triggers))
                       .isDense(oldCFMD.isDense)
@@ -899,6 +910,8 @@ public final class CFMetaData
             && Objects.equal(compressionParameters, other.compressionParameters)
             && Objects.equal(bloomFilterFpChance, other.bloomFilterFpChance)
             && Objects.equal(memtableFlushPeriod, other.memtableFlushPeriod)
+            && Objects.equal(memtableClass, other.memtableClass)
+            && Objects.equal(memtableOptions, other.memtableOptions)
             && Objects.equal(caching, other.caching)
             && Objects.equal(defaultTimeToLive, other.defaultTimeToLive)
             && Objects.equal(minIndexInterval, other.minIndexInterval)
@@ -932,6 +945,8 @@ public final class CFMetaData
             .append(compressionParameters)
             .append(bloomFilterFpChance)
             .append(memtableFlushPeriod)
+            .append(memtableClass)
+            .append(memtableOptions)
             .append(caching)
             .append(defaultTimeToLive)
             .append(minIndexInterval)
@@ -997,7 +1012,9 @@ public final class CFMetaData
 
     public static CFMetaData fromThriftForUpdate(CfDef cf_def, CFMetaData toUpdate) throws InvalidRequestException, ConfigurationException
     {
-        return internalFromThrift(cf_def, toUpdate.allColumns());
+        // thrift has no field for the memtable, so an update keeps the current one
+        return internalFromThrift(cf_def, toUpdate.allColumns()).memtableClass(toUpdate.memtableClass)
+                                                                 .memtableOptions(new HashMap<>(toUpdate.memtableOptions));
     }
 
     // Convert a thrift CfDef, given a list of ColumnDefinitions to copy over to the created CFMetadata before the CQL metadata are rebuild
@@ -1205,6 +1222,9 @@ public final class CFMetaData
 
         compressionParameters = cfm.compressionParameters;
 
+        memtableClass = cfm.memtableClass;
+        memtableOptions = cfm.memtableOptions;
+
         triggers = cfm.triggers;
 
         isDense(cfm.isDense);
@@ -1294,6 +1314,38 @@ public final class CFMetaData
         }
     }
 
+    public static Class<? extends MemtablePartitionIndex> createMemtableClass(String className) throws ConfigurationException
+    {
+        className = className.contains(".") ? className : "org.apache.cassandra.db." + className;
+        Class<MemtablePartitionIndex> memtableClass = FBUtilities.classForName(className, "memtable");
+        if (!MemtablePartitionIndex.class.isAssignableFrom(memtableClass))
+            throw new ConfigurationException(String.format("Specified memtable class (%s) does not implement MemtablePartitionIndex", className));
+        try
+        {
+            memtableClass.getConstructor(ColumnFamilyStore.class, MemtableAllocator.class, Map.class);
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new ConfigurationException(String.format("Specified memtable class (%s) has no public (ColumnFamilyStore, MemtableAllocator, Map) constructor", className));
+        }
+
+        return memtableClass;
+    }
+
+    public MemtablePartitionIndex createMemtablePartitionIndexInstance(ColumnFamilyStore cfs, MemtableAllocator allocator)
+    {
+        try
+        {
+            Constructor<? extends MemtablePartitionIndex> constructor =
+                memtableClass.getConstructor(ColumnFamilyStore.class, MemtableAllocator.class, Map.class);
+            return constructor.newInstance(cfs, allocator, memtableOptions);
+        }
+        catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | InstantiationException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     // converts CFM to thrift CfDef
     public org.apache.cassandra.thrift.CfDef toThrift()
     {
@@ -1719,6 +1771,9 @@ public final class CFMetaData
         adder.add("max_index_interval", maxIndexInterval);
         adder.add("index_interval", null);
         adder.add("speculative_retry", speculativeRetry.toString());
+        // the default memtable is left unset, so that it doesn't change the schema digest
+        adder.add("memtable_class", memtableClass == DEFAULT_MEMTABLE_CLASS ? null : memtableClass.getName());
+        adder.add("memtable_options", memtableOptions.isEmpty() ? null : json(memtableOptions));
 
         for (Map.Entry<ColumnIdentifier, Long> entry : droppedColumns.entrySet())
             adder.addMapEntry("dropped_columns", entry.getKey().toString(), entry.getValue());
@@ -1786,6 +1841,10 @@ public final class CFMetaData
             cfm.compactionStrategyClass(createCompactionStrategy(result.getString("compaction_strategy_class")));
             cfm.compressionParameters(CompressionParameters.create(fromJsonMap(result.getString("compression_parameters"))));
             cfm.compactionStrategyOptions(fromJsonMap(result.getString("compaction_strategy_options")));
+            if (result.has("memtable_class"))
+                cfm.memtableClass(createMemtableClass(result.getString("memtable_class")));
+            if (result.has("memtable_options"))
+                cfm.memtableOptions(fromJsonMap(result.getString("memtable_options")));
 
             // migrate old index_interval values to min_index_interval, if present
             if (result.has("min_index_interval"))
@@ -2267,6 +2326,8 @@ public final class CFMetaData
             .append("compressionParameters", compressionParameters.asThriftOptions())
             .append("bloomFilterFpChance", bloomFilterFpChance)
             .append("memtableFlushPeriod", memtableFlushPeriod)
+            .append("memtableClass", memtableClass)
+            .append("memtableOptions", memtableOptions)
             .append("caching", caching)
             .append("defaultTimeToLive", defaultTimeToLive)
             .append("minIndexInterval", minIndexInterval)
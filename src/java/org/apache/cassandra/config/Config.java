@@ -20,6 +20,7 @@ package org.apache.cassandra.config;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.collect.Sets;
@@ -162,7 +163,10 @@ public class Config
     public CommitLogSync commitlog_sync;
     public Double commitlog_sync_batch_window_in_ms;
     public Integer commitlog_sync_period_in_ms;
+    public Double commitlog_sync_group_window_in_ms;
+    public String[] commitlog_durable_keyspaces = new String[0];
     public int commitlog_segment_size_in_mb = 32;
+    public Map<String, Object> commitlog_compression;
 
     @Deprecated
     public int commitlog_periodic_queue_size = -1;
@@ -217,6 +221,7 @@ public class Config
     public boolean inter_dc_tcp_nodelay = true;
 
     public MemtableAllocationType memtable_allocation_type = MemtableAllocationType.heap_buffers;
+    public boolean memtable_offheap_partition_index = false;
 
     private static boolean outboundBindAny = false;
 
@@ -300,7 +305,8 @@ public class Config
     public static enum CommitLogSync
     {
         periodic,
-        batch
+        batch,
+        group
     }
     public static enum InternodeCompression
     {
@@ -32,6 +32,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,6 +60,7 @@ import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.compress.CompressionParameters;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.io.util.IAllocator;
 import org.apache.cassandra.locator.DynamicEndpointSnitch;
@@ -113,6 +115,7 @@ public class DatabaseDescriptor
     private static long keyCacheSizeInMB;
     private static long counterCacheSizeInMB;
     private static IAllocator memoryAllocator;
+    private static Map<String, String> commitLogCompression;
     private static long indexSummaryCapacityInMB;
 
     private static String localDC;
@@ -309,6 +312,23 @@ public class DatabaseDescriptor
             }
             logger.debug("Syncing log with a batch window of {}", conf.commitlog_sync_batch_window_in_ms);
         }
+        else if (conf.commitlog_sync == Config.CommitLogSync.group)
+        {
+            if (conf.commitlog_sync_period_in_ms == null)
+            {
+                throw new ConfigurationException("Missing value for commitlog_sync_period_in_ms: Integer expected");
+            }
+            else if (conf.commitlog_sync_group_window_in_ms == null)
+            {
+                throw new ConfigurationException("Missing value for commitlog_sync_group_window_in_ms: Double expected.");
+            }
+            else if (conf.commitlog_sync_batch_window_in_ms != null)
+            {
+                throw new ConfigurationException("Group sync specified, but commitlog_sync_batch_window_in_ms found. Only specify commitlog_sync_group_window_in_ms and commitlog_sync_period_in_ms when using group sync");
+            }
+            logger.debug("Syncing log with a period of {} and a group window of up to {} for keyspaces {}",
+                         conf.commitlog_sync_period_in_ms, conf.commitlog_sync_group_window_in_ms, Arrays.toString(conf.commitlog_durable_keyspaces));
+        }
         else
         {
             if (conf.commitlog_sync_period_in_ms == null)
@@ -322,9 +342,33 @@ public class DatabaseDescriptor
             logger.debug("Syncing log with a period of {}", conf.commitlog_sync_period_in_ms);
         }
 
+        if (conf.commitlog_sync != Config.CommitLogSync.group && conf.commitlog_durable_keyspaces.length > 0)
+        {
+            throw new ConfigurationException("commitlog_durable_keyspaces is only supported with group commitlog_sync");
+        }
+
         if (conf.commitlog_total_space_in_mb == null)
             conf.commitlog_total_space_in_mb = hasLargeAddressSpace() ? 8192 : 32;
 
+        if (conf.memtable_offheap_partition_index && conf.memtable_allocation_type != Config.MemtableAllocationType.offheap_objects)
+            logger.warn("memtable_offheap_partition_index is only used with the offheap_objects memtable_allocation_type, ignoring it");
+
+        if (conf.commitlog_compression != null)
+        {
+            Map<String, String> options = new HashMap<>();
+            for (Map.Entry<String, Object> entry : conf.commitlog_compression.entrySet())
+            {
+                String key = entry.getKey().equals("class_name") ? CompressionParameters.SSTABLE_COMPRESSION : entry.getKey();
+                options.put(key, String.valueOf(entry.getValue()));
+            }
+            if (options.get(CompressionParameters.SSTABLE_COMPRESSION) == null)
+                throw new ConfigurationException("Missing class_name for commitlog_compression");
+            // fail at startup rather than on the first segment if the compressor or its options are invalid
+            CompressionParameters.create(options);
+            commitLogCompression = Collections.unmodifiableMap(options);
+            logger.info("Compressing commit log segments with {}", options);
+        }
+
         // Always force standard mode access on Windows - CASSANDRA-6993. Windows won't allow deletion of hard-links to files that
         // are memory-mapped which causes trouble with snapshots.
         if (FBUtilities.isWindows())
@@ -1164,6 +1208,20 @@ public class DatabaseDescriptor
         return conf.commitlog_segment_size_in_mb * 1024 * 1024;
     }
 
+    /**
+     * @return the compression options of the commitlog segments, or null if they are not compressed
+     */
+    public static Map<String, String> getCommitLogCompression()
+    {
+        return commitLogCompression;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogCompression(Map<String, String> options)
+    {
+        commitLogCompression = options == null ? null : Collections.unmodifiableMap(new HashMap<>(options));
+    }
+
     public static String getSavedCachesLocation()
     {
         return conf.saved_caches_directory;
@@ -1303,6 +1361,22 @@ public class DatabaseDescriptor
         return conf.commitlog_sync_period_in_ms;
     }
 
+    @VisibleForTesting
+    public static void setCommitLogSyncPeriod(int periodMillis)
+    {
+        conf.commitlog_sync_period_in_ms = periodMillis;
+    }
+
+    public static double getCommitLogSyncGroupWindow()
+    {
+        return conf.commitlog_sync_group_window_in_ms;
+    }
+
+    public static Set<String> getCommitLogDurableKeyspaces()
+    {
+        return ImmutableSet.copyOf(conf.commitlog_durable_keyspaces);
+    }
+
     public static int getCommitLogPeriodicQueueSize()
     {
         return conf.commitlog_periodic_queue_size;
@@ -1662,6 +1736,11 @@ public class DatabaseDescriptor
         }
     }
 
+    public static boolean useOffHeapMemtablePartitionIndex()
+    {
+        return conf.memtable_offheap_partition_index;
+    }
+
     public static int getIndexSummaryResizeIntervalInMinutes()
     {
         return conf.index_summary_resize_interval_in_minutes;
@@ -25,6 +25,7 @@ import java.util.Set;
 import org.apache.cassandra.cache.CachingOptions;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.CFMetaData.SpeculativeRetry;
+import org.apache.cassandra.db.MemtablePartitionIndex;
 import org.apache.cassandra.db.compaction.AbstractCompactionStrategy;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.exceptions.SyntaxException;
@@ -48,8 +49,10 @@ public class CFPropDefs extends PropertyDefinitions
 
     public static final String KW_COMPACTION = "compaction";
     public static final String KW_COMPRESSION = "compression";
+    public static final String KW_MEMTABLE = "memtable";
 
     public static final String COMPACTION_STRATEGY_CLASS_KEY = "class";
+    public static final String MEMTABLE_CLASS_KEY = "class";
 
     public static final Set<String> keywords = new HashSet<>();
     public static final Set<String> obsoleteKeywords = new HashSet<>();
@@ -69,6 +72,7 @@ public class CFPropDefs extends PropertyDefinitions
         keywords.add(KW_COMPACTION);
         keywords.add(KW_COMPRESSION);
         keywords.add(KW_MEMTABLE_FLUSH_PERIOD);
+        keywords.add(KW_MEMTABLE);
 
         obsoleteKeywords.add("index_interval");
         obsoleteKeywords.add("replicate_on_write");
@@ -76,12 +80,13 @@ public class CFPropDefs extends PropertyDefinitions
     }
 
     private Class<? extends AbstractCompactionStrategy> compactionStrategyClass = null;
+    private Class<? extends MemtablePartitionIndex> memtableClass = null;
 
     public void validate() throws ConfigurationException, SyntaxException
     {
         // Skip validation if the comapction strategy class is already set as it means we've alreayd
         // prepared (and redoing it would set strategyClass back to null, which we don't want)
-        if (compactionStrategyClass != null)
+        if (compactionStrategyClass != null || memtableClass != null)
             return;
 
         validate(keywords, obsoleteKeywords);
@@ -117,6 +122,17 @@ public class CFPropDefs extends PropertyDefinitions
             cp.validate();
         }
 
+        Map<String, String> memtableOptions = getMemtableOptions();
+        if (!memtableOptions.isEmpty())
+        {
+            String memtable = memtableOptions.get(MEMTABLE_CLASS_KEY);
+            if (memtable == null)
+                throw new ConfigurationException("Missing sub-option '" + MEMTABLE_CLASS_KEY + "' for the '" + KW_MEMTABLE + "' option.");
+
+            memtableClass = CFMetaData.createMemtableClass(memtable);
+            memtableOptions.remove(MEMTABLE_CLASS_KEY);
+        }
+
         validateMinimumInt(KW_DEFAULT_TIME_TO_LIVE, 0, CFMetaData.DEFAULT_DEFAULT_TIME_TO_LIVE);
 
         Integer minIndexInterval = getInt(KW_MIN_INDEX_INTERVAL, null);
@@ -149,6 +165,15 @@ public class CFPropDefs extends PropertyDefinitions
             return new HashMap<>();
         return compressionOptions;
     }
+
+    public Map<String, String> getMemtableOptions() throws SyntaxException
+    {
+        Map<String, String> memtableOptions = getMap(KW_MEMTABLE);
+        if (memtableOptions == null)
+            return new HashMap<>();
+        return memtableOptions;
+    }
+
     public CachingOptions getCachingOptions() throws SyntaxException, ConfigurationException
     {
         CachingOptions options = null;
@@ -196,6 +221,12 @@ public class CFPropDefs extends PropertyDefinitions
             cfm.compactionStrategyOptions(new HashMap<>(getCompactionOptions()));
         }
 
+        if (memtableClass != null)
+        {
+            cfm.memtableClass(memtableClass);
+            cfm.memtableOptions(new HashMap<>(getMemtableOptions()));
+        }
+
         cfm.bloomFilterFpChance(getDouble(KW_BF_FP_CHANCE, cfm.getBloomFilterFpChance()));
 
         if (!getCompressionOptions().isEmpty())
@@ -56,7 +56,7 @@ public abstract class AbstractRangeCommand implements IReadCommand
 
     public List<Row> postReconciliationProcessing(List<Row> rows)
     {
-        return searcher == null ? trim(rows) : trim(searcher.postReconciliationProcessing(rowFilter, rows));
+        return searcher == null ? trim(rows) : trim(searcher.postReconciliationProcessing(rowFilter, rows, limit()));
     }
 
     private List<Row> trim(List<Row> rows)
@@ -794,7 +794,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         {
             cfs.indexManager.setIndexRemoved(indexes);
             logger.info(String.format("User Requested secondary index re-build for %s/%s indexes", ksName, cfName));
-            cfs.indexManager.maybeBuildSecondaryIndexes(sstables, indexes);
+            cfs.indexManager.maybeBuildSecondaryIndexes(sstables, indexes, true);
             cfs.indexManager.setIndexBuilt(indexes);
         }
     }
@@ -969,7 +969,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                 {
                     // flush any non-cfs backed indexes
                     logger.info("Flushing SecondaryIndex {}", index);
-                    index.forceBlockingFlush();
+                    index.forceBlockingFlush(lastReplayPosition);
                 }
             }
 
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.MemtableAllocator;
+
+/**
+ * Memtable partition index backed by a ConcurrentHashMap, for tables that are mostly read by partition key.
+ *
+ * Puts and point lookups don't need to compare keys, but every iteration has to sort a snapshot of the partitions,
+ * so range reads are expensive and flushes pay for sorting once.
+ */
+public class HashPartitionIndex implements MemtablePartitionIndex
+{
+    private static final int ROW_OVERHEAD_HEAP_SIZE = SkipListPartitionIndex.estimateRowOverhead(new ConcurrentHashMap<RowPosition, Object>(), 100000);
+
+    private static final Comparator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> BY_KEY = new Comparator<Map.Entry<DecoratedKey, AtomicBTreeColumns>>()
+    {
+        public int compare(Map.Entry<DecoratedKey, AtomicBTreeColumns> e1, Map.Entry<DecoratedKey, AtomicBTreeColumns> e2)
+        {
+            return e1.getKey().compareTo(e2.getKey());
+        }
+    };
+
+    private final ConcurrentHashMap<DecoratedKey, AtomicBTreeColumns> rows = new ConcurrentHashMap<>();
+    private final IPartitioner partitioner;
+    private final MemtableAllocator allocator;
+
+    public HashPartitionIndex(ColumnFamilyStore cfs, MemtableAllocator allocator, Map<String, String> options)
+    {
+        this(cfs.partitioner, allocator);
+    }
+
+    HashPartitionIndex(IPartitioner partitioner, MemtableAllocator allocator)
+    {
+        this.partitioner = partitioner;
+        this.allocator = allocator;
+    }
+
+    public AtomicBTreeColumns get(DecoratedKey key)
+    {
+        return rows.get(key);
+    }
+
+    public AtomicBTreeColumns putIfAbsent(DecoratedKey key, AtomicBTreeColumns partition, OpOrder.Group opGroup)
+    {
+        final DecoratedKey cloneKey = allocator.clone(key, opGroup);
+        AtomicBTreeColumns previous = rows.putIfAbsent(cloneKey, partition);
+        if (previous != null)
+            allocator.reclaimer().reclaimImmediately(cloneKey);
+        return previous;
+    }
+
+    public long partitionHeapOverhead(DecoratedKey key)
+    {
+        return partitioner.getHeapSizeOf(key.getToken()) + ROW_OVERHEAD_HEAP_SIZE;
+    }
+
+    public int size()
+    {
+        return rows.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return rows.isEmpty();
+    }
+
+    public Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> iterator(final RowPosition from, final RowPosition to)
+    {
+        List<Map.Entry<DecoratedKey, AtomicBTreeColumns>> entries = new ArrayList<>(rows.size());
+        for (Map.Entry<DecoratedKey, AtomicBTreeColumns> entry : rows.entrySet())
+        {
+            DecoratedKey key = entry.getKey();
+            if ((from == null || key.compareTo(from) >= 0) && (to == null || key.compareTo(to) <= 0))
+                entries.add(entry);
+        }
+        Collections.sort(entries, BY_KEY);
+        return Collections.unmodifiableList(entries).iterator();
+    }
+}
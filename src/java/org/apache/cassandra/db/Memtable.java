@@ -21,8 +21,6 @@ import java.io.File;
 import java.util.AbstractMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -38,7 +36,6 @@ import org.apache.cassandra.db.commitlog.CommitLog;
 import org.apache.cassandra.db.commitlog.ReplayPosition;
 import org.apache.cassandra.db.composites.CellNameType;
 import org.apache.cassandra.db.index.SecondaryIndexManager;
-import org.apache.cassandra.dht.LongToken;
 import org.apache.cassandra.io.sstable.SSTableReader;
 import org.apache.cassandra.io.sstable.SSTableWriter;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
@@ -52,7 +49,6 @@ public class Memtable
     private static final Logger logger = LoggerFactory.getLogger(Memtable.class);
 
     static final MemtablePool MEMORY_POOL = DatabaseDescriptor.getMemtableAllocatorPool();
-    private static final int ROW_OVERHEAD_HEAP_SIZE = estimateRowOverhead(Integer.valueOf(System.getProperty("cassandra.memtable_row_overhead_computation_step", "100000")));
 
     private final MemtableAllocator allocator;
     private final AtomicLong liveDataSize = new AtomicLong(0);
@@ -72,10 +68,7 @@ public class Memtable
         }
     }
 
-    // We index the memtable by RowPosition only for the purpose of being able
-    // to select key range using Token.KeyBound. However put() ensures that we
-    // actually only store DecoratedKey.
-    private final ConcurrentNavigableMap<RowPosition, AtomicBTreeColumns> rows = new ConcurrentSkipListMap<>();
+    private final MemtablePartitionIndex rows;
     public final ColumnFamilyStore cfs;
     private final long creationTime = System.currentTimeMillis();
     private final long creationNano = System.nanoTime();
@@ -89,10 +82,26 @@ public class Memtable
     {
         this.cfs = cfs;
         this.allocator = MEMORY_POOL.newAllocator();
+        this.rows = newPartitionIndex();
         this.initialComparator = cfs.metadata.comparator;
         this.cfs.scheduleFlush();
     }
 
+    private MemtablePartitionIndex newPartitionIndex()
+    {
+        Class<? extends MemtablePartitionIndex> memtableClass = cfs.metadata.memtableClass;
+        boolean offHeap = memtableClass == NativePartitionIndex.class
+                          || (memtableClass == SkipListPartitionIndex.class && DatabaseDescriptor.useOffHeapMemtablePartitionIndex());
+        if (!offHeap)
+            return cfs.metadata.createMemtablePartitionIndexInstance(cfs, allocator);
+
+        // the off-heap index only knows how to compare the tokens of the Murmur3 partitioner, so fall back to the
+        // default index rather than failing the memtable switch where it can't be used
+        return NativePartitionIndex.isSupported(cfs, allocator)
+             ? new NativePartitionIndex((NativeAllocator) allocator)
+             : new SkipListPartitionIndex(cfs.partitioner, allocator);
+    }
+
     public MemtableAllocator getAllocator()
     {
         return allocator;
@@ -188,21 +197,16 @@ public class Memtable
         if (previous == null)
         {
             AtomicBTreeColumns empty = cf.cloneMeShallow(AtomicBTreeColumns.factory, false);
-            final DecoratedKey cloneKey = allocator.clone(key, opGroup);
             // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
-            previous = rows.putIfAbsent(cloneKey, empty);
+            previous = rows.putIfAbsent(key, empty, opGroup);
             if (previous == null)
             {
                 previous = empty;
                 // allocate the row overhead after the fact; this saves over allocating and having to free after, but
                 // means we can overshoot our declared limit.
-                int overhead = (int) (cfs.partitioner.getHeapSizeOf(key.getToken()) + ROW_OVERHEAD_HEAP_SIZE);
+                int overhead = (int) rows.partitionHeapOverhead(key);
                 allocator.onHeap().allocate(overhead, opGroup);
             }
-            else
-            {
-                allocator.reclaimer().reclaimImmediately(cloneKey);
-            }
         }
 
         final Pair<Long, Long> pair = previous.addAllWithSizeDelta(cf, allocator, opGroup, indexer);
@@ -216,8 +220,10 @@ public class Memtable
     {
         StringBuilder builder = new StringBuilder();
         builder.append("{");
-        for (Map.Entry<RowPosition, AtomicBTreeColumns> entry : rows.entrySet())
+        Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> iter = allRows();
+        while (iter.hasNext())
         {
+            Map.Entry<DecoratedKey, AtomicBTreeColumns> entry = iter.next();
             builder.append(entry.getKey()).append(": ").append(entry.getValue()).append(", ");
         }
         builder.append("}");
@@ -243,9 +249,7 @@ public class Memtable
     {
         return new Iterator<Map.Entry<DecoratedKey, ColumnFamily>>()
         {
-            private Iterator<? extends Map.Entry<? extends RowPosition, AtomicBTreeColumns>> iter = stopAt.isMinimum(cfs.partitioner)
-                    ? rows.tailMap(startWith).entrySet().iterator()
-                    : rows.subMap(startWith, true, stopAt, true).entrySet().iterator();
+            private Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> iter = rows.iterator(startWith, stopAt.isMinimum(cfs.partitioner) ? null : stopAt);
 
             private Map.Entry<? extends RowPosition, ? extends ColumnFamily> currentEntry;
 
@@ -286,6 +290,11 @@ public class Memtable
         return rows.get(key);
     }
 
+    private Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> allRows()
+    {
+        return rows.iterator(null, null);
+    }
+
     public long creationTime()
     {
         return creationTime;
@@ -301,11 +310,13 @@ public class Memtable
             this.context = context;
 
             long keySize = 0;
-            for (RowPosition key : rows.keySet())
+            Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> iter = allRows();
+            while (iter.hasNext())
             {
                 //  make sure we don't write non-sensical keys
+                DecoratedKey key = iter.next().getKey();
                 assert key instanceof DecoratedKey;
-                keySize += ((DecoratedKey)key).getKey().remaining();
+                keySize += key.getKey().remaining();
             }
             estimatedSize = (long) ((keySize // index entries
                                     + keySize // keys in data file
@@ -347,8 +358,10 @@ public class Memtable
                 int heavilyContendedRowCount = 0;
                 // (we can't clear out the map as-we-go to free up memory,
                 //  since the memtable is being used for queries in the "pending flush" category)
-                for (Map.Entry<RowPosition, AtomicBTreeColumns> entry : rows.entrySet())
+                Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> iter = allRows();
+                while (iter.hasNext())
                 {
+                    Map.Entry<DecoratedKey, AtomicBTreeColumns> entry = iter.next();
                     AtomicBTreeColumns cf = entry.getValue();
 
                     if (cf.isMarkedForDelete() && cf.hasColumns())
@@ -366,7 +379,7 @@ public class Memtable
                         heavilyContendedRowCount++;
 
                     if (!cf.isEmpty())
-                        writer.append((DecoratedKey)entry.getKey(), cf);
+                        writer.append(entry.getKey(), cf);
                 }
 
                 if (writer.getFilePointer() > 0)
@@ -409,23 +422,4 @@ public class Memtable
                                      sstableMetadataCollector);
         }
     }
-
-    private static int estimateRowOverhead(final int count)
-    {
-        // calculate row overhead
-        final OpOrder.Group group = new OpOrder().start();
-        int rowOverhead;
-        MemtableAllocator allocator = MEMORY_POOL.newAllocator();
-        ConcurrentNavigableMap<RowPosition, Object> rows = new ConcurrentSkipListMap<>();
-        final Object val = new Object();
-        for (int i = 0 ; i < count ; i++)
-            rows.put(allocator.clone(new BufferDecoratedKey(new LongToken((long) i), ByteBufferUtil.EMPTY_BYTE_BUFFER), group), val);
-        double avgSize = ObjectSizes.measureDeep(rows) / (double) count;
-        rowOverhead = (int) ((avgSize - Math.floor(avgSize)) < 0.05 ? Math.floor(avgSize) : Math.ceil(avgSize));
-        rowOverhead -= ObjectSizes.measureDeep(new LongToken((long) 0));
-        rowOverhead += AtomicBTreeColumns.EMPTY_SIZE;
-        allocator.setDiscarding();
-        allocator.setDiscarded();
-        return rowOverhead;
-    }
 }
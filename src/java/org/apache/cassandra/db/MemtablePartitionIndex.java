@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+/**
+ * The partitions of a memtable, indexed by key in token order. Partitions are only ever added, and are visible to
+ * concurrent readers as soon as they have been added.
+ *
+ * The implementation used by the memtables of a table is chosen with the 'class' sub-option of its 'memtable'
+ * option, the other sub-options being passed to the implementation. Implementations must be thread-safe, and have
+ * a public constructor taking the ColumnFamilyStore, the MemtableAllocator of the memtable, which accounts for its
+ * memory against the MemtablePool, and the options map. Any memory used by the index that is not allocated through
+ * the allocator should be accounted for by partitionHeapOverhead().
+ */
+public interface MemtablePartitionIndex
+{
+    /**
+     * @return the partition of the key, or null if there is none
+     */
+    AtomicBTreeColumns get(DecoratedKey key);
+
+    /**
+     * Adds the partition if there isn't one for the key yet. The key is copied with the allocator of the memtable.
+     *
+     * @return the partition already present for the key, or null if the partition has been added
+     */
+    AtomicBTreeColumns putIfAbsent(DecoratedKey key, AtomicBTreeColumns partition, OpOrder.Group opGroup);
+
+    /**
+     * @return the on-heap size accounted for each partition added, besides the size of its contents
+     */
+    long partitionHeapOverhead(DecoratedKey key);
+
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * @param from the first position to include, or null to iterate from the start of the index
+     * @param to the last position to include, or null to iterate to the end of the index
+     * @return the partitions between the positions, in token order
+     */
+    Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> iterator(RowPosition from, RowPosition to);
+}
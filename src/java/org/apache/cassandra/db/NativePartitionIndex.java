@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.cassandra.dht.LongToken;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.utils.FastByteOperations;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+import org.apache.cassandra.utils.memory.MemtableAllocator;
+import org.apache.cassandra.utils.memory.NativeAllocator;
+
+/**
+ * Memtable partition index for LongToken partitioners, made of an insert-only lock-free skip list whose nodes are
+ * allocated off-heap by the NativeAllocator of the memtable, and so are freed with the rest of its memory once the
+ * memtable has been discarded and the reads using it have completed.
+ *
+ * Each node holds the token and the bytes of its key, so no DecoratedKey or Token is kept on heap. The partitions
+ * themselves are still on-heap objects; the nodes refer to them by their index in a chunked array, so the only other
+ * on-heap cost of a partition is one array slot.
+ *
+ * Node layout (8-byte aligned): token (8), partition index (4), key length (4), height (4), padding (4),
+ * the address of the next node at each level (8 * height), and the key bytes.
+ */
+public class NativePartitionIndex implements MemtablePartitionIndex
+{
+    private static final int MAX_HEIGHT = 16;
+
+    private static final int TOKEN_OFFSET = 0;
+    private static final int PARTITION_OFFSET = 8;
+    private static final int KEY_LENGTH_OFFSET = 12;
+    private static final int HEIGHT_OFFSET = 16;
+    private static final int NEXT_OFFSET = 24;
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // the on-heap cost of a partition, besides its contents: the partition itself and its slot in the chunked array
+    private static final long PARTITION_HEAP_OVERHEAD = AtomicBTreeColumns.EMPTY_SIZE + 8;
+
+    private final NativeAllocator allocator;
+
+    // the address of the head node, which precedes all others at every level; allocated by the first put
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+
+    // the partitions, indexed by the partition index of their node
+    private final AtomicInteger nextPartition = new AtomicInteger();
+    private volatile AtomicReferenceArray<AtomicBTreeColumns>[] chunks = newChunks(16);
+
+    public NativePartitionIndex(ColumnFamilyStore cfs, MemtableAllocator allocator, Map<String, String> options)
+    {
+        this(checkSupported(cfs, allocator));
+    }
+
+    NativePartitionIndex(NativeAllocator allocator)
+    {
+        this.allocator = allocator;
+    }
+
+    /**
+     * @return whether the index can be used by the memtables of the table with the allocator: it only knows how to
+     * compare the tokens of the Murmur3 partitioner, and its nodes are allocated by the native allocator
+     */
+    public static boolean isSupported(ColumnFamilyStore cfs, MemtableAllocator allocator)
+    {
+        return allocator instanceof NativeAllocator && cfs.partitioner instanceof Murmur3Partitioner;
+    }
+
+    private static NativeAllocator checkSupported(ColumnFamilyStore cfs, MemtableAllocator allocator)
+    {
+        if (!isSupported(cfs, allocator))
+            throw new IllegalArgumentException("The off-heap partition index requires the offheap_objects memtable allocation type and the Murmur3Partitioner");
+        return (NativeAllocator) allocator;
+    }
+
+    public AtomicBTreeColumns get(DecoratedKey key)
+    {
+        long head = this.head.get();
+        if (head == 0)
+            return null;
+        long node = find(head, key, null, null);
+        return node != 0 && compare(node, key) == 0 ? partition(node) : null;
+    }
+
+    public AtomicBTreeColumns putIfAbsent(DecoratedKey key, AtomicBTreeColumns partition, OpOrder.Group opGroup)
+    {
+        long head = head(opGroup);
+        long[] preds = new long[MAX_HEIGHT];
+        long[] succs = new long[MAX_HEIGHT];
+        long node = 0;
+        int index = -1;
+
+        // link the node at the bottom level, which is what makes it visible
+        while (true)
+        {
+            long succ = find(head, key, preds, succs);
+            if (succ != 0 && compare(succ, key) == 0)
+            {
+                // we have been beaten; the memory of our node, if any, is reclaimed with the rest of the memtable
+                if (index >= 0)
+                    chunk(index).set(index & CHUNK_MASK, null);
+                return partition(succ);
+            }
+
+            if (node == 0)
+            {
+                index = nextPartition.getAndIncrement();
+                chunk(index).set(index & CHUNK_MASK, partition);
+                node = newNode(key, index, randomHeight(), opGroup);
+            }
+
+            MemoryUtil.setLong(nextAddress(node, 0), succ);
+            if (MemoryUtil.compareAndSwapLong(nextAddress(preds[0], 0), succ, node))
+                break;
+        }
+        size.incrementAndGet();
+
+        // link the upper levels, which only speed up searches, finding the neighbours again whenever we race
+        int height = MemoryUtil.getInt(node + HEIGHT_OFFSET);
+        for (int level = 1; level < height; level++)
+        {
+            while (true)
+            {
+                MemoryUtil.setLong(nextAddress(node, level), succs[level]);
+                if (MemoryUtil.compareAndSwapLong(nextAddress(preds[level], level), succs[level], node))
+                    break;
+                find(head, key, preds, succs);
+            }
+        }
+        return null;
+    }
+
+    public long partitionHeapOverhead(DecoratedKey key)
+    {
+        return PARTITION_HEAP_OVERHEAD;
+    }
+
+    public int size()
+    {
+        return size.get();
+    }
+
+    public boolean isEmpty()
+    {
+        return size.get() == 0;
+    }
+
+    public Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> iterator(final RowPosition from, final RowPosition to)
+    {
+        long head = this.head.get();
+        final long first = head == 0 ? 0 : from == null ? MemoryUtil.getLongVolatile(nextAddress(head, 0)) : find(head, from, null, null);
+        return new Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>>()
+        {
+            private long node = first;
+
+            public boolean hasNext()
+            {
+                return node != 0 && (to == null || compare(node, to) <= 0);
+            }
+
+            public Map.Entry<DecoratedKey, AtomicBTreeColumns> next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Map.Entry<DecoratedKey, AtomicBTreeColumns> entry = new AbstractMap.SimpleImmutableEntry<>(key(node), partition(node));
+                node = MemoryUtil.getLongVolatile(nextAddress(node, 0));
+                return entry;
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Finds the first node not before the position, and optionally, at each level, the last node before the
+     * position and the one following it.
+     *
+     * @return the address of the first node not before the position, or 0 if there is none
+     */
+    private static long find(long head, RowPosition position, long[] preds, long[] succs)
+    {
+        long pred = head;
+        long next = 0;
+        for (int level = MAX_HEIGHT - 1; level >= 0; level--)
+        {
+            next = MemoryUtil.getLongVolatile(nextAddress(pred, level));
+            while (next != 0 && compare(next, position) < 0)
+            {
+                pred = next;
+                next = MemoryUtil.getLongVolatile(nextAddress(pred, level));
+            }
+            if (preds != null)
+            {
+                preds[level] = pred;
+                succs[level] = next;
+            }
+        }
+        return next;
+    }
+
+    private static int compare(long node, RowPosition position)
+    {
+        int c = Long.compare(MemoryUtil.getLong(node + TOKEN_OFFSET), ((LongToken) position.getToken()).token);
+        if (c != 0)
+            return c;
+        switch (position.kind())
+        {
+            case MIN_BOUND:
+                return 1;
+            case MAX_BOUND:
+                return -1;
+            default:
+                return FastByteOperations.UnsafeOperations.compareTo(null, keyAddress(node), MemoryUtil.getInt(node + KEY_LENGTH_OFFSET), ((DecoratedKey) position).getKey());
+        }
+    }
+
+    private long head(OpOrder.Group opGroup)
+    {
+        long head = this.head.get();
+        if (head != 0)
+            return head;
+        long node = allocate(NEXT_OFFSET + 8 * MAX_HEIGHT, opGroup);
+        MemoryUtil.setInt(node + HEIGHT_OFFSET, MAX_HEIGHT);
+        for (int level = 0; level < MAX_HEIGHT; level++)
+            MemoryUtil.setLong(nextAddress(node, level), 0);
+        // if we are beaten its memory is reclaimed with the rest of the memtable
+        return this.head.compareAndSet(0, node) ? node : this.head.get();
+    }
+
+    private long newNode(DecoratedKey key, int index, int height, OpOrder.Group opGroup)
+    {
+        int keyLength = key.getKey().remaining();
+        long node = allocate(NEXT_OFFSET + 8 * height + keyLength, opGroup);
+        MemoryUtil.setLong(node + TOKEN_OFFSET, ((LongToken) key.getToken()).token);
+        MemoryUtil.setInt(node + PARTITION_OFFSET, index);
+        MemoryUtil.setInt(node + KEY_LENGTH_OFFSET, keyLength);
+        MemoryUtil.setInt(node + HEIGHT_OFFSET, height);
+        for (int level = 0; level < height; level++)
+            MemoryUtil.setLong(nextAddress(node, level), 0);
+        MemoryUtil.setBytes(keyAddress(node), key.getKey());
+        return node;
+    }
+
+    // the regions of the allocator are not aligned, and the next node addresses must be for compare-and-swap
+    private long allocate(int size, OpOrder.Group opGroup)
+    {
+        long peer = allocator.allocate(size + 7, opGroup);
+        return (peer + 7) & ~7L;
+    }
+
+    private static long nextAddress(long node, int level)
+    {
+        return node + NEXT_OFFSET + 8 * level;
+    }
+
+    private static long keyAddress(long node)
+    {
+        return node + NEXT_OFFSET + 8 * MemoryUtil.getInt(node + HEIGHT_OFFSET);
+    }
+
+    private static DecoratedKey key(long node)
+    {
+        return new BufferDecoratedKey(new LongToken(MemoryUtil.getLong(node + TOKEN_OFFSET)),
+                                      MemoryUtil.getByteBuffer(keyAddress(node), MemoryUtil.getInt(node + KEY_LENGTH_OFFSET)));
+    }
+
+    private AtomicBTreeColumns partition(long node)
+    {
+        int index = MemoryUtil.getInt(node + PARTITION_OFFSET);
+        return chunk(index).get(index & CHUNK_MASK);
+    }
+
+    // each level has a quarter of the nodes of the one below
+    private static int randomHeight()
+    {
+        int bits = ThreadLocalRandom.current().nextInt();
+        return Math.min(MAX_HEIGHT, 1 + Integer.numberOfTrailingZeros(~bits) / 2);
+    }
+
+    private AtomicReferenceArray<AtomicBTreeColumns> chunk(int index)
+    {
+        int chunk = index >>> CHUNK_SHIFT;
+        AtomicReferenceArray<AtomicBTreeColumns>[] chunks = this.chunks;
+        if (chunk < chunks.length && chunks[chunk] != null)
+            return chunks[chunk];
+        return newChunk(chunk);
+    }
+
+    private synchronized AtomicReferenceArray<AtomicBTreeColumns> newChunk(int chunk)
+    {
+        AtomicReferenceArray<AtomicBTreeColumns>[] chunks = this.chunks;
+        if (chunk >= chunks.length)
+        {
+            AtomicReferenceArray<AtomicBTreeColumns>[] grown = newChunks(Math.max(chunk + 1, chunks.length * 2));
+            System.arraycopy(chunks, 0, grown, 0, chunks.length);
+            chunks = grown;
+        }
+        if (chunks[chunk] == null)
+        {
+            chunks[chunk] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            // republish, so that readers see the new chunk
+            this.chunks = chunks;
+        }
+        return chunks[chunk];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<AtomicBTreeColumns>[] newChunks(int length)
+    {
+        return (AtomicReferenceArray<AtomicBTreeColumns>[]) new AtomicReferenceArray<?>[length];
+    }
+}
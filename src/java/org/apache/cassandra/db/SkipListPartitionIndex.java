@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.LongToken;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ObjectSizes;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.MemtableAllocator;
+
+/**
+ * Memtable partition index backed by a ConcurrentSkipListMap, with the keys copied by the memtable allocator.
+ * This is the default implementation.
+ */
+public class SkipListPartitionIndex implements MemtablePartitionIndex
+{
+    private static final int ROW_OVERHEAD_HEAP_SIZE = estimateRowOverhead(Integer.valueOf(System.getProperty("cassandra.memtable_row_overhead_computation_step", "100000")));
+
+    // We index the memtable by RowPosition only for the purpose of being able
+    // to select key range using Token.KeyBound. However putIfAbsent() ensures that we
+    // actually only store DecoratedKey.
+    private final ConcurrentNavigableMap<RowPosition, AtomicBTreeColumns> rows = new ConcurrentSkipListMap<>();
+    private final IPartitioner partitioner;
+    private final MemtableAllocator allocator;
+
+    public SkipListPartitionIndex(ColumnFamilyStore cfs, MemtableAllocator allocator, Map<String, String> options)
+    {
+        this(cfs.partitioner, allocator);
+    }
+
+    SkipListPartitionIndex(IPartitioner partitioner, MemtableAllocator allocator)
+    {
+        this.partitioner = partitioner;
+        this.allocator = allocator;
+    }
+
+    public AtomicBTreeColumns get(DecoratedKey key)
+    {
+        return rows.get(key);
+    }
+
+    public AtomicBTreeColumns putIfAbsent(DecoratedKey key, AtomicBTreeColumns partition, OpOrder.Group opGroup)
+    {
+        final DecoratedKey cloneKey = allocator.clone(key, opGroup);
+        AtomicBTreeColumns previous = rows.putIfAbsent(cloneKey, partition);
+        if (previous != null)
+            allocator.reclaimer().reclaimImmediately(cloneKey);
+        return previous;
+    }
+
+    public long partitionHeapOverhead(DecoratedKey key)
+    {
+        return partitioner.getHeapSizeOf(key.getToken()) + ROW_OVERHEAD_HEAP_SIZE;
+    }
+
+    public int size()
+    {
+        return rows.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return rows.isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> iterator(RowPosition from, RowPosition to)
+    {
+        Iterator<? extends Map.Entry<? extends RowPosition, AtomicBTreeColumns>> iter = from == null
+                ? rows.entrySet().iterator()
+                : to == null
+                ? rows.tailMap(from).entrySet().iterator()
+                : rows.subMap(from, true, to, true).entrySet().iterator();
+        // Object cast is required since otherwise we can't turn RowPosition into DecoratedKey
+        return (Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>>) (Object) iter;
+    }
+
+    private static int estimateRowOverhead(final int count)
+    {
+        return estimateRowOverhead(new ConcurrentSkipListMap<RowPosition, Object>(), count);
+    }
+
+    /**
+     * @return the on-heap size of the entry of each partition in the map, including its key, besides its token,
+     * plus the size of an empty AtomicBTreeColumns
+     */
+    static int estimateRowOverhead(Map<RowPosition, Object> rows, final int count)
+    {
+        // calculate row overhead
+        final OpOrder.Group group = new OpOrder().start();
+        int rowOverhead;
+        MemtableAllocator allocator = Memtable.MEMORY_POOL.newAllocator();
+        final Object val = new Object();
+        for (int i = 0 ; i < count ; i++)
+            rows.put(allocator.clone(new BufferDecoratedKey(new LongToken((long) i), ByteBufferUtil.EMPTY_BYTE_BUFFER), group), val);
+        double avgSize = ObjectSizes.measureDeep(rows) / (double) count;
+        rowOverhead = (int) ((avgSize - Math.floor(avgSize)) < 0.05 ? Math.floor(avgSize) : Math.ceil(avgSize));
+        rowOverhead -= ObjectSizes.measureDeep(new LongToken((long) 0));
+        rowOverhead += AtomicBTreeColumns.EMPTY_SIZE;
+        allocator.setDiscarding();
+        allocator.setDiscarded();
+        return rowOverhead;
+    }
+}
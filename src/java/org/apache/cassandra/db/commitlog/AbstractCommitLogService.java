@@ -43,7 +43,7 @@ public abstract class AbstractCommitLogService
 
     // signal that writers can wait on to be notified of a completed sync
     protected final WaitQueue syncComplete = new WaitQueue();
-    private final Semaphore haveWork = new Semaphore(1);
+    protected final Semaphore haveWork = new Semaphore(1);
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractCommitLogService.class);
 
@@ -52,6 +52,8 @@ public abstract class AbstractCommitLogService
      * Batch or Periodic contract.
      *
      * Subclasses may be notified when a sync finishes by using the syncComplete WaitQueue.
+     *
+     * The sync thread is not running until start() is called, so subclasses can finish their construction first.
      */
     AbstractCommitLogService(final CommitLog commitLog, final String name, final long pollIntervalMillis)
     {
@@ -78,9 +80,11 @@ public abstract class AbstractCommitLogService
 
                         // sync and signal
                         long syncStarted = System.currentTimeMillis();
+                        long syncStartedNanos = System.nanoTime();
                         commitLog.sync(shutdown);
                         lastSyncedAt = syncStarted;
                         syncComplete.signalAll();
+                        syncCompleted(System.nanoTime() - syncStartedNanos);
 
 
                         // sleep any time we have left before the next one is due
@@ -113,7 +117,7 @@ public abstract class AbstractCommitLogService
 
                         try
                         {
-                            haveWork.tryAcquire(sleep, TimeUnit.MILLISECONDS);
+                            awaitWork(sleep);
                         }
                         catch (InterruptedException e)
                         {
@@ -140,9 +144,29 @@ public abstract class AbstractCommitLogService
         };
 
         thread = new Thread(runnable, name);
+    }
+
+    public void start()
+    {
         thread.start();
     }
 
+    /**
+     * Called by the sync thread after each sync, with the time it took.
+     */
+    protected void syncCompleted(long durationNanos)
+    {
+    }
+
+    /**
+     * Called by the sync thread to wait for the next sync to be due, either because the poll interval has elapsed
+     * or because some work has been requested.
+     */
+    protected void awaitWork(long sleepMillis) throws InterruptedException
+    {
+        haveWork.tryAcquire(sleepMillis, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Block for @param alloc to be sync'd as necessary, and handle bookkeeping
      */
@@ -184,4 +208,12 @@ public abstract class AbstractCommitLogService
     {
         return pending.get();
     }
+
+    /**
+     * @return the time that the sync thread waits for other writes to join a sync before doing it, in nanoseconds
+     */
+    public long getSyncWindowNanos()
+    {
+        return 0;
+    }
 }
\ No newline at end of file
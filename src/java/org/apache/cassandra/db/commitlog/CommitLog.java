@@ -63,15 +63,26 @@ public class CommitLog implements CommitLogMBean
     final CommitLogMetrics metrics;
     final AbstractCommitLogService executor;
 
+    // the replayer of the last recovery, exposing its progress
+    private volatile CommitLogReplayer replayer;
+
     private CommitLog()
     {
         DatabaseDescriptor.createAllDirectories();
 
         allocator = new CommitLogSegmentManager();
 
-        executor = DatabaseDescriptor.getCommitLogSync() == Config.CommitLogSync.batch
-                 ? new BatchCommitLogService(this)
-                 : new PeriodicCommitLogService(this);
+        switch (DatabaseDescriptor.getCommitLogSync())
+        {
+            case batch:
+                executor = new BatchCommitLogService(this);
+                break;
+            case group:
+                executor = new GroupCommitLogService(this);
+                break;
+            default:
+                executor = new PeriodicCommitLogService(this);
+        }
 
         MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
         try
@@ -85,6 +96,7 @@ public class CommitLog implements CommitLogMBean
 
         // register metrics
         metrics = new CommitLogMetrics(executor, allocator);
+        executor.start();
     }
 
     /**
@@ -145,6 +157,7 @@ public class CommitLog implements CommitLogMBean
     public int recover(File... clogs) throws IOException
     {
         CommitLogReplayer recovery = new CommitLogReplayer();
+        replayer = recovery;
         recovery.recover(clogs);
         return recovery.blockForWrites();
     }
@@ -157,6 +170,36 @@ public class CommitLog implements CommitLogMBean
         recover(new File(path));
     }
 
+    public int getSegmentsToReplay()
+    {
+        CommitLogReplayer recovery = replayer;
+        return recovery == null ? 0 : recovery.getSegmentsToReplay();
+    }
+
+    public int getReplayedSegments()
+    {
+        CommitLogReplayer recovery = replayer;
+        return recovery == null ? 0 : recovery.getReplayedSegments();
+    }
+
+    public long getBytesToReplay()
+    {
+        CommitLogReplayer recovery = replayer;
+        return recovery == null ? 0 : recovery.getBytesToReplay();
+    }
+
+    public long getReplayedBytes()
+    {
+        CommitLogReplayer recovery = replayer;
+        return recovery == null ? 0 : recovery.getReplayedBytes();
+    }
+
+    public int getReplayedMutations()
+    {
+        CommitLogReplayer recovery = replayer;
+        return recovery == null ? 0 : recovery.getReplayedMutations();
+    }
+
     /**
      * @return a ReplayPosition which, if >= one returned from add(), implies add() was started
      * (but not necessarily finished) prior to this call
@@ -341,6 +384,12 @@ public class CommitLog implements CommitLogMBean
         return archiver.precision.toString();
     }
 
+    @Override
+    public long getSyncWindowNanos()
+    {
+        return executor.getSyncWindowNanos();
+    }
+
     public List<String> getActiveSegmentNames()
     {
         List<String> segmentNames = new ArrayList<>();
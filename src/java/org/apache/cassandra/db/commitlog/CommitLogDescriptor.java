@@ -25,10 +25,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.io.FSReadError;
+import org.apache.cassandra.io.compress.CompressionParameters;
+import org.apache.cassandra.io.compress.ICompressor;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.PureJavaCrc32;
@@ -44,6 +49,8 @@ public class CommitLogDescriptor
     public static final int VERSION_12 = 2;
     public static final int VERSION_20 = 3;
     public static final int VERSION_21 = 4;
+    // 2.1 layout whose sync sections are compressed; the header records the compression options
+    public static final int VERSION_21_COMPRESSED = 5;
     /**
      * Increment this number if there is a changes in the commit log disc layout or MessagingVersion changes.
      * Note: make sure to handle {@link #getMessagingVersion()}
@@ -55,27 +62,84 @@ public class CommitLogDescriptor
 
     final int version;
     public final long id;
+    // the compression options of the segment; null if it is not compressed, or if only its file name is known
+    public final Map<String, String> compression;
 
-    public CommitLogDescriptor(int version, long id)
+    public CommitLogDescriptor(int version, long id, Map<String, String> compression)
     {
         this.version = version;
         this.id = id;
+        this.compression = compression;
+    }
+
+    public CommitLogDescriptor(int version, long id)
+    {
+        this(version, id, null);
+    }
+
+    public CommitLogDescriptor(long id, Map<String, String> compression)
+    {
+        this(compression == null ? current_version : VERSION_21_COMPRESSED, id, compression);
     }
 
     public CommitLogDescriptor(long id)
     {
-        this(current_version, id);
+        this(id, null);
+    }
+
+    /**
+     * @return the size of the header of this segment, which is variable for compressed segments
+     */
+    public int headerSize()
+    {
+        if (version < VERSION_21_COMPRESSED)
+            return HEADER_SIZE;
+        return HEADER_SIZE + 2 + compressionBytes().length;
+    }
+
+    private byte[] compressionBytes()
+    {
+        return FBUtilities.json(compression).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a new compressor for the sync sections of this segment, or null if it is not compressed
+     */
+    public ICompressor createCompressor()
+    {
+        if (compression == null)
+            return null;
+        try
+        {
+            return CompressionParameters.create(compression).sstableCompressor;
+        }
+        catch (ConfigurationException e)
+        {
+            throw new IllegalStateException("Invalid compression for commit log segment " + fileName(), e);
+        }
     }
 
     static void writeHeader(ByteBuffer out, CommitLogDescriptor descriptor)
     {
-        out.putInt(0, descriptor.version);
-        out.putLong(4, descriptor.id);
         PureJavaCrc32 crc = new PureJavaCrc32();
+        out.putInt(0, descriptor.version);
         crc.updateInt(descriptor.version);
+        out.putLong(4, descriptor.id);
         crc.updateInt((int) (descriptor.id & 0xFFFFFFFFL));
         crc.updateInt((int) (descriptor.id >>> 32));
-        out.putInt(12, crc.getCrc());
+        int position = 12;
+        if (descriptor.version >= VERSION_21_COMPRESSED)
+        {
+            byte[] compression = descriptor.compressionBytes();
+            out.putShort(position, (short) compression.length);
+            crc.updateInt(compression.length);
+            ByteBuffer dup = out.duplicate();
+            dup.position(position + 2);
+            dup.put(compression);
+            crc.update(compression, 0, compression.length);
+            position += 2 + compression.length;
+        }
+        out.putInt(position, crc.getCrc());
     }
 
     public static CommitLogDescriptor fromHeader(File file)
@@ -85,14 +149,25 @@ public class CommitLogDescriptor
             assert raf.getFilePointer() == 0;
             int version = raf.readInt();
             long id = raf.readLong();
-            int crc = raf.readInt();
             PureJavaCrc32 checkcrc = new PureJavaCrc32();
             checkcrc.updateInt(version);
             checkcrc.updateInt((int) (id & 0xFFFFFFFFL));
             checkcrc.updateInt((int) (id >>> 32));
-            if (crc == checkcrc.getCrc())
-                return new CommitLogDescriptor(version, id);
-            return null;
+            byte[] compression = null;
+            if (version >= VERSION_21_COMPRESSED)
+            {
+                int length = raf.readShort() & 0xFFFF;
+                compression = new byte[length];
+                raf.readFully(compression);
+                checkcrc.updateInt(length);
+                checkcrc.update(compression, 0, length);
+            }
+            int crc = raf.readInt();
+            if (crc != checkcrc.getCrc())
+                return null;
+            return compression == null
+                 ? new CommitLogDescriptor(version, id)
+                 : new CommitLogDescriptor(version, id, FBUtilities.fromJsonMap(new String(compression, StandardCharsets.UTF_8)));
         }
         catch (EOFException e)
         {
@@ -126,6 +201,7 @@ public class CommitLogDescriptor
             case VERSION_20:
                 return MessagingService.VERSION_20;
             case VERSION_21:
+            case VERSION_21_COMPRESSED:
                 return MessagingService.VERSION_21;
             default:
                 throw new IllegalStateException("Unknown commitlog version " + version);
@@ -80,6 +80,37 @@ public interface CommitLogMBean
      */
     public void recover(String path) throws IOException;
 
+    /**
+     * @return the number of segments of the last recovery, or 0 if there has been no recovery
+     */
+    public int getSegmentsToReplay();
+
+    /**
+     * @return the number of segments of the last recovery that have been completely read
+     */
+    public int getReplayedSegments();
+
+    /**
+     * @return the total size in bytes of the segments of the last recovery
+     */
+    public long getBytesToReplay();
+
+    /**
+     * @return the number of bytes of the segments of the last recovery that have been read
+     */
+    public long getReplayedBytes();
+
+    /**
+     * @return the number of mutations submitted to be replayed by the last recovery
+     */
+    public int getReplayedMutations();
+
+    /**
+     * @return the time that group commit currently waits for other durable writes before syncing, in nanoseconds,
+     * or 0 if commitlog_sync is not group
+     */
+    public long getSyncWindowNanos();
+
     /**
      * @return file names (not full paths) of active commit log segments (segments containing unflushed data)
      */
@@ -19,11 +19,14 @@
 package org.apache.cassandra.db.commitlog;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.Future;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
@@ -32,11 +35,15 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.apache.cassandra.concurrent.Stage;
-import org.apache.cassandra.concurrent.StageManager;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.Schema;
 import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.index.SecondaryIndex;
+import org.apache.cassandra.io.compress.ICompressor;
+import org.apache.cassandra.io.util.ByteBufferDataInput;
 import org.apache.cassandra.io.util.FastByteArrayInputStream;
+import org.apache.cassandra.io.util.FileDataInput;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.io.util.RandomAccessReader;
 import org.apache.cassandra.utils.*;
@@ -48,25 +55,45 @@ public class CommitLogReplayer
     private static final Logger logger = LoggerFactory.getLogger(CommitLogReplayer.class);
     private static final int MAX_OUTSTANDING_REPLAY_COUNT = Integer.getInteger("cassandra.commitlog_max_outstanding_replay_count", 1024);
     private static final int LEGACY_END_OF_SEGMENT_MARKER = 0;
+    // marks the end of the mutations decoded from a segment read concurrently
+    private static final Mutation END_OF_SEGMENT = new Mutation("", ByteBufferUtil.EMPTY_BYTE_BUFFER);
+    private static final int REPLAY_THREADS = Integer.getInteger("cassandra.commitlog_replay_threads", Math.min(4, FBUtilities.getAvailableProcessors()));
 
     private final Set<Keyspace> keyspacesRecovered;
     private final List<Future<?>> futures;
-    private final Map<UUID, AtomicInteger> invalidMutations;
+    private final ConcurrentMap<UUID, AtomicInteger> invalidMutations;
     private final AtomicInteger replayedCount;
     private final Map<UUID, ReplayPosition> cfPositions;
     private final ReplayPosition globalPosition;
-    private final PureJavaCrc32 checksum;
-    private byte[] buffer;
+
+    // the number of segments read concurrently, and the single threaded executors applying the mutations of each
+    // partition of each table in the order they were logged
+    private final int readerThreads;
+    private final ExecutorService[] lanes;
+
+    // replay progress
+    private final AtomicInteger segmentsToReplay = new AtomicInteger();
+    private final AtomicInteger replayedSegments = new AtomicInteger();
+    private final AtomicLong bytesToReplay = new AtomicLong();
+    private final AtomicLong replayedBytes = new AtomicLong();
 
     public CommitLogReplayer()
+    {
+        this(REPLAY_THREADS);
+    }
+
+    public CommitLogReplayer(int readerThreads)
     {
         this.keyspacesRecovered = new NonBlockingHashSet<Keyspace>();
         this.futures = new ArrayList<Future<?>>();
-        this.buffer = new byte[4096];
-        this.invalidMutations = new HashMap<UUID, AtomicInteger>();
+        this.invalidMutations = new ConcurrentHashMap<UUID, AtomicInteger>();
         // count the number of replayed mutation. We don't really care about atomicity, but we need it to be a reference.
         this.replayedCount = new AtomicInteger();
-        this.checksum = new PureJavaCrc32();
+        this.readerThreads = Math.max(1, readerThreads);
+        this.lanes = new ExecutorService[Math.max(1, DatabaseDescriptor.getConcurrentWriters())];
+        ThreadFactory laneThreadFactory = new NamedThreadFactory("CommitLogReplay");
+        for (int i = 0; i < lanes.length; i++)
+            lanes[i] = Executors.newSingleThreadExecutor(laneThreadFactory);
 
         // compute per-CF and global replay positions
         cfPositions = new HashMap<UUID, ReplayPosition>();
@@ -78,6 +105,15 @@ public class CommitLogReplayer
             // list (otherwise we'll just start replay from the first flush position that we do have, which is not correct).
             ReplayPosition rp = ReplayPosition.getReplayPosition(cfs.getSSTables());
 
+            // custom indexes not backed by a CFS may be durable only up to an earlier position than the sstables,
+            // so we replay from there to bring them up to date; reapplying the mutations to the table is harmless
+            for (SecondaryIndex index : cfs.indexManager.getIndexesNotBackedByCfs())
+            {
+                ReplayPosition indexPosition = index.getReplayPosition();
+                if (indexPosition != null)
+                    rp = replayPositionOrdering.min(Arrays.asList(rp, indexPosition));
+            }
+
             // but, if we've truncted the cf in question, then we need to need to start replay after the truncation
             ReplayPosition truncatedAt = SystemKeyspace.getTruncatedPosition(cfs.metadata.cfId);
             if (truncatedAt != null)
@@ -91,8 +127,68 @@ public class CommitLogReplayer
 
     public void recover(File[] clogs) throws IOException
     {
-        for (final File file : clogs)
-            recover(file);
+        try
+        {
+            for (File file : clogs)
+                addToReplay(file);
+
+            int threads = Math.min(readerThreads, clogs.length);
+            if (threads <= 1)
+            {
+                for (final File file : clogs)
+                    new SegmentReader(file, false).read();
+                return;
+            }
+
+            // segments are read and decoded concurrently, but their mutations are dispatched in segment order, so that
+            // the updates to each partition of each table still reach their lane in the order they were logged
+            ExecutorService readers = Executors.newFixedThreadPool(threads, new NamedThreadFactory("CommitLogReader"));
+            try
+            {
+                Deque<SegmentReader> reading = new ArrayDeque<>(threads);
+                int next = 0;
+                while (next < clogs.length || !reading.isEmpty())
+                {
+                    while (next < clogs.length && reading.size() < threads)
+                    {
+                        SegmentReader reader = new SegmentReader(clogs[next++], true);
+                        reader.future = readers.submit(reader);
+                        reading.add(reader);
+                    }
+                    reading.poll().dispatchDecoded();
+                }
+            }
+            finally
+            {
+                readers.shutdownNow();
+            }
+        }
+        catch (Throwable t)
+        {
+            // blockForWrites won't be reached, so stop the lanes here
+            shutdownLanes();
+            throw t;
+        }
+    }
+
+    public void recover(File file) throws IOException
+    {
+        try
+        {
+            addToReplay(file);
+            new SegmentReader(file, false).read();
+        }
+        catch (Throwable t)
+        {
+            shutdownLanes();
+            throw t;
+        }
+    }
+
+    private void addToReplay(File file)
+    {
+        segmentsToReplay.incrementAndGet();
+        bytesToReplay.addAndGet(file.length());
     }
 
     public int blockForWrites()
@@ -100,8 +196,15 @@ public class CommitLogReplayer
         for (Map.Entry<UUID, AtomicInteger> entry : invalidMutations.entrySet())
             logger.info(String.format("Skipped %d mutations from unknown (probably removed) CF with id %s", entry.getValue().intValue(), entry.getKey()));
 
-        // wait for all the writes to finish on the mutation stage
-        FBUtilities.waitOnFutures(futures);
+        // wait for all the writes to finish on the replay lanes
+        try
+        {
+            FBUtilities.waitOnFutures(futures);
+        }
+        finally
+        {
+            shutdownLanes();
+        }
         logger.debug("Finished waiting on mutations from recovery");
 
         // flush replayed keyspaces
@@ -112,6 +215,13 @@ public class CommitLogReplayer
         return replayedCount.get();
     }
 
+    // the pending mutations are only discarded if the replay has failed, otherwise they have already been applied
+    private void shutdownLanes()
+    {
+        for (ExecutorService lane : lanes)
+            lane.shutdownNow();
+    }
+
     private int readSyncMarker(CommitLogDescriptor descriptor, int offset, RandomAccessReader reader) throws IOException
     {
         if (offset > reader.length() - CommitLogSegment.SYNC_MARKER_SIZE)
@@ -148,12 +258,13 @@ public class CommitLogReplayer
         return end;
     }
 
-    private int getStartOffset(long segmentId, int version)
+    private int getStartOffset(CommitLogDescriptor descriptor)
     {
+        long segmentId = descriptor.id;
         if (globalPosition.segment < segmentId)
         {
-            if (version >= CommitLogDescriptor.VERSION_21)
-                return CommitLogDescriptor.HEADER_SIZE + CommitLogSegment.SYNC_MARKER_SIZE;
+            if (descriptor.version >= CommitLogDescriptor.VERSION_21)
+                return descriptor.headerSize() + CommitLogSegment.SYNC_MARKER_SIZE;
             else
                 return 0;
         }
@@ -225,222 +336,495 @@ public class CommitLogReplayer
         }
     }
 
-    public void recover(File file) throws IOException
+    private static CommitLogDescriptor readHeader(File file)
     {
-        final ReplayFilter replayFilter = ReplayFilter.create();
-        logger.info("Replaying {}", file.getPath());
-        CommitLogDescriptor desc = CommitLogDescriptor.fromFileName(file.getName());
-        final long segmentId = desc.id;
-        logger.info("Replaying {} (CL version {}, messaging version {})",
-                    file.getPath(),
-                    desc.version,
-                    desc.getMessagingVersion());
-        RandomAccessReader reader = RandomAccessReader.open(new File(file.getAbsolutePath()));
-
         try
         {
-            assert reader.length() <= Integer.MAX_VALUE;
-            int offset = getStartOffset(segmentId, desc.version);
-            if (offset < 0)
+            return CommitLogDescriptor.fromHeader(file);
+        }
+        catch (RuntimeException e)
+        {
+            // the segment was created, but not even its header was written
+            if (e.getCause() instanceof EOFException)
+                return null;
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuilds the mutation, omitting column families that
+     *    a) the user has requested that we ignore,
+     *    b) have already been flushed or truncated at the position of the entry,
+     * or c) are part of a cf that was dropped.
+     * Keep in mind that the cf.name() is suspect. do every thing based on the cfid instead.
+     *
+     * @return the mutation to replay, or null if there is nothing to replay
+     */
+    private Mutation replayable(Mutation mutation, long segmentId, long entryLocation, ReplayFilter replayFilter)
+    {
+        if (Schema.instance.getKSMetaData(mutation.getKeyspaceName()) == null)
+            return null;
+        if (pointInTimeExceeded(mutation))
+            return null;
+
+        Mutation newMutation = null;
+        for (ColumnFamily columnFamily : replayFilter.filter(mutation))
+        {
+            if (Schema.instance.getCF(columnFamily.id()) == null)
+                continue; // dropped
+
+            ReplayPosition rp = cfPositions.get(columnFamily.id());
+
+            // replay if current segment is newer than last flushed one or,
+            // if it is the last known segment, if we are after the replay position
+            if (segmentId > rp.segment || (segmentId == rp.segment && entryLocation > rp.position))
             {
-                logger.debug("skipping replay of fully-flushed {}", file);
-                return;
+                if (newMutation == null)
+                    newMutation = new Mutation(mutation.getKeyspaceName(), mutation.key());
+                newMutation.add(columnFamily);
             }
+        }
+        return newMutation;
+    }
 
-            int prevEnd = CommitLogDescriptor.HEADER_SIZE;
-            main: while (true)
+    /**
+     * Submits each column family of the mutation to the lane of its table and partition key, so that the updates to
+     * each partition of each table are applied in the order they were dispatched, while different partitions are
+     * applied in parallel.
+     */
+    private void dispatch(Mutation mutation)
+    {
+        final Keyspace keyspace = Keyspace.open(mutation.getKeyspaceName());
+        replayedCount.incrementAndGet();
+        for (ColumnFamily columnFamily : mutation.getColumnFamilies())
+        {
+            final Mutation cfMutation = new Mutation(mutation.getKeyspaceName(), mutation.key(), columnFamily);
+            int hash = 31 * columnFamily.id().hashCode() + mutation.key().hashCode();
+            Runnable runnable = new WrappedRunnable()
+            {
+                public void runMayThrow()
+                {
+                    apply(keyspace, cfMutation);
+                    keyspacesRecovered.add(keyspace);
+                }
+            };
+            futures.add(lanes[(hash & Integer.MAX_VALUE) % lanes.length].submit(runnable));
+            if (futures.size() > MAX_OUTSTANDING_REPLAY_COUNT)
             {
+                FBUtilities.waitOnFutures(futures);
+                futures.clear();
+            }
+        }
+    }
 
-                int end = prevEnd;
-                if (desc.version < CommitLogDescriptor.VERSION_21)
-                    end = Integer.MAX_VALUE;
-                else
+    /**
+     * @return the number of segments to replay, including the ones already replayed
+     */
+    public int getSegmentsToReplay()
+    {
+        return segmentsToReplay.get();
+    }
+
+    /**
+     * @return the number of segments completely read
+     */
+    public int getReplayedSegments()
+    {
+        return replayedSegments.get();
+    }
+
+    /**
+     * @return the total size of the segments to replay, including the ones already replayed
+     */
+    public long getBytesToReplay()
+    {
+        return bytesToReplay.get();
+    }
+
+    /**
+     * @return the number of bytes of the segments to replay that have been read
+     */
+    public long getReplayedBytes()
+    {
+        return replayedBytes.get();
+    }
+
+    /**
+     * @return the number of mutations submitted to be replayed so far
+     */
+    public int getReplayedMutations()
+    {
+        return replayedCount.get();
+    }
+
+    /**
+     * Reads and decodes the mutations of a segment. They are either dispatched as they are read, or handed over
+     * through a bounded queue when the segment is read concurrently with others, so that the dispatching thread
+     * can still dispatch the segments in order.
+     */
+    private final class SegmentReader implements Callable<Void>
+    {
+        private final File file;
+        private final ReplayFilter replayFilter = ReplayFilter.create();
+        private final PureJavaCrc32 checksum = new PureJavaCrc32();
+        private byte[] buffer = new byte[4096];
+        private byte[] compressedBuffer = new byte[0];
+        private byte[] uncompressedBuffer = new byte[0];
+        private long reportedBytes;
+
+        // the decoded mutations when the segment is read concurrently, and the result of reading it
+        private final BlockingQueue<Mutation> decoded;
+        private Future<Void> future;
+
+        SegmentReader(File file, boolean concurrent)
+        {
+            this.file = file;
+            this.decoded = concurrent ? new ArrayBlockingQueue<Mutation>(MAX_OUTSTANDING_REPLAY_COUNT) : null;
+        }
+
+        public Void call() throws IOException
+        {
+            try
+            {
+                read();
+            }
+            finally
+            {
+                enqueue(END_OF_SEGMENT);
+            }
+            return null;
+        }
+
+        /**
+         * Dispatches the mutations of the segment as they are decoded by another thread, until the segment is read.
+         */
+        void dispatchDecoded() throws IOException
+        {
+            try
+            {
+                for (Mutation mutation = decoded.take(); mutation != END_OF_SEGMENT; mutation = decoded.take())
+                    dispatch(mutation);
+                future.get();
+            }
+            catch (InterruptedException e)
+            {
+                throw new AssertionError(e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+
+        private void enqueue(Mutation mutation)
+        {
+            try
+            {
+                decoded.put(mutation);
+            }
+            catch (InterruptedException e)
+            {
+                throw new RuntimeException("Interrupted while replaying " + file, e);
+            }
+        }
+
+        private void reportProgress(long position)
+        {
+            replayedBytes.addAndGet(position - reportedBytes);
+            reportedBytes = position;
+        }
+
+        void read() throws IOException
+        {
+            try
+            {
+                replay();
+            }
+            finally
+            {
+                replayedBytes.addAndGet(file.length() - reportedBytes);
+                replayedSegments.incrementAndGet();
+                logger.info("Finished reading {} ({} of {} segments)", file, replayedSegments.get(), segmentsToReplay.get());
+            }
+        }
+
+        private void replay() throws IOException
+        {
+            logger.info("Replaying {}", file.getPath());
+            CommitLogDescriptor desc = CommitLogDescriptor.fromFileName(file.getName());
+            if (desc.version >= CommitLogDescriptor.VERSION_21_COMPRESSED)
+            {
+                // the compression options are only known from the header
+                desc = readHeader(file);
+                if (desc == null)
                 {
-                    do { end = readSyncMarker(desc, end, reader); }
-                    while (end < offset && end > prevEnd);
+                    logger.warn("Skipping replay of compressed commit log {} with a missing or corrupted header", file);
+                    return;
                 }
+            }
+            logger.info("Replaying {} (CL version {}, messaging version {})",
+                        file.getPath(),
+                        desc.version,
+                        desc.getMessagingVersion());
+            RandomAccessReader reader = RandomAccessReader.open(new File(file.getAbsolutePath()));
 
-                if (end < prevEnd)
-                    break;
+            try
+            {
+                assert reader.length() <= Integer.MAX_VALUE;
+                int offset = getStartOffset(desc);
+                if (offset < 0)
+                {
+                    logger.debug("skipping replay of fully-flushed {}", file);
+                    return;
+                }
 
-                if (logger.isDebugEnabled())
-                    logger.debug("Replaying {} between {} and {}", file, offset, end);
+                if (desc.version >= CommitLogDescriptor.VERSION_21_COMPRESSED)
+                {
+                    replayCompressed(desc, offset, reader);
+                    return;
+                }
 
-                reader.seek(offset);
+                int prevEnd = CommitLogDescriptor.HEADER_SIZE;
+                while (true)
+                {
+
+                    int end = prevEnd;
+                    if (desc.version < CommitLogDescriptor.VERSION_21)
+                        end = Integer.MAX_VALUE;
+                    else
+                    {
+                        do { end = readSyncMarker(desc, end, reader); }
+                        while (end < offset && end > prevEnd);
+                    }
+
+                    if (end < prevEnd)
+                        break;
 
-                 /* read the logs populate Mutation and apply */
-                while (reader.getPosition() < end && !reader.isEOF())
+                    if (logger.isDebugEnabled())
+                        logger.debug("Replaying {} between {} and {}", file, offset, end);
+
+                    reader.seek(offset);
+                    if (!replaySyncSection(reader, end, desc))
+                        break;
+                    reportProgress(end);
+
+                    if (desc.version < CommitLogDescriptor.VERSION_21)
+                        break;
+
+                    offset = end + CommitLogSegment.SYNC_MARKER_SIZE;
+                    prevEnd = end;
+                }
+            }
+            finally
+            {
+                FileUtils.closeQuietly(reader);
+            }
+        }
+
+        /**
+         * Replays the sync sections of a compressed segment. Each section is made of a sync marker pointing to the
+         * file position of the next one, the uncompressed length of the section, and its compressed contents. The
+         * positions of the mutations are the ones they had in the uncompressed segment, where consecutive sections
+         * are separated by the space reserved for a sync marker.
+         */
+        private void replayCompressed(CommitLogDescriptor desc, int offset, RandomAccessReader reader) throws IOException
+        {
+            ICompressor compressor = desc.createCompressor();
+            int fileOffset = desc.headerSize();
+            int sectionStart = desc.headerSize() + CommitLogSegment.SYNC_MARKER_SIZE;
+            while (true)
+            {
+                int end = readSyncMarker(desc, fileOffset, reader);
+                if (end < fileOffset + CommitLogSegment.COMPRESSED_MARKER_SIZE)
+                    break;
+
+                int uncompressedLength = reader.readInt();
+                if (uncompressedLength < 0)
+                {
+                    logger.warn("Encountered bad uncompressed length {} at position {} of commit log {}", uncompressedLength, fileOffset, reader.getPath());
+                    break;
+                }
+                int sectionEnd = sectionStart + uncompressedLength;
+
+                // sections entirely before the replay position don't need to be decompressed
+                if (sectionEnd > offset)
                 {
                     if (logger.isDebugEnabled())
-                        logger.debug("Reading mutation at {}", reader.getFilePointer());
+                        logger.debug("Replaying {} between {} and {}", reader.getPath(), Math.max(offset, sectionStart), sectionEnd);
+
+                    int compressedLength = end - (int) reader.getFilePointer();
+                    if (compressedLength > compressedBuffer.length)
+                        compressedBuffer = new byte[(int) (1.2 * compressedLength)];
+                    if (uncompressedLength > uncompressedBuffer.length)
+                        uncompressedBuffer = new byte[(int) (1.2 * uncompressedLength)];
 
-                    long claimedCRC32;
-                    int serializedSize;
+                    int length;
                     try
                     {
-                        // any of the reads may hit EOF
-                        serializedSize = reader.readInt();
-                        if (serializedSize == LEGACY_END_OF_SEGMENT_MARKER)
-                        {
-                            logger.debug("Encountered end of segment marker at {}", reader.getFilePointer());
-                            break main;
-                        }
-
-                        // Mutation must be at LEAST 10 bytes:
-                        // 3 each for a non-empty Keyspace and Key (including the
-                        // 2-byte length from writeUTF/writeWithShortLength) and 4 bytes for column count.
-                        // This prevents CRC by being fooled by special-case garbage in the file; see CASSANDRA-2128
-                        if (serializedSize < 10)
-                            break main;
-
-                        long claimedSizeChecksum;
-                        if (desc.version < CommitLogDescriptor.VERSION_21)
-                            claimedSizeChecksum = reader.readLong();
-                        else
-                            claimedSizeChecksum = reader.readInt() & 0xffffffffL;
-                        checksum.reset();
-                        if (desc.version < CommitLogDescriptor.VERSION_20)
-                            checksum.update(serializedSize);
-                        else
-                            checksum.updateInt(serializedSize);
-
-                        if (checksum.getValue() != claimedSizeChecksum)
-                            break main; // entry wasn't synced correctly/fully. that's
-                        // ok.
-
-                        if (serializedSize > buffer.length)
-                            buffer = new byte[(int) (1.2 * serializedSize)];
-                        reader.readFully(buffer, 0, serializedSize);
-                        if (desc.version < CommitLogDescriptor.VERSION_21)
-                            claimedCRC32 = reader.readLong();
-                        else
-                            claimedCRC32 = reader.readInt() & 0xffffffffL;
+                        reader.readFully(compressedBuffer, 0, compressedLength);
+                        length = compressor.uncompress(compressedBuffer, 0, compressedLength, uncompressedBuffer, 0);
                     }
-                    catch (EOFException eof)
+                    catch (IOException e)
                     {
-                        break main; // last CL entry didn't get completely written. that's ok.
+                        logger.warn("Unable to uncompress section at position {} of commit log {}: {}", fileOffset, reader.getPath(), e.getMessage());
+                        break;
                     }
-
-                    checksum.update(buffer, 0, serializedSize);
-                    if (claimedCRC32 != checksum.getValue())
+                    if (length != uncompressedLength)
                     {
-                        // this entry must not have been fsynced. probably the rest is bad too,
-                        // but just in case there is no harm in trying them (since we still read on an entry boundary)
-                        continue;
+                        logger.warn("Uncompressed section at position {} of commit log {} has length {} instead of {}", fileOffset, reader.getPath(), length, uncompressedLength);
+                        break;
                     }
 
-                    /* deserialize the commit log entry */
-                    FastByteArrayInputStream bufIn = new FastByteArrayInputStream(buffer, 0, serializedSize);
-                    final Mutation mutation;
-                    try
+                    FileDataInput section = new ByteBufferDataInput(ByteBuffer.wrap(uncompressedBuffer, 0, length), reader.getPath(), sectionStart, 0);
+                    section.seek(Math.max(offset, sectionStart));
+                    if (!replaySyncSection(section, sectionEnd, desc))
+                        break;
+                }
+
+                fileOffset = end;
+                sectionStart = sectionEnd + CommitLogSegment.SYNC_MARKER_SIZE;
+                reportProgress(end);
+            }
+        }
+
+        /**
+         * Replays the mutations from the current position of the reader up to the end of the sync section.
+         *
+         * @return false if the end of the valid contents of the segment has been reached
+         */
+        private boolean replaySyncSection(FileDataInput reader, int end, CommitLogDescriptor desc) throws IOException
+        {
+            long segmentId = desc.id;
+            /* read the logs populate Mutation and apply */
+            while (reader.getFilePointer() < end && !reader.isEOF())
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("Reading mutation at {}", reader.getFilePointer());
+
+                long claimedCRC32;
+                int serializedSize;
+                try
+                {
+                    // any of the reads may hit EOF
+                    serializedSize = reader.readInt();
+                    if (serializedSize == LEGACY_END_OF_SEGMENT_MARKER)
                     {
-                        mutation = Mutation.serializer.deserialize(new DataInputStream(bufIn),
-                                                                   desc.getMessagingVersion(),
-                                                                   ColumnSerializer.Flag.LOCAL);
-                        // doublecheck that what we read is [still] valid for the current schema
-                        for (ColumnFamily cf : mutation.getColumnFamilies())
-                            for (Cell cell : cf)
-                                cf.getComparator().validate(cell.name());
+                        logger.debug("Encountered end of segment marker at {}", reader.getFilePointer());
+                        return false;
                     }
-                    catch (UnknownColumnFamilyException ex)
-                    {
-                        if (ex.cfId == null)
-                            continue;
-                        AtomicInteger i = invalidMutations.get(ex.cfId);
-                        if (i == null)
-                        {
-                            i = new AtomicInteger(1);
-                            invalidMutations.put(ex.cfId, i);
-                        }
-                        else
-                            i.incrementAndGet();
+
+                    // Mutation must be at LEAST 10 bytes:
+                    // 3 each for a non-empty Keyspace and Key (including the
+                    // 2-byte length from writeUTF/writeWithShortLength) and 4 bytes for column count.
+                    // This prevents CRC by being fooled by special-case garbage in the file; see CASSANDRA-2128
+                    if (serializedSize < 10)
+                        return false;
+
+                    long claimedSizeChecksum;
+                    if (desc.version < CommitLogDescriptor.VERSION_21)
+                        claimedSizeChecksum = reader.readLong();
+                    else
+                        claimedSizeChecksum = reader.readInt() & 0xffffffffL;
+                    checksum.reset();
+                    if (desc.version < CommitLogDescriptor.VERSION_20)
+                        checksum.update(serializedSize);
+                    else
+                        checksum.updateInt(serializedSize);
+
+                    if (checksum.getValue() != claimedSizeChecksum)
+                        return false; // entry wasn't synced correctly/fully. that's
+                    // ok.
+
+                    if (serializedSize > buffer.length)
+                        buffer = new byte[(int) (1.2 * serializedSize)];
+                    reader.readFully(buffer, 0, serializedSize);
+                    if (desc.version < CommitLogDescriptor.VERSION_21)
+                        claimedCRC32 = reader.readLong();
+                    else
+                        claimedCRC32 = reader.readInt() & 0xffffffffL;
+                }
+                catch (EOFException eof)
+                {
+                    return false; // last CL entry didn't get completely written. that's ok.
+                }
+
+                checksum.update(buffer, 0, serializedSize);
+                if (claimedCRC32 != checksum.getValue())
+                {
+                    // this entry must not have been fsynced. probably the rest is bad too,
+                    // but just in case there is no harm in trying them (since we still read on an entry boundary)
+                    continue;
+                }
+
+                /* deserialize the commit log entry */
+                FastByteArrayInputStream bufIn = new FastByteArrayInputStream(buffer, 0, serializedSize);
+                final Mutation mutation;
+                try
+                {
+                    mutation = Mutation.serializer.deserialize(new DataInputStream(bufIn),
+                                                               desc.getMessagingVersion(),
+                                                               ColumnSerializer.Flag.LOCAL);
+                    // doublecheck that what we read is [still] valid for the current schema
+                    for (ColumnFamily cf : mutation.getColumnFamilies())
+                        for (Cell cell : cf)
+                            cf.getComparator().validate(cell.name());
+                }
+                catch (UnknownColumnFamilyException ex)
+                {
+                    if (ex.cfId == null)
                         continue;
-                    }
-                    catch (Throwable t)
+                    AtomicInteger i = invalidMutations.get(ex.cfId);
+                    if (i == null)
                     {
-                        JVMStabilityInspector.inspectThrowable(t);
-                        File f = File.createTempFile("mutation", "dat");
-                        DataOutputStream out = new DataOutputStream(new FileOutputStream(f));
-                        try
-                        {
-                            out.write(buffer, 0, serializedSize);
-                        }
-                        finally
-                        {
-                            out.close();
-                        }
-                        String st = String.format("Unexpected error deserializing mutation; saved to %s and ignored.  This may be caused by replaying a mutation against a table with the same name but incompatible schema.  Exception follows: ",
-                                                  f.getAbsolutePath());
-                        logger.error(st, t);
-                        continue;
+                        AtomicInteger previous = invalidMutations.putIfAbsent(ex.cfId, i = new AtomicInteger());
+                        if (previous != null)
+                            i = previous;
                     }
-
-                    if (logger.isDebugEnabled())
-                        logger.debug("replaying mutation for {}.{}: {}", mutation.getKeyspaceName(), ByteBufferUtil.bytesToHex(mutation.key()), "{" + StringUtils.join(mutation.getColumnFamilies().iterator(), ", ") + "}");
-
-                    final long entryLocation = reader.getFilePointer();
-                    Runnable runnable = new WrappedRunnable()
+                    i.incrementAndGet();
+                    continue;
+                }
+                catch (Throwable t)
+                {
+                    JVMStabilityInspector.inspectThrowable(t);
+                    File f = File.createTempFile("mutation", "dat");
+                    DataOutputStream out = new DataOutputStream(new FileOutputStream(f));
+                    try
                     {
-                        public void runMayThrow() throws IOException
-                        {
-                            if (Schema.instance.getKSMetaData(mutation.getKeyspaceName()) == null)
-                                return;
-                            if (pointInTimeExceeded(mutation))
-                                return;
-
-                            final Keyspace keyspace = Keyspace.open(mutation.getKeyspaceName());
-
-                            // Rebuild the mutation, omitting column families that
-                            //    a) the user has requested that we ignore,
-                            //    b) have already been flushed,
-                            // or c) are part of a cf that was dropped.
-                            // Keep in mind that the cf.name() is suspect. do every thing based on the cfid instead.
-                            Mutation newMutation = null;
-                            for (ColumnFamily columnFamily : replayFilter.filter(mutation))
-                            {
-                                if (Schema.instance.getCF(columnFamily.id()) == null)
-                                    continue; // dropped
-
-                                ReplayPosition rp = cfPositions.get(columnFamily.id());
-
-                                // replay if current segment is newer than last flushed one or,
-                                // if it is the last known segment, if we are after the replay position
-                                if (segmentId > rp.segment || (segmentId == rp.segment && entryLocation > rp.position))
-                                {
-                                    if (newMutation == null)
-                                        newMutation = new Mutation(mutation.getKeyspaceName(), mutation.key());
-                                    newMutation.add(columnFamily);
-                                    replayedCount.incrementAndGet();
-                                }
-                            }
-                            if (newMutation != null)
-                            {
-                                assert !newMutation.isEmpty();
-                                Keyspace.open(newMutation.getKeyspaceName()).apply(newMutation, false);
-                                keyspacesRecovered.add(keyspace);
-                            }
-                        }
-                    };
-                    futures.add(StageManager.getStage(Stage.MUTATION).submit(runnable));
-                    if (futures.size() > MAX_OUTSTANDING_REPLAY_COUNT)
+                        out.write(buffer, 0, serializedSize);
+                    }
+                    finally
                     {
-                        FBUtilities.waitOnFutures(futures);
-                        futures.clear();
+                        out.close();
                     }
+                    String st = String.format("Unexpected error deserializing mutation; saved to %s and ignored.  This may be caused by replaying a mutation against a table with the same name but incompatible schema.  Exception follows: ",
+                                              f.getAbsolutePath());
+                    logger.error(st, t);
+                    continue;
                 }
 
-                if (desc.version < CommitLogDescriptor.VERSION_21)
-                    break;
+                if (logger.isDebugEnabled())
+                    logger.debug("replaying mutation for {}.{}: {}", mutation.getKeyspaceName(), ByteBufferUtil.bytesToHex(mutation.key()), "{" + StringUtils.join(mutation.getColumnFamilies().iterator(), ", ") + "}");
 
-                offset = end + CommitLogSegment.SYNC_MARKER_SIZE;
-                prevEnd = end;
+                Mutation replayable = replayable(mutation, segmentId, reader.getFilePointer(), replayFilter);
+                if (replayable == null)
+                    continue;
+                if (decoded == null)
+                    dispatch(replayable);
+                else
+                    enqueue(replayable);
             }
+
+            return true;
         }
-        finally
-        {
-            FileUtils.closeQuietly(reader);
-            logger.info("Finished reading {}", file);
-        }
+    }
+
+    /**
+     * Applies a mutation of a single column family, from the replay lane of its table and partition key.
+     */
+    protected void apply(Keyspace keyspace, Mutation mutation)
+    {
+        keyspace.apply(mutation, false);
     }
 
     protected boolean pointInTimeExceeded(Mutation fm)
@@ -24,14 +24,18 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.cliffc.high_scale_lib.NonBlockingHashMap;
@@ -44,6 +48,7 @@ import org.apache.cassandra.config.Schema;
 import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.Mutation;
 import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.compress.ICompressor;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.utils.CLibrary;
 import org.apache.cassandra.utils.PureJavaCrc32;
@@ -54,6 +59,10 @@ import org.apache.cassandra.utils.concurrent.WaitQueue;
  * A single commit log file on disk. Manages creation of the file and writing mutations to disk,
  * as well as tracking the last mutation position of any "dirty" CFs covered by the segment file. Segment
  * files are initially allocated to a fixed size and can grow to accomidate a larger value if necessary.
+ *
+ * If commit log compression is enabled, mutations are appended to an uncompressed in-memory buffer instead,
+ * and each sync compresses the section written since the previous one and appends it to the file. Positions
+ * within the segment, including replay positions, always refer to the uncompressed buffer.
  */
 public class CommitLogSegment
 {
@@ -78,6 +87,17 @@ public class CommitLogSegment
     // The commit log (chained) sync marker/header size in bytes (int: length + int: checksum [segmentId, position])
     static final int SYNC_MARKER_SIZE = 4 + 4;
 
+    // The compressed sync section header size in bytes (sync marker + int: uncompressed length)
+    static final int COMPRESSED_MARKER_SIZE = SYNC_MARKER_SIZE + 4;
+
+    // The number of uncompressed buffers of closed compressed segments kept for reuse: enough for the allocating
+    // segment, the spare one and one being closed
+    private static final int MAX_BUFFER_POOL_SIZE = 3;
+
+    // The uncompressed buffers of closed compressed segments, reused by new ones instead of allocating a segment-sized
+    // buffer for each of them
+    private static final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
     // The OpOrder used to order appends wrt sync
     private final OpOrder appendOrder = new OpOrder();
 
@@ -107,7 +127,18 @@ public class CommitLogSegment
     private final RandomAccessFile logFileAccessor;
     private final int fd;
 
-    private final MappedByteBuffer buffer;
+    // the mapped segment file, or the uncompressed contents of a compressed segment
+    private ByteBuffer buffer;
+
+    // the size of the (uncompressed) segment contents
+    private final int endOfBuffer;
+
+    // the compressor of the sync sections, or null if the segment is mapped and written uncompressed
+    private final ICompressor compressor;
+
+    // the reusable output of the compressor, and the file offset where the next compressed section is written
+    private ICompressor.WrappedArray compressed;
+    private int fileOffset;
 
     public final CommitLogDescriptor descriptor;
 
@@ -132,7 +163,8 @@ public class CommitLogSegment
     CommitLogSegment(String filePath)
     {
         id = getNextId();
-        descriptor = new CommitLogDescriptor(id);
+        descriptor = new CommitLogDescriptor(id, DatabaseDescriptor.getCommitLogCompression());
+        compressor = descriptor.createCompressor();
         logFile = new File(DatabaseDescriptor.getCommitLogLocation(), descriptor.fileName());
         boolean isCreating = true;
 
@@ -157,20 +189,35 @@ public class CommitLogSegment
             if (isCreating)
                 logger.debug("Creating new commit log segment {}", logFile.getPath());
 
-            // Map the segment, extending or truncating it to the standard segment size.
-            // (We may have restarted after a segment size configuration change, leaving "incorrectly"
-            // sized segments on disk.)
-            logFileAccessor.setLength(DatabaseDescriptor.getCommitLogSegmentSize());
+            int headerSize = descriptor.headerSize();
+            if (compressor == null)
+            {
+                // Map the segment, extending or truncating it to the standard segment size.
+                // (We may have restarted after a segment size configuration change, leaving "incorrectly"
+                // sized segments on disk.)
+                logFileAccessor.setLength(DatabaseDescriptor.getCommitLogSegmentSize());
+                buffer = logFileAccessor.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, DatabaseDescriptor.getCommitLogSegmentSize());
+            }
+            else
+            {
+                // compressed sections are appended to the file as they are synced, so it only grows as needed
+                logFileAccessor.setLength(0);
+                buffer = createBuffer(DatabaseDescriptor.getCommitLogSegmentSize());
+                compressed = new ICompressor.WrappedArray(new byte[0]);
+                fileOffset = headerSize;
+            }
             fd = CLibrary.getfd(logFileAccessor.getFD());
+            endOfBuffer = buffer.capacity();
 
-            buffer = logFileAccessor.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, DatabaseDescriptor.getCommitLogSegmentSize());
             // write the header
             CommitLogDescriptor.writeHeader(buffer, descriptor);
+            if (compressor != null)
+                write((ByteBuffer) buffer.duplicate().position(0).limit(headerSize), 0);
             // mark the initial sync marker as uninitialised
-            buffer.putInt(CommitLogDescriptor.HEADER_SIZE, 0);
-            buffer.putLong(CommitLogDescriptor.HEADER_SIZE + 4, 0);
-            allocatePosition.set(CommitLogDescriptor.HEADER_SIZE + SYNC_MARKER_SIZE);
-            lastSyncedOffset = CommitLogDescriptor.HEADER_SIZE;
+            buffer.putInt(headerSize, 0);
+            buffer.putLong(headerSize + 4, 0);
+            allocatePosition.set(headerSize + SYNC_MARKER_SIZE);
+            lastSyncedOffset = headerSize;
         }
         catch (IOException e)
         {
@@ -178,6 +225,18 @@ public class CommitLogSegment
         }
     }
 
+    // take a buffer for the uncompressed contents from the pool, zeroing it so the replay of a section can't mistake
+    // the stale contents of a previous segment for mutations, or allocate it if there is none of the right size
+    private static ByteBuffer createBuffer(int size)
+    {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null || buffer.capacity() != size)
+            return ByteBuffer.allocate(size);
+        Arrays.fill(buffer.array(), (byte) 0);
+        buffer.clear();
+        return buffer;
+    }
+
     /**
      * Allocate space in this buffer for the provided mutation, and return the allocated Allocation object.
      * Returns null if there is not enough space in this segment, and a new segment is needed.
@@ -194,7 +253,7 @@ public class CommitLogSegment
                 return null;
             }
             markDirty(mutation, position);
-            return new Allocation(this, opGroup, position, (ByteBuffer) buffer.duplicate().position(position).limit(position + size));
+            return new Allocation(this, opGroup, position, (ByteBuffer) buffer.duplicate().position(position).limit(position + size), mutation.getKeyspaceName());
         }
         catch (Throwable t)
         {
@@ -210,7 +269,7 @@ public class CommitLogSegment
         {
             int prev = allocatePosition.get();
             int next = prev + size;
-            if (next >= buffer.capacity())
+            if (next >= endOfBuffer)
                 return -1;
             if (allocatePosition.compareAndSet(prev, next))
                 return prev;
@@ -229,8 +288,8 @@ public class CommitLogSegment
             while (true)
             {
                 int prev = allocatePosition.get();
-                // we set allocatePosition past buffer.capacity() to make sure we always set discardedTailFrom
-                int next = buffer.capacity() + 1;
+                // we set allocatePosition past endOfBuffer to make sure we always set discardedTailFrom
+                int next = endOfBuffer + 1;
                 if (prev == next)
                     return;
                 if (allocatePosition.compareAndSet(prev, next))
@@ -276,7 +335,7 @@ public class CommitLogSegment
                 // wait for modifications guards both discardedTailFrom, and any outstanding appends
                 waitForModifications();
 
-                if (discardedTailFrom < buffer.capacity() - SYNC_MARKER_SIZE)
+                if (discardedTailFrom < endOfBuffer - SYNC_MARKER_SIZE)
                 {
                     // if there's room in the discard section to write an empty header, use that as the nextMarker
                     nextMarker = discardedTailFrom;
@@ -284,7 +343,7 @@ public class CommitLogSegment
                 else
                 {
                     // not enough space left in the buffer, so mark the next sync marker as the EOF position
-                    nextMarker = buffer.capacity();
+                    nextMarker = endOfBuffer;
                 }
             }
             else
@@ -294,33 +353,40 @@ public class CommitLogSegment
 
             assert nextMarker > lastSyncedOffset;
 
-            // write previous sync marker to point to next sync marker
-            // we don't chain the crcs here to ensure this method is idempotent if it fails
+            long syncStarted = System.nanoTime();
             int offset = lastSyncedOffset;
-            final PureJavaCrc32 crc = new PureJavaCrc32();
-            crc.updateInt((int) (id & 0xFFFFFFFFL));
-            crc.updateInt((int) (id >>> 32));
-            crc.updateInt(offset);
-            buffer.putInt(offset, nextMarker);
-            buffer.putInt(offset + 4, crc.getCrc());
-
-            // zero out the next sync marker so replayer can cleanly exit
-            if (nextMarker < buffer.capacity())
+            if (compressor == null)
             {
-                buffer.putInt(nextMarker, 0);
-                buffer.putInt(nextMarker + 4, 0);
-            }
+                // write previous sync marker to point to next sync marker
+                writeSyncMarker(buffer, offset, offset, nextMarker);
 
-            // actually perform the sync and signal those waiting for it
-            buffer.force();
+                // zero out the next sync marker so replayer can cleanly exit
+                if (nextMarker < endOfBuffer)
+                {
+                    buffer.putInt(nextMarker, 0);
+                    buffer.putInt(nextMarker + 4, 0);
+                }
+
+                // actually perform the sync and signal those waiting for it
+                ((MappedByteBuffer) buffer).force();
+            }
+            else
+            {
+                // if closing, the section ends where the writes did, rather than at the end of the segment
+                int fileStart = fileOffset;
+                writeCompressedSection(offset + SYNC_MARKER_SIZE, close ? discardedTailFrom : nextMarker);
+                logFileAccessor.getChannel().force(true);
+                offset = fileStart;
+            }
+            CommitLog.instance.metrics.syncTime.update(System.nanoTime() - syncStarted, TimeUnit.NANOSECONDS);
 
             if (close)
-                nextMarker = buffer.capacity();
+                nextMarker = endOfBuffer;
 
             lastSyncedOffset = nextMarker;
             syncComplete.signalAll();
 
-            CLibrary.trySkipCache(fd, offset, nextMarker);
+            CLibrary.trySkipCache(fd, offset, compressor == null ? nextMarker : fileOffset);
             if (close)
                 internalClose();
         }
@@ -330,9 +396,49 @@ public class CommitLogSegment
         }
     }
 
+    // write a sync marker at the specified offset of the buffer, pointing to the next sync marker;
+    // we don't chain the crcs here to ensure sync() is idempotent if it fails
+    private void writeSyncMarker(ByteBuffer out, int offset, int filePosition, int nextMarker)
+    {
+        final PureJavaCrc32 crc = new PureJavaCrc32();
+        crc.updateInt((int) (id & 0xFFFFFFFFL));
+        crc.updateInt((int) (id >>> 32));
+        crc.updateInt(filePosition);
+        out.putInt(offset, nextMarker);
+        out.putInt(offset + 4, crc.getCrc());
+    }
+
+    // compress the buffer contents between the specified positions, and append them to the file as a section
+    // made of a sync marker pointing to the end of the section, the uncompressed length, and the compressed data
+    private void writeCompressedSection(int start, int end) throws IOException
+    {
+        int length = end - start;
+        if (length <= 0)
+            return;
+        int maxLength = COMPRESSED_MARKER_SIZE + compressor.initialCompressedBufferLength(length);
+        if (compressed.buffer.length < maxLength)
+            compressed.buffer = new byte[maxLength];
+        int compressedLength = compressor.compress(buffer.array(), buffer.arrayOffset() + start, length, compressed, COMPRESSED_MARKER_SIZE);
+
+        int sectionEnd = fileOffset + COMPRESSED_MARKER_SIZE + compressedLength;
+        ByteBuffer section = ByteBuffer.wrap(compressed.buffer, 0, COMPRESSED_MARKER_SIZE + compressedLength);
+        writeSyncMarker(section, 0, fileOffset, sectionEnd);
+        section.putInt(SYNC_MARKER_SIZE, length);
+        write(section, fileOffset);
+        fileOffset = sectionEnd;
+
+        CommitLog.instance.metrics.addCompressedSection(length, compressedLength);
+    }
+
+    private void write(ByteBuffer bytes, long position) throws IOException
+    {
+        while (bytes.hasRemaining())
+            position += logFileAccessor.getChannel().write(bytes, position);
+    }
+
     public boolean isStillAllocating()
     {
-        return allocatePosition.get() < buffer.capacity();
+        return allocatePosition.get() < endOfBuffer;
     }
 
     /**
@@ -394,7 +500,7 @@ public class CommitLogSegment
         while (true)
         {
             WaitQueue.Signal signal = syncComplete.register();
-            if (lastSyncedOffset < buffer.capacity())
+            if (lastSyncedOffset < endOfBuffer)
             {
                 signal.awaitUninterruptibly();
             }
@@ -413,7 +519,7 @@ public class CommitLogSegment
     {
         discardUnusedTail();
         waitForModifications();
-        lastSyncedOffset = buffer.capacity();
+        lastSyncedOffset = endOfBuffer;
         internalClose();
     }
 
@@ -421,8 +527,15 @@ public class CommitLogSegment
     {
         try
         {
-            if (FileUtils.isCleanerAvailable())
-                FileUtils.clean(buffer);
+            // the segment may already have been closed by its final sync
+            if (buffer == null)
+                return;
+            if (compressor == null && FileUtils.isCleanerAvailable())
+                FileUtils.clean((MappedByteBuffer) buffer);
+            // nothing is written to a segment once it is closed, so its uncompressed contents can be reused
+            if (compressor != null && bufferPool.size() < MAX_BUFFER_POOL_SIZE)
+                bufferPool.add(buffer);
+            buffer = null;
             logFileAccessor.close();
         }
         catch (IOException e)
@@ -593,13 +706,15 @@ public class CommitLogSegment
         private final OpOrder.Group appendOp;
         private final int position;
         private final ByteBuffer buffer;
+        private final String keyspace;
 
-        Allocation(CommitLogSegment segment, OpOrder.Group appendOp, int position, ByteBuffer buffer)
+        Allocation(CommitLogSegment segment, OpOrder.Group appendOp, int position, ByteBuffer buffer, String keyspace)
         {
             this.segment = segment;
             this.appendOp = appendOp;
             this.position = position;
             this.buffer = buffer;
+            this.keyspace = keyspace;
         }
 
         CommitLogSegment getSegment()
@@ -607,6 +722,11 @@ public class CommitLogSegment
             return segment;
         }
 
+        String getKeyspaceName()
+        {
+            return keyspace;
+        }
+
         ByteBuffer getBuffer()
         {
             return buffer;
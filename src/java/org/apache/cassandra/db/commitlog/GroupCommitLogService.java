@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+/**
+ * Group commit: writes to the keyspaces listed in commitlog_durable_keyspaces are not acked until they have been
+ * synced, while writes to other keyspaces are synced periodically, as in periodic mode.
+ *
+ * Durable writes wake the sync thread as soon as they arrive, which then waits a window of time for other writes to
+ * join the same sync. The window is sized from the observed sync latency and the arrival rate of durable writes: if
+ * less than one other write is expected to arrive during a sync there is no point in waiting, otherwise the thread
+ * waits for about one sync latency, bounded by commitlog_sync_group_window_in_ms. Writers are woken through the
+ * WaitQueue of their segment as soon as their position has been synced.
+ */
+class GroupCommitLogService extends PeriodicCommitLogService
+{
+    // weight of the last observation in the moving averages of the sync latency and the arrival rate
+    private static final double ALPHA = 0.2;
+
+    private final Set<String> durableKeyspaces;
+    private final long maxWindowNanos;
+
+    // durable writes waiting for a sync, and arrived since the last sync
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong arrivals = new AtomicLong();
+
+    // only accessed by the sync thread
+    private double syncNanos;
+    private double arrivalsPerNano;
+    private long lastSyncCompletedAt = System.nanoTime();
+
+    private volatile long windowNanos;
+
+    public GroupCommitLogService(CommitLog commitLog)
+    {
+        this(commitLog, DatabaseDescriptor.getCommitLogDurableKeyspaces(), (long) (DatabaseDescriptor.getCommitLogSyncGroupWindow() * 1000000));
+    }
+
+    @VisibleForTesting
+    GroupCommitLogService(CommitLog commitLog, Set<String> durableKeyspaces, long maxWindowNanos)
+    {
+        super(commitLog, "GROUP-COMMIT-LOG-WRITER");
+        this.durableKeyspaces = durableKeyspaces;
+        this.maxWindowNanos = maxWindowNanos;
+    }
+
+    protected void maybeWaitForSync(CommitLogSegment.Allocation alloc)
+    {
+        if (!durableKeyspaces.contains(alloc.getKeyspaceName()))
+        {
+            super.maybeWaitForSync(alloc);
+            return;
+        }
+
+        pending.incrementAndGet();
+        arrivals.incrementAndGet();
+        if (waiting.getAndIncrement() == 0)
+            haveWork.release();
+        alloc.awaitDiskSync();
+        waiting.decrementAndGet();
+        pending.decrementAndGet();
+    }
+
+    protected void syncCompleted(long durationNanos)
+    {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - lastSyncCompletedAt);
+        lastSyncCompletedAt = now;
+
+        syncNanos = ALPHA * durationNanos + (1 - ALPHA) * syncNanos;
+        arrivalsPerNano = ALPHA * arrivals.getAndSet(0) / elapsed + (1 - ALPHA) * arrivalsPerNano;
+
+        windowNanos = syncWindowNanos(syncNanos, arrivalsPerNano, maxWindowNanos);
+    }
+
+    // no window if less than one other durable write is expected to arrive during a sync, otherwise about one sync
+    // latency, bounded by the maximum window
+    @VisibleForTesting
+    static long syncWindowNanos(double syncNanos, double arrivalsPerNano, long maxWindowNanos)
+    {
+        return arrivalsPerNano * syncNanos < 1 ? 0 : Math.min(maxWindowNanos, (long) syncNanos);
+    }
+
+    protected void awaitWork(long sleepMillis) throws InterruptedException
+    {
+        if (waiting.get() == 0)
+            super.awaitWork(sleepMillis);
+
+        // give other durable writes the chance to join the next sync
+        long window = windowNanos;
+        if (waiting.get() > 0 && window > 0)
+            Uninterruptibles.sleepUninterruptibly(window, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getSyncWindowNanos()
+    {
+        return windowNanos;
+    }
+}
@@ -27,7 +27,12 @@ class PeriodicCommitLogService extends AbstractCommitLogService
 
     public PeriodicCommitLogService(final CommitLog commitLog)
     {
-        super(commitLog, "PERIODIC-COMMIT-LOG-SYNCER", DatabaseDescriptor.getCommitLogSyncPeriod());
+        this(commitLog, "PERIODIC-COMMIT-LOG-SYNCER");
+    }
+
+    protected PeriodicCommitLogService(final CommitLog commitLog, final String name)
+    {
+        super(commitLog, name, DatabaseDescriptor.getCommitLogSyncPeriod());
     }
 
     protected void maybeWaitForSync(CommitLogSegment.Allocation alloc)
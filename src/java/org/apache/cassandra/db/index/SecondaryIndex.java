@@ -18,6 +18,7 @@
 package org.apache.cassandra.db.index;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
@@ -36,6 +37,7 @@ import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
 import org.apache.cassandra.cql3.Operator;
 import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.commitlog.ReplayPosition;
 import org.apache.cassandra.db.compaction.CompactionManager;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.composites.CellNameType;
@@ -170,6 +172,29 @@ public abstract class SecondaryIndex
      */
     public abstract void forceBlockingFlush();
 
+    /**
+     * Forces this indexes' in memory data to disk after a flush of the base table. All the writes preceding the
+     * specified commit log position have been applied to this index when this is called.
+     *
+     * @param replayPosition the commit log position covered by the base table flush
+     */
+    public void forceBlockingFlush(ReplayPosition replayPosition)
+    {
+        forceBlockingFlush();
+    }
+
+    /**
+     * Returns the commit log position up to which this index is known to be durable, if it has been recorded by
+     * the index. Commit log replay for the base table will start from there if it is older than the position of
+     * the flushed sstables.
+     *
+     * @return the durable commit log position of this index, or null if it is not tracked
+     */
+    public ReplayPosition getReplayPosition()
+    {
+        return null;
+    }
+
     /**
      * Allow access to the underlying column family store if there is one
      * @return the underlying column family store or null
@@ -195,6 +220,32 @@ public abstract class SecondaryIndex
      */
     public abstract void truncateBlocking(long truncatedAt);
 
+    /**
+     * Returns a builder for this index from the specified sstables, or null to use the generic
+     * SecondaryIndexBuilder, which reads every partition of the sstables and indexes it through indexRow.
+     * Custom indexes can override this to build themselves faster.
+     *
+     * @param sstables the referenced sstables to build from
+     * @return the builder for this index, or null to use the generic one
+     */
+    public SecondaryIndexBuilder getIndexBuilder(Collection<SSTableReader> sstables)
+    {
+        return null;
+    }
+
+    /**
+     * Returns a builder for a full build of this index from all the sstables of the base table, when the index is
+     * created or explicitly rebuilt, or null to use the generic SecondaryIndexBuilder. It's the same builder used for
+     * new sstables by default.
+     *
+     * @param sstables the referenced sstables of the base table
+     * @return the builder for this index, or null to use the generic one
+     */
+    public SecondaryIndexBuilder getFullIndexBuilder(Collection<SSTableReader> sstables)
+    {
+        return getIndexBuilder(sstables);
+    }
+
     /**
      * Builds the index using the data in the underlying CFS
      * Blocks till it's complete
@@ -206,9 +257,11 @@ public abstract class SecondaryIndex
 
         try (Refs<SSTableReader> sstables = baseCfs.selectAndReference(ColumnFamilyStore.CANONICAL_SSTABLES).refs)
         {
-            SecondaryIndexBuilder builder = new SecondaryIndexBuilder(baseCfs,
-                                                                      Collections.singleton(getIndexName()),
-                                                                      new ReducingKeyIterator(sstables));
+            SecondaryIndexBuilder builder = getFullIndexBuilder(sstables);
+            if (builder == null)
+                builder = new SecondaryIndexBuilder(baseCfs,
+                                                    Collections.singleton(getIndexName()),
+                                                    new ReducingKeyIterator(sstables));
             Future<?> future = CompactionManager.instance.submitIndexBuild(builder);
             FBUtilities.waitOnFuture(future);
             forceBlockingFlush();
@@ -44,6 +44,15 @@ public class SecondaryIndexBuilder extends CompactionInfo.Holder
         this.iter = iter;
     }
 
+    /**
+     * For builders of a single index that don't iterate the partition keys of the sstables,
+     * which must override getCompactionInfo() and build().
+     */
+    protected SecondaryIndexBuilder(ColumnFamilyStore cfs, Set<String> idxNames)
+    {
+        this(cfs, idxNames, null);
+    }
+
     public CompactionInfo getCompactionInfo()
     {
         return new CompactionInfo(cfs.metadata,
@@ -155,6 +155,19 @@ public class SecondaryIndexManager
      * @param idxNames the list of columns to index, ordered by comparator
      */
     public void maybeBuildSecondaryIndexes(Collection<SSTableReader> sstables, Set<String> idxNames)
+    {
+        maybeBuildSecondaryIndexes(sstables, idxNames, false);
+    }
+
+    /**
+     * Same as maybeBuildSecondaryIndexes(sstables, idxNames), but if fullBuild is true the sstables are all the
+     * sstables of the base table, and the indexes are rebuilt with their full index builders.
+     *
+     * @param sstables the data to build from
+     * @param idxNames the list of columns to index, ordered by comparator
+     * @param fullBuild if the indexes are being fully rebuilt
+     */
+    public void maybeBuildSecondaryIndexes(Collection<SSTableReader> sstables, Set<String> idxNames, boolean fullBuild)
     {
         if (idxNames.isEmpty())
             return;
@@ -162,9 +175,24 @@ public class SecondaryIndexManager
         logger.info(String.format("Submitting index build of %s for data in %s",
                                   idxNames, StringUtils.join(sstables, ", ")));
 
-        SecondaryIndexBuilder builder = new SecondaryIndexBuilder(baseCfs, idxNames, new ReducingKeyIterator(sstables));
-        Future<?> future = CompactionManager.instance.submitIndexBuild(builder);
-        FBUtilities.waitOnFuture(future);
+        // Indexes with their own builders are built separately
+        Set<String> genericIdxNames = new HashSet<>(idxNames);
+        List<Future<?>> futures = new ArrayList<>();
+        for (SecondaryIndex index : getIndexesByNames(idxNames))
+        {
+            SecondaryIndexBuilder builder = fullBuild ? index.getFullIndexBuilder(sstables) : index.getIndexBuilder(sstables);
+            if (builder != null)
+            {
+                genericIdxNames.remove(index.getIndexName());
+                futures.add(CompactionManager.instance.submitIndexBuild(builder));
+            }
+        }
+        if (!genericIdxNames.isEmpty())
+        {
+            SecondaryIndexBuilder builder = new SecondaryIndexBuilder(baseCfs, genericIdxNames, new ReducingKeyIterator(sstables));
+            futures.add(CompactionManager.instance.submitIndexBuild(builder));
+        }
+        FBUtilities.waitOnFutures(futures);
 
         flushIndexesBlocking();
 
@@ -598,6 +626,7 @@ public class SecondaryIndexManager
                 searcher.validate(expression);
                 haveSupportedIndexLookup |= secondaryIndex.supportsOperator(expression.operator);
             }
+            searcher.validate(clause);
         }
 
         if (!haveSupportedIndexLookup)
@@ -667,9 +696,10 @@ public class SecondaryIndexManager
 
     public boolean validate(Cell cell)
     {
-        for (SecondaryIndex index : indexFor(cell.name()))
+        // Called for every written cell, so avoid building the set of matching indexes
+        for (SecondaryIndex index : allIndexes)
         {
-            if (!index.validate(cell))
+            if (index.indexes(cell.name()) && !index.validate(cell))
                 return false;
         }
         return true;
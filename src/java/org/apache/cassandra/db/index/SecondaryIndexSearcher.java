@@ -77,6 +77,17 @@ public abstract class SecondaryIndexSearcher
     {
     }
 
+    /**
+     * Validates the specified query clause, containing the expressions of all the restricted columns. It will throw an
+     * {@link InvalidRequestException} if the combination of expressions is not valid for the index implementation.
+     *
+     * @param clause the query clause
+     * @throws InvalidRequestException in case of validation errors
+     */
+    public void validate(List<IndexExpression> clause) throws InvalidRequestException
+    {
+    }
+
     protected IndexExpression highestSelectivityPredicate(List<IndexExpression> clause, boolean trace)
     {
         IndexExpression best = null;
@@ -137,4 +148,19 @@ public abstract class SecondaryIndexSearcher
     {
         return rows;
     }
+
+    /**
+     * Combines index query results from multiple nodes, knowing that only the first {@code limit} rows of the
+     * combination are going to be used. This is done by the coordinator node after it has reconciled the replica
+     * responses. By default, it is the same as {@link #postReconciliationProcessing(List, List)}.
+     *
+     * @param clause A list of {@link IndexExpression}s
+     * @param rows The index query results to be combined
+     * @param limit The max number of rows to be used from the combination
+     * @return The combination of the index query results
+     */
+    public List<Row> postReconciliationProcessing(List<IndexExpression> clause, List<Row> rows, int limit)
+    {
+        return postReconciliationProcessing(clause, rows);
+    }
 }
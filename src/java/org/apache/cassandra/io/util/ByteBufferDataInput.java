@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * A FileDataInput over the remaining bytes of a buffer holding a segment of a file, such as a decompressed
+ * section of it. File pointers are offset by the position of the segment within the file.
+ */
+public class ByteBufferDataInput extends AbstractDataInput implements FileDataInput
+{
+    private final ByteBuffer buffer;
+    private final String filename;
+    private final long segmentOffset;
+    private int position;
+
+    public ByteBufferDataInput(ByteBuffer buffer, String filename, long segmentOffset, int position)
+    {
+        assert buffer != null;
+        this.buffer = buffer;
+        this.filename = filename;
+        this.segmentOffset = segmentOffset;
+        this.position = position;
+    }
+
+    protected void seekInternal(int pos)
+    {
+        position = pos;
+    }
+
+    public void seek(long pos) throws IOException
+    {
+        long inSegmentPos = pos - segmentOffset;
+        if (inSegmentPos < 0 || inSegmentPos > buffer.remaining())
+            throw new IOException(String.format("Seek position %d is not within segment (seg offs: %d, length: %d)", pos, segmentOffset, buffer.remaining()));
+
+        seekInternal((int) inSegmentPos);
+    }
+
+    public long getFilePointer()
+    {
+        return segmentOffset + (long) position;
+    }
+
+    protected int getPosition()
+    {
+        return position;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    public void reset(FileMark mark) throws IOException
+    {
+        assert mark instanceof ByteBufferDataInputMark;
+        seekInternal(((ByteBufferDataInputMark) mark).position);
+    }
+
+    public FileMark mark()
+    {
+        return new ByteBufferDataInputMark(position);
+    }
+
+    public long bytesPastMark(FileMark mark)
+    {
+        assert mark instanceof ByteBufferDataInputMark;
+        assert position >= ((ByteBufferDataInputMark) mark).position;
+        return position - ((ByteBufferDataInputMark) mark).position;
+    }
+
+    public boolean isEOF() throws IOException
+    {
+        return position == buffer.remaining();
+    }
+
+    public long bytesRemaining() throws IOException
+    {
+        return buffer.remaining() - position;
+    }
+
+    public String getPath()
+    {
+        return filename;
+    }
+
+    public int read() throws IOException
+    {
+        if (isEOF())
+            return -1;
+        return buffer.get(buffer.position() + position++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int count) throws IOException
+    {
+        if (isEOF())
+            return -1;
+        int length = Math.min(count, buffer.remaining() - position);
+        ByteBufferUtil.arrayCopy(buffer, buffer.position() + position, bytes, offset, length);
+        position += length;
+        return length;
+    }
+
+    public ByteBuffer readBytes(int length) throws IOException
+    {
+        int remaining = buffer.remaining() - position;
+        if (length > remaining)
+            throw new EOFException(String.format("segment underflow; remaining is %d but %d requested", remaining, length));
+
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        ByteBufferUtil.arrayCopy(buffer, buffer.position() + position, bytes.array(), 0, length);
+        position += length;
+        return bytes;
+    }
+
+    public int skipBytes(int n) throws IOException
+    {
+        assert n >= 0 : "skipping negative bytes is illegal: " + n;
+        int oldPosition = position;
+        position = Math.min(buffer.remaining(), position + n);
+        return position - oldPosition;
+    }
+
+    private static class ByteBufferDataInputMark implements FileMark
+    {
+        int position;
+
+        ByteBufferDataInputMark(int position)
+        {
+            this.position = position;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "(filename='" + filename + "', segmentOffset=" + segmentOffset + ", position=" + position + ")";
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.cassandra.db.commitlog.AbstractCommitLogService;
 import org.apache.cassandra.db.commitlog.CommitLogSegmentManager;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Metrics for commit log
@@ -43,6 +44,13 @@ public class CommitLogMetrics
     public final Timer waitingOnSegmentAllocation;
     /** The time spent waiting on CL sync; for Periodic this is only occurs when the sync is lagging its sync interval */
     public final Timer waitingOnCommit;
+    /** The time spent syncing a segment to disk, including the compression of its synced section if enabled */
+    public final Timer syncTime;
+    /** Ratio of compressed to uncompressed size of the sync sections written to compressed segments */
+    public final Gauge<Double> compressionRatio;
+
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
 
     public CommitLogMetrics(final AbstractCommitLogService service, final CommitLogSegmentManager allocator)
     {
@@ -69,5 +77,23 @@ public class CommitLogMetrics
         });
         waitingOnSegmentAllocation = Metrics.newTimer(factory.createMetricName("WaitingOnSegmentAllocation"), TimeUnit.MICROSECONDS, TimeUnit.SECONDS);
         waitingOnCommit = Metrics.newTimer(factory.createMetricName("WaitingOnCommit"), TimeUnit.MICROSECONDS, TimeUnit.SECONDS);
+        syncTime = Metrics.newTimer(factory.createMetricName("SyncTime"), TimeUnit.MICROSECONDS, TimeUnit.SECONDS);
+        compressionRatio = Metrics.newGauge(factory.createMetricName("CompressionRatio"), new Gauge<Double>()
+        {
+            public Double value()
+            {
+                long uncompressed = uncompressedBytes.get();
+                return uncompressed != 0 ? (double) compressedBytes.get() / uncompressed : 0;
+            }
+        });
+    }
+
+    /**
+     * Records the sizes of a sync section written to a compressed segment.
+     */
+    public void addCompressedSection(long uncompressedLength, long compressedLength)
+    {
+        uncompressedBytes.addAndGet(uncompressedLength);
+        compressedBytes.addAndGet(compressedLength);
     }
 }
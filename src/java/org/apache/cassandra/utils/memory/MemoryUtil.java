@@ -111,6 +111,19 @@ public abstract class MemoryUtil
         return UNALIGNED ? unsafe.getLong(address) : getLongByByte(address);
     }
 
+    public static long getLongVolatile(long address)
+    {
+        return unsafe.getLongVolatile(null, address);
+    }
+
+    /**
+     * Atomically sets the long at the address, which must be 8-byte aligned, if it has the expected value
+     */
+    public static boolean compareAndSwapLong(long address, long expected, long value)
+    {
+        return unsafe.compareAndSwapLong(null, address, expected, value);
+    }
+
     public static ByteBuffer getByteBuffer(long address, int length)
     {
         ByteBuffer instance;
@@ -0,0 +1,76 @@
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.service.ClusteringKeyMapper;
+import com.stratio.cassandra.index.service.FullKeyMapper;
+import com.stratio.cassandra.index.service.PartitionKeyMapper;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+
+import java.io.IOException;
+
+/**
+ * Compares the size of the full key terms and the upsert throughput of wide row indexes using the legacy Base256 string
+ * full key terms with the ones achieved using the binary full key terms. Usage: {@code FullKeyTermStress [rows]}.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class FullKeyTermStress extends RowIndexStress {
+
+    private static final String TABLE = "CREATE TABLE %s.full_key (pk text, ck1 int, ck2 text, lucene text, " +
+                                        "PRIMARY KEY (pk, ck1, ck2))";
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        setup();
+        CFMetaData metadata = CFMetaData.compile(String.format(TABLE, KEYSPACE), KEYSPACE);
+        final FullKeyMapper mapper = FullKeyMapper.instance(PartitionKeyMapper.instance(metadata),
+                                                            ClusteringKeyMapper.instance(metadata));
+        final DecoratedKey[] partitionKeys = new DecoratedKey[rows];
+        final CellName[] clusteringKeys = new CellName[rows];
+        for (int i = 0; i < rows; i++) {
+            partitionKeys[i] = StorageService.getPartitioner().decorateKey(ByteBufferUtil.bytes("partition_" + i % 1000));
+            clusteringKeys[i] = metadata.comparator.makeCellName(i, "clustering_" + i, ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        }
+        for (final boolean legacy : new boolean[]{true, false}) {
+            mapper.setLegacy(legacy);
+            long termBytes = 0;
+            for (int i = 0; i < rows; i++) {
+                termBytes += mapper.term(partitionKeys[i], clusteringKeys[i]).bytes().length;
+            }
+            System.out.println(String.format("Full key term bytes, legacy=%-5s %10d bytes %10d bytes/row",
+                                             legacy,
+                                             termBytes,
+                                             termBytes / rows));
+            IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+            final IndexWriter writer = new IndexWriter(new RAMDirectory(), config);
+            for (final String label : new String[]{"Inserts", "Updates"}) {
+                time(label + ", legacy=" + legacy, rows, new Operation() {
+                    public void run(int i) {
+                        Document document = new Document();
+                        mapper.addFields(document, partitionKeys[i], clusteringKeys[i]);
+                        Term term = mapper.term(partitionKeys[i], clusteringKeys[i]);
+                        try {
+                            writer.updateDocument(term, document);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+            }
+            writer.commit();
+            System.out.println(String.format("Indexed documents, legacy=%-5s %10d docs", legacy, writer.numDocs()));
+            writer.close();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.geospatial.GeoBBoxCondition;
+import com.stratio.cassandra.index.geospatial.GeoDistance;
+import com.stratio.cassandra.index.geospatial.GeoDistanceCondition;
+import com.stratio.cassandra.index.schema.Column;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the index size and the bounding box and distance search throughput of the points indexed by the geohash
+ * prefix tree {@code geo_shape} mapper with the ones achieved by the numeric {@code geo_point} mapper. Usage: {@code
+ * GeoPointStress [points] [searches]}.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class GeoPointStress extends RowIndexStress {
+
+    public static void main(String[] args) throws IOException {
+        int points = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int searches = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        for (String type : new String[]{"geo_shape", "geo_point"}) {
+            final Schema schema = Schema.fromJson(String.format("{fields:{location:{type:\"%s\"}}}", type));
+            ColumnMapper mapper = schema.getMapper("location");
+            RAMDirectory directory = new RAMDirectory();
+            IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+            IndexWriter writer = new IndexWriter(directory, config);
+            Random random = new Random(0);
+            long start = System.nanoTime();
+            for (int i = 0; i < points; i++) {
+                String json = String.format("{type:\"point\", longitude:%s, latitude:%s}",
+                                            random.nextDouble() * 360 - 180,
+                                            random.nextDouble() * 180 - 90);
+                Document document = new Document();
+                for (IndexableField field : mapper.fields(Column.fromComposed("location", json, UTF8Type.instance))) {
+                    document.add(field);
+                }
+                writer.addDocument(document);
+            }
+            writer.forceMerge(1);
+            writer.close();
+            long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+            System.out.println(String.format("%-10s %10d points %10d ms %10d bytes",
+                                             type,
+                                             points,
+                                             elapsed,
+                                             directory.ramBytesUsed()));
+
+            final IndexSearcher searcher = new IndexSearcher(DirectoryReader.open(directory));
+            final Random queryRandom = new Random(1);
+            time(type + " bounding box searches", searches, new Operation() {
+                public void run(int i) {
+                    double longitude = queryRandom.nextDouble() * 350 - 175;
+                    double latitude = queryRandom.nextDouble() * 170 - 85;
+                    search(searcher, new GeoBBoxCondition(null,
+                                                          "location",
+                                                          longitude - 1,
+                                                          longitude + 1,
+                                                          latitude - 1,
+                                                          latitude + 1).query(schema));
+                }
+            });
+            time(type + " distance searches", searches, new Operation() {
+                public void run(int i) {
+                    double longitude = queryRandom.nextDouble() * 350 - 175;
+                    double latitude = queryRandom.nextDouble() * 170 - 85;
+                    GeoDistance distance = GeoDistance.create("100km");
+                    search(searcher, new GeoDistanceCondition(null,
+                                                              "location",
+                                                              longitude,
+                                                              latitude,
+                                                              distance).query(schema));
+                }
+            });
+        }
+    }
+
+    private static void search(IndexSearcher searcher, Query query) {
+        try {
+            searcher.search(query, 100);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.stratio.cassandra.index;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the latency and the memory allocated by {@link RowIndex} searches returning wide result sets, both with and
+ * without discarding rows by filtering, and both reading the rows from the table and from a covering index. Usage:
+ * {@code RowIndexSearchStress [rows] [queries]}.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowIndexSearchStress extends RowIndexStress {
+
+    private static final String[] TABLES = {"search", "search_covering"};
+    private static final String COLUMNS = "pk int, ck int, name text, value bigint, PRIMARY KEY (pk, ck)";
+    private static final String SCHEMA = "{fields : {name : {type : \"string\"}, value : {type : \"bigint\"}}}";
+    private static final int[] LIMITS = {100, 1000, 10000, 100000};
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws InterruptedException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        setup();
+        createTable(TABLES[0], COLUMNS, SCHEMA, ImmutableMap.of("refresh_seconds", "1"));
+        createTable(TABLES[1], COLUMNS, SCHEMA, ImmutableMap.of("refresh_seconds", "1", "covering", "true"));
+        for (final String table : TABLES) {
+            time("Inserts in " + table, rows, new Operation() {
+                public void run(int i) {
+                    execute("INSERT INTO %s.%s (pk, ck, name, value) VALUES (%d, %d, 'name_%d', %d)",
+                            KEYSPACE, table, i % 1000, i, i % 10, i);
+                }
+            });
+        }
+        Thread.sleep(2000); // Wait for index refresh
+
+        for (String table : TABLES) {
+            for (int limit : LIMITS) {
+                String filter = "{filter : {type : \"match\", field : \"name\", value : \"name_0\"}}";
+                String relevance = "{query : {type : \"prefix\", field : \"name\", value : \"name\"}}";
+                search(table, "Match all", "{}", limit, queries);
+                search(table, "Filter 10%", filter, limit, queries);
+                search(table, "Relevance", relevance, limit, queries);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void search(final String table, String label, final String search, final int limit, int queries) {
+        long allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long elapsed = time(String.format("%s %s, limit=%d", table, label, limit), queries, new Operation() {
+            public void run(int i) {
+                execute("SELECT * FROM %s.%s WHERE lucene = '%s' LIMIT %d", KEYSPACE, table, search, limit);
+            }
+        });
+        allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+        System.out.println(String.format("%-50s %10d ms/query %10d KB/query",
+                                         "",
+                                         elapsed / queries,
+                                         allocated / queries / 1024));
+    }
+}
@@ -0,0 +1,88 @@
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.db.Keyspace;
+
+import java.util.Map;
+
+/**
+ * Base class for in-process {@link RowIndex} stress programs. It starts a single node storage engine and provides
+ * helpers for creating indexed tables and timing operations.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public abstract class RowIndexStress {
+
+    protected static final String KEYSPACE = "stress_keyspace";
+
+    /**
+     * Prepares the storage engine and creates the stress keyspace.
+     */
+    protected static void setup() {
+        SchemaLoader.prepareServer();
+        Keyspace.setInitialized();
+        execute("CREATE KEYSPACE IF NOT EXISTS %s WITH replication = {'class': 'SimpleStrategy', 'replication_factor': '1'}",
+                KEYSPACE);
+    }
+
+    /**
+     * Creates a table with the specified name and columns, and a {@link RowIndex} on its {@code lucene} column using the
+     * specified schema and additional index options.
+     *
+     * @param table   The table name.
+     * @param columns The CQL definition of the table columns, including the primary key but not the indexed column.
+     * @param schema  The index schema.
+     * @param options The additional index options.
+     */
+    protected static void createTable(String table, String columns, String schema, Map<String, String> options) {
+        execute("CREATE TABLE %s.%s (%s, lucene text)", KEYSPACE, table, columns);
+        StringBuilder optionsBuilder = new StringBuilder();
+        for (Map.Entry<String, String> entry : options.entrySet()) {
+            optionsBuilder.append(String.format("'%s' : '%s', ", entry.getKey(), entry.getValue()));
+        }
+        execute("CREATE CUSTOM INDEX %s_idx ON %s.%s (lucene) USING '%s' WITH OPTIONS = {%s'schema' : '%s'}",
+                table, KEYSPACE, table, RowIndex.class.getName(), optionsBuilder, schema);
+    }
+
+    /**
+     * Executes the CQL query resulting from formatting the specified query with the specified arguments.
+     *
+     * @param query A CQL query format string.
+     * @param args  The format arguments.
+     * @return The query result.
+     */
+    protected static UntypedResultSet execute(String query, Object... args) {
+        return QueryProcessor.executeInternal(String.format(query, args));
+    }
+
+    /**
+     * Runs the specified operation the specified number of times, printing the achieved throughput.
+     *
+     * @param label      A description of the operation to be printed.
+     * @param operations The number of times to run the operation.
+     * @param operation  The operation, receiving the number of the iteration.
+     * @return The elapsed time in milliseconds.
+     */
+    protected static long time(String label, int operations, Operation operation) {
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            operation.run(i);
+        }
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+        System.out.println(String.format("%-50s %10d ops %10d ms %10d ops/s",
+                                         label,
+                                         operations,
+                                         elapsed,
+                                         operations * 1000L / elapsed));
+        return elapsed;
+    }
+
+    /**
+     * An operation to be timed.
+     */
+    protected interface Operation {
+        void run(int i);
+    }
+}
@@ -0,0 +1,52 @@
+package com.stratio.cassandra.index;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Compares the write throughput of a {@link RowIndex} reading the stored row before each write with the one achieved
+ * building the documents from the written data, for single row writes and for batches of rows of the same partition.
+ * Usage: {@code RowIndexWriteStress [rows]}.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowIndexWriteStress extends RowIndexStress {
+
+    private static final String COLUMNS = "pk int, ck int, name text, value bigint, PRIMARY KEY (pk, ck)";
+    private static final String SCHEMA = "{fields : {name : {type : \"string\"}, value : {type : \"bigint\"}}}";
+    private static final int BATCH_SIZE = 100;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        setup();
+        for (final String readBeforeWrite : new String[]{"true", "false"}) {
+            final String table = "write_" + readBeforeWrite;
+            createTable(table, COLUMNS, SCHEMA, ImmutableMap.of("read_before_write", readBeforeWrite));
+            time("Full row inserts, read_before_write=" + readBeforeWrite, rows, new Operation() {
+                public void run(int i) {
+                    execute("INSERT INTO %s.%s (pk, ck, name, value) VALUES (%d, %d, 'name_%d', %d)",
+                            KEYSPACE, table, i % 1000, i, i, i);
+                }
+            });
+            time("Partial updates, read_before_write=" + readBeforeWrite, rows, new Operation() {
+                public void run(int i) {
+                    execute("UPDATE %s.%s SET value = %d WHERE pk = %d AND ck = %d", KEYSPACE, table, -i, i % 1000, i);
+                }
+            });
+            final String batchTable = "batch_" + readBeforeWrite;
+            createTable(batchTable, COLUMNS, SCHEMA, ImmutableMap.of("read_before_write", readBeforeWrite));
+            time("Batches of " + BATCH_SIZE + " rows, read_before_write=" + readBeforeWrite,
+                 rows / BATCH_SIZE,
+                 new Operation() {
+                     public void run(int i) {
+                         StringBuilder batch = new StringBuilder("BEGIN UNLOGGED BATCH ");
+                         for (int j = i * BATCH_SIZE; j < (i + 1) * BATCH_SIZE; j++) {
+                             batch.append(String.format("INSERT INTO %s.%s (pk, ck, name, value) ", KEYSPACE, batchTable));
+                             batch.append(String.format("VALUES (%d, %d, 'name_%d', %d); ", i, j, j, j));
+                         }
+                         execute(batch.append("APPLY BATCH").toString());
+                     }
+                 });
+        }
+        System.exit(0);
+    }
+}
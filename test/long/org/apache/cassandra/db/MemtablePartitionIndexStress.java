@@ -0,0 +1,152 @@
+package org.apache.cassandra.db;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.HeapPool;
+import org.apache.cassandra.utils.memory.NativePool;
+
+/**
+ * Compares the memtable partition index implementations: concurrent inserts of random partition keys, followed by
+ * concurrent point lookups of the same keys and by a full, sorted iteration as done by a flush.
+ * Usage: MemtablePartitionIndexStress [partitions] [threads]
+ */
+public class MemtablePartitionIndexStress
+{
+    private static final Murmur3Partitioner partitioner = new Murmur3Partitioner();
+    private static final OpOrder.Group group = new OpOrder().start();
+
+    private interface Factory
+    {
+        MemtablePartitionIndex create();
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int partitions = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        DecoratedKey[] keys = new DecoratedKey[partitions];
+        Random random = new Random(0);
+        for (int i = 0; i < partitions; i++)
+            keys[i] = partitioner.decorateKey(ByteBuffer.wrap(Long.toString(random.nextLong()).getBytes()));
+
+        final HeapPool heapPool = new HeapPool(Long.MAX_VALUE, 1f, null);
+        final NativePool nativePool = new NativePool(Integer.MAX_VALUE, Integer.MAX_VALUE, 1f, null);
+        Map<String, Factory> factories = new LinkedHashMap<>();
+        factories.put("SkipListPartitionIndex", new Factory()
+        {
+            public MemtablePartitionIndex create()
+            {
+                return new SkipListPartitionIndex(partitioner, heapPool.newAllocator());
+            }
+        });
+        factories.put("HashPartitionIndex", new Factory()
+        {
+            public MemtablePartitionIndex create()
+            {
+                return new HashPartitionIndex(partitioner, heapPool.newAllocator());
+            }
+        });
+        factories.put("NativePartitionIndex", new Factory()
+        {
+            public MemtablePartitionIndex create()
+            {
+                return new NativePartitionIndex(nativePool.newAllocator());
+            }
+        });
+
+        // the first round warms up the JIT
+        for (int round = 0; round < 2; round++)
+        {
+            for (Map.Entry<String, Factory> entry : factories.entrySet())
+            {
+                MemtablePartitionIndex index = entry.getValue().create();
+                double put = run(index, keys, threads, true);
+                double get = run(index, keys, threads, false);
+
+                long start = System.nanoTime();
+                int count = 0;
+                for (Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> iter = index.iterator(null, null); iter.hasNext(); iter.next())
+                    count++;
+                double iterate = (System.nanoTime() - start) / 1e9;
+                assert count == index.size();
+
+                if (round > 0)
+                    System.out.println(String.format("%s: %.0f puts/s, %.0f gets/s, %.0f partitions/s iterated",
+                                                     entry.getKey(), partitions / put, partitions / get, count / iterate));
+            }
+        }
+        System.exit(0);
+    }
+
+    // returns the time taken by the threads to put or get all the keys, each thread handling a slice of them
+    private static double run(final MemtablePartitionIndex index, final DecoratedKey[] keys, int threads, final boolean put) throws InterruptedException
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            final int from = t * keys.length / threads;
+            final int to = (t + 1) * keys.length / threads;
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int i = from; i < to; i++)
+                        {
+                            if (put)
+                                index.putIfAbsent(keys[i], AtomicBTreeColumns.factory.create(CFMetaData.IndexCf), group);
+                            else if (index.get(keys[i]) == null)
+                                throw new AssertionError("Missing partition " + keys[i]);
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new AssertionError(e);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return (System.nanoTime() - begin) / 1e9;
+    }
+}
@@ -0,0 +1,99 @@
+package org.apache.cassandra.db.commitlog;
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+
+import com.google.common.collect.AbstractIterator;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * Measures the commit log replay throughput with a single reader thread and with several ones, replaying synthetic
+ * segments full of small mutations to random partitions of two tables.
+ * Usage: CommitLogReplayStress [segments] [threads]
+ */
+public class CommitLogReplayStress
+{
+    private static final int SEGMENT_SIZE = 8 << 20;
+
+    public static void main(String[] args) throws Exception
+    {
+        int segments = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        SchemaLoader.loadSchema();
+
+        // the ids are far ahead of the ones of the segments written by the schema loading, so that the
+        // replay positions of the flushed tables never cause the synthetic segments to be skipped
+        long baseId = Long.MAX_VALUE / 2;
+        int round = 0;
+        for (int readerThreads : new int[]{ 1, threads })
+        {
+            File[] files = new File[segments];
+            long bytes = 0;
+            for (int i = 0; i < segments; i++)
+            {
+                files[i] = writeSegment(baseId + round * 1000 + i);
+                bytes += files[i].length();
+            }
+            round++;
+
+            long start = System.nanoTime();
+            CommitLogReplayer replayer = new CommitLogReplayer(readerThreads);
+            replayer.recover(files);
+            int replayed = replayer.blockForWrites();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(String.format("%d reader threads: %d mutations in %.2f s, %.0f mutations/s, %.1f MB/s",
+                                             readerThreads, replayed, seconds, replayed / seconds, bytes / seconds / (1 << 20)));
+            for (File file : files)
+                file.delete();
+        }
+        System.exit(0);
+    }
+
+    // writes a segment full of small mutations to random partitions of two tables
+    private static File writeSegment(long id) throws IOException
+    {
+        final Random random = new Random(id);
+        Iterator<Mutation> mutations = new AbstractIterator<Mutation>()
+        {
+            protected Mutation computeNext()
+            {
+                Mutation mutation = new Mutation("Keyspace1", ByteBufferUtil.bytes(random.nextLong()));
+                mutation.add(random.nextBoolean() ? "Standard1" : "Standard2",
+                             Util.cellname("name" + random.nextInt(10)),
+                             ByteBufferUtil.bytes(random.nextLong()),
+                             System.currentTimeMillis());
+                return mutation;
+            }
+        };
+        return CommitLogReplayerTest.writeSegment(id, mutations, SEGMENT_SIZE);
+    }
+}
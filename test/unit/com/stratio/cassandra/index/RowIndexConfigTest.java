@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowIndexConfigTest {
+
+    private static final CFMetaData METADATA = CFMetaData.compile("CREATE TABLE t (k int PRIMARY KEY, v int, lucene text)",
+                                                                  "ks");
+
+    private static RowIndexConfig config(String... options) {
+        Map<String, String> map = new HashMap<>();
+        map.put("schema", "{fields : {v : {type : \"integer\"}}}");
+        for (int i = 0; i < options.length; i += 2) {
+            map.put(options[i], options[i + 1]);
+        }
+        return new RowIndexConfig(METADATA, map);
+    }
+
+    @Test
+    public void testDirectoryDefaults() {
+        RowIndexConfig config = config();
+        Assert.assertEquals("auto", config.getDirectory());
+        Assert.assertTrue(config.isNrtCache());
+    }
+
+    @Test
+    public void testDirectory() {
+        Assert.assertEquals("auto", config("directory", "auto").getDirectory());
+        Assert.assertEquals("mmap", config("directory", "mmap").getDirectory());
+        Assert.assertEquals("niofs", config("directory", "NIOFS").getDirectory());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testDirectoryInvalid() {
+        config("directory", "ram");
+    }
+
+    @Test
+    public void testNrtCache() {
+        Assert.assertTrue(config("nrt_cache", "true").isNrtCache());
+        Assert.assertFalse(config("nrt_cache", "FALSE").isNrtCache());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNrtCacheInvalid() {
+        config("nrt_cache", "yes");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNrtCacheExceedingFileCache() {
+        String maxCachedMB = Integer.toString(DatabaseDescriptor.getFileCacheSizeInMB() + 1);
+        config("max_cached_mb", maxCachedMB);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNrtCacheExceedingFileCacheWithShards() {
+        String maxCachedMB = Integer.toString(DatabaseDescriptor.getFileCacheSizeInMB() / 2 + 1);
+        config("max_cached_mb", maxCachedMB, "shards", "2");
+    }
+
+    @Test
+    public void testNrtCacheDisabledNotBoundedByFileCache() {
+        String maxCachedMB = Integer.toString(DatabaseDescriptor.getFileCacheSizeInMB() + 1);
+        RowIndexConfig config = config("max_cached_mb", maxCachedMB, "nrt_cache", "false");
+        Assert.assertFalse(config.isNrtCache());
+    }
+}
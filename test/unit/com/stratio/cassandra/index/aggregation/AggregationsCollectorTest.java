@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.aggregation;
+
+import com.stratio.cassandra.index.query.Search;
+import com.stratio.cassandra.index.schema.Column;
+import com.stratio.cassandra.index.schema.Columns;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+public class AggregationsCollectorTest {
+
+    private static final String SCHEMA = "{fields:{category:{type:\"string\"}, price:{type:\"integer\"}}}";
+
+    private static final Object[][] ROWS = {{"books", 5}, {"books", 12}, {"music", 20}, {"films", 8}, {"books", 30}};
+
+    private static IndexSearcher searcher(Schema schema) throws IOException {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        IndexWriter writer = new IndexWriter(directory, config);
+        for (int i = 0; i < ROWS.length; i++) {
+            Columns columns = new Columns();
+            columns.add(Column.fromComposed("category", (String) ROWS[i][0], UTF8Type.instance));
+            columns.add(Column.fromComposed("price", (Integer) ROWS[i][1], Int32Type.instance));
+            Document document = new Document();
+            schema.addFields(document, columns);
+            writer.addDocument(document);
+            if (i == 2) {
+                writer.commit(); // Several segments
+            }
+        }
+        writer.close();
+        return new IndexSearcher(DirectoryReader.open(directory));
+    }
+
+    private static AggregationResults aggregate(String json, Query query) throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        Search search = Search.fromJson(json);
+        AggregationsCollector collector = new AggregationsCollector(search.aggregations(schema), schema);
+        searcher(schema).search(query, collector);
+        return collector.results().finish(search.getAggregations());
+    }
+
+    @Test
+    public void testTerms() throws IOException {
+        String json = "{aggregations:{categories:{type:\"terms\", field:\"category\", size:2}}}";
+        AggregationResults results = aggregate(json, new MatchAllDocsQuery());
+        Assert.assertEquals(5, results.getCount());
+        TermsResult terms = (TermsResult) results.getResults().get("categories");
+        Assert.assertEquals("{books=3, films=1}", terms.getCounts().toString());
+        Assert.assertEquals(1, terms.getOther());
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        String json = "{aggregations:{prices:{type:\"range\", field:\"price\", " +
+                      "ranges:[{to:10}, {from:10, to:20}, {from:20}]}}}";
+        AggregationResults results = aggregate(json, new MatchAllDocsQuery());
+        List<RangeResult.Bucket> buckets = ((RangeResult) results.getResults().get("prices")).getBuckets();
+        Assert.assertEquals(3, buckets.size());
+        Assert.assertEquals(2, buckets.get(0).getCount());
+        Assert.assertEquals(1, buckets.get(1).getCount());
+        Assert.assertEquals(2, buckets.get(2).getCount());
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        String json = "{aggregations:{prices:{type:\"stats\", field:\"price\"}}}";
+        AggregationResults results = aggregate(json, new TermQuery(new Term("category", "books")));
+        StatsResult stats = (StatsResult) results.getResults().get("prices");
+        Assert.assertEquals(3, stats.getCount());
+        Assert.assertEquals(5, stats.getMin(), 0);
+        Assert.assertEquals(30, stats.getMax(), 0);
+        Assert.assertEquals(47, stats.getSum(), 0);
+        Assert.assertEquals(47 / 3d, stats.getAvg(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTermsNumericField() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        new TermsAggregation("price", null).validate(schema);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStatsStringField() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        new StatsAggregation("category").validate(schema);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStatsWithoutDocValues() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        schema.setDocValues(false, false);
+        new StatsAggregation("price").validate(schema);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSorted() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        String json = "{sort:{fields:[{field:\"price\"}]}, aggregations:{prices:{type:\"stats\", field:\"price\"}}}";
+        Search.fromJson(json).aggregations(schema);
+    }
+
+    @Test
+    public void testMergeJson() {
+        String json1 = "{count:3, aggregations:{c:{type:\"terms\", counts:{a:2, b:1}}, " +
+                       "s:{type:\"stats\", count:0, sum:0}}}";
+        String json2 = "{count:2, aggregations:{c:{type:\"terms\", counts:{b:2}}, " +
+                       "s:{type:\"stats\", count:2, min:1, max:3, sum:4}}}";
+        AggregationResults results1 = AggregationResults.fromJson(json1);
+        AggregationResults results2 = AggregationResults.fromJson(json2);
+        AggregationResults merged = AggregationResults.fromJson(results1.merge(results2).toJson());
+        Assert.assertEquals(5, merged.getCount());
+        Map<String, AggregationResult> map = merged.getResults();
+        Assert.assertEquals("{b=3, a=2}", ((TermsResult) map.get("c")).getCounts().toString());
+        StatsResult stats = (StatsResult) map.get("s");
+        Assert.assertEquals(2, stats.getCount());
+        Assert.assertEquals(1, stats.getMin(), 0);
+        Assert.assertEquals(2, stats.getAvg(), 0);
+    }
+}
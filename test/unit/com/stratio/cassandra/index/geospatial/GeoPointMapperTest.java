@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.geospatial;
+
+import com.stratio.cassandra.index.query.Search;
+import com.stratio.cassandra.index.query.SortField;
+import com.stratio.cassandra.index.schema.Column;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class GeoPointMapperTest {
+
+    private static final String SCHEMA = "{fields:{location:{type:\"geo_point\"}}}";
+
+    private static Column<String> column(double longitude, double latitude) {
+        String json = String.format("{type:\"point\", longitude:%s, latitude:%s}", longitude, latitude);
+        return Column.fromComposed("location", json, UTF8Type.instance);
+    }
+
+    private static IndexSearcher searcher(Schema schema, double[][] points) throws IOException {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        IndexWriter writer = new IndexWriter(directory, config);
+        for (int i = 0; i < points.length; i++) {
+            Document document = new Document();
+            document.add(new StringField("id", String.valueOf(i), Field.Store.YES));
+            for (IndexableField field : schema.getMapper("location").fields(column(points[i][0], points[i][1]))) {
+                document.add(field);
+            }
+            writer.addDocument(document);
+        }
+        writer.close();
+        return new IndexSearcher(DirectoryReader.open(directory));
+    }
+
+    private static List<String> ids(IndexSearcher searcher, TopDocs topDocs) throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            ids.add(searcher.doc(scoreDoc.doc).get("id"));
+        }
+        return ids;
+    }
+
+    private static final double[][] POINTS = {{-3.70, 40.41}, {-3.71, 40.42}, {2.17, 41.38}, {179.9, 0}, {-179.9, 0}};
+
+    @Test
+    public void testParseJSON() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        ColumnMapper columnMapper = schema.getMapper("location");
+        Assert.assertNotNull(columnMapper);
+        Assert.assertEquals(GeoPointMapper.class, columnMapper.getClass());
+    }
+
+    @Test
+    public void testFields() {
+        GeoPointMapper mapper = new GeoPointMapper();
+        Set<IndexableField> fields = mapper.fields(column(-3.70, 40.41));
+        Assert.assertEquals(3, fields.size());
+        for (IndexableField field : fields) {
+            Assert.assertFalse(field.fieldType().stored());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFieldsNotPoint() {
+        GeoPointMapper mapper = new GeoPointMapper();
+        String json = "{type:\"circle\", longitude:0, latitude:0, distance:\"1km\"}";
+        mapper.fields(Column.fromComposed("location", json, UTF8Type.instance));
+    }
+
+    @Test
+    public void testPack() {
+        long packed = GeoPointMapper.pack(GeoPointMapper.quantizeLatitude(-33.8675),
+                                          GeoPointMapper.quantizeLongitude(151.2070));
+        Assert.assertEquals(-33.8675, GeoPointMapper.latitude(packed), 1e-7);
+        Assert.assertEquals(151.2070, GeoPointMapper.longitude(packed), 1e-7);
+    }
+
+    @Test
+    public void testBBoxQuery() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        IndexSearcher searcher = searcher(schema, POINTS);
+        Query query = new GeoBBoxCondition(null, "location", -4, 3, 40, 42).query(schema);
+        Assert.assertEquals(3, searcher.search(query, 10).totalHits);
+    }
+
+    @Test
+    public void testBBoxQueryCrossingDateLine() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        IndexSearcher searcher = searcher(schema, POINTS);
+        Query query = new GeoBBoxCondition(null, "location", 179, -179, -1, 1).query(schema);
+        Assert.assertEquals(2, searcher.search(query, 10).totalHits);
+    }
+
+    @Test
+    public void testDistanceQuery() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        IndexSearcher searcher = searcher(schema, POINTS);
+        GeoDistance distance = GeoDistance.create("5km");
+        Query query = new GeoDistanceCondition(null, "location", -3.70, 40.41, distance).query(schema);
+        Assert.assertEquals(2, searcher.search(query, 10).totalHits);
+    }
+
+    @Test
+    public void testDistanceRangeQuery() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        IndexSearcher searcher = searcher(schema, POINTS);
+        GeoDistance min = GeoDistance.create("1km");
+        GeoDistance max = GeoDistance.create("600km");
+        Query query = new GeoDistanceRangeCondition(null, "location", -3.70, 40.41, min, max).query(schema);
+        Assert.assertEquals(2, searcher.search(query, 10).totalHits);
+    }
+
+    @Test
+    public void testDistanceSort() throws IOException {
+        Schema schema = Schema.fromJson(SCHEMA);
+        IndexSearcher searcher = searcher(schema, POINTS);
+        SortField sortField = new GeoDistanceSortField("location", 2.17, 41.38, false);
+        Sort sort = new Sort(sortField.sortField(schema));
+        TopDocs topDocs = searcher.search(new MatchAllDocsQuery(), 10, sort);
+        Assert.assertEquals("[2, 0, 1, 3, 4]", ids(searcher, topDocs).toString());
+    }
+
+    @Test
+    public void testDistanceSortParseJSON() {
+        String json = "{query:{type:\"match_all\"}, " +
+                      "sort:{fields:[{type:\"geo_distance\", field:\"location\", longitude:0, latitude:0}]}}";
+        Search search = Search.fromJson(json);
+        SortField sortField = search.getSort().getSortFields().get(0);
+        Assert.assertEquals(GeoDistanceSortField.class, sortField.getClass());
+    }
+}
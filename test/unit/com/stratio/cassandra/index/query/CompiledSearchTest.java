@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperInteger;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapperString;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.stratio.cassandra.index.query.builder.SearchBuilders.*;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class CompiledSearchTest {
+
+    private static Schema schema() {
+        Map<String, ColumnMapper> map = new HashMap<>();
+        map.put("name", new ColumnMapperString());
+        map.put("age", new ColumnMapperInteger(1f));
+        return new Schema(map, null, EnglishAnalyzer.class.getName());
+    }
+
+    @Test
+    public void testQueryAndFilter() {
+        Schema schema = schema();
+        Search search = query(match("name", "jonathan")).filter(range("age").lower(18)).build();
+        CompiledSearch compiledSearch = new CompiledSearch(search, schema);
+        Query rangeQuery = new TermQuery(new Term("range", "value"));
+        Assert.assertEquals(search.query(schema, rangeQuery), compiledSearch.query(rangeQuery));
+        Assert.assertEquals(search.query(schema, null), compiledSearch.query(null));
+        Assert.assertNull(compiledSearch.getSort());
+    }
+
+    @Test
+    public void testMatchAll() {
+        CompiledSearch compiledSearch = new CompiledSearch(search().build(), schema());
+        Assert.assertEquals(new MatchAllDocsQuery(), compiledSearch.query(null));
+    }
+
+    @Test
+    public void testSort() {
+        Schema schema = schema();
+        Search search = sort(sortField("age").reverse(true)).build();
+        CompiledSearch compiledSearch = new CompiledSearch(search, schema);
+        Assert.assertEquals(search.sort(schema), compiledSearch.getSort());
+    }
+
+    @Test
+    public void testFromJson() {
+        Search search = query(match("name", "jonathan")).build();
+        CompiledSearch compiledSearch = CompiledSearch.fromJson(search.toJson(), schema());
+        Assert.assertEquals(search.toJson(), compiledSearch.getSearch().toJson());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnparseable() {
+        CompiledSearch.fromJson("{query : {type : \"unknown\"}}", schema());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalid() {
+        CompiledSearch.fromJson(query(match("unmapped", "jonathan")).toJson(), schema());
+    }
+}
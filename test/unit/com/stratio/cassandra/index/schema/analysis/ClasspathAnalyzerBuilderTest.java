@@ -36,6 +36,14 @@ public class ClasspathAnalyzerBuilderTest {
         Assert.assertEquals(EnglishAnalyzer.class, analyzer.getClass());
     }
 
+    @Test
+    public void testBuildShared() {
+        String className = "org.apache.lucene.analysis.en.EnglishAnalyzer";
+        Analyzer analyzer1 = new ClasspathAnalyzerBuilder(className).analyzer();
+        Analyzer analyzer2 = new ClasspathAnalyzerBuilder(className).analyzer();
+        Assert.assertSame(analyzer1, analyzer2);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testBuildWithWrongClassName() {
         new ClasspathAnalyzerBuilder("abc");
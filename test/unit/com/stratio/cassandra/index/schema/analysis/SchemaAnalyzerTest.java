@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.schema.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.es.SpanishAnalyzer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class SchemaAnalyzerTest {
+
+    private static SchemaAnalyzer analyzer() {
+        Map<String, Analyzer> analyzers = new HashMap<>();
+        analyzers.put("english", new EnglishAnalyzer());
+        analyzers.put("english.spanish", new SpanishAnalyzer());
+        analyzers.put("keyword", new KeywordAnalyzer());
+        return new SchemaAnalyzer(new KeywordAnalyzer(),
+                                  analyzers,
+                                  new HashSet<>(Arrays.asList("english", "english.spanish")));
+    }
+
+    @Test
+    public void testColumnAnalyzer() {
+        SchemaAnalyzer analyzer = analyzer();
+        Assert.assertEquals("[dog, run]", AnalysisUtils.analyzeAsTokens("english", "the dogs running", analyzer)
+                                                       .toString());
+        analyzer.close();
+    }
+
+    @Test
+    public void testDottedFieldAnalyzer() {
+        SchemaAnalyzer analyzer = analyzer();
+        Assert.assertEquals("[dog, run]", AnalysisUtils.analyzeAsTokens("english.key", "the dogs running", analyzer)
+                                                       .toString());
+        Assert.assertEquals("[perr, corren]",
+                            AnalysisUtils.analyzeAsTokens("english.spanish.key", "los perros corren", analyzer)
+                                         .toString());
+        analyzer.close();
+    }
+
+    @Test
+    public void testDefaultAnalyzer() {
+        SchemaAnalyzer analyzer = analyzer();
+        Assert.assertEquals("[the dogs]", AnalysisUtils.analyzeAsTokens("unmapped", "the dogs", analyzer).toString());
+        Assert.assertEquals("[the dogs]", AnalysisUtils.analyzeAsTokens("the dogs", analyzer).toString());
+        analyzer.close();
+    }
+
+    @Test
+    public void testAnalysisTime() {
+        SchemaAnalyzer analyzer = analyzer();
+        Assert.assertEquals(new HashSet<>(Arrays.asList("english", "english.spanish")), analyzer.getTimedColumns());
+        Assert.assertEquals(0, analyzer.getAnalysisTime("english"));
+        AnalysisUtils.analyzeAsTokens("english.key", "the dogs running", analyzer);
+        Assert.assertTrue(analyzer.getAnalysisTime("english") > 0);
+        Assert.assertEquals(0, analyzer.getAnalysisTime("english.spanish"));
+        Assert.assertEquals(0, analyzer.getAnalysisTime("keyword"));
+        Assert.assertEquals(Collections.singletonList("the dogs"),
+                            AnalysisUtils.analyzeAsTokens("keyword", "the dogs", analyzer));
+        Assert.assertEquals(0, analyzer.getAnalysisTime("keyword"));
+        analyzer.close();
+    }
+}
@@ -17,6 +17,8 @@ package com.stratio.cassandra.index.schema.mapping;
 
 import com.stratio.cassandra.index.schema.Schema;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.NumericUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -122,6 +124,15 @@ public class ColumnMapperDoubleTest {
         Assert.assertEquals(false, field.fieldType().stored());
     }
 
+    @Test
+    public void testDocValuesField() {
+        ColumnMapperDouble mapper = new ColumnMapperDouble(1f);
+        IndexableField field = mapper.docValuesField("name", "3.2");
+        Assert.assertNotNull(field);
+        Assert.assertEquals(NumericUtils.doubleToSortableLong(3.2d), field.numericValue());
+        Assert.assertEquals("name", field.name());
+    }
+
     @Test
     public void testExtractAnalyzers() {
         ColumnMapperDouble mapper = new ColumnMapperDouble(1f);
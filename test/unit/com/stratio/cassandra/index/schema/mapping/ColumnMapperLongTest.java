@@ -17,6 +17,9 @@ package com.stratio.cassandra.index.schema.mapping;
 
 import com.stratio.cassandra.index.schema.Schema;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -124,6 +127,25 @@ public class ColumnMapperLongTest {
         Assert.assertEquals(false, field.fieldType().stored());
     }
 
+    @Test
+    public void testDocValuesField() {
+        ColumnMapperLong mapper = new ColumnMapperLong(1f);
+        IndexableField field = mapper.docValuesField("name", "3.2");
+        Assert.assertNotNull(field);
+        Assert.assertEquals(3L, field.numericValue());
+        Assert.assertEquals("name", field.name());
+        Assert.assertEquals(false, field.fieldType().stored());
+    }
+
+    @Test
+    public void testDocValuesSortField() {
+        ColumnMapperLong mapper = new ColumnMapperLong(1f);
+        SortField sortField = mapper.docValuesSortField("name", true);
+        Assert.assertTrue(sortField instanceof SortedNumericSortField);
+        Assert.assertEquals("name", sortField.getField());
+        Assert.assertTrue(sortField.getReverse());
+    }
+
     @Test
     public void testExtractAnalyzers() {
         ColumnMapperLong mapper = new ColumnMapperLong(1f);
@@ -20,6 +20,8 @@ import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.TimeUUIDType;
 import org.apache.cassandra.db.marshal.UUIDType;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.SortField;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -120,6 +122,25 @@ public class ColumnMapperUUIDTest {
         Assert.assertFalse(field.fieldType().stored());
     }
 
+    @Test
+    public void testDocValuesField() {
+        ColumnMapperUUID mapper = new ColumnMapperUUID();
+        UUID uuid = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+        IndexableField field = mapper.docValuesField("name", uuid);
+        Assert.assertNotNull(field);
+        Assert.assertEquals(mapper.indexValue("name", uuid), field.binaryValue().utf8ToString());
+        Assert.assertEquals("name", field.name());
+    }
+
+    @Test
+    public void testDocValuesSortField() {
+        ColumnMapperUUID mapper = new ColumnMapperUUID();
+        SortField sortField = mapper.docValuesSortField("name", false);
+        Assert.assertTrue(sortField instanceof SortedSetMinSortField);
+        Assert.assertEquals("name", sortField.getField());
+        Assert.assertFalse(sortField.getReverse());
+    }
+
     @Test
     public void testExtractAnalyzers() {
         ColumnMapperUUID mapper = new ColumnMapperUUID();
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.schema.mapping;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class MixedSortFieldTest {
+
+    private static final SortField INT = new MixedSortField(new SortField("i", SortField.Type.INT),
+                                                            new SortedNumericSortField("i", SortField.Type.INT));
+    private static final SortField INT_REVERSE = new MixedSortField(new SortField("i", SortField.Type.INT, true),
+                                                                    new SortedNumericSortField("i",
+                                                                                               SortField.Type.INT,
+                                                                                               true));
+    private static final SortField STRING = new MixedSortField(new SortField("s", SortField.Type.STRING),
+                                                               new SortedSetMinSortField("s", false));
+
+    private Directory directory;
+    private DirectoryReader reader;
+
+    /**
+     * Builds an index with a legacy segment without doc values and a segment with doc values, as the ones found while
+     * migrating an index written without doc values.
+     */
+    @Before
+    public void before() throws IOException {
+        directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        config.setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter writer = new IndexWriter(directory, config)) {
+            writer.addDocument(document(5, false));
+            writer.addDocument(document(1, false));
+            writer.addDocument(document(7, false));
+            writer.commit();
+            writer.addDocument(document(4, true));
+            writer.addDocument(document(2, true));
+            writer.addDocument(document(6, true));
+            writer.commit();
+        }
+        reader = DirectoryReader.open(directory);
+        Assert.assertEquals(2, reader.leaves().size());
+    }
+
+    @After
+    public void after() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    private static Document document(int value, boolean docValues) {
+        String string = "value_" + value;
+        Document document = new Document();
+        document.add(new StoredField("id", value));
+        document.add(new IntField("i", value, Field.Store.NO));
+        document.add(new StringField("s", string, Field.Store.NO));
+        if (docValues) {
+            document.add(new SortedNumericDocValuesField("i", value));
+            document.add(new SortedSetDocValuesField("s", new BytesRef(string)));
+        }
+        return document;
+    }
+
+    private List<Integer> ids(ScoreDoc[] scoreDocs) throws IOException {
+        List<Integer> ids = new ArrayList<>(scoreDocs.length);
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            ids.add(reader.document(scoreDoc.doc).getField("id").numericValue().intValue());
+        }
+        return ids;
+    }
+
+    private List<Integer> search(SortField sortField, int count) throws IOException {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        return ids(searcher.search(new MatchAllDocsQuery(), count, new Sort(sortField)).scoreDocs);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLegacySortFailsWithDocValues() throws IOException {
+        search(new SortField("i", SortField.Type.INT), 10);
+    }
+
+    @Test
+    public void testSortNumeric() throws IOException {
+        Assert.assertEquals(Arrays.asList(1, 2, 4, 5, 6, 7), search(INT, 10));
+        Assert.assertEquals(Arrays.asList(7, 6, 5, 4, 2, 1), search(INT_REVERSE, 10));
+    }
+
+    @Test
+    public void testSortString() throws IOException {
+        Assert.assertEquals(Arrays.asList(1, 2, 4, 5, 6, 7), search(STRING, 10));
+    }
+
+    @Test
+    public void testSortTop() throws IOException {
+        Assert.assertEquals(Arrays.asList(1, 2, 4), search(INT, 3));
+        Assert.assertEquals(Arrays.asList(7, 6), search(INT_REVERSE, 2));
+        Assert.assertEquals(Arrays.asList(1, 2), search(STRING, 2));
+    }
+
+    @Test
+    public void testSearchAfter() throws IOException {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        Sort sort = new Sort(INT);
+        TopDocs first = searcher.search(new MatchAllDocsQuery(), 3, sort);
+        Assert.assertEquals(Arrays.asList(1, 2, 4), ids(first.scoreDocs));
+        FieldDoc last = (FieldDoc) first.scoreDocs[2];
+        TopDocs second = searcher.searchAfter(last, new MatchAllDocsQuery(), 3, sort);
+        Assert.assertEquals(Arrays.asList(5, 6, 7), ids(second.scoreDocs));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class BinaryTermStreamTest {
+
+    private static final String FIELD = "field";
+
+    /** Binary terms which aren't valid UTF-8, in their binary order. */
+    private static final BytesRef[] TERMS = {new BytesRef(new byte[]{}),
+                                             new BytesRef(new byte[]{0}),
+                                             new BytesRef(new byte[]{0, 0}),
+                                             new BytesRef(new byte[]{1, (byte) 0xC0, 0}),
+                                             new BytesRef(new byte[]{(byte) 0x80}),
+                                             new BytesRef(new byte[]{(byte) 0xFF, (byte) 0xFE})};
+
+    @Test
+    public void testTokenStream() throws IOException {
+        BytesRef bytes = new BytesRef(new byte[]{9, 1, 2, (byte) 0xFF, 9}, 1, 3);
+        try (TokenStream stream = BinaryTermStream.field(FIELD, bytes).tokenStream(null, null)) {
+            TermToBytesRefAttribute attribute = stream.getAttribute(TermToBytesRefAttribute.class);
+            for (int i = 0; i < 2; i++) { // The stream can be consumed again after reset
+                stream.reset();
+                Assert.assertTrue(stream.incrementToken());
+                attribute.fillBytesRef();
+                Assert.assertEquals(new BytesRef(new byte[]{1, 2, (byte) 0xFF}), attribute.getBytesRef());
+                Assert.assertFalse(stream.incrementToken());
+                stream.end();
+            }
+        }
+    }
+
+    @Test
+    public void testIndexing() throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        try (Directory directory = new RAMDirectory()) {
+            try (IndexWriter writer = new IndexWriter(directory, config)) {
+                for (int i = TERMS.length - 1; i >= 0; i--) {
+                    Document document = new Document();
+                    document.add(BinaryTermStream.field(FIELD, TERMS[i]));
+                    writer.addDocument(document);
+                }
+                Document document = new Document(); // A repeated term
+                document.add(BinaryTermStream.field(FIELD, BytesRef.deepCopyOf(TERMS[3])));
+                writer.addDocument(document);
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+
+                // The indexed terms are the raw bytes, sorted in binary order
+                List<BytesRef> terms = new ArrayList<>();
+                TermsEnum termsEnum = MultiFields.getTerms(reader, FIELD).iterator(null);
+                for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                    terms.add(BytesRef.deepCopyOf(term));
+                }
+                Assert.assertEquals(Arrays.asList(TERMS), terms);
+
+                // The terms can be searched
+                IndexSearcher searcher = new IndexSearcher(reader);
+                for (int i = 0; i < TERMS.length; i++) {
+                    TermQuery query = new TermQuery(new Term(FIELD, TERMS[i]));
+                    Assert.assertEquals(i == 3 ? 2 : 1, searcher.search(query, 10).totalHits);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.stratio.cassandra.util.ByteBufferUtils;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class FullKeyMapperTest {
+
+    private static final String TABLE = "CREATE TABLE ks.t (pk text, ck1 int, ck2 text, v int, lucene text, " +
+                                        "PRIMARY KEY (pk, ck1, ck2))";
+
+    private static final CFMetaData METADATA = CFMetaData.compile(TABLE, "ks");
+
+    private static FullKeyMapper mapper() {
+        return FullKeyMapper.instance(PartitionKeyMapper.instance(METADATA), ClusteringKeyMapper.instance(METADATA));
+    }
+
+    private static DecoratedKey partitionKey(String value) {
+        return StorageService.getPartitioner().decorateKey(ByteBufferUtil.bytes(value));
+    }
+
+    private static CellName clusteringKey(int ck1, String ck2) {
+        return METADATA.comparator.makeCellName(ck1, ck2, ByteBufferUtil.EMPTY_BYTE_BUFFER);
+    }
+
+    /** A full row key. */
+    private static class FullKey {
+
+        private final DecoratedKey partitionKey;
+        private final CellName clusteringKey;
+
+        private FullKey(DecoratedKey partitionKey, CellName clusteringKey) {
+            this.partitionKey = partitionKey;
+            this.clusteringKey = clusteringKey;
+        }
+    }
+
+    private static List<FullKey> fullKeys() {
+        List<FullKey> fullKeys = new ArrayList<>();
+        for (String pk : new String[]{"c", "a", "ba", "b", "aa"}) {
+            for (int ck1 : new int[]{256, 0, 1, 65536}) {
+                for (String ck2 : new String[]{"y", "x", "xx"}) {
+                    fullKeys.add(new FullKey(partitionKey(pk), clusteringKey(ck1, ck2)));
+                }
+            }
+        }
+        return fullKeys;
+    }
+
+    @Test
+    public void testBytesRefOrdering() {
+        final FullKeyMapper mapper = mapper();
+        List<FullKey> fullKeys = fullKeys();
+        Collections.sort(fullKeys, new Comparator<FullKey>() {
+            @Override
+            public int compare(FullKey o1, FullKey o2) {
+                BytesRef bytesRef1 = mapper.bytesRef(o1.partitionKey, o1.clusteringKey);
+                BytesRef bytesRef2 = mapper.bytesRef(o2.partitionKey, o2.clusteringKey);
+                return bytesRef1.compareTo(bytesRef2);
+            }
+        });
+
+        // The terms of each partition are together in the terms dictionary
+        Set<DecoratedKey> seen = new HashSet<>();
+        DecoratedKey previous = null;
+        for (FullKey fullKey : fullKeys) {
+            if (!fullKey.partitionKey.equals(previous)) {
+                Assert.assertTrue(seen.add(fullKey.partitionKey));
+                previous = fullKey.partitionKey;
+            }
+        }
+        Assert.assertEquals(5, seen.size());
+    }
+
+    @Test
+    public void testBytesRefDistinct() {
+        FullKeyMapper mapper = mapper();
+        BytesRef bytesRef1 = mapper.bytesRef(partitionKey("ab"), clusteringKey(1, "c"));
+        BytesRef bytesRef2 = mapper.bytesRef(partitionKey("a"), clusteringKey(1, "bc"));
+        Assert.assertFalse(bytesRef1.bytesEquals(bytesRef2));
+        Assert.assertEquals(bytesRef1, mapper.bytesRef(partitionKey("ab"), clusteringKey(1, "c")));
+    }
+
+    @Test
+    public void testTerm() {
+        FullKeyMapper mapper = mapper();
+        DecoratedKey partitionKey = partitionKey("a");
+        CellName clusteringKey = clusteringKey(1, "b");
+        String legacyText = ByteBufferUtils.toString(mapper.byteBuffer(partitionKey, clusteringKey));
+
+        Term term = mapper.term(partitionKey, clusteringKey);
+        Assert.assertEquals(FullKeyMapper.FIELD_NAME, term.field());
+        Assert.assertEquals(mapper.bytesRef(partitionKey, clusteringKey), term.bytes());
+        Assert.assertEquals(legacyText, mapper.legacyTerm(partitionKey, clusteringKey).text());
+
+        mapper.setLegacy(true);
+        Assert.assertEquals(mapper.legacyTerm(partitionKey, clusteringKey), mapper.term(partitionKey, clusteringKey));
+        Assert.assertEquals(legacyText, mapper.term(partitionKey, clusteringKey).text());
+    }
+
+    private static int count(FullKeyMapper mapper, boolean legacy) throws IOException {
+        mapper.setLegacy(legacy);
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        try (Directory directory = new RAMDirectory()) {
+            try (IndexWriter writer = new IndexWriter(directory, config)) {
+                for (FullKey fullKey : fullKeys()) {
+                    Document document = new Document();
+                    mapper.addFields(document, fullKey.partitionKey, fullKey.clusteringKey);
+                    writer.updateDocument(mapper.term(fullKey.partitionKey, fullKey.clusteringKey), document);
+                }
+                for (FullKey fullKey : fullKeys()) { // Updates
+                    Document document = new Document();
+                    mapper.addFields(document, fullKey.partitionKey, fullKey.clusteringKey);
+                    writer.updateDocument(mapper.term(fullKey.partitionKey, fullKey.clusteringKey), document);
+                }
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                for (FullKey fullKey : fullKeys()) {
+                    Term term = mapper.term(fullKey.partitionKey, fullKey.clusteringKey);
+                    Assert.assertEquals(1, searcher.search(new TermQuery(term), 10).totalHits);
+                }
+                return reader.numDocs();
+            }
+        }
+    }
+
+    @Test
+    public void testAddFields() throws IOException {
+        FullKeyMapper mapper = mapper();
+        Assert.assertEquals(fullKeys().size(), count(mapper, false));
+        Assert.assertEquals(fullKeys().size(), count(mapper, true));
+    }
+}
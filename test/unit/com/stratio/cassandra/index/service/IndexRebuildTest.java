@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.stratio.cassandra.index.RowIndexConfig;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.ColumnIdentifier;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.compaction.CompactionInfo;
+import org.apache.cassandra.db.compaction.CompactionInterruptedException;
+import org.apache.cassandra.config.IndexType;
+import org.apache.cassandra.db.filter.QueryFilter;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class IndexRebuildTest extends CQLTester {
+
+    private static final int NUM_PARTITIONS = 2000;
+
+    private static final int NUM_UPDATED_PARTITIONS = 40;
+
+    private static final int NUM_WRITERS = 4;
+
+    private static final String SCHEMA = "{default_analyzer : \"org.apache.lucene.analysis.standard.StandardAnalyzer\"," +
+                                         " fields : {v : {type : \"integer\"}}}";
+
+    private String path; // The directory of the current index
+
+    /**
+     * Returns a new {@link RowService} for a new table containing {@link #NUM_PARTITIONS} flushed partitions. The
+     * service is not registered as an index of the table, so the table writes are not indexed.
+     *
+     * @return A new {@link RowService} for a new table.
+     * @throws Throwable If the table can't be created or written.
+     */
+    private RowService rowService() throws Throwable {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int, lucene text)");
+        for (int i = 0; i < NUM_PARTITIONS; i++) {
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", i, i);
+        }
+        flush();
+        ColumnFamilyStore cfs = Keyspace.open(keyspace()).getColumnFamilyStore(currentTable());
+        CFMetaData metadata = cfs.metadata;
+        Map<String, String> options = Collections.singletonMap("schema", SCHEMA);
+        ColumnDefinition columnDefinition = metadata.getColumnDefinition(new ColumnIdentifier("lucene", true))
+                                                    .copy()
+                                                    .setIndex(currentTable() + "_idx", IndexType.CUSTOM, options);
+        path = new RowIndexConfig(metadata, options).getPath();
+        return RowService.build(cfs, columnDefinition);
+    }
+
+    /**
+     * Returns a {@link CompactionInfo.Holder} for running the specified {@link IndexRebuild} until its first chunk is
+     * merged, if {@code interrupt} is {@code true}, or until it finishes otherwise.
+     */
+    private static CompactionInfo.Holder holder(final IndexRebuild rebuild, final boolean interrupt) {
+        return new CompactionInfo.Holder() {
+            @Override
+            public CompactionInfo getCompactionInfo() {
+                return rebuild.getCompactionInfo();
+            }
+
+            @Override
+            public boolean isStopRequested() {
+                return interrupt && rebuild.getCompactionInfo().getCompleted() > 0;
+            }
+        };
+    }
+
+    /**
+     * Asserts that the last commit of the index of the specified {@link RowService} contains the expected number of
+     * documents.
+     */
+    private void assertNumDocs(RowService service, int expected) throws IOException {
+        service.commit();
+        try (Directory directory = FSDirectory.open(new File(path));
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            Assert.assertEquals(expected, reader.numDocs());
+        }
+    }
+
+    /**
+     * Returns the partition key of the specified updated partition, spread over all the partitions.
+     */
+    private static int updatedKey(int i) {
+        return i * (NUM_PARTITIONS / NUM_UPDATED_PARTITIONS);
+    }
+
+    @Test
+    public void testRebuild() throws Throwable {
+        RowService service = rowService();
+        try {
+            assertNumDocs(service, 0);
+            IndexRebuild rebuild = service.rebuild();
+            rebuild.run(holder(rebuild, false));
+            CompactionInfo info = rebuild.getCompactionInfo();
+            Assert.assertTrue(info.getTotal() > 1);
+            Assert.assertEquals(info.getTotal(), info.getCompleted());
+            assertNumDocs(service, NUM_PARTITIONS);
+        } finally {
+            service.delete();
+        }
+    }
+
+    @Test
+    public void testResumeInterruptedRebuild() throws Throwable {
+        RowService service = rowService();
+        try {
+            IndexRebuild interrupted = service.rebuild();
+            try {
+                interrupted.run(holder(interrupted, true));
+                Assert.fail("Rebuild should have been interrupted");
+            } catch (CompactionInterruptedException e) {
+                // Expected
+            }
+            CompactionInfo interruptedInfo = interrupted.getCompactionInfo();
+            long merged = interruptedInfo.getCompleted();
+            Assert.assertTrue(merged > 0);
+            Assert.assertTrue(merged < interruptedInfo.getTotal());
+
+            // Resume with the same plan, skipping the already merged chunks
+            final IndexRebuild resumed = service.rebuild();
+            final long[] resumedFrom = {-1};
+            resumed.run(new CompactionInfo.Holder() {
+                @Override
+                public CompactionInfo getCompactionInfo() {
+                    return resumed.getCompactionInfo();
+                }
+
+                @Override
+                public boolean isStopRequested() {
+                    if (resumedFrom[0] < 0) {
+                        resumedFrom[0] = resumed.getCompactionInfo().getCompleted();
+                    }
+                    return false;
+                }
+            });
+            CompactionInfo resumedInfo = resumed.getCompactionInfo();
+            Assert.assertEquals(interruptedInfo.getTotal(), resumedInfo.getTotal());
+            Assert.assertEquals(resumedInfo.getTotal(), resumedInfo.getCompleted());
+            Assert.assertTrue(resumedFrom[0] >= merged);
+            assertNumDocs(service, NUM_PARTITIONS);
+
+            // A new rebuild starts from scratch
+            IndexRebuild rebuild = service.rebuild();
+            rebuild.run(holder(rebuild, false));
+            assertNumDocs(service, NUM_PARTITIONS);
+        } finally {
+            service.delete();
+        }
+    }
+
+    @Test
+    public void testConcurrentUpserts() throws Throwable {
+        final RowService service = rowService();
+        final ColumnFamilyStore cfs = Keyspace.open(keyspace()).getColumnFamilyStore(currentTable());
+        final AtomicBoolean rebuilding = new AtomicBoolean(true);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        try {
+            // Update and index partitions of all the chunks while rebuilding, as a registered index would do
+            List<Thread> writers = new ArrayList<>(NUM_WRITERS);
+            for (int w = 0; w < NUM_WRITERS; w++) {
+                final int writer = w;
+                writers.add(new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; rebuilding.get(); i++) {
+                                int k = updatedKey(writer + (i * NUM_WRITERS) % NUM_UPDATED_PARTITIONS);
+                                execute("INSERT INTO %s (k, v) VALUES (?, ?)", k, NUM_PARTITIONS + i);
+                                long timestamp = System.currentTimeMillis();
+                                DecoratedKey key = cfs.partitioner.decorateKey(Int32Type.instance.decompose(k));
+                                QueryFilter filter = QueryFilter.getIdentityFilter(key, cfs.name, timestamp);
+                                ColumnFamily columnFamily = cfs.getColumnFamily(filter);
+                                service.index(key.getKey(), columnFamily, timestamp);
+                            }
+                        } catch (Throwable t) {
+                            error.set(t);
+                        }
+                    }
+                });
+            }
+            for (Thread writer : writers) {
+                writer.start();
+            }
+            IndexRebuild rebuild = service.rebuild();
+            try {
+                rebuild.run(holder(rebuild, false));
+            } finally {
+                rebuilding.set(false);
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+            }
+            if (error.get() != null) {
+                throw error.get();
+            }
+            assertNumDocs(service, NUM_PARTITIONS);
+
+            // The updated partitions are indexed once with their last value
+            try (Directory directory = FSDirectory.open(new File(path));
+                 DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                for (int i = 0; i < NUM_UPDATED_PARTITIONS; i++) {
+                    int k = updatedKey(i);
+                    DecoratedKey key = cfs.partitioner.decorateKey(Int32Type.instance.decompose(k));
+                    TermQuery keyQuery = new TermQuery(service.rowMapper.term(key));
+                    Assert.assertEquals(1, searcher.search(keyQuery, 10).totalHits);
+                    int v = execute("SELECT v FROM %s WHERE k = ?", k).one().getInt("v");
+                    BooleanQuery query = new BooleanQuery();
+                    query.add(keyQuery, BooleanClause.Occur.MUST);
+                    query.add(NumericRangeQuery.newIntRange("v", v, v, true, true), BooleanClause.Occur.MUST);
+                    Assert.assertEquals(1, searcher.search(query, 10).totalHits);
+                }
+            }
+        } finally {
+            service.delete();
+        }
+    }
+}
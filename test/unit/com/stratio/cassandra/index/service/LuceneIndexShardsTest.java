@@ -0,0 +1,309 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.stratio.cassandra.index.query.CompiledSearch;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.IndexType;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.ColumnIdentifier;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DataRange;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.IndexExpression;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.commitlog.ReplayPosition;
+import org.apache.cassandra.db.compaction.CompactionInfo;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.locator.TokenMetadata;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FBUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class LuceneIndexShardsTest extends CQLTester {
+
+    private static final int NUM_PARTITIONS = 200;
+
+    private static final String SCHEMA = "{default_analyzer : \"org.apache.lucene.analysis.standard.StandardAnalyzer\"," +
+                                         " fields : {v : {type : \"integer\"}}}";
+
+    private static final String SORTED_SEARCH = "{sort : {fields : [{field : \"v\", reverse : true}]}}";
+
+    private static final String FILTER_SEARCH = "{filter : {type : \"match_all\"}}";
+
+    /**
+     * Returns a new {@link RowService} with the specified number of shards for a new table containing {@link
+     * #NUM_PARTITIONS} indexed partitions. The service is not registered as an index of the table, so it is populated
+     * with a rebuild.
+     *
+     * @param numShards The number of shards.
+     * @return A new {@link RowService} for a new table.
+     * @throws Throwable If the table can't be created or written.
+     */
+    private RowService rowService(int numShards) throws Throwable {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int, lucene text)");
+        for (int i = 0; i < NUM_PARTITIONS; i++) {
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", key(i), i);
+        }
+        flush();
+        ColumnFamilyStore cfs = Keyspace.open(keyspace()).getColumnFamilyStore(currentTable());
+        CFMetaData metadata = cfs.metadata;
+        Map<String, String> options = new HashMap<>();
+        options.put("schema", SCHEMA);
+        options.put("refresh_seconds", "0.1");
+        options.put("shards", Integer.toString(numShards));
+        ColumnDefinition columnDefinition = metadata.getColumnDefinition(new ColumnIdentifier("lucene", true))
+                                                    .copy()
+                                                    .setIndex(currentTable() + "_idx", IndexType.CUSTOM, options);
+        RowService service = RowService.build(cfs, columnDefinition);
+        final IndexRebuild rebuild = service.rebuild();
+        rebuild.run(new CompactionInfo.Holder() {
+            @Override
+            public CompactionInfo getCompactionInfo() {
+                return rebuild.getCompactionInfo();
+            }
+        });
+        commit(service);
+        return service;
+    }
+
+    private static void commit(RowService service) throws InterruptedException {
+        service.commit();
+        Thread.sleep(500); // Wait for the searcher refresh
+    }
+
+    /**
+     * Returns the partition key value of the specified partition number. The values are spread over all the integers,
+     * so their tokens are spread over all the shards whatever the partitioner is.
+     */
+    private static int key(int i) {
+        return i * (int) (0x100000000L / NUM_PARTITIONS);
+    }
+
+    private static DecoratedKey partitionKey(int i) {
+        return StorageService.getPartitioner().decorateKey(ByteBufferUtil.bytes(key(i)));
+    }
+
+    /**
+     * Returns the token ranges of the specified shards, in shard order.
+     */
+    private static List<Range<Token>> ranges(LuceneIndexShards shards) {
+        Token minimum = StorageService.getPartitioner().getMinimumToken();
+        List<Range<Token>> ranges = new ArrayList<>(shards.size());
+        Token left = minimum;
+        for (Token right : shards.boundaries()) {
+            ranges.add(new Range<>(left, right));
+            left = right;
+        }
+        ranges.add(new Range<>(left, minimum));
+        return ranges;
+    }
+
+    /**
+     * Returns the number of the shard containing the specified partition according to the shard token ranges.
+     */
+    private static int shardNumber(List<Range<Token>> ranges, DecoratedKey partitionKey) {
+        for (int i = 0; i < ranges.size(); i++) {
+            if (ranges.get(i).contains(partitionKey.getToken())) {
+                return i;
+            }
+        }
+        throw new AssertionError("No shard contains " + partitionKey);
+    }
+
+    private static List<Row> search(RowService service, String search, Token left, Token right) {
+        CompiledSearch compiledSearch = service.compile(UTF8Type.instance.decompose(search));
+        DataRange dataRange = DataRange.forKeyRange(new Range<>(left, right));
+        List<IndexExpression> expressions = Collections.emptyList();
+        List<Row> rows = service.search(compiledSearch, expressions, dataRange, 1000, System.currentTimeMillis());
+        return service.combine(compiledSearch.getSearch(), rows, 1000);
+    }
+
+    private static List<Integer> keys(List<Row> rows) {
+        List<Integer> keys = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            keys.add(ByteBufferUtil.toInt(row.key.getKey()));
+        }
+        return keys;
+    }
+
+    @Test
+    public void testBisectedRanges() throws Throwable {
+        for (int numShards : new int[]{1, 3, 4, 5}) {
+            RowService service = rowService(numShards);
+            try {
+                List<Token> boundaries = service.luceneShards.boundaries();
+                Assert.assertEquals(numShards, service.luceneShards.size());
+                Assert.assertEquals(numShards - 1, boundaries.size());
+                for (int i = 1; i < boundaries.size(); i++) {
+                    Assert.assertTrue(boundaries.get(i - 1).compareTo(boundaries.get(i)) < 0);
+                }
+                for (Token boundary : boundaries) {
+                    Assert.assertFalse(boundary.isMinimum());
+                }
+            } finally {
+                service.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testRouting() throws Throwable {
+        RowService service = rowService(4);
+        try {
+            LuceneIndexShards shards = service.luceneShards;
+            List<Range<Token>> ranges = ranges(shards);
+            int[] numDocs = new int[shards.size()];
+            for (int i = 0; i < NUM_PARTITIONS; i++) {
+                DecoratedKey partitionKey = partitionKey(i);
+                int shardNumber = shardNumber(ranges, partitionKey);
+                Assert.assertSame(shards.shard(ranges.get(shardNumber)), shards.shard(partitionKey));
+                numDocs[shardNumber]++;
+            }
+            for (int i = 0; i < shards.size(); i++) {
+                Assert.assertTrue(numDocs[i] > 0);
+                Assert.assertEquals(numDocs[i], shards.shard(ranges.get(i)).getNumDocs());
+            }
+            Assert.assertEquals(NUM_PARTITIONS, shards.getNumDocs());
+        } finally {
+            service.delete();
+        }
+    }
+
+    @Test
+    public void testSearchAcrossShards() throws Throwable {
+        RowService service = rowService(4);
+        try {
+            IPartitioner partitioner = StorageService.getPartitioner();
+            Token minimum = partitioner.getMinimumToken();
+            List<Range<Token>> ranges = ranges(service.luceneShards);
+
+            // The whole ring is searched as a single index, sorted across all the shards
+            List<Integer> sorted = keys(search(service, SORTED_SEARCH, minimum, minimum));
+            Assert.assertEquals(NUM_PARTITIONS, sorted.size());
+            for (int i = 0; i < NUM_PARTITIONS; i++) {
+                Assert.assertEquals(key(NUM_PARTITIONS - 1 - i), (int) sorted.get(i));
+            }
+
+            // A range crossing a shard boundary only gets its own partitions
+            Token left = partitioner.midpoint(ranges.get(0).left, ranges.get(0).right);
+            Token right = partitioner.midpoint(ranges.get(1).left, ranges.get(1).right);
+            Range<Token> range = new Range<>(left, right);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = NUM_PARTITIONS - 1; i >= 0; i--) {
+                if (range.contains(partitionKey(i).getToken())) {
+                    expected.add(key(i));
+                }
+            }
+            Assert.assertTrue(expected.size() > 0 && expected.size() < NUM_PARTITIONS);
+            Assert.assertEquals(expected, keys(search(service, SORTED_SEARCH, left, right)));
+            Assert.assertEquals(expected.size(), search(service, FILTER_SEARCH, left, right).size());
+        } finally {
+            service.delete();
+        }
+    }
+
+    @Test
+    public void testCleanup() throws Throwable {
+        RowService service = rowService(4);
+        TokenMetadata tokenMetadata = StorageService.instance.getTokenMetadata();
+        try {
+            LuceneIndexShards shards = service.luceneShards;
+            List<Range<Token>> ranges = ranges(shards);
+
+            // The local node owns the range of the second shard
+            tokenMetadata.clearUnsafe();
+            tokenMetadata.updateNormalToken(shards.boundaries().get(0), InetAddress.getByName("127.0.0.2"));
+            tokenMetadata.updateNormalToken(shards.boundaries().get(1), FBUtilities.getBroadcastAddress());
+
+            // Cleaning a local partition deletes only that partition
+            DecoratedKey local = null;
+            DecoratedKey remote = null;
+            for (int i = 0; i < NUM_PARTITIONS && (local == null || remote == null); i++) {
+                DecoratedKey partitionKey = partitionKey(i);
+                int shardNumber = shardNumber(ranges, partitionKey);
+                if (shardNumber == 1 && local == null) {
+                    local = partitionKey;
+                } else if (shardNumber == 2 && remote == null) {
+                    remote = partitionKey;
+                }
+            }
+            Assert.assertNotNull(local);
+            Assert.assertNotNull(remote);
+            long localDocs = shards.shard(ranges.get(1)).getNumDocs();
+            long remoteDocs = shards.shard(ranges.get(2)).getNumDocs();
+            service.delete(local);
+            commit(service);
+            Assert.assertEquals(localDocs - 1, shards.shard(ranges.get(1)).getNumDocs());
+
+            // Cleaning a partition out of the local ranges drops its whole shard
+            Assert.assertTrue(remoteDocs > 1);
+            service.delete(remote);
+            commit(service);
+            Assert.assertEquals(0, shards.shard(ranges.get(2)).getNumDocs());
+            Assert.assertEquals(NUM_PARTITIONS - 1 - remoteDocs, shards.getNumDocs());
+        } finally {
+            tokenMetadata.clearUnsafe();
+            service.delete();
+        }
+    }
+
+    @Test
+    public void testReplayPosition() throws Throwable {
+        RowService service = rowService(4);
+        try {
+            LuceneIndexShards shards = service.luceneShards;
+            List<Range<Token>> ranges = ranges(shards);
+            Assert.assertNull(service.getReplayPosition());
+
+            ReplayPosition position = new ReplayPosition(5, 100);
+            service.commit(position);
+            Assert.assertEquals(position, service.getReplayPosition());
+
+            // The covered position is the lowest one of all the shards
+            Map<String, String> commitData = new HashMap<>(shards.getCommitData().get(2));
+            commitData.put("replay_position_segment", "5");
+            commitData.put("replay_position_position", "10");
+            shards.shard(ranges.get(2)).commit(commitData);
+            Assert.assertEquals(new ReplayPosition(5, 10), service.getReplayPosition());
+
+            // A shard without position makes the covered position unknown
+            commitData.put("replay_position_segment", null);
+            commitData.put("replay_position_position", null);
+            shards.shard(ranges.get(3)).commit(commitData);
+            Assert.assertNull(service.getReplayPosition());
+        } finally {
+            service.delete();
+        }
+    }
+}
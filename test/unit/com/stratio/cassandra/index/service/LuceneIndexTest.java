@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.google.common.io.Files;
+import com.stratio.cassandra.index.RowIndexMetrics;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.schema.mapping.ColumnMapper;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FlushInfo;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class LuceneIndexTest {
+
+    private static final int NUM_DOCS = 10;
+
+    private Schema schema;
+    private RowIndexMetrics metrics;
+
+    @Before
+    public void before() {
+        schema = new Schema(new HashMap<String, ColumnMapper>(), null, null);
+        metrics = new RowIndexMetrics("ks", "t", "idx", schema);
+    }
+
+    @After
+    public void after() {
+        metrics.release();
+        schema.close();
+    }
+
+    private static void write(Directory directory, String name, IOContext context) throws IOException {
+        try (IndexOutput output = directory.createOutput(name, context)) {
+            output.writeByte((byte) 1);
+        }
+    }
+
+    private static void read(Directory directory, String name) throws IOException {
+        directory.openInput(name, IOContext.READ).close();
+    }
+
+    @Test
+    public void testCachedDirectory() throws IOException {
+        LuceneIndex.MeteredCachingDirectory directory = new LuceneIndex.MeteredCachingDirectory(new RAMDirectory(),
+                                                                                                5,
+                                                                                                60,
+                                                                                                metrics);
+        write(directory, "a", IOContext.DEFAULT);
+        Assert.assertTrue(directory.isCached("a"));
+        read(directory, "a");
+        Assert.assertEquals(1, metrics.directoryCacheRequests.count());
+        Assert.assertEquals(1, metrics.directoryCacheHits.count());
+
+        // Synced files are moved to the wrapped directory
+        directory.sync(Collections.singleton("a"));
+        Assert.assertFalse(directory.isCached("a"));
+        read(directory, "a");
+        Assert.assertEquals(2, metrics.directoryCacheRequests.count());
+        Assert.assertEquals(1, metrics.directoryCacheHits.count());
+
+        // Deleted files are forgotten
+        write(directory, "b", IOContext.DEFAULT);
+        Assert.assertTrue(directory.isCached("b"));
+        directory.deleteFile("b");
+        Assert.assertFalse(directory.isCached("b"));
+
+        // Closing moves all the files to the wrapped directory
+        write(directory, "c", IOContext.DEFAULT);
+        Assert.assertTrue(directory.isCached("c"));
+        directory.close();
+        Assert.assertFalse(directory.isCached("c"));
+    }
+
+    @Test
+    public void testCachedDirectoryLargeSegment() throws IOException {
+        LuceneIndex.MeteredCachingDirectory directory = new LuceneIndex.MeteredCachingDirectory(new RAMDirectory(),
+                                                                                                5,
+                                                                                                60,
+                                                                                                metrics);
+        IOContext largeFlush = new IOContext(new FlushInfo(NUM_DOCS, 10 * 1024 * 1024));
+        write(directory, "a", largeFlush);
+        Assert.assertFalse(directory.isCached("a"));
+        read(directory, "a");
+        Assert.assertEquals(1, metrics.directoryCacheRequests.count());
+        Assert.assertEquals(0, metrics.directoryCacheHits.count());
+
+        // Rewriting a cached file without caching it
+        write(directory, "b", IOContext.DEFAULT);
+        Assert.assertTrue(directory.isCached("b"));
+        directory.deleteFile("b");
+        write(directory, "b", largeFlush);
+        Assert.assertFalse(directory.isCached("b"));
+        directory.close();
+    }
+
+    private void testDirectory(String directoryType, boolean nrtCache) throws IOException {
+        File path = Files.createTempDir();
+        try {
+            LuceneIndex luceneIndex = new LuceneIndex(path.getPath(),
+                                                      60D,
+                                                      64,
+                                                      5,
+                                                      60,
+                                                      directoryType,
+                                                      nrtCache,
+                                                      new StandardAnalyzer(Version.LUCENE_48),
+                                                      metrics);
+            luceneIndex.init(new Sort(new SortField("id", SortField.Type.STRING)));
+            for (int i = 0; i < NUM_DOCS; i++) {
+                String id = Integer.toString(i);
+                Document document = new Document();
+                document.add(new StringField("id", id, Field.Store.YES));
+                document.add(new SortedDocValuesField("id", new BytesRef(id)));
+                luceneIndex.upsert(new Term("id", id), document);
+            }
+            luceneIndex.commit();
+            luceneIndex.close();
+            try (Directory directory = FSDirectory.open(path);
+                 DirectoryReader reader = DirectoryReader.open(directory)) {
+                Assert.assertEquals(NUM_DOCS, reader.numDocs());
+            }
+        } finally {
+            FileUtils.deleteRecursive(path);
+        }
+    }
+
+    @Test
+    public void testDirectoryAuto() throws IOException {
+        testDirectory("auto", true);
+        testDirectory("auto", false);
+    }
+
+    @Test
+    public void testDirectoryMMap() throws IOException {
+        testDirectory("mmap", true);
+        testDirectory("mmap", false);
+    }
+
+    @Test
+    public void testDirectoryNIOFS() throws IOException {
+        testDirectory("niofs", true);
+        testDirectory("niofs", false);
+    }
+
+    @Test
+    public void testDirectoryWithoutNRTCache() throws IOException {
+        testDirectory("auto", false);
+        Assert.assertEquals(0, metrics.directoryCacheRequests.count());
+    }
+}
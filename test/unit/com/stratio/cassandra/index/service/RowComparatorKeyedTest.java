@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import org.apache.cassandra.db.BufferDecoratedKey;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.dht.LongToken;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowComparatorKeyedTest {
+
+    private static final Comparator<Row> NATURAL = new Comparator<Row>() {
+        @Override
+        public int compare(Row row1, Row row2) {
+            return row1.key.compareTo(row2.key);
+        }
+    };
+
+    /** Compares rows by their scores, in descending order. */
+    private static class ScoreComparator extends RowComparatorKeyed<Float> {
+
+        private final Map<Row, Float> scores = new IdentityHashMap<>();
+
+        private Row row(long key, float score) {
+            Row row = new Row(new BufferDecoratedKey(new LongToken(key), ByteBufferUtil.bytes(key)), null);
+            scores.put(row, score);
+            return row;
+        }
+
+        @Override
+        protected Float key(Row row) {
+            return scores.get(row);
+        }
+
+        @Override
+        protected int compareKeys(Float key1, Float key2) {
+            return key2.compareTo(key1);
+        }
+    }
+
+    /**
+     * Compares rows by a primary value if both of them have it, or by a secondary value otherwise, which is not
+     * transitive unless the keys are normalized to the secondary value when any of them lacks the primary one.
+     */
+    private static class TwoWayComparator extends RowComparatorKeyed<float[]> {
+
+        private final Map<Row, float[]> values = new IdentityHashMap<>();
+
+        private Row row(long key, Float primary, float secondary) {
+            Row row = new Row(new BufferDecoratedKey(new LongToken(key), ByteBufferUtil.bytes(key)), null);
+            values.put(row, new float[]{primary == null ? Float.NaN : primary, secondary});
+            return row;
+        }
+
+        @Override
+        protected float[] key(Row row) {
+            return values.get(row).clone();
+        }
+
+        @Override
+        protected void normalize(List<float[]> keys) {
+            for (float[] key : keys) {
+                if (Float.isNaN(key[0])) {
+                    for (float[] other : keys) {
+                        other[0] = Float.NaN;
+                    }
+                    return;
+                }
+            }
+        }
+
+        @Override
+        protected int compareKeys(float[] key1, float[] key2) {
+            if (!Float.isNaN(key1[0]) && !Float.isNaN(key2[0])) {
+                return Float.compare(key1[0], key2[0]);
+            }
+            return Float.compare(key1[1], key2[1]);
+        }
+    }
+
+    private static List<Long> keys(List<Row> rows) {
+        List<Long> keys = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            keys.add(ByteBufferUtil.toLong(row.key.getKey()));
+        }
+        return keys;
+    }
+
+    @Test
+    public void testTop() {
+        ScoreComparator comparator = new ScoreComparator();
+        List<Row> rows = Arrays.asList(comparator.row(1, 0.1f),
+                                       comparator.row(2, 0.5f),
+                                       comparator.row(3, 0.3f),
+                                       comparator.row(4, 0.5f),
+                                       comparator.row(5, 0.9f));
+        Assert.assertEquals(Arrays.asList(5L, 2L, 4L), keys(comparator.top(rows, 3, NATURAL)));
+        Assert.assertEquals(Arrays.asList(5L, 2L, 4L, 3L, 1L), keys(comparator.top(rows, 10, NATURAL)));
+        Assert.assertEquals(Arrays.<Long>asList(), keys(comparator.top(rows, 0, NATURAL)));
+    }
+
+    @Test
+    public void testTopDuplicates() {
+        ScoreComparator comparator = new ScoreComparator();
+        List<Row> rows = Arrays.asList(comparator.row(1, 0.1f),
+                                       comparator.row(2, 0.2f),
+                                       comparator.row(1, 0.8f), // Better duplicate
+                                       comparator.row(3, 0.7f),
+                                       comparator.row(2, 0.1f), // Worse duplicate
+                                       comparator.row(4, 0.6f),
+                                       comparator.row(4, 0.6f)); // Same duplicate
+        Assert.assertEquals(Arrays.asList(1L, 3L, 4L, 2L), keys(comparator.top(rows, 10, NATURAL)));
+        Assert.assertEquals(Arrays.asList(1L, 3L), keys(comparator.top(rows, 2, NATURAL)));
+    }
+
+    @Test
+    public void testTopEvictedDuplicates() {
+        ScoreComparator comparator = new ScoreComparator();
+        List<Row> rows = Arrays.asList(comparator.row(1, 0.1f),
+                                       comparator.row(2, 0.5f),
+                                       comparator.row(3, 0.6f), // Evicts 1
+                                       comparator.row(1, 0.2f), // Rejected, still worse than 2
+                                       comparator.row(1, 0.9f)); // Better than all
+        Assert.assertEquals(Arrays.asList(1L, 3L), keys(comparator.top(rows, 2, NATURAL)));
+    }
+
+    @Test
+    public void testTopNormalizedKeys() {
+        TwoWayComparator comparator = new TwoWayComparator();
+        List<Row> rows = Arrays.asList(comparator.row(1, 1f, 3),
+                                       comparator.row(2, 2f, 1),
+                                       comparator.row(3, null, 2)); // 1 < 2 < 3 < 1 without normalization
+        Assert.assertEquals(Arrays.asList(2L, 3L, 1L), keys(comparator.top(rows, 10, NATURAL)));
+        Assert.assertEquals(Arrays.asList(2L, 3L), keys(comparator.top(rows, 2, NATURAL)));
+        Assert.assertEquals(Arrays.asList(1L, 2L), keys(comparator.top(rows.subList(0, 2), 10, NATURAL)));
+    }
+}
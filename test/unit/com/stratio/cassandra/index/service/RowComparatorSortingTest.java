@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowComparatorSortingTest {
+
+    @Test
+    public void testEncodeSortValues() {
+        Object[] values = new Object[]{null, 1, -2L, 3.5f, -4.5d, new BytesRef(new byte[]{1, 2, 3})};
+        ByteBuffer encoded = RowComparatorSorting.encode(values);
+        Assert.assertArrayEquals(values, RowComparatorSorting.decode(encoded));
+        Assert.assertArrayEquals(values, RowComparatorSorting.decode(encoded)); // Not consumed
+    }
+
+    @Test
+    public void testDecodeInvalidSortValues() {
+        Assert.assertNull(RowComparatorSorting.encode(new Object[]{new Object()}));
+        Assert.assertNull(RowComparatorSorting.decode(null));
+        Assert.assertNull(RowComparatorSorting.decode(ByteBufferUtil.EMPTY_BYTE_BUFFER));
+        Assert.assertNull(RowComparatorSorting.decode(ByteBufferUtil.bytes("not sort values")));
+        Assert.assertNull(RowComparatorSorting.decode(ByteBuffer.wrap(new byte[]{2, 0, 0})));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.cql3.ColumnIdentifier;
+import org.apache.cassandra.db.DataRange;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.RowPosition;
+import org.apache.cassandra.db.columniterator.IdentityQueryFilter;
+import org.apache.cassandra.dht.Bounds;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowMapperTest {
+
+    private static final String TABLE = "CREATE TABLE ks.t (k text PRIMARY KEY, v int, lucene text)";
+
+    private static final String SCHEMA = "{default_analyzer : \"org.apache.lucene.analysis.standard.StandardAnalyzer\"," +
+                                         " fields : {v : {type : \"integer\"}}}";
+
+    private static RowMapper rowMapper() throws IOException {
+        CFMetaData metadata = CFMetaData.compile(TABLE, "ks");
+        ColumnDefinition columnDefinition = metadata.getColumnDefinition(new ColumnIdentifier("lucene", true));
+        return RowMapper.build(metadata, columnDefinition, Schema.fromJson(SCHEMA), false);
+    }
+
+    private static Token token(String key) {
+        return StorageService.getPartitioner().getToken(ByteBufferUtil.bytes(key));
+    }
+
+    private static DecoratedKey key(String key) {
+        return StorageService.getPartitioner().decorateKey(ByteBufferUtil.bytes(key));
+    }
+
+    private static DataRange range(String left, String right) {
+        return DataRange.forKeyRange(new Range<>(token(left), token(right)));
+    }
+
+    @Test
+    public void testFilterCacheHit() throws IOException {
+        RowMapper rowMapper = rowMapper();
+        Filter filter = rowMapper.filter(range("a", "c"));
+        Assert.assertTrue(filter instanceof CachingWrapperFilter);
+        Assert.assertSame(filter, rowMapper.filter(range("a", "c")));
+        Assert.assertNotSame(filter, rowMapper.filter(range("a", "d")));
+        Assert.assertNotSame(filter, rowMapper.filter(range("b", "c")));
+        Assert.assertSame(rowMapper.filter(range("a", "d")), rowMapper.filter(range("a", "d")));
+    }
+
+    @Test
+    public void testFilterCachePerMapper() throws IOException {
+        Assert.assertNotSame(rowMapper().filter(range("a", "c")), rowMapper().filter(range("a", "c")));
+    }
+
+    @Test
+    public void testFilterKeyBoundsNotCached() throws IOException {
+        RowMapper rowMapper = rowMapper();
+        DataRange dataRange = new DataRange(new Bounds<RowPosition>(key("a"), key("c")), new IdentityQueryFilter());
+        Filter filter = rowMapper.filter(dataRange);
+        Assert.assertFalse(filter instanceof CachingWrapperFilter);
+        Assert.assertNotSame(filter, rowMapper.filter(dataRange));
+    }
+
+    @Test
+    public void testFilterWholeRing() throws IOException {
+        IPartitioner partitioner = StorageService.getPartitioner();
+        Token minimum = partitioner.getMinimumToken();
+        DataRange dataRange = DataRange.forKeyRange(new Range<>(minimum, minimum));
+        Assert.assertNull(rowMapper().filter(dataRange));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.stratio.cassandra.index.RowIndex;
+import com.stratio.cassandra.index.aggregation.AggregationResults;
+import com.stratio.cassandra.index.aggregation.StatsResult;
+import com.stratio.cassandra.index.query.CompiledSearch;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.IndexType;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.ColumnIdentifier;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DataRange;
+import org.apache.cassandra.db.IndexExpression;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.compaction.CompactionInfo;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowServiceAggregationTest extends CQLTester {
+
+    private static final int NUM_PARTITIONS = 500;
+
+    private static final String SCHEMA = "{default_analyzer : \"org.apache.lucene.analysis.standard.StandardAnalyzer\"," +
+                                         " fields : {v : {type : \"integer\"}}}";
+
+    private static final String AGGREGATION = "{aggregations : {values : {type : \"stats\", field : \"v\"}}}";
+
+    /**
+     * Returns a new {@link RowService} for a new table containing {@link #NUM_PARTITIONS} indexed partitions. The
+     * service is not registered as an index of the table, so it is populated with a rebuild.
+     *
+     * @return A new {@link RowService} for a new table.
+     * @throws Throwable If the table can't be created or written.
+     */
+    private RowService rowService() throws Throwable {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int, lucene text)");
+        for (int i = 0; i < NUM_PARTITIONS; i++) {
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", i, i);
+        }
+        flush();
+        ColumnFamilyStore cfs = Keyspace.open(keyspace()).getColumnFamilyStore(currentTable());
+        CFMetaData metadata = cfs.metadata;
+        Map<String, String> options = new HashMap<>();
+        options.put("schema", SCHEMA);
+        options.put("refresh_seconds", "0.1");
+        ColumnDefinition columnDefinition = metadata.getColumnDefinition(new ColumnIdentifier("lucene", true))
+                                                    .copy()
+                                                    .setIndex(currentTable() + "_idx", IndexType.CUSTOM, options);
+        RowService service = RowService.build(cfs, columnDefinition);
+        final IndexRebuild rebuild = service.rebuild();
+        rebuild.run(new CompactionInfo.Holder() {
+            @Override
+            public CompactionInfo getCompactionInfo() {
+                return rebuild.getCompactionInfo();
+            }
+        });
+        service.commit();
+        Thread.sleep(500); // Wait for the searcher refresh
+        return service;
+    }
+
+    private static List<Row> search(RowService service, CompiledSearch search, Token left, Token right) {
+        DataRange dataRange = DataRange.forKeyRange(new Range<>(left, right));
+        List<IndexExpression> expressions = Collections.emptyList();
+        return service.search(search, expressions, dataRange, 10, System.currentTimeMillis());
+    }
+
+    @Test
+    public void testCombineReplicas() throws Throwable {
+        RowService service = rowService();
+        try {
+            IPartitioner partitioner = StorageService.getPartitioner();
+            Token minimum = partitioner.getMinimumToken();
+            Token middle = partitioner.getToken(ByteBufferUtil.bytes(NUM_PARTITIONS / 2));
+            CompiledSearch search = service.compile(UTF8Type.instance.decompose(AGGREGATION));
+
+            // Two replicas of the first range, maybe returning their partial aggregations in different rows
+            List<Row> rows = new ArrayList<>();
+            rows.addAll(search(service, search, minimum, middle));
+            rows.addAll(search(service, search, minimum, middle));
+            rows.addAll(search(service, search, middle, minimum));
+            Assert.assertEquals(3, rows.size());
+
+            List<Row> combined = service.combine(search.getSearch(), rows, 10);
+            Assert.assertEquals(1, combined.size());
+            String json = UTF8Type.instance.compose(service.searchColumn(combined.get(0)));
+            AggregationResults results = AggregationResults.fromJson(json);
+            Assert.assertEquals(NUM_PARTITIONS, results.getCount());
+            StatsResult stats = (StatsResult) results.getResults().get("values");
+            Assert.assertEquals(NUM_PARTITIONS, stats.getCount());
+            Assert.assertEquals(NUM_PARTITIONS - 1, stats.getMax(), 0);
+        } finally {
+            service.delete();
+        }
+    }
+
+    @Test
+    public void testRejectFilteringExpressions() throws Throwable {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int, lucene text)");
+        createIndex(String.format("CREATE CUSTOM INDEX %s_idx ON %%s (lucene) USING '%s' WITH OPTIONS = " +
+                                  "{'schema' : '%s'}", currentTable(), RowIndex.class.getName(), SCHEMA));
+        execute("INSERT INTO %s (k, v) VALUES (?, ?)", 1, 1);
+        assertInvalidMessage("Aggregation searches can't be combined with other filtering expressions",
+                             "SELECT * FROM %s WHERE lucene = ? AND v = 1 ALLOW FILTERING",
+                             AGGREGATION);
+    }
+}
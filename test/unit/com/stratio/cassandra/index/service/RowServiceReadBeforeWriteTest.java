@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.stratio.cassandra.index.RowIndex;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.db.SystemKeyspace;
+import org.junit.Test;
+
+/**
+ * Tests the indexing of fully written rows without reading them, when read before write is disabled.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowServiceReadBeforeWriteTest extends CQLTester {
+
+    private static final String SCHEMA = "{default_analyzer : \"org.apache.lucene.analysis.standard.StandardAnalyzer\"," +
+                                         " fields : {v : {type : \"integer\"}}}";
+
+    private static final String SEARCH = "{filter : {type : \"match\", field : \"v\", value : %d}}";
+
+    private void createIndex() throws Throwable {
+        String indexName = currentTable() + "_idx";
+        createIndex(String.format("CREATE CUSTOM INDEX %s ON %%s (lucene) USING '%s' WITH OPTIONS = " +
+                                  "{'refresh_seconds' : '0.1', 'read_before_write' : 'false', 'schema' : '%s'}",
+                                  indexName, RowIndex.class.getName(), SCHEMA));
+        while (!SystemKeyspace.isIndexBuilt(keyspace(), indexName + "lucene")) {
+            Thread.sleep(100);
+        }
+    }
+
+    private UntypedResultSet search(int value) throws Throwable {
+        Thread.sleep(500); // Wait for the searcher refresh
+        return execute("SELECT k FROM %s WHERE lucene = ?", String.format(SEARCH, value));
+    }
+
+    @Test
+    public void testSkinnyOlderInsert() throws Throwable {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int, lucene text)");
+        createIndex();
+        execute("INSERT INTO %s (k, v) VALUES (1, 2) USING TIMESTAMP 20");
+        execute("INSERT INTO %s (k, v) VALUES (1, 1) USING TIMESTAMP 10"); // Older, as a hint or a repair
+        assertRows(execute("SELECT v FROM %s WHERE k = 1"), row(2));
+        assertRows(search(2), row(1));
+        assertEmpty(search(1));
+
+        // Newer inserts are still indexed
+        execute("INSERT INTO %s (k, v) VALUES (1, 3) USING TIMESTAMP 30");
+        assertRows(search(3), row(1));
+        assertEmpty(search(2));
+    }
+
+    @Test
+    public void testSkinnyOlderInsertAfterDelete() throws Throwable {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int, lucene text)");
+        createIndex();
+        execute("INSERT INTO %s (k, v) VALUES (1, 1) USING TIMESTAMP 10");
+        execute("DELETE FROM %s USING TIMESTAMP 30 WHERE k = 1");
+        execute("INSERT INTO %s (k, v) VALUES (1, 2) USING TIMESTAMP 20"); // Shadowed by the deletion
+        assertEmpty(execute("SELECT v FROM %s WHERE k = 1"));
+        assertEmpty(search(1));
+        assertEmpty(search(2));
+    }
+
+    @Test
+    public void testWideOlderInsert() throws Throwable {
+        createTable("CREATE TABLE %s (k int, c int, v int, lucene text, PRIMARY KEY (k, c))");
+        createIndex();
+        execute("INSERT INTO %s (k, c, v) VALUES (1, 1, 2) USING TIMESTAMP 20");
+        execute("INSERT INTO %s (k, c, v) VALUES (1, 1, 1) USING TIMESTAMP 10");
+        assertRows(execute("SELECT v FROM %s WHERE k = 1 AND c = 1"), row(2));
+        assertRows(search(2), row(1));
+        assertEmpty(search(1));
+    }
+
+    @Test
+    public void testOlderInsertThanFlushedData() throws Throwable {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int, lucene text)");
+        execute("INSERT INTO %s (k, v) VALUES (1, 2) USING TIMESTAMP 20");
+        flush();
+        createIndex(); // Not written through the index
+        execute("INSERT INTO %s (k, v) VALUES (1, 1) USING TIMESTAMP 10");
+        assertRows(search(2), row(1));
+        assertEmpty(search(1));
+    }
+
+    @Test
+    public void testOlderInsertThanMemtableData() throws Throwable {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int, lucene text)");
+        execute("INSERT INTO %s (k, v) VALUES (1, 2) USING TIMESTAMP 20");
+        createIndex(); // Not written through the index
+        execute("INSERT INTO %s (k, v) VALUES (1, 1) USING TIMESTAMP 10");
+        assertRows(search(2), row(1));
+        assertEmpty(search(1));
+    }
+}
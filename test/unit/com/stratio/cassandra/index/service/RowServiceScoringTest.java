@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import com.stratio.cassandra.index.query.CompiledSearch;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.IndexType;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.ColumnIdentifier;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DataRange;
+import org.apache.cassandra.db.IndexExpression;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.compaction.CompactionInfo;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowServiceScoringTest extends CQLTester {
+
+    private static final String SCHEMA = "{default_analyzer : \"org.apache.lucene.analysis.standard.StandardAnalyzer\"," +
+                                         " fields : {v : {type : \"text\"}}}";
+
+    private static final String SEARCH = "{query : {type : \"match\", field : \"v\", value : \"lucene\"}}";
+
+    /**
+     * Returns a new {@link RowService} for a new table containing some indexed partitions. The service is not
+     * registered as an index of the table, so it is populated with a rebuild.
+     *
+     * @return A new {@link RowService} for a new table.
+     * @throws Throwable If the table can't be created or written.
+     */
+    private RowService rowService() throws Throwable {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v text, lucene text)");
+        execute("INSERT INTO %s (k, v) VALUES (?, ?)", 1, "lucene");
+        execute("INSERT INTO %s (k, v) VALUES (?, ?)", 2, "lucene lucene lucene cassandra");
+        execute("INSERT INTO %s (k, v) VALUES (?, ?)", 3, "cassandra and lucene and many other words");
+        execute("INSERT INTO %s (k, v) VALUES (?, ?)", 4, "cassandra");
+        flush();
+        ColumnFamilyStore cfs = Keyspace.open(keyspace()).getColumnFamilyStore(currentTable());
+        CFMetaData metadata = cfs.metadata;
+        Map<String, String> options = new HashMap<>();
+        options.put("schema", SCHEMA);
+        options.put("refresh_seconds", "0.1");
+        ColumnDefinition columnDefinition = metadata.getColumnDefinition(new ColumnIdentifier("lucene", true))
+                                                    .copy()
+                                                    .setIndex(currentTable() + "_idx", IndexType.CUSTOM, options);
+        RowService service = RowService.build(cfs, columnDefinition);
+        final IndexRebuild rebuild = service.rebuild();
+        rebuild.run(new CompactionInfo.Holder() {
+            @Override
+            public CompactionInfo getCompactionInfo() {
+                return rebuild.getCompactionInfo();
+            }
+        });
+        service.commit();
+        Thread.sleep(500); // Wait for the searcher refresh
+        return service;
+    }
+
+    private static List<Row> search(RowService service, CompiledSearch search) {
+        IPartitioner partitioner = StorageService.getPartitioner();
+        DataRange dataRange = DataRange.forKeyRange(new Range<>(partitioner.getMinimumToken(),
+                                                                partitioner.getMinimumToken()));
+        List<IndexExpression> expressions = Collections.emptyList();
+        return service.search(search, expressions, dataRange, 10, System.currentTimeMillis());
+    }
+
+    private static Row withScore(RowService service, Row row, ByteBuffer score) {
+        ColumnFamily cf = row.cf.cloneMeShallow();
+        cf.addColumn(service.rowMapper.makeCellName(cf), score, System.currentTimeMillis());
+        return new Row(row.key, cf);
+    }
+
+    @Test
+    public void testScores() throws Throwable {
+        RowService service = rowService();
+        try {
+            CompiledSearch search = service.compile(UTF8Type.instance.decompose(SEARCH));
+            List<Row> rows = search(service, search);
+            Assert.assertEquals(3, rows.size());
+            for (Row row : rows) {
+                String text = UTF8Type.instance.compose(service.searchColumn(row));
+                Assert.assertEquals(Float.parseFloat(text), service.score(row), 0);
+                Assert.assertTrue(service.score(row) > 0);
+            }
+
+            // Scores whose text form has the length of a binary float, and invalid scores
+            Row row = rows.get(0);
+            Assert.assertEquals(1.25f, service.score(withScore(service, row, UTF8Type.instance.decompose("1.25"))), 0);
+            Assert.assertEquals(Float.NEGATIVE_INFINITY,
+                                service.score(withScore(service, row, ByteBufferUtil.bytes(1.25f))),
+                                0);
+            Assert.assertEquals(Float.NEGATIVE_INFINITY,
+                                service.score(withScore(service, row, UTF8Type.instance.decompose("none"))),
+                                0);
+        } finally {
+            service.delete();
+        }
+    }
+
+    @Test
+    public void testCombineScores() throws Throwable {
+        RowService service = rowService();
+        try {
+            CompiledSearch search = service.compile(UTF8Type.instance.decompose(SEARCH));
+            List<Row> rows = search(service, search);
+            List<Row> replicas = new ArrayList<>(rows);
+            replicas.add(withScore(service, rows.get(2), UTF8Type.instance.decompose("1000.0"))); // Duplicate
+            List<Row> combined = service.combine(search.getSearch(), replicas, 10);
+            Assert.assertEquals(3, combined.size());
+            Assert.assertEquals(rows.get(2).key, combined.get(0).key);
+            Assert.assertEquals("1000.0", UTF8Type.instance.compose(service.searchColumn(combined.get(0))));
+            Assert.assertEquals(rows.get(0).key, combined.get(1).key);
+            Assert.assertEquals(rows.get(1).key, combined.get(2).key);
+        } finally {
+            service.delete();
+        }
+    }
+}
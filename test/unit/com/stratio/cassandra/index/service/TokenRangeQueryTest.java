@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.service;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class TokenRangeQueryTest {
+
+    private static final CFMetaData METADATA = CFMetaData.compile("CREATE TABLE ks.t (k text PRIMARY KEY, v int)",
+                                                                  "ks");
+
+    private static final TokenMapperGeneric MAPPER = new TokenMapperGeneric(METADATA);
+
+    private static Token token(String key) {
+        return StorageService.getPartitioner().getToken(ByteBufferUtil.bytes(key));
+    }
+
+    private static TokenRangeQuery query(String lower, String upper, boolean includeLower, boolean includeUpper) {
+        return new TokenRangeQuery(lower == null ? null : token(lower),
+                                   upper == null ? null : token(upper),
+                                   includeLower,
+                                   includeUpper,
+                                   MAPPER);
+    }
+
+    @Test
+    public void testEquals() {
+        TokenRangeQuery query = query("a", "b", true, false);
+        Assert.assertEquals(query, query("a", "b", true, false));
+        Assert.assertEquals(query.hashCode(), query("a", "b", true, false).hashCode());
+        Assert.assertEquals(query("a", null, false, false), query("a", null, false, false));
+        Assert.assertEquals(query(null, null, false, false), query(null, null, false, false));
+        Assert.assertEquals(query(null, null, false, false).hashCode(), query(null, null, false, false).hashCode());
+    }
+
+    @Test
+    public void testNotEquals() {
+        TokenRangeQuery query = query("a", "b", true, false);
+        Assert.assertFalse(query.equals(query("c", "b", true, false)));
+        Assert.assertFalse(query.equals(query("a", "c", true, false)));
+        Assert.assertFalse(query.equals(query("a", "b", false, false)));
+        Assert.assertFalse(query.equals(query("a", "b", true, true)));
+        Assert.assertFalse(query.equals(query(null, "b", true, false)));
+        Assert.assertFalse(query.equals(query("a", null, true, false)));
+        Assert.assertFalse(query.equals(null));
+        Assert.assertFalse(query.equals(new Object()));
+    }
+
+    @Test
+    public void testBoost() {
+        TokenRangeQuery query = query("a", "b", true, false);
+        TokenRangeQuery boosted = query("a", "b", true, false);
+        boosted.setBoost(2);
+        Assert.assertFalse(query.equals(boosted));
+    }
+}
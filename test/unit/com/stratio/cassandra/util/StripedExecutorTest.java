@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.util;
+
+import org.apache.cassandra.metrics.DefaultNameFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class StripedExecutorTest {
+
+    private static StripedExecutor executor(String name, int numThreads, int queuesSize) {
+        return new StripedExecutor(name, numThreads, queuesSize, new DefaultNameFactory("Test", name));
+    }
+
+    @Test
+    public void testKeyOrder() {
+        StripedExecutor executor = executor("testKeyOrder", 4, 10);
+        final List<List<Integer>> results = new ArrayList<>();
+        for (int key = 0; key < 10; key++) {
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        for (int i = 0; i < 1000; i++) {
+            final int key = i % 10;
+            final int value = i;
+            executor.submit(key, new Runnable() {
+                @Override
+                public void run() {
+                    results.get(key).add(value);
+                }
+            });
+        }
+        executor.await();
+        for (int key = 0; key < 10; key++) {
+            List<Integer> values = results.get(key);
+            Assert.assertEquals(100, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Assert.assertEquals(key + i * 10, (int) values.get(i));
+            }
+        }
+        Assert.assertEquals(0, executor.getQueueDepth());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testBusyKeyDoesNotBlockOthers() throws InterruptedException {
+        StripedExecutor executor = executor("testBusyKey", 2, 10);
+        final CountDownLatch busy = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.submit(0, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    busy.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            executor.submit(0, new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+        executor.submit(1, new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        busy.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testMerge() throws InterruptedException {
+        StripedExecutor executor = executor("testMerge", 1, 100);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        executor.submit("blocker", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger merged = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            executor.submit("key", new Counter(runs, merged));
+        }
+        blocker.countDown();
+        executor.await();
+        Assert.assertEquals(1, runs.get());
+        Assert.assertEquals(9, merged.get());
+        Assert.assertEquals(9, executor.getMergedTasks());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testAwaitFailedTask() {
+        StripedExecutor executor = executor("testAwaitFailedTask", 2, 10);
+        final AtomicInteger runs = new AtomicInteger();
+        executor.submit("key", new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("Expected failure");
+            }
+        });
+        executor.submit("key", new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        });
+        executor.await();
+        Assert.assertEquals(1, runs.get());
+        executor.shutdown();
+    }
+
+    private static class Counter implements StripedExecutor.Mergeable {
+
+        private final AtomicInteger runs;
+        private final AtomicInteger merged;
+
+        private Counter(AtomicInteger runs, AtomicInteger merged) {
+            this.runs = runs;
+            this.merged = merged;
+        }
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+        }
+
+        @Override
+        public boolean merge(Runnable task) {
+            merged.incrementAndGet();
+            return true;
+        }
+    }
+}
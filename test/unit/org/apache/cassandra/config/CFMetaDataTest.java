@@ -19,6 +19,7 @@
 package org.apache.cassandra.config;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,6 +40,7 @@ import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
 public class CFMetaDataTest extends SchemaLoader
@@ -113,10 +115,39 @@ public class CFMetaDataTest extends SchemaLoader
                 CFMetaData withCompression = cfm.copy();
                 withCompression.compressionParameters(new CompressionParameters(SnappyCompressor.instance, 32768, new HashMap<String, String>()));
                 checkInverses(withCompression);
+
+                // Testing with a memtable, which thrift can't represent
+                CFMetaData withMemtable = cfm.copy();
+                withMemtable.memtableClass(HashPartitionIndex.class).memtableOptions(new HashMap<>(Collections.singletonMap("foo", "bar")));
+                checkInverses(withMemtable);
             }
         }
     }
 
+    @Test
+    public void testDefaultMemtableNotSerialized() throws Exception
+    {
+        CFMetaData cfm = Schema.instance.getCFMetaData(KEYSPACE, COLUMN_FAMILY);
+        assertEquals(CFMetaData.DEFAULT_MEMTABLE_CLASS, cfm.memtableClass);
+
+        // the default memtable doesn't change the schema digest
+        UntypedResultSet.Row result = schemaRow(cfm);
+        assertFalse(result.has("memtable_class"));
+        assertFalse(result.has("memtable_options"));
+
+        result = schemaRow(cfm.copy().memtableClass(HashPartitionIndex.class));
+        assertEquals(HashPartitionIndex.class.getName(), result.getString("memtable_class"));
+        assertFalse(result.has("memtable_options"));
+    }
+
+    private static UntypedResultSet.Row schemaRow(CFMetaData cfm) throws Exception
+    {
+        DecoratedKey k = StorageService.getPartitioner().decorateKey(ByteBufferUtil.bytes(cfm.ksName));
+        Mutation rm = cfm.toSchema(System.currentTimeMillis());
+        ColumnFamily serializedCf = rm.getColumnFamily(Schema.instance.getId(Keyspace.SYSTEM_KS, SystemKeyspace.SCHEMA_COLUMNFAMILIES_CF));
+        return QueryProcessor.resultify("SELECT * FROM system.schema_columnfamilies", new Row(k, serializedCf)).one();
+    }
+
     private void checkInverses(CFMetaData cfm) throws Exception
     {
         DecoratedKey k = StorageService.getPartitioner().decorateKey(ByteBufferUtil.bytes(cfm.ksName));
@@ -17,8 +17,17 @@
  */
 package org.apache.cassandra.cql3;
 
+import java.util.Collections;
+
+import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.cassandra.db.HashPartitionIndex;
+import org.apache.cassandra.db.SkipListPartitionIndex;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.exceptions.InvalidRequestException;
+
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 
 public class CreateTableTest extends CQLTester
@@ -29,4 +38,45 @@ public class CreateTableTest extends CQLTester
         createTable("CREATE TABLE %s (id text PRIMARY KEY);");
         assertFalse(currentTableMetadata().isThriftCompatible());
     }
+
+    @Test
+    public void testMemtableOption() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int) WITH memtable = {'class' : 'HashPartitionIndex', 'foo' : 'bar'}");
+        assertEquals(HashPartitionIndex.class, currentTableMetadata().memtableClass);
+        assertEquals(Collections.singletonMap("foo", "bar"), currentTableMetadata().memtableOptions);
+
+        for (int i = 0; i < 10; i++)
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", i, i);
+        assertRows(execute("SELECT v FROM %s WHERE k = ?", 3), row(3));
+        assertEquals(10, execute("SELECT * FROM %s").size());
+        flush();
+        assertRows(execute("SELECT v FROM %s WHERE k = ?", 3), row(3));
+
+        alterTable("ALTER TABLE %s WITH memtable = {'class' : 'org.apache.cassandra.db.SkipListPartitionIndex'}");
+        assertEquals(SkipListPartitionIndex.class, currentTableMetadata().memtableClass);
+        assertEquals(Collections.emptyMap(), currentTableMetadata().memtableOptions);
+
+        assertInvalidAlterWithMessage("ALTER TABLE %s WITH memtable = {'foo' : 'bar'}",
+                                      "Missing sub-option 'class' for the 'memtable' option");
+        assertInvalidAlterWithMessage("ALTER TABLE %s WITH memtable = {'class' : 'NoSuchPartitionIndex'}",
+                                      "NoSuchPartitionIndex");
+        assertInvalidAlterWithMessage("ALTER TABLE %s WITH memtable = {'class' : 'org.apache.cassandra.db.Memtable'}",
+                                      "org.apache.cassandra.db.Memtable");
+        assertEquals(SkipListPartitionIndex.class, currentTableMetadata().memtableClass);
+    }
+
+    private void assertInvalidAlterWithMessage(String alterTableStatement, String errorMessage) throws Throwable
+    {
+        try
+        {
+            alterTableMayThrow(alterTableStatement);
+            Assert.fail("Expected ALTER TABLE statement to error: " + alterTableStatement);
+        }
+        catch (InvalidRequestException | ConfigurationException ex)
+        {
+            Assert.assertTrue("Expected error message to contain '" + errorMessage + "', but got '" + ex.getMessage() + "'",
+                              ex.getMessage().contains(errorMessage));
+        }
+    }
 }
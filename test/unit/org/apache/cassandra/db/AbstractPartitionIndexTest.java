@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+
+/**
+ * The tests shared by the MemtablePartitionIndex implementations, which must behave as a sorted concurrent map.
+ */
+public abstract class AbstractPartitionIndexTest
+{
+    protected static final Murmur3Partitioner partitioner = new Murmur3Partitioner();
+    private static final OpOrder.Group group = new OpOrder().start();
+
+    protected abstract MemtablePartitionIndex newIndex();
+
+    private static DecoratedKey key(Random random)
+    {
+        byte[] bytes = new byte[1 + random.nextInt(20)];
+        random.nextBytes(bytes);
+        return partitioner.decorateKey(ByteBuffer.wrap(bytes));
+    }
+
+    @Test
+    public void testPutAndGet()
+    {
+        MemtablePartitionIndex index = newIndex();
+        Random random = new Random(0);
+        NavigableMap<DecoratedKey, AtomicBTreeColumns> expected = new ConcurrentSkipListMap<>();
+        Assert.assertTrue(index.isEmpty());
+        Assert.assertNull(index.get(key(random)));
+
+        for (int i = 0; i < 10000; i++)
+        {
+            DecoratedKey key = key(random);
+            AtomicBTreeColumns partition = AtomicBTreeColumns.factory.create(CFMetaData.IndexCf);
+            AtomicBTreeColumns previous = index.putIfAbsent(key, partition, group);
+            Assert.assertSame(expected.get(key), previous);
+            if (previous == null)
+                expected.put(key, partition);
+            Assert.assertSame(expected.get(key), index.putIfAbsent(key, AtomicBTreeColumns.factory.create(CFMetaData.IndexCf), group));
+        }
+
+        Assert.assertEquals(expected.size(), index.size());
+        for (Map.Entry<DecoratedKey, AtomicBTreeColumns> entry : expected.entrySet())
+            Assert.assertSame(entry.getValue(), index.get(entry.getKey()));
+        assertSameEntries(expected.entrySet().iterator(), index.iterator(null, null));
+    }
+
+    @Test
+    public void testRangeIteration()
+    {
+        MemtablePartitionIndex index = newIndex();
+        Random random = new Random(1);
+        NavigableMap<RowPosition, AtomicBTreeColumns> expected = new ConcurrentSkipListMap<>();
+        List<DecoratedKey> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            DecoratedKey key = key(random);
+            AtomicBTreeColumns partition = AtomicBTreeColumns.factory.create(CFMetaData.IndexCf);
+            // short random keys may repeat
+            AtomicBTreeColumns previous = index.putIfAbsent(key, partition, group);
+            expected.put(key, previous == null ? partition : previous);
+            keys.add(key);
+        }
+
+        for (int i = 0; i < 100; i++)
+        {
+            DecoratedKey left = keys.get(random.nextInt(keys.size()));
+            DecoratedKey right = keys.get(random.nextInt(keys.size()));
+            if (left.compareTo(right) > 0)
+            {
+                DecoratedKey swap = left;
+                left = right;
+                right = swap;
+            }
+
+            // bounded by keys
+            assertSameEntries(expected.subMap(left, true, right, true).entrySet().iterator(), index.iterator(left, right));
+            assertSameEntries(expected.tailMap(left).entrySet().iterator(), index.iterator(left, null));
+
+            // bounded by tokens
+            RowPosition from = left.getToken().minKeyBound();
+            RowPosition to = right.getToken().maxKeyBound(partitioner);
+            assertSameEntries(expected.subMap(from, true, to, true).entrySet().iterator(), index.iterator(from, to));
+            from = left.getToken().maxKeyBound(partitioner);
+            assertSameEntries(expected.tailMap(from).entrySet().iterator(), index.iterator(from, null));
+        }
+    }
+
+    @Test
+    public void testConcurrentPuts() throws InterruptedException
+    {
+        final MemtablePartitionIndex index = newIndex();
+        final List<DecoratedKey> keys = new ArrayList<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 10000; i++)
+            keys.add(key(random));
+
+        // all the threads put all the keys, in different orders
+        int threads = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            final int offset = t * keys.size() / threads;
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int i = 0; i < keys.size(); i++)
+                            index.putIfAbsent(keys.get((i + offset) % keys.size()), AtomicBTreeColumns.factory.create(CFMetaData.IndexCf), group);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new AssertionError(e);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        NavigableMap<DecoratedKey, AtomicBTreeColumns> expected = new ConcurrentSkipListMap<>();
+        for (DecoratedKey key : keys)
+        {
+            Assert.assertNotNull(index.get(key));
+            expected.put(key, index.get(key));
+        }
+        Assert.assertEquals(expected.size(), index.size());
+        assertSameEntries(expected.entrySet().iterator(), index.iterator(null, null));
+    }
+
+    private static void assertSameEntries(Iterator<? extends Map.Entry<? extends RowPosition, AtomicBTreeColumns>> expected,
+                                          Iterator<Map.Entry<DecoratedKey, AtomicBTreeColumns>> actual)
+    {
+        while (expected.hasNext())
+        {
+            Assert.assertTrue(actual.hasNext());
+            Map.Entry<? extends RowPosition, AtomicBTreeColumns> expectedEntry = expected.next();
+            Map.Entry<DecoratedKey, AtomicBTreeColumns> actualEntry = actual.next();
+            Assert.assertEquals(expectedEntry.getKey(), actualEntry.getKey());
+            Assert.assertSame(expectedEntry.getValue(), actualEntry.getValue());
+        }
+        Assert.assertFalse(actual.hasNext());
+    }
+}
@@ -21,6 +21,10 @@ package org.apache.cassandra.db;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.zip.CRC32;
@@ -42,6 +46,8 @@ import org.apache.cassandra.db.composites.CellNameType;
 import org.apache.cassandra.db.filter.NamesQueryFilter;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.gms.Gossiper;
+import org.apache.cassandra.io.compress.CompressionParameters;
+import org.apache.cassandra.io.compress.LZ4Compressor;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.ByteBufferUtil;
@@ -86,6 +92,114 @@ public class CommitLogTest extends SchemaLoader
         testRecovery(garbage);
     }
 
+    @Test
+    public void testRecoveryWithEmptyCompressedLog() throws Exception
+    {
+        CommitLog.instance.recover(new File[]{ tmpFile(CommitLogDescriptor.VERSION_21_COMPRESSED) });
+    }
+
+    @Test
+    public void testRecoveryWithGarbageCompressedLog() throws Exception
+    {
+        byte[] garbage = new byte[100];
+        (new java.util.Random()).nextBytes(garbage);
+        File logFile = tmpFile(CommitLogDescriptor.VERSION_21_COMPRESSED);
+        try (OutputStream lout = new FileOutputStream(logFile))
+        {
+            lout.write(garbage);
+        }
+        CommitLog.instance.recover(new File[]{ logFile });
+    }
+
+    @Test
+    public void testRecoveryOfCompressedLog() throws Exception
+    {
+        Map<String, String> previous = DatabaseDescriptor.getCommitLogCompression();
+        DatabaseDescriptor.setCommitLogCompression(Collections.singletonMap(CompressionParameters.SSTABLE_COMPRESSION, LZ4Compressor.class.getName()));
+        try
+        {
+            CommitLog.instance.resetUnsafe();
+            // sync after each mutation, so the last one is alone in the final compressed section
+            for (int i = 0; i < 3; i++)
+            {
+                Mutation rm = new Mutation("Keyspace1", bytes("compressed"));
+                rm.add("Standard1", Util.cellname("c" + i), ByteBufferUtil.bytes("value" + i), 0);
+                CommitLog.instance.add(rm);
+                CommitLog.instance.sync(true);
+            }
+            File[] segments = copyActiveSegments();
+            File[] torn = copyActiveSegments();
+            Assert.assertEquals(1, segments.length);
+            Assert.assertTrue(segments[0].getName().startsWith("CommitLog-" + CommitLogDescriptor.VERSION_21_COMPRESSED + "-"));
+
+            // a torn final section is skipped, keeping the sections synced before it
+            try (RandomAccessFile file = new RandomAccessFile(torn[0], "rw"))
+            {
+                file.setLength(file.length() - 1);
+            }
+            Keyspace keyspace = Keyspace.open("Keyspace1");
+            Assert.assertEquals(2, CommitLog.instance.recover(torn));
+            ColumnFamily cf = Util.getColumnFamily(keyspace, Util.dk("compressed"), "Standard1");
+            Assert.assertNull(cf.getColumn(Util.cellname("c2")));
+
+            // drop what the replay has flushed, so the intact segment is replayed from its start
+            keyspace.getColumnFamilyStore("Standard1").clearUnsafe();
+            Assert.assertEquals(3, CommitLog.instance.recover(segments));
+            cf = Util.getColumnFamily(keyspace, Util.dk("compressed"), "Standard1");
+            for (int i = 0; i < 3; i++)
+                Assert.assertEquals(ByteBufferUtil.bytes("value" + i), cf.getColumn(Util.cellname("c" + i)).value());
+        }
+        finally
+        {
+            DatabaseDescriptor.setCommitLogCompression(previous);
+            CommitLog.instance.resetUnsafe();
+        }
+    }
+
+    @Test
+    public void testRecoveryOfCompressedLogSegments() throws Exception
+    {
+        Map<String, String> previous = DatabaseDescriptor.getCommitLogCompression();
+        DatabaseDescriptor.setCommitLogCompression(Collections.singletonMap(CompressionParameters.SSTABLE_COMPRESSION, LZ4Compressor.class.getName()));
+        try
+        {
+            CommitLog.instance.resetUnsafe();
+            // each entry-with-overhead is just under half the CL size, so each one goes to a new segment
+            Mutation rm = new Mutation("Keyspace1", bytes("k"));
+            rm.add("Standard2", Util.cellname("c1"), ByteBuffer.allocate((DatabaseDescriptor.getCommitLogSegmentSize() / 2) - 100), 0);
+            CommitLog.instance.add(rm);
+            CommitLog.instance.add(rm);
+            CommitLog.instance.add(rm);
+            // the full segments are closed by their final sync, and closed again by the reset
+            CommitLog.instance.sync(true);
+            File[] segments = copyActiveSegments();
+            Assert.assertEquals(3, segments.length);
+            CommitLog.instance.resetUnsafe();
+            Assert.assertEquals(3, CommitLog.instance.recover(segments));
+        }
+        finally
+        {
+            DatabaseDescriptor.setCommitLogCompression(previous);
+            CommitLog.instance.resetUnsafe();
+        }
+    }
+
+    // copies the active segments, whose names are needed to validate their sync markers, to a new directory
+    private static File[] copyActiveSegments() throws IOException
+    {
+        File directory = Files.createTempDirectory("commitlog").toFile();
+        directory.deleteOnExit();
+        List<String> names = CommitLog.instance.getActiveSegmentNames();
+        File[] copies = new File[names.size()];
+        for (int i = 0; i < copies.length; i++)
+        {
+            copies[i] = new File(directory, names.get(i));
+            copies[i].deleteOnExit();
+            Files.copy(new File(DatabaseDescriptor.getCommitLogLocation(), names.get(i)).toPath(), copies[i].toPath());
+        }
+        return copies;
+    }
+
     @Test
     public void testRecoveryWithBadSizeChecksum() throws Exception
     {
@@ -243,7 +357,12 @@ public class CommitLogTest extends SchemaLoader
 
     protected File tmpFile() throws IOException
     {
-        File logFile = File.createTempFile("CommitLog-" + CommitLogDescriptor.current_version + "-", ".log");
+        return tmpFile(CommitLogDescriptor.current_version);
+    }
+
+    protected File tmpFile(int version) throws IOException
+    {
+        File logFile = File.createTempFile("CommitLog-" + version + "-", ".log");
         logFile.deleteOnExit();
         assert logFile.length() == 0;
         return logFile;
@@ -274,6 +393,8 @@ public class CommitLogTest extends SchemaLoader
         Assert.assertEquals(MessagingService.current_version, new CommitLogDescriptor(1340512736956320000L).getMessagingVersion());
         String newCLName = "CommitLog-" + CommitLogDescriptor.current_version + "-1340512736956320000.log";
         Assert.assertEquals(MessagingService.current_version, CommitLogDescriptor.fromFileName(newCLName).getMessagingVersion());
+        String compressedCLName = "CommitLog-" + CommitLogDescriptor.VERSION_21_COMPRESSED + "-1340512736956320000.log";
+        Assert.assertEquals(MessagingService.current_version, CommitLogDescriptor.fromFileName(compressedCLName).getMessagingVersion());
     }
 
     @Test
@@ -0,0 +1,105 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.apache.cassandra.db.commitlog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.cassandra.io.compress.CompressionParameters;
+import org.apache.cassandra.io.compress.DeflateCompressor;
+import org.apache.cassandra.io.compress.LZ4Compressor;
+
+public class CommitLogDescriptorTest
+{
+    @Test
+    public void testUncompressedHeader() throws IOException
+    {
+        CommitLogDescriptor descriptor = new CommitLogDescriptor(1340512736956320000L);
+        Assert.assertEquals(CommitLogDescriptor.current_version, descriptor.version);
+        Assert.assertEquals(CommitLogDescriptor.HEADER_SIZE, descriptor.headerSize());
+        Assert.assertNull(descriptor.createCompressor());
+
+        CommitLogDescriptor read = CommitLogDescriptor.fromHeader(writeHeader(descriptor));
+        Assert.assertEquals(descriptor, read);
+        Assert.assertNull(read.compression);
+    }
+
+    @Test
+    public void testCompressedHeader() throws IOException
+    {
+        Map<String, String> compression = Collections.singletonMap(CompressionParameters.SSTABLE_COMPRESSION, "LZ4Compressor");
+        CommitLogDescriptor descriptor = new CommitLogDescriptor(1340512736956320000L, compression);
+        Assert.assertEquals(CommitLogDescriptor.VERSION_21_COMPRESSED, descriptor.version);
+        Assert.assertTrue(descriptor.headerSize() > CommitLogDescriptor.HEADER_SIZE);
+        Assert.assertTrue(descriptor.createCompressor() instanceof LZ4Compressor);
+
+        CommitLogDescriptor read = CommitLogDescriptor.fromHeader(writeHeader(descriptor));
+        Assert.assertEquals(descriptor, read);
+        Assert.assertEquals(compression, read.compression);
+        Assert.assertEquals(descriptor.headerSize(), read.headerSize());
+        Assert.assertTrue(read.createCompressor() instanceof LZ4Compressor);
+    }
+
+    @Test
+    public void testCompressedHeaderWithQualifiedClassName() throws IOException
+    {
+        Map<String, String> compression = Collections.singletonMap(CompressionParameters.SSTABLE_COMPRESSION,
+                                                                   DeflateCompressor.class.getName());
+        CommitLogDescriptor read = CommitLogDescriptor.fromHeader(writeHeader(new CommitLogDescriptor(1L, compression)));
+        Assert.assertTrue(read.createCompressor() instanceof DeflateCompressor);
+    }
+
+    @Test
+    public void testCorruptedCompressedHeader() throws IOException
+    {
+        Map<String, String> compression = Collections.singletonMap(CompressionParameters.SSTABLE_COMPRESSION, "LZ4Compressor");
+        CommitLogDescriptor descriptor = new CommitLogDescriptor(1340512736956320000L, compression);
+        ByteBuffer header = ByteBuffer.allocate(descriptor.headerSize());
+        CommitLogDescriptor.writeHeader(header, descriptor);
+        // flip a byte of the compression options, which are covered by the checksum
+        header.put(CommitLogDescriptor.HEADER_SIZE, (byte) (header.get(CommitLogDescriptor.HEADER_SIZE) ^ 1));
+        Assert.assertNull(CommitLogDescriptor.fromHeader(write(header)));
+    }
+
+    private static File writeHeader(CommitLogDescriptor descriptor) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(descriptor.headerSize());
+        CommitLogDescriptor.writeHeader(header, descriptor);
+        return write(header);
+    }
+
+    private static File write(ByteBuffer bytes) throws IOException
+    {
+        File file = File.createTempFile("CommitLogDescriptorTest", ".log");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            out.write(bytes.array());
+        }
+        return file;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.io.util.DataOutputByteBuffer;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.PureJavaCrc32;
+
+public class CommitLogReplayerTest extends SchemaLoader
+{
+    private static final int SEGMENTS = 4;
+    private static final int MUTATIONS_PER_SEGMENT = 4000;
+    private static final int SEGMENT_SIZE = 8 << 20;
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Records the mutations applied by each lane and the threads reading and applying them, instead of applying them.
+     */
+    private static class RecordingReplayer extends CommitLogReplayer
+    {
+        final ConcurrentMap<String, List<Long>> applied = new ConcurrentHashMap<>();
+        final Set<Thread> readerThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        final Set<Thread> laneThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        final AtomicInteger decoded = new AtomicInteger();
+
+        RecordingReplayer(int readerThreads)
+        {
+            super(readerThreads);
+        }
+
+        @Override
+        protected boolean pointInTimeExceeded(Mutation mutation)
+        {
+            readerThreads.add(Thread.currentThread());
+            decoded.incrementAndGet();
+            return super.pointInTimeExceeded(mutation);
+        }
+
+        @Override
+        protected void apply(Keyspace keyspace, Mutation mutation)
+        {
+            laneThreads.add(Thread.currentThread());
+            ColumnFamily cf = mutation.getColumnFamilies().iterator().next();
+            String partition = cf.id() + ":" + ByteBufferUtil.bytesToHex(mutation.key());
+            List<Long> sequence = applied.get(partition);
+            if (sequence == null)
+            {
+                List<Long> previous = applied.putIfAbsent(partition, sequence = Collections.synchronizedList(new ArrayList<Long>()));
+                if (previous != null)
+                    sequence = previous;
+            }
+            sequence.add(ByteBufferUtil.toLong(cf.iterator().next().value()));
+        }
+    }
+
+    // writes segments of mutations to a few partitions of two tables, with their logged order as value
+    private static File[] writeSegments() throws IOException
+    {
+        File[] files = new File[SEGMENTS];
+        // the ids are far ahead of the ones of the segments written by the schema loading, so that the
+        // replay positions of the flushed tables never cause the synthetic segments to be skipped
+        long baseId = Long.MAX_VALUE / 2 + nextId.getAndAdd(SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            List<Mutation> mutations = new ArrayList<>(MUTATIONS_PER_SEGMENT);
+            for (int j = 0; j < MUTATIONS_PER_SEGMENT; j++)
+            {
+                Mutation mutation = new Mutation("Keyspace1", ByteBufferUtil.bytes("key" + j % 10));
+                mutation.add(j % 3 == 0 ? "Standard1" : "Standard2",
+                             Util.cellname("c"),
+                             ByteBufferUtil.bytes((long) i * MUTATIONS_PER_SEGMENT + j),
+                             0);
+                mutations.add(mutation);
+            }
+            files[i] = writeSegment(baseId + i, mutations.iterator(), SEGMENT_SIZE);
+            files[i].deleteOnExit();
+        }
+        return files;
+    }
+
+    private static void assertTerminated(Set<Thread> threads) throws InterruptedException
+    {
+        Assert.assertFalse(threads.isEmpty());
+        for (Thread thread : threads)
+        {
+            thread.join(10000);
+            Assert.assertFalse(thread.getName(), thread.isAlive());
+        }
+    }
+
+    @Test
+    public void testReplayOrderPerPartition() throws Exception
+    {
+        RecordingReplayer replayer = new RecordingReplayer(SEGMENTS);
+        replayer.recover(writeSegments());
+        Assert.assertEquals(SEGMENTS * MUTATIONS_PER_SEGMENT, replayer.blockForWrites());
+        Assert.assertEquals(SEGMENTS, replayer.readerThreads.size());
+        Assert.assertTrue(replayer.laneThreads.size() > 1);
+
+        // each partition of each table gets its mutations in the order they were logged
+        Assert.assertEquals(20, replayer.applied.size());
+        int applied = 0;
+        for (List<Long> sequence : replayer.applied.values())
+        {
+            for (int i = 1; i < sequence.size(); i++)
+                Assert.assertTrue(sequence.get(i - 1) < sequence.get(i));
+            applied += sequence.size();
+        }
+        Assert.assertEquals(SEGMENTS * MUTATIONS_PER_SEGMENT, applied);
+        assertTerminated(replayer.laneThreads);
+    }
+
+    @Test
+    public void testBoundedQueues() throws Exception
+    {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final RecordingReplayer replayer = new RecordingReplayer(SEGMENTS)
+        {
+            @Override
+            protected void apply(Keyspace keyspace, Mutation mutation)
+            {
+                Uninterruptibles.awaitUninterruptibly(blocked);
+                super.apply(keyspace, mutation);
+            }
+        };
+        final File[] files = writeSegments();
+        final AtomicInteger replayed = new AtomicInteger();
+        Thread recovery = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    replayer.recover(files);
+                    replayed.set(replayer.blockForWrites());
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        recovery.start();
+
+        // while the lanes are blocked, the readers stop decoding once the outstanding mutations and the queues are full
+        int decoded = -1;
+        while (decoded != replayer.decoded.get())
+        {
+            decoded = replayer.decoded.get();
+            Thread.sleep(500);
+        }
+        Assert.assertTrue(decoded > 0);
+        Assert.assertTrue(decoded < SEGMENTS * MUTATIONS_PER_SEGMENT);
+
+        blocked.countDown();
+        recovery.join();
+        Assert.assertEquals(SEGMENTS * MUTATIONS_PER_SEGMENT, replayed.get());
+        assertTerminated(replayer.laneThreads);
+    }
+
+    @Test
+    public void testLanesShutDownOnError() throws Exception
+    {
+        RecordingReplayer replayer = new RecordingReplayer(SEGMENTS)
+        {
+            @Override
+            protected boolean pointInTimeExceeded(Mutation mutation)
+            {
+                if (decoded.get() >= MUTATIONS_PER_SEGMENT)
+                    throw new RuntimeException("Replay failure");
+                return super.pointInTimeExceeded(mutation);
+            }
+        };
+        try
+        {
+            replayer.recover(writeSegments());
+            Assert.fail("The replay should have failed");
+        }
+        catch (RuntimeException e)
+        {
+            Assert.assertEquals("Replay failure", e.getMessage());
+        }
+        assertTerminated(replayer.laneThreads);
+    }
+
+    /**
+     * Writes a segment made of a single sync section with the specified mutations, in the format of the current
+     * version, until there are no more mutations or the segment is full.
+     */
+    static File writeSegment(long id, Iterator<Mutation> mutations, int segmentSize) throws IOException
+    {
+        CommitLogDescriptor descriptor = new CommitLogDescriptor(id);
+        ByteBuffer buffer = ByteBuffer.allocate(segmentSize);
+        CommitLogDescriptor.writeHeader(buffer, descriptor);
+
+        int start = CommitLogDescriptor.HEADER_SIZE;
+        buffer.position(start + CommitLogSegment.SYNC_MARKER_SIZE);
+        PureJavaCrc32 checksum = new PureJavaCrc32();
+        while (mutations.hasNext())
+        {
+            Mutation mutation = mutations.next();
+            int size = (int) Mutation.serializer.serializedSize(mutation, MessagingService.current_version);
+            if (buffer.remaining() < size + CommitLogSegment.ENTRY_OVERHEAD_SIZE + CommitLogSegment.SYNC_MARKER_SIZE)
+                break;
+
+            checksum.reset();
+            checksum.updateInt(size);
+            buffer.putInt(size);
+            buffer.putInt(checksum.getCrc());
+            int dataStart = buffer.position();
+            Mutation.serializer.serialize(mutation, new DataOutputByteBuffer(buffer), MessagingService.current_version);
+            checksum.update(buffer.array(), dataStart, size);
+            buffer.putInt(checksum.getCrc());
+        }
+
+        // the sync marker of the section, followed by an empty one ending the segment
+        int end = buffer.position();
+        checksum.reset();
+        checksum.updateInt((int) (id & 0xFFFFFFFFL));
+        checksum.updateInt((int) (id >>> 32));
+        checksum.updateInt(start);
+        buffer.putInt(start, end);
+        buffer.putInt(start + 4, checksum.getCrc());
+        buffer.putInt(0);
+        buffer.putInt(0);
+
+        File file = new File(System.getProperty("java.io.tmpdir"), descriptor.fileName());
+        try (FileOutputStream out = new FileOutputStream(file))
+        {
+            out.write(buffer.array(), 0, buffer.position());
+        }
+        return file;
+    }
+}
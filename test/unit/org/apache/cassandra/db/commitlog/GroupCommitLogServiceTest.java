@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+public class GroupCommitLogServiceTest extends SchemaLoader
+{
+    private static final long MAX_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    // the service is never started, so the segment is only synced by the tests
+    private GroupCommitLogService service;
+    private CommitLogSegment segment;
+
+    @BeforeClass
+    public static void setSyncPeriod()
+    {
+        // the test configuration uses batch mode, which has no sync period
+        DatabaseDescriptor.setCommitLogSyncPeriod(10000);
+    }
+
+    @Before
+    public void before()
+    {
+        service = new GroupCommitLogService(CommitLog.instance, Collections.singleton("Keyspace1"), MAX_WINDOW_NANOS);
+        segment = CommitLogSegment.freshSegment();
+    }
+
+    @After
+    public void after()
+    {
+        segment.close();
+        segment.delete();
+    }
+
+    private CommitLogSegment.Allocation allocate(String keyspace)
+    {
+        Mutation mutation = new Mutation(keyspace, ByteBufferUtil.bytes("k"));
+        mutation.add("Standard1", Util.cellname("c"), ByteBufferUtil.bytes("v"), 0);
+        CommitLogSegment.Allocation allocation = segment.allocate(mutation, 100);
+        allocation.markWritten();
+        return allocation;
+    }
+
+    private Thread finishWrite(final CommitLogSegment.Allocation allocation)
+    {
+        Thread writer = new Thread()
+        {
+            public void run()
+            {
+                service.finishWriteFor(allocation);
+            }
+        };
+        writer.start();
+        return writer;
+    }
+
+    @Test
+    public void testDurableWritesWaitForSync() throws InterruptedException
+    {
+        Thread first = finishWrite(allocate("Keyspace1"));
+        first.join(500);
+        Assert.assertTrue(first.isAlive());
+        Assert.assertEquals(1, service.getPendingTasks());
+        segment.sync();
+        first.join(10000);
+        Assert.assertFalse(first.isAlive());
+
+        // a write allocated after the sync is not covered by it
+        Thread second = finishWrite(allocate("Keyspace1"));
+        second.join(500);
+        Assert.assertTrue(second.isAlive());
+        segment.sync();
+        second.join(10000);
+        Assert.assertFalse(second.isAlive());
+        Assert.assertEquals(0, service.getPendingTasks());
+    }
+
+    @Test
+    public void testPeriodicWritesDontWaitForSync() throws InterruptedException
+    {
+        Thread writer = finishWrite(allocate("Keyspace2"));
+        writer.join(10000);
+        Assert.assertFalse(writer.isAlive());
+        Assert.assertEquals(0, service.getPendingTasks());
+
+        // periodic writes don't count for the sync window
+        service.syncCompleted(TimeUnit.SECONDS.toNanos(10));
+        Assert.assertEquals(0, service.getSyncWindowNanos());
+    }
+
+    @Test
+    public void testSyncWindowBounds()
+    {
+        long syncNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        // less than one other durable write is expected during a sync
+        Assert.assertEquals(0, GroupCommitLogService.syncWindowNanos(syncNanos, 0.5 / syncNanos, MAX_WINDOW_NANOS));
+        // several writes are expected, so wait for about one sync
+        Assert.assertEquals(syncNanos, GroupCommitLogService.syncWindowNanos(syncNanos, 10.0 / syncNanos, MAX_WINDOW_NANOS));
+        // slow syncs are bounded by the maximum window
+        Assert.assertEquals(MAX_WINDOW_NANOS, GroupCommitLogService.syncWindowNanos(10 * syncNanos, 10.0 / syncNanos, MAX_WINDOW_NANOS));
+    }
+
+    @Test
+    public void testSyncWindowAdaptsToDurableWrites()
+    {
+        service.syncCompleted(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertEquals(0, service.getSyncWindowNanos());
+
+        // many durable writes arriving during slow syncs open the window up to its maximum
+        List<CommitLogSegment.Allocation> allocations = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            allocations.add(allocate("Keyspace1"));
+        segment.sync();
+        for (CommitLogSegment.Allocation allocation : allocations)
+            service.finishWriteFor(allocation);
+        service.syncCompleted(TimeUnit.SECONDS.toNanos(10));
+        Assert.assertEquals(MAX_WINDOW_NANOS, service.getSyncWindowNanos());
+
+        // and it closes again once they stop arriving and the syncs are fast
+        for (int i = 0; i < 100; i++)
+            service.syncCompleted(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertEquals(0, service.getSyncWindowNanos());
+    }
+}